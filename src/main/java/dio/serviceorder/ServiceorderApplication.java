@@ -14,13 +14,18 @@ import dio.serviceorder.model.ServiceOrder;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 import org.springframework.stereotype.Service;
 
 @SpringBootApplication
 public class ServiceorderApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.	run(ServiceorderApplication.class, args);
+		SpringApplication application = new SpringApplication(ServiceorderApplication.class);
+		// The startup timeline has to be recorded before the environment exists, so it is switched on by a system property.
+		if (Boolean.getBoolean("serviceorder.startup.timeline"))
+			application.setApplicationStartup(new BufferingApplicationStartup(4096));
+		application.run(args);
 	}
 
 }
@@ -0,0 +1,310 @@
+package dio.serviceorder.aging;
+
+import dio.serviceorder.changelog.ChangeLog;
+import dio.serviceorder.enums.AgingAction;
+import dio.serviceorder.enums.ChangedEntity;
+import dio.serviceorder.enums.ServiceType;
+import dio.serviceorder.repository.ServiceOrderRepository;
+import dio.serviceorder.service.ServiceOrderService;
+import dio.serviceorder.shard.ShardRouter;
+import dio.serviceorder.stats.ServiceOrderStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Nightly job escalating or closing the open service orders older than the rule of their type allows,
+ * without long transactions or table locks.
+ *
+ * <p>The ids of every shard are split into ranges per rule, scanned in parallel by a pool of workers in
+ * keyset order: the next chunk of aged ids after the last one seen is read, changed with statements
+ * checking each order still qualifies, and committed together with the new position of its range in
+ * {@code tb_aging_checkpoint}. A run is named after the day it starts; running it again, after a crash
+ * or a restart, resumes every range from its last committed chunk with the age limits it started with.
+ * The nightly trigger finishes the runs of earlier days that were interrupted before starting its own.
+ * A worker claims its range with a conditional update before scanning it, and renews the claim with
+ * each checkpoint, so a range shared by several instances is scanned by one worker at a time; a claim
+ * not renewed within the claim timeout is taken over. Ranges of a type whose rule was removed since the
+ * run started are marked done without being scanned.
+ *
+ * <p>Closes and escalations go through the {@link ChangeLog}, and then {@link ServiceOrderService#recordAgedClosed}
+ * or {@link ServiceOrderService#recordAgedEscalated}, like any other write.
+ */
+@Slf4j
+@Component
+public class AgingJob {
+    private static final int RANGES_PER_THREAD = 4;
+    private static final String UNFINISHED_RUNS = "select distinct run_id from tb_aging_checkpoint where done = false";
+    private static final String RANGES = "select range_start, range_end, created_before, last_id, done from tb_aging_checkpoint " +
+            "where run_id = ? and type = ? order by range_start";
+    private static final String INSERT_RANGE = "insert into tb_aging_checkpoint " +
+            "(run_id, type, range_start, range_end, created_before, last_id, done) values (?, ?, ?, ?, ?, ?, false)";
+    private static final String CLAIM_RANGE = "update tb_aging_checkpoint set claimed_by = ?, claimed_until = ? " +
+            "where run_id = ? and type = ? and range_start = ? and done = false and (claimed_until is null or claimed_until <= ?)";
+    private static final String LAST_ID = "select last_id from tb_aging_checkpoint where run_id = ? and type = ? and range_start = ?";
+    // Only the worker holding the claim moves the range forward.
+    private static final String CHECKPOINT = "update tb_aging_checkpoint set last_id = ?, done = ?, claimed_until = ? " +
+            "where run_id = ? and type = ? and range_start = ? and claimed_by = ?";
+    private static final String ABANDON_RANGES = "update tb_aging_checkpoint set done = true " +
+            "where run_id = ? and type = ? and done = false";
+
+    @Autowired
+    private AgingProperties properties;
+
+    @Autowired
+    private ServiceOrderRepository serviceOrderRepository;
+
+    @Autowired
+    private ServiceOrderService serviceOrderService;
+
+    @Autowired
+    private ServiceOrderStats serviceOrderStats;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ChangeLog changeLog;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private Clock clock;
+
+    private TransactionTemplate transaction;
+    private ExecutorService workers;
+    private int parallelism;
+
+    @PostConstruct
+    void init() {
+        transaction = new TransactionTemplate(transactionManager);
+        parallelism = properties.getParallelism() > 0 ? properties.getParallelism() : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "aging-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdown();
+    }
+
+    @Scheduled(cron = "${serviceorder.aging.cron:0 0 2 * * *}")
+    public void runNightly() {
+        if (!properties.isEnabled())
+            return;
+        String runId = LocalDate.ofInstant(clock.instant(), ZoneOffset.UTC).toString();
+        // Runs interrupted on earlier days are finished first, with the age limits they started with.
+        Set<String> unfinished = new TreeSet<>();
+        shardRouter.forEachShard(() -> unfinished.addAll(jdbcTemplate.queryForList(UNFINISHED_RUNS, String.class)));
+        unfinished.remove(runId);
+        for (String unfinishedRunId : unfinished)
+            run(unfinishedRunId);
+        run(runId);
+    }
+
+    /**
+     * Runs, or resumes, the run of the given id and returns how many service orders it escalated and
+     * closed this time.
+     */
+    public synchronized Map<AgingAction, Long> run(String runId) {
+        Instant startedAt = now();
+        List<Range> ranges = new ArrayList<>();
+        shardRouter.forEachShard(shard -> {
+            for (ServiceType type : ServiceType.values()) {
+                AgingProperties.Rule rule = properties.getRules().get(type);
+                if (rule != null && rule.getMaxAge() != null)
+                    ranges.addAll(ranges(shard, runId, type, rule.getAction(), startedAt.minus(rule.getMaxAge())));
+                else if (jdbcTemplate.update(ABANDON_RANGES, runId, type.name()) > 0)
+                    log.warn("Aging run {} has no rule for {} anymore, its remaining ranges are skipped", runId, type);
+            }
+        });
+
+        Map<AgingAction, LongAdder> aged = new EnumMap<>(AgingAction.class);
+        for (AgingAction action : AgingAction.values())
+            aged.put(action, new LongAdder());
+        List<Future<?>> futures = new ArrayList<>();
+        for (Range range : ranges) {
+            if (!range.done) {
+                futures.add(workers.submit(() -> shardRouter.onShard(range.shard, () -> {
+                    age(runId, range, aged.get(range.action));
+                    return null;
+                })));
+            }
+        }
+        RuntimeException failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for aging run " + runId, e);
+            } catch (ExecutionException e) {
+                // The other ranges still run to their end; the failed one resumes on the next run.
+                RuntimeException cause = e.getCause() instanceof RuntimeException
+                        ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+                if (failure == null)
+                    failure = cause;
+                else
+                    failure.addSuppressed(cause);
+            }
+        }
+
+        Map<AgingAction, Long> counts = new EnumMap<>(AgingAction.class);
+        aged.forEach((action, count) -> counts.put(action, count.sum()));
+        log.info("Aging run {} escalated {} and closed {} service orders in {} ranges", runId,
+                counts.get(AgingAction.ESCALATE), counts.get(AgingAction.CLOSE), futures.size());
+        if (failure != null)
+            throw failure;
+        return counts;
+    }
+
+    /**
+     * Ranges of the run on the current shard, split from the current id range of the shard on the first call.
+     */
+    private List<Range> ranges(int shard, String runId, ServiceType type, AgingAction action, Instant createdBefore) {
+        List<Range> ranges = existingRanges(shard, runId, type, action);
+        if (!ranges.isEmpty())
+            return ranges;
+        Long maxId = serviceOrderRepository.findMaxId();
+        if (maxId == null)
+            return ranges;
+        // Ranges exclude their start, and each shard numbers its ids from its own offset.
+        long firstStart = serviceOrderRepository.findMinId() - 1;
+        long rangeSize = Math.max(1, -Math.floorDiv(-(maxId - firstStart), (long) parallelism * RANGES_PER_THREAD));
+        for (long start = firstStart; start < maxId; start += rangeSize)
+            ranges.add(new Range(shard, type, action, start, Math.min(start + rangeSize, maxId), createdBefore, start, false));
+        try {
+            transaction.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_RANGE, ranges, ranges.size(), (statement, range) -> {
+                statement.setString(1, runId);
+                statement.setString(2, type.name());
+                statement.setLong(3, range.start);
+                statement.setLong(4, range.end);
+                statement.setTimestamp(5, Timestamp.from(range.createdBefore));
+                statement.setLong(6, range.lastId);
+            }));
+        } catch (DuplicateKeyException e) {
+            // Another instance started the same run first: share its ranges.
+            return existingRanges(shard, runId, type, action);
+        }
+        return ranges;
+    }
+
+    private List<Range> existingRanges(int shard, String runId, ServiceType type, AgingAction action) {
+        return jdbcTemplate.query(RANGES, (rs, rowNum) -> new Range(shard, type, action, rs.getLong(1), rs.getLong(2),
+                rs.getTimestamp(3).toInstant(), rs.getLong(4), rs.getBoolean(5)), runId, type.name());
+    }
+
+    private void age(String runId, Range range, LongAdder aged) {
+        AgingAction action = range.action;
+        String claimant = UUID.randomUUID().toString();
+        Instant claimedAt = now();
+        if (jdbcTemplate.update(CLAIM_RANGE, claimant, Timestamp.from(claimedAt.plus(properties.getClaimTimeout())),
+                runId, range.type.name(), range.start, Timestamp.from(claimedAt)) == 0)
+            return; // Finished meanwhile, or being scanned by another worker.
+        // Read again: a worker whose claim expired may have moved the range forward since it was listed.
+        long lastId = jdbcTemplate.queryForObject(LAST_ID, Long.class, runId, range.type.name(), range.start);
+        int chunkSize = properties.getChunkSize();
+        while (true) {
+            List<Long> ids = serviceOrderRepository.findAged(range.type, range.createdBefore, action == AgingAction.ESCALATE,
+                    lastId, range.end, chunkSize);
+            long chunkLastId = ids.isEmpty() ? lastId : ids.get(ids.size() - 1);
+            boolean done = ids.size() < chunkSize;
+            Instant now = now();
+            List<Long> changed;
+            // Closes change the counts, which a stats reconcile must not correct before they are recorded.
+            long statsWrite = serviceOrderStats.beginWrite();
+            try {
+                changed = transaction.execute(status -> {
+                    List<Long> updated = changeLog.writeAll(ChangedEntity.SERVICE_ORDER, () -> action == AgingAction.CLOSE
+                            ? serviceOrderRepository.closeAged(ids, now)
+                            : serviceOrderRepository.escalateAged(ids, now), Function.identity());
+                    // A finished range needs no claim anymore, so marking it undone lets any worker resume it.
+                    Timestamp claimedUntil = done ? null : Timestamp.from(now.plus(properties.getClaimTimeout()));
+                    if (jdbcTemplate.update(CHECKPOINT, chunkLastId, done, claimedUntil,
+                            runId, range.type.name(), range.start, claimant) == 0) {
+                        status.setRollbackOnly();
+                        return null;
+                    }
+                    return updated;
+                });
+                if (changed != null && !changed.isEmpty() && action == AgingAction.CLOSE)
+                    serviceOrderService.recordAgedClosed(changed);
+            } finally {
+                serviceOrderStats.endWrite(statsWrite);
+            }
+            if (changed == null) {
+                log.warn("Aging range ({}, {}] of {} in run {} was taken over by another worker", range.start, range.end, range.type, runId);
+                return;
+            }
+            aged.add(changed.size());
+            if (!changed.isEmpty() && action == AgingAction.ESCALATE)
+                serviceOrderService.recordAgedEscalated(changed);
+            if (done)
+                return;
+            lastId = chunkLastId;
+        }
+    }
+
+    // Truncated to what the database column keeps, like the timestamps the services write.
+    private Instant now() {
+        return clock.instant().truncatedTo(ChronoUnit.MICROS);
+    }
+
+    private static final class Range {
+        final int shard;
+        final ServiceType type;
+        final AgingAction action;
+        final long start;
+        final long end;
+        final Instant createdBefore;
+        final long lastId;
+        final boolean done;
+
+        Range(int shard, ServiceType type, AgingAction action, long start, long end, Instant createdBefore, long lastId, boolean done) {
+            this.shard = shard;
+            this.type = type;
+            this.action = action;
+            this.start = start;
+            this.end = end;
+            this.createdBefore = createdBefore;
+            this.lastId = lastId;
+            this.done = done;
+        }
+    }
+}
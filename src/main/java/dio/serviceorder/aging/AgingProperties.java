@@ -0,0 +1,35 @@
+package dio.serviceorder.aging;
+
+import dio.serviceorder.enums.AgingAction;
+import dio.serviceorder.enums.ServiceType;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "serviceorder.aging")
+public class AgingProperties {
+    private boolean enabled = false;
+
+    /** Service orders changed per transaction. */
+    private int chunkSize = 1000;
+
+    /** Threads scanning id ranges at once, each holding a connection while a chunk commits. 0 uses one per available processor. */
+    private int parallelism = 0;
+
+    /** A range whose worker has not committed a chunk for this long may be claimed by another worker. */
+    private Duration claimTimeout = Duration.ofMinutes(10);
+
+    /** Types without a rule are left alone. */
+    private Map<ServiceType, Rule> rules = new EnumMap<>(ServiceType.class);
+
+    @Data
+    public static class Rule {
+        /** Open service orders created longer ago than this are aged. */
+        private Duration maxAge;
+        private AgingAction action = AgingAction.ESCALATE;
+    }
+}
@@ -0,0 +1,15 @@
+package dio.serviceorder.bulkhead;
+
+import java.lang.annotation.*;
+
+/**
+ * Runs a service method in the bulkhead of the given workload: its concurrency is capped and its
+ * queries share the query timeout of the workload. A method called from another bulkhead runs in the
+ * caller's one.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Bulkhead {
+    Workload value();
+}
@@ -0,0 +1,70 @@
+package dio.serviceorder.bulkhead;
+
+import dio.serviceorder.exception.BulkheadFullException;
+import dio.serviceorder.exception.QueryTimeoutExceededException;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@link Bulkhead} methods in the {@link QueryScope} of their workload, after taking one of the
+ * permits of the workload.
+ */
+public class BulkheadInterceptor implements MethodInterceptor {
+    private final BulkheadProperties bulkheadProperties;
+    private final Map<Workload, Semaphore> permits = new EnumMap<>(Workload.class);
+
+    public BulkheadInterceptor(BulkheadProperties bulkheadProperties) {
+        this.bulkheadProperties = bulkheadProperties;
+        for (Workload workload : Workload.values())
+            permits.put(workload, new Semaphore(bulkheadProperties.getWorkload(workload).getMaxConcurrent()));
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Bulkhead bulkhead = AnnotatedElementUtils.findMergedAnnotation(invocation.getMethod(), Bulkhead.class);
+        QueryScope current = QueryScope.current();
+        if (bulkhead == null || (current != null && current.getWorkload() != null))
+            return invocation.proceed();
+
+        Workload workload = bulkhead.value();
+        BulkheadProperties.Compartment compartment = bulkheadProperties.getWorkload(workload);
+        Semaphore semaphore = permits.get(workload);
+        acquire(semaphore, workload, compartment.getMaxWait());
+        QueryScope scope = QueryScope.open();
+        scope.enter(workload, compartment.getQueryTimeout());
+        try {
+            return invocation.proceed();
+        } catch (QueryTimeoutException e) {
+            if (scope.isCancelled())
+                throw e;
+            throw new QueryTimeoutExceededException(workload, compartment.getQueryTimeout(), e);
+        } finally {
+            scope.exit();
+            if (current == null)
+                QueryScope.clear();
+            semaphore.release();
+        }
+    }
+
+    public int availablePermits(Workload workload) {
+        return permits.get(workload).availablePermits();
+    }
+
+    private static void acquire(Semaphore semaphore, Workload workload, Duration maxWait) {
+        try {
+            if (!semaphore.tryAcquire(maxWait.toNanos(), TimeUnit.NANOSECONDS))
+                throw new BulkheadFullException(workload);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BulkheadFullException(workload);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package dio.serviceorder.bulkhead;
+
+import org.springframework.aop.framework.autoproxy.AbstractBeanFactoryAwareAdvisingPostProcessor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+
+/**
+ * Applies the {@link BulkheadInterceptor} to beans with {@link Bulkhead} methods, outside of their
+ * transaction.
+ */
+public class BulkheadPostProcessor extends AbstractBeanFactoryAwareAdvisingPostProcessor {
+
+    public BulkheadPostProcessor(BulkheadInterceptor bulkheadInterceptor) {
+        this.advisor = new DefaultPointcutAdvisor(AnnotationMatchingPointcut.forMethodAnnotation(Bulkhead.class), bulkheadInterceptor);
+        setBeforeExistingAdvisors(true);
+        setProxyTargetClass(true);
+    }
+}
@@ -0,0 +1,32 @@
+package dio.serviceorder.bulkhead;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "serviceorder.bulkhead")
+public class BulkheadProperties {
+    private boolean enabled = true;
+
+    private Map<Workload, Compartment> workloads = new EnumMap<>(Workload.class);
+
+    public Compartment getWorkload(Workload workload) {
+        return workloads.computeIfAbsent(workload, w -> new Compartment());
+    }
+
+    @Data
+    public static class Compartment {
+        /** Time all the queries of one operation may take together. */
+        private Duration queryTimeout = Duration.ofSeconds(5);
+        /** Operations running at once, and so connections held at once on an unsharded database. */
+        private int maxConcurrent = 10;
+        /** How long an operation waits for one of the others to finish before being rejected. */
+        private Duration maxWait = Duration.ofMillis(100);
+        /** Threads running the per-shard queries of this workload when sharded. */
+        private int shardQueryThreads = 4;
+    }
+}
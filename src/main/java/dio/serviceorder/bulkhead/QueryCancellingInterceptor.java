@@ -0,0 +1,47 @@
+package dio.serviceorder.bulkhead;
+
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Opens a {@link QueryScope} around the async part of a request, such as a streaming export, and cancels
+ * its running queries when the container reports the request failed, which it does when the client
+ * disconnects, or timed out.
+ *
+ * <p>Synchronous requests have no such notification: the servlet container only notices the disconnect
+ * when the response is written, after the queries are done.
+ */
+public class QueryCancellingInterceptor implements CallableProcessingInterceptor {
+    private static final String SCOPE_ATTRIBUTE = QueryCancellingInterceptor.class.getName() + ".scope";
+
+    @Override
+    public <T> void preProcess(NativeWebRequest request, Callable<T> task) {
+        request.setAttribute(SCOPE_ATTRIBUTE, QueryScope.open(), RequestAttributes.SCOPE_REQUEST);
+    }
+
+    @Override
+    public <T> void postProcess(NativeWebRequest request, Callable<T> task, Object concurrentResult) {
+        QueryScope.clear();
+    }
+
+    @Override
+    public <T> Object handleTimeout(NativeWebRequest request, Callable<T> task) {
+        cancel(request);
+        return RESULT_NONE;
+    }
+
+    @Override
+    public <T> Object handleError(NativeWebRequest request, Callable<T> task, Throwable t) {
+        cancel(request);
+        return RESULT_NONE;
+    }
+
+    private static void cancel(NativeWebRequest request) {
+        QueryScope scope = (QueryScope) request.getAttribute(SCOPE_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (scope != null)
+            scope.cancel();
+    }
+}
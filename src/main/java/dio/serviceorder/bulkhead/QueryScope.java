@@ -0,0 +1,124 @@
+package dio.serviceorder.bulkhead;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Queries of one unit of work, usually a service operation: the workload they run for, the deadline
+ * they share and the statements running right now, so they can all be cancelled.
+ *
+ * <p>Bound to the current thread, and to the shard query threads working for it.
+ */
+public final class QueryScope {
+    private static final ThreadLocal<QueryScope> CURRENT = new ThreadLocal<>();
+
+    private final Set<Statement> running = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled;
+    private volatile Workload workload;
+    private volatile Duration timeout;
+    private volatile long deadline;
+
+    public static QueryScope current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * The scope of the current thread, opening one when there is none.
+     */
+    public static QueryScope open() {
+        QueryScope scope = CURRENT.get();
+        if (scope == null) {
+            scope = new QueryScope();
+            CURRENT.set(scope);
+        }
+        return scope;
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    public static <T> T callWith(QueryScope scope, Supplier<T> action) {
+        QueryScope previous = CURRENT.get();
+        if (scope == null)
+            CURRENT.remove();
+        else
+            CURRENT.set(scope);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null)
+                CURRENT.remove();
+            else
+                CURRENT.set(previous);
+        }
+    }
+
+    public Workload getWorkload() {
+        return workload;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Cancels the statements running in this scope and fails the ones started afterwards.
+     */
+    public void cancel() {
+        cancelled = true;
+        for (Statement statement : running) {
+            try {
+                statement.cancel();
+            } catch (SQLException e) {
+                // Already completed or closed.
+            }
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    void enter(Workload workload, Duration timeout) {
+        this.timeout = timeout;
+        this.deadline = System.nanoTime() + timeout.toNanos();
+        this.workload = workload;
+    }
+
+    void exit() {
+        workload = null;
+        timeout = null;
+    }
+
+    /**
+     * JDBC query timeout, in whole seconds, left to a statement starting now; 0 for none.
+     */
+    int remainingTimeoutSeconds() throws SQLTimeoutException {
+        if (timeout == null)
+            return 0;
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0)
+            throw new SQLTimeoutException(String.format("Query timeout of %s %s operations exceeded",
+                    timeout, workload.name().toLowerCase()));
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, (remaining + 999_999_999) / 1_000_000_000));
+    }
+
+    void register(Statement statement) throws SQLException {
+        running.add(statement);
+        // Checked after adding, so a concurrent cancel either sees the statement or is seen here.
+        if (cancelled) {
+            running.remove(statement);
+            throw new SQLException("Query cancelled", "57014");
+        }
+    }
+
+    void unregister(Statement statement) {
+        running.remove(statement);
+    }
+}
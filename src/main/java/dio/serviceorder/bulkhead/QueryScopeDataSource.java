@@ -0,0 +1,95 @@
+package dio.serviceorder.bulkhead;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+/**
+ * Data source proxy running the statements of threads with a {@link QueryScope} under the scope: with
+ * the time left to the scope as query timeout, and cancellable through the scope.
+ */
+public final class QueryScopeDataSource {
+
+    private QueryScopeDataSource() {
+    }
+
+    /**
+     * Proxy of the data source, also {@link AutoCloseable} when the data source is, so a pool bean keeps
+     * being closed on shutdown.
+     */
+    public static DataSource wrap(DataSource dataSource) {
+        Class<?>[] types = dataSource instanceof AutoCloseable
+                ? new Class<?>[]{DataSource.class, AutoCloseable.class}
+                : new Class<?>[]{DataSource.class};
+        return proxy(types, dataSource, (target, method, args) -> {
+            Object result = invoke(target, method, args);
+            return result instanceof Connection ? wrapConnection((Connection) result) : result;
+        });
+    }
+
+    private static Connection wrapConnection(Connection connection) {
+        return proxy(new Class<?>[]{Connection.class}, connection, (target, method, args) -> {
+            Object result = invoke(target, method, args);
+            if (result instanceof CallableStatement)
+                return wrapStatement(CallableStatement.class, (CallableStatement) result);
+            if (result instanceof PreparedStatement)
+                return wrapStatement(PreparedStatement.class, (PreparedStatement) result);
+            if (result instanceof Statement)
+                return wrapStatement(Statement.class, (Statement) result);
+            return result;
+        });
+    }
+
+    private static <S extends Statement> S wrapStatement(Class<S> type, S statement) {
+        return proxy(new Class<?>[]{type}, statement, (target, method, args) -> {
+            QueryScope scope = QueryScope.current();
+            if (scope == null || !method.getName().startsWith("execute"))
+                return invoke(target, method, args);
+            int timeout = scope.remainingTimeoutSeconds();
+            if (timeout > 0 && (target.getQueryTimeout() == 0 || target.getQueryTimeout() > timeout))
+                target.setQueryTimeout(timeout);
+            scope.register(target);
+            try {
+                return invoke(target, method, args);
+            } finally {
+                scope.unregister(target);
+            }
+        });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<?>[] types, T target, Handler<T> handler) {
+        InvocationHandler invocationHandler = (proxy, method, args) -> {
+            // Identity semantics, since proxies are used as transaction resource keys.
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Scoped " + target;
+                default:
+                    return handler.invoke(target, method, args);
+            }
+        };
+        return (T) Proxy.newProxyInstance(QueryScopeDataSource.class.getClassLoader(), types, invocationHandler);
+    }
+
+    private interface Handler<T> {
+        Object invoke(T target, Method method, Object[] args) throws Throwable;
+    }
+}
@@ -0,0 +1,10 @@
+package dio.serviceorder.bulkhead;
+
+public enum Workload {
+    // Single-entity reads and writes a user waits on.
+    INTERACTIVE,
+    // Listings, batch lookups and aggregates over many rows.
+    LIST,
+    // Imports, exports and background rebuilds.
+    BULK
+}
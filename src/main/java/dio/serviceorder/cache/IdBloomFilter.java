@@ -0,0 +1,116 @@
+package dio.serviceorder.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free Bloom filter over entity ids. A negative answer means the id was never added, so the
+ * database lookup can be skipped; a positive answer may be a false positive or a deleted id.
+ * Until the first rebuild completes every id is reported as possibly present.
+ */
+public class IdBloomFilter {
+    private final int numBits;
+    private final int numHashes;
+
+    private volatile AtomicLongArray bits;
+    private volatile AtomicLongArray rebuilding;
+    private volatile boolean ready;
+
+    private final LongAdder definiteMisses = new LongAdder();
+
+    public IdBloomFilter(long expectedIds, double falsePositiveRate) {
+        long optimalBits = (long) Math.ceil(-expectedIds * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.numBits = (int) Math.max(64, Math.min(optimalBits, Integer.MAX_VALUE - 63));
+        this.numHashes = Math.max(1, (int) Math.round((double) numBits / expectedIds * Math.log(2)));
+        this.bits = new AtomicLongArray(words());
+    }
+
+    public boolean mightContain(Long id) {
+        if (!ready || id == null)
+            return true;
+        AtomicLongArray current = bits;
+        long hash1 = mix(id);
+        long hash2 = mix(hash1);
+        for (int i = 0; i < numHashes; i++) {
+            int bit = bitIndex(hash1 + i * hash2);
+            if ((current.get(bit >>> 6) & (1L << bit)) == 0) {
+                definiteMisses.increment();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void add(Long id) {
+        if (id == null)
+            return;
+        // The rebuilding content first, so a rebuild finishing in between cannot swap out the only copy:
+        // if it is found set, it becomes bits; if not, the rebuild began after this id was committed and
+        // reads it with the other ids.
+        AtomicLongArray pending = rebuilding;
+        if (pending != null)
+            set(pending, id);
+        set(bits, id);
+    }
+
+    /**
+     * Starts a rebuild: from now on added ids are also kept for the new content. Must be called before
+     * the ids given to {@link #finishRebuild} are read, so an id committed after that read is not lost.
+     */
+    public void beginRebuild() {
+        rebuilding = new AtomicLongArray(words());
+    }
+
+    /**
+     * Replaces the filter content with the given ids and the ids added since {@link #beginRebuild}.
+     */
+    public void finishRebuild(Iterable<Long> ids) {
+        AtomicLongArray pending = rebuilding;
+        if (pending == null)
+            throw new IllegalStateException("No rebuild in progress");
+        for (Long id : ids)
+            set(pending, id);
+        bits = pending;
+        rebuilding = null;
+        ready = true;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public long getDefiniteMisses() {
+        return definiteMisses.sum();
+    }
+
+    private void set(AtomicLongArray target, long id) {
+        long hash1 = mix(id);
+        long hash2 = mix(hash1);
+        for (int i = 0; i < numHashes; i++) {
+            int bit = bitIndex(hash1 + i * hash2);
+            int word = bit >>> 6;
+            long mask = 1L << bit;
+            long current;
+            do {
+                current = target.get(word);
+                if ((current & mask) != 0)
+                    break;
+            } while (!target.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    private int bitIndex(long hash) {
+        return (int) ((hash & Long.MAX_VALUE) % numBits);
+    }
+
+    private int words() {
+        return (numBits + 63) >>> 6;
+    }
+
+    private static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
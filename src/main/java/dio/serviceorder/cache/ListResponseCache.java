@@ -0,0 +1,144 @@
+package dio.serviceorder.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialized bodies of the hot service order list responses, so they are served without querying,
+ * mapping or serializing anything.
+ *
+ * <p>Every write to the service orders, or to a customer they embed, bumps a generation counter and
+ * drops all entries. A response is only stored under the generation read before it was computed, so a
+ * response racing with a write is never served after it. The cache is bounded both in entries and in
+ * bytes; responses that do not fit are simply not stored.
+ */
+@Component
+public class ListResponseCache implements MeterBinder {
+    // Smaller bodies gain too little from compression to be worth a second copy.
+    private static final int MIN_GZIP_SIZE = 1024;
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final boolean gzip;
+    private final AtomicLong generation = new AtomicLong();
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private long bytes;
+
+    public ListResponseCache(@Value("${serviceorder.response-cache.max-entries:64}") int maxEntries,
+                             @Value("${serviceorder.response-cache.max-size:32MB}") DataSize maxSize,
+                             @Value("${serviceorder.response-cache.gzip:true}") boolean gzip) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxSize.toBytes();
+        this.gzip = gzip;
+    }
+
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Drops every entry, called after each write that may change a cached list.
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        synchronized (this) {
+            entries.clear();
+            bytes = 0;
+        }
+    }
+
+    /**
+     * Entry of the key computed during the current generation, or null.
+     */
+    public Entry get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.generation != generation.get()) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry;
+    }
+
+    /**
+     * Stores a body computed from data read during {@code generation}, unless a write happened since
+     * or it does not fit. Returns the entry either way, for the caller to serve.
+     */
+    public Entry put(String key, long generation, String contentType, byte[] body) {
+        Entry entry = new Entry(generation, contentType, body,
+                gzip && body.length >= MIN_GZIP_SIZE ? gzip(body) : null);
+        synchronized (this) {
+            if (generation != this.generation.get())
+                return entry;
+            Entry previous = entries.get(key);
+            long available = maxBytes - bytes + (previous != null ? previous.size() : 0);
+            if (entry.size() > available || previous == null && entries.size() >= maxEntries)
+                return entry;
+            entries.put(key, entry);
+            bytes += entry.size() - (previous != null ? previous.size() : 0);
+        }
+        return entry;
+    }
+
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("serviceorder.response-cache.hits", hits, LongAdder::sum)
+                .register(registry);
+        FunctionCounter.builder("serviceorder.response-cache.misses", misses, LongAdder::sum)
+                .register(registry);
+        Gauge.builder("serviceorder.response-cache.size", this, ListResponseCache::bytes)
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    @Getter
+    public static final class Entry {
+        private final long generation;
+        private final String contentType;
+        private final byte[] body;
+        // Null when the body is too small or compression is off.
+        private final byte[] gzippedBody;
+
+        Entry(long generation, String contentType, byte[] body, byte[] gzippedBody) {
+            this.generation = generation;
+            this.contentType = contentType;
+            this.body = body;
+            this.gzippedBody = gzippedBody;
+        }
+
+        long size() {
+            return body.length + (gzippedBody != null ? gzippedBody.length : 0);
+        }
+    }
+}
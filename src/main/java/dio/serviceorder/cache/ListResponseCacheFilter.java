@@ -0,0 +1,84 @@
+package dio.serviceorder.cache;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Answers {@code GET /open}, {@code /closed} and {@code /type/{serviceType}} of the service orders from
+ * the {@link ListResponseCache}, and stores the successful responses computed on a miss.
+ *
+ * <p>Entries are keyed by path and {@code Accept} header, since content negotiation may pick another
+ * representation for another header. The gzipped copy is sent to clients accepting it; a miss is always
+ * answered uncompressed, as the controller wrote it.
+ */
+public class ListResponseCacheFilter extends OncePerRequestFilter {
+    private static final String BASE_PATH = "/api/v1/service-order/";
+    private static final String VARY = HttpHeaders.ACCEPT + ", " + HttpHeaders.ACCEPT_ENCODING;
+
+    private final ListResponseCache cache;
+
+    public ListResponseCacheFilter(ListResponseCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!"GET".equals(request.getMethod()) || request.getQueryString() != null)
+            return true;
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (!path.startsWith(BASE_PATH))
+            return true;
+        String list = path.substring(BASE_PATH.length());
+        return !list.equals("open") && !list.equals("closed")
+                && !(list.startsWith("type/") && list.length() > "type/".length() && list.indexOf('/', "type/".length()) < 0);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        String key = request.getRequestURI() + '\n' + (accept != null ? accept : "");
+        response.setHeader(HttpHeaders.VARY, VARY);
+        ListResponseCache.Entry entry = cache.get(key);
+        if (entry != null) {
+            write(entry, acceptsGzip(request), response);
+            return;
+        }
+
+        long generation = cache.generation();
+        ContentCachingResponseWrapper capturingResponse = new ContentCachingResponseWrapper(response);
+        filterChain.doFilter(request, capturingResponse);
+        if (capturingResponse.getStatus() == HttpServletResponse.SC_OK && capturingResponse.getContentType() != null)
+            cache.put(key, generation, capturingResponse.getContentType(), capturingResponse.getContentAsByteArray());
+        capturingResponse.copyBodyToResponse();
+    }
+
+    private static void write(ListResponseCache.Entry entry, boolean gzip, HttpServletResponse response) throws IOException {
+        byte[] body = gzip && entry.getGzippedBody() != null ? entry.getGzippedBody() : entry.getBody();
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(entry.getContentType());
+        if (body != entry.getBody())
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null)
+            return false;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip"))
+                return parts.length == 1 || !parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+        }
+        return false;
+    }
+}
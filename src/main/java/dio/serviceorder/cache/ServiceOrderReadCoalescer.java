@@ -0,0 +1,96 @@
+package dio.serviceorder.cache;
+
+import dio.serviceorder.dto.CustomerDTO;
+import dio.serviceorder.dto.ServiceOrderDTO;
+import dio.serviceorder.enums.ServiceType;
+import dio.serviceorder.replica.ReplicaContext;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight coalescing of the hot {@link dio.serviceorder.service.ServiceOrderService} reads.
+ * Every coalesced caller gets its own copy of the result, so callers may modify what they are given.
+ *
+ * <p>Requests pinned to the primary after a write load on their own: a read already in flight may have
+ * started before their write committed, and would hand them the state it replaced.
+ */
+@Component
+public class ServiceOrderReadCoalescer implements MeterBinder {
+    private final SingleFlight<Long, Optional<ServiceOrderDTO>> byId;
+    private final SingleFlight<Boolean, List<ServiceOrderDTO>> byClosedStatus;
+    private final SingleFlight<ServiceType, List<ServiceOrderDTO>> byType;
+
+    public ServiceOrderReadCoalescer(@Value("${serviceorder.coalescing.max-wait:2s}") Duration maxWait) {
+        byId = new SingleFlight<>(maxWait, serviceOrder -> serviceOrder.map(ServiceOrderReadCoalescer::copy));
+        byClosedStatus = new SingleFlight<>(maxWait, ServiceOrderReadCoalescer::copy);
+        byType = new SingleFlight<>(maxWait, ServiceOrderReadCoalescer::copy);
+    }
+
+    public Optional<ServiceOrderDTO> findById(Long id, Supplier<Optional<ServiceOrderDTO>> loader) {
+        return execute(byId, id, loader);
+    }
+
+    public List<ServiceOrderDTO> listByClosedStatus(Boolean closed, Supplier<List<ServiceOrderDTO>> loader) {
+        return execute(byClosedStatus, closed, loader);
+    }
+
+    public List<ServiceOrderDTO> listByType(ServiceType type, Supplier<List<ServiceOrderDTO>> loader) {
+        return execute(byType, type, loader);
+    }
+
+    private static <K, V> V execute(SingleFlight<K, V> singleFlight, K key, Supplier<V> loader) {
+        if (ReplicaContext.isPinnedToPrimary())
+            return loader.get();
+        return singleFlight.execute(key, loader);
+    }
+
+    // Service orders sharing a customer DTO share its copy too.
+    private static List<ServiceOrderDTO> copy(List<ServiceOrderDTO> serviceOrders) {
+        Map<CustomerDTO, CustomerDTO> customers = new IdentityHashMap<>();
+        List<ServiceOrderDTO> copies = new ArrayList<>(serviceOrders.size());
+        for (ServiceOrderDTO serviceOrder : serviceOrders) {
+            CustomerDTO customer = serviceOrder.getCustomer();
+            copies.add(serviceOrder.toBuilder()
+                    .customer(customer == null ? null : customers.computeIfAbsent(customer, c -> c.toBuilder().build()))
+                    .build());
+        }
+        return copies;
+    }
+
+    private static ServiceOrderDTO copy(ServiceOrderDTO serviceOrder) {
+        CustomerDTO customer = serviceOrder.getCustomer();
+        return serviceOrder.toBuilder()
+                .customer(customer == null ? null : customer.toBuilder().build())
+                .build();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bind(registry, "findById", byId);
+        bind(registry, "listByClosedStatus", byClosedStatus);
+        bind(registry, "listByType", byType);
+    }
+
+    private void bind(MeterRegistry registry, String operation, SingleFlight<?, ?> singleFlight) {
+        FunctionCounter.builder("serviceorder.coalescing.executions", singleFlight, SingleFlight::getExecutions)
+                .tag("operation", operation)
+                .register(registry);
+        FunctionCounter.builder("serviceorder.coalescing.coalesced", singleFlight, SingleFlight::getCoalesced)
+                .tag("operation", operation)
+                .register(registry);
+        FunctionCounter.builder("serviceorder.coalescing.wait.timeouts", singleFlight, SingleFlight::getWaitTimeouts)
+                .tag("operation", operation)
+                .register(registry);
+    }
+}
@@ -0,0 +1,84 @@
+package dio.serviceorder.cache;
+
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Collapses concurrent calls for the same key into a single execution of the loader.
+ * The first caller runs the loader, callers arriving while it is in flight wait for its
+ * result for at most {@code maxWait} and then fall back to loading on their own. Waiting callers get
+ * the result through {@code share}, which copies it when callers may modify what they are given.
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Duration maxWait;
+    private final UnaryOperator<V> share;
+
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder waitTimeouts = new LongAdder();
+
+    public SingleFlight(Duration maxWait) {
+        this(maxWait, UnaryOperator.identity());
+    }
+
+    public SingleFlight(Duration maxWait, UnaryOperator<V> share) {
+        this.maxWait = maxWait;
+        this.share = share;
+    }
+
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> existingCall = inFlight.putIfAbsent(key, call);
+        if (existingCall != null) {
+            coalesced.increment();
+            return await(existingCall, loader);
+        }
+
+        executions.increment();
+        try {
+            V value = loader.get();
+            call.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    private V await(CompletableFuture<V> call, Supplier<V> loader) {
+        try {
+            return share.apply(call.get(maxWait.toMillis(), TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            waitTimeouts.increment();
+            return loader.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a coalesced call", e);
+        }
+    }
+
+    public long getExecutions() {
+        return executions.sum();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public long getWaitTimeouts() {
+        return waitTimeouts.sum();
+    }
+}
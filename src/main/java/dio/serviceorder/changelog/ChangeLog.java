@@ -0,0 +1,156 @@
+package dio.serviceorder.changelog;
+
+import dio.serviceorder.enums.ChangedEntity;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Table of the service orders and customers changed by each instance, through which the other instances
+ * sharing the database learn what to refresh in their local caches, see {@link ChangeLogTailer}.
+ *
+ * <p>Writes go through {@link #write}, {@link #writeAll} or {@link #delete}, which log the changed ids in
+ * the transaction of the write itself: a change is logged if and only if it committed. Each shard keeps
+ * the log of its own rows. When disabled, writes simply run as they would without it.
+ */
+@Component
+public class ChangeLog {
+    private static final String INSERT = "insert into tb_change_log (entity, entity_id, node, created_at) values (?, ?, ?, ?)";
+
+    @Value("${serviceorder.change-log.enabled:false}")
+    private boolean enabled;
+
+    @Value("${serviceorder.change-log.node-id:}")
+    private String nodeId;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private Clock clock;
+
+    private TransactionTemplate transaction;
+
+    @PostConstruct
+    void init() {
+        if (nodeId == null || nodeId.isEmpty())
+            nodeId = UUID.randomUUID().toString();
+        transaction = new TransactionTemplate(transactionManager);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Runs a write of one entity, whose id is taken from the result.
+     */
+    public <T> T write(ChangedEntity entity, Supplier<T> write, Function<T, Long> id) {
+        if (!enabled)
+            return write.get();
+        return transaction.execute(status -> {
+            T written = write.get();
+            log(entity, Collections.singletonList(id.apply(written)));
+            return written;
+        });
+    }
+
+    /**
+     * Runs a write of several entities, whose ids are taken from the results.
+     */
+    public <T> List<T> writeAll(ChangedEntity entity, Supplier<List<T>> write, Function<T, Long> id) {
+        if (!enabled)
+            return write.get();
+        return transaction.execute(status -> {
+            List<T> written = write.get();
+            List<Long> ids = new ArrayList<>(written.size());
+            for (T entry : written)
+                ids.add(id.apply(entry));
+            log(entity, ids);
+            return written;
+        });
+    }
+
+    public void delete(ChangedEntity entity, Long id, Runnable delete) {
+        write(entity, () -> {
+            delete.run();
+            return id;
+        }, Function.identity());
+    }
+
+    /**
+     * Changes logged on the current shard after {@code afterId}, oldest first.
+     */
+    List<Change> changesAfter(long afterId, int limit) {
+        return jdbcTemplate.query("select id, entity, entity_id, node from tb_change_log where id > ? order by id limit ?",
+                (rs, rowNum) -> new Change(rs.getLong(1), ChangedEntity.valueOf(rs.getString(2)), rs.getLong(3), rs.getString(4)),
+                afterId, limit);
+    }
+
+    /**
+     * Changes logged on the current shard with one of the given ids.
+     */
+    List<Change> changes(List<Long> ids) {
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        return jdbcTemplate.query("select id, entity, entity_id, node from tb_change_log where id in (" + placeholders + ") order by id",
+                (rs, rowNum) -> new Change(rs.getLong(1), ChangedEntity.valueOf(rs.getString(2)), rs.getLong(3), rs.getString(4)),
+                ids.toArray());
+    }
+
+    long lastId() {
+        Long lastId = jdbcTemplate.queryForObject("select max(id) from tb_change_log", Long.class);
+        return lastId != null ? lastId : 0;
+    }
+
+    int deleteOlderThan(Timestamp createdBefore) {
+        return jdbcTemplate.update("delete from tb_change_log where created_at < ?", createdBefore);
+    }
+
+    private void log(ChangedEntity entity, List<Long> ids) {
+        if (ids.isEmpty())
+            return;
+        Timestamp now = Timestamp.from(clock.instant());
+        jdbcTemplate.batchUpdate(INSERT, ids, ids.size(), (statement, id) -> {
+            statement.setString(1, entity.name());
+            statement.setLong(2, id);
+            statement.setString(3, nodeId);
+            statement.setTimestamp(4, now);
+        });
+    }
+
+    @Getter
+    static final class Change {
+        private final long id;
+        private final ChangedEntity entity;
+        private final long entityId;
+        private final String node;
+
+        Change(long id, ChangedEntity entity, long entityId, String node) {
+            this.id = id;
+            this.entity = entity;
+            this.entityId = entityId;
+            this.node = node;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package dio.serviceorder.changelog;
+
+import dio.serviceorder.enums.ChangedEntity;
+import dio.serviceorder.service.CustomerService;
+import dio.serviceorder.service.ServiceOrderService;
+import dio.serviceorder.shard.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Follows the {@link ChangeLog} of every shard and refreshes the local caches with the changes made by
+ * other instances, so they are at most one poll interval behind.
+ *
+ * <p>Each shard is read from a high-water mark, the last log id seen there, taken when the application
+ * starts, before the caches are loaded. Ids are handed out before their transaction commits, so a
+ * change may become visible after a later one: the ids skipped over are kept as gaps and looked up again
+ * on every poll, for a minute at most. All the changes of a poll are applied in one batch.
+ */
+@Slf4j
+@Component
+public class ChangeLogTailer {
+    private static final Duration GAP_TIMEOUT = Duration.ofMinutes(1);
+    private static final int MAX_GAPS = 1000;
+    private static final int MAX_GAPS_PER_QUERY = 100;
+
+    @Autowired
+    private ChangeLog changeLog;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ServiceOrderService serviceOrderService;
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private Clock clock;
+
+    @Value("${serviceorder.change-log.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${serviceorder.change-log.retention:PT1H}")
+    private Duration retention;
+
+    private final Map<Integer, Cursor> cursors = new ConcurrentHashMap<>();
+    private volatile boolean started;
+
+    /**
+     * Takes the high-water marks, ahead of the listeners loading the caches from the database.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void start() {
+        if (!changeLog.isEnabled())
+            return;
+        shardRouter.forEachShard(shard -> cursors.put(shard, new Cursor(changeLog.lastId())));
+        started = true;
+    }
+
+    /**
+     * Applies the changes logged by other instances since the previous poll, and returns how many.
+     */
+    @Scheduled(fixedDelayString = "${serviceorder.change-log.poll-interval:PT1S}")
+    public synchronized int poll() {
+        if (!started)
+            return 0;
+        long now = clock.millis();
+        Set<Long> serviceOrderIds = new LinkedHashSet<>();
+        Set<Long> customerIds = new LinkedHashSet<>();
+        Map<Integer, Cursor> advanced = new TreeMap<>();
+        shardRouter.forEachShard(shard -> {
+            Cursor cursor = cursors.get(shard).copy();
+            List<ChangeLog.Change> changes = new ArrayList<>();
+            if (!cursor.gaps.isEmpty())
+                changes.addAll(changeLog.changes(cursor.gapsToCheck()));
+            changes.addAll(changeLog.changesAfter(cursor.highWaterMark, batchSize));
+            for (ChangeLog.Change change : changes) {
+                cursor.see(change.getId(), now);
+                if (changeLog.getNodeId().equals(change.getNode()))
+                    continue;
+                (change.getEntity() == ChangedEntity.SERVICE_ORDER ? serviceOrderIds : customerIds).add(change.getEntityId());
+            }
+            cursor.expireGaps(now);
+            advanced.put(shard, cursor);
+        });
+        // Customers first, so refreshed service orders find their new customers.
+        if (!customerIds.isEmpty())
+            customerService.refresh(new ArrayList<>(customerIds));
+        if (!serviceOrderIds.isEmpty())
+            serviceOrderService.refresh(new ArrayList<>(serviceOrderIds));
+        // Only moved once the changes are applied, so a failed poll is retried from the same place.
+        cursors.putAll(advanced);
+        return customerIds.size() + serviceOrderIds.size();
+    }
+
+    @Scheduled(fixedDelayString = "${serviceorder.change-log.prune-interval:PT10M}",
+            initialDelayString = "${serviceorder.change-log.prune-interval:PT10M}")
+    public void prune() {
+        if (!changeLog.isEnabled())
+            return;
+        Timestamp createdBefore = Timestamp.from(clock.instant().minus(retention));
+        int[] pruned = new int[1];
+        shardRouter.forEachShard(shard -> pruned[0] += changeLog.deleteOlderThan(createdBefore));
+        log.debug("Pruned {} change log entries", pruned[0]);
+    }
+
+    private static final class Cursor {
+        long highWaterMark;
+        // Skipped ids still expected to show up, with the time they are given up at.
+        final TreeMap<Long, Long> gaps;
+
+        Cursor(long highWaterMark) {
+            this(highWaterMark, new TreeMap<>());
+        }
+
+        private Cursor(long highWaterMark, TreeMap<Long, Long> gaps) {
+            this.highWaterMark = highWaterMark;
+            this.gaps = gaps;
+        }
+
+        Cursor copy() {
+            return new Cursor(highWaterMark, new TreeMap<>(gaps));
+        }
+
+        List<Long> gapsToCheck() {
+            List<Long> ids = new ArrayList<>(Math.min(gaps.size(), MAX_GAPS_PER_QUERY));
+            for (Iterator<Long> it = gaps.keySet().iterator(); it.hasNext() && ids.size() < MAX_GAPS_PER_QUERY; )
+                ids.add(it.next());
+            return ids;
+        }
+
+        void see(long id, long now) {
+            if (id <= highWaterMark) {
+                gaps.remove(id);
+                return;
+            }
+            for (long skipped = highWaterMark + 1; skipped < id && gaps.size() < MAX_GAPS; skipped++)
+                gaps.put(skipped, now + GAP_TIMEOUT.toMillis());
+            highWaterMark = id;
+        }
+
+        void expireGaps(long now) {
+            gaps.values().removeIf(expiresAt -> expiresAt <= now);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package dio.serviceorder.config;
+
+import dio.serviceorder.bulkhead.BulkheadInterceptor;
+import dio.serviceorder.bulkhead.BulkheadPostProcessor;
+import dio.serviceorder.bulkhead.BulkheadProperties;
+import dio.serviceorder.bulkhead.QueryScopeDataSource;
+import dio.serviceorder.bulkhead.Workload;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+@Configuration
+@EnableConfigurationProperties(BulkheadProperties.class)
+@ConditionalOnProperty(name = "serviceorder.bulkhead.enabled", havingValue = "true", matchIfMissing = true)
+public class BulkheadConfig {
+
+    // Bound from the environment directly, since post processors are created before configuration properties.
+    @Bean
+    static BulkheadInterceptor bulkheadInterceptor(Environment environment) {
+        return new BulkheadInterceptor(Binder.get(environment).bindOrCreate("serviceorder.bulkhead", BulkheadProperties.class));
+    }
+
+    @Bean
+    static BulkheadPostProcessor bulkheadPostProcessor(BulkheadInterceptor bulkheadInterceptor) {
+        return new BulkheadPostProcessor(bulkheadInterceptor);
+    }
+
+    /**
+     * Applies the query timeouts and cancellation of the {@link dio.serviceorder.bulkhead.QueryScope}
+     * to every statement, whichever configuration defined the data source.
+     */
+    @Bean
+    static BeanPostProcessor queryScopeDataSource() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if ("dataSource".equals(beanName) && bean instanceof DataSource)
+                    return QueryScopeDataSource.wrap((DataSource) bean);
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder bulkheadMetrics(BulkheadInterceptor bulkheadInterceptor) {
+        return registry -> {
+            for (Workload workload : Workload.values())
+                Gauge.builder("serviceorder.bulkhead.available", bulkheadInterceptor, interceptor -> interceptor.availablePermits(workload))
+                        .tag("workload", workload.name())
+                        .register(registry);
+        };
+    }
+}
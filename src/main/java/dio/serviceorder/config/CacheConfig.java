@@ -0,0 +1,54 @@
+package dio.serviceorder.config;
+
+import dio.serviceorder.cache.IdBloomFilter;
+import dio.serviceorder.cache.ListResponseCache;
+import dio.serviceorder.cache.ListResponseCacheFilter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+@Configuration
+public class CacheConfig {
+    @Value("${serviceorder.id-filter.expected-ids:1000000}")
+    private long expectedIds;
+
+    @Value("${serviceorder.id-filter.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    @Bean
+    public IdBloomFilter serviceOrderIdFilter() {
+        return new IdBloomFilter(expectedIds, falsePositiveRate);
+    }
+
+    @Bean
+    public IdBloomFilter customerIdFilter() {
+        return new IdBloomFilter(expectedIds, falsePositiveRate);
+    }
+
+    @Bean
+    public MeterBinder idFilterMetrics(IdBloomFilter serviceOrderIdFilter, IdBloomFilter customerIdFilter) {
+        return registry -> {
+            FunctionCounter.builder("serviceorder.id-filter.definite-misses", serviceOrderIdFilter, IdBloomFilter::getDefiniteMisses)
+                    .tag("entity", "service-order")
+                    .register(registry);
+            FunctionCounter.builder("serviceorder.id-filter.definite-misses", customerIdFilter, IdBloomFilter::getDefiniteMisses)
+                    .tag("entity", "customer")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "serviceorder.response-cache.enabled", havingValue = "true", matchIfMissing = true)
+    public FilterRegistrationBean<ListResponseCacheFilter> listResponseCacheFilter(ListResponseCache listResponseCache) {
+        FilterRegistrationBean<ListResponseCacheFilter> registration = new FilterRegistrationBean<>(new ListResponseCacheFilter(listResponseCache));
+        registration.addUrlPatterns("/api/*");
+        // Inside the request timing and SQL statement counting filters, so hits are timed too.
+        registration.setOrder(Ordered.LOWEST_PRECEDENCE);
+        return registration;
+    }
+}
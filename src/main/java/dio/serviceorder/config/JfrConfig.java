@@ -0,0 +1,57 @@
+package dio.serviceorder.config;
+
+import dio.serviceorder.jfr.ServiceOperationsPostProcessor;
+import dio.serviceorder.service.CustomerService;
+import dio.serviceorder.service.ServiceOrderService;
+import jdk.jfr.Recording;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+@Configuration
+public class JfrConfig {
+
+    @Bean
+    static ServiceOperationsPostProcessor serviceOperationEvents() {
+        return new ServiceOperationsPostProcessor(Set.of(CustomerService.class, ServiceOrderService.class));
+    }
+
+    /**
+     * Continuous recording with the JDK default settings and the service order events, written to
+     * {@code serviceorder.jfr.recording.file} when the application stops.
+     */
+    @Bean(destroyMethod = "stop")
+    @ConditionalOnProperty(name = "serviceorder.jfr.recording.enabled", havingValue = "true")
+    public Recording serviceOrderRecording(@Value("classpath:jfr/serviceorder.jfc") Resource profile,
+                                           @Value("${serviceorder.jfr.recording.file:recordings/serviceorder.jfr}") Path file,
+                                           @Value("${serviceorder.jfr.recording.max-age:PT1H}") Duration maxAge) throws IOException, ParseException {
+        Map<String, String> settings = new HashMap<>(jdk.jfr.Configuration.getConfiguration("default").getSettings());
+        try (Reader reader = new InputStreamReader(profile.getInputStream(), StandardCharsets.UTF_8)) {
+            settings.putAll(jdk.jfr.Configuration.create(reader).getSettings());
+        }
+        if (file.getParent() != null)
+            Files.createDirectories(file.getParent());
+        Recording recording = new Recording(settings);
+        recording.setName("serviceorder");
+        recording.setToDisk(true);
+        recording.setMaxAge(maxAge);
+        recording.setDestination(file);
+        recording.setDumpOnExit(true);
+        recording.start();
+        return recording;
+    }
+}
@@ -0,0 +1,12 @@
+package dio.serviceorder.config;
+
+import dio.serviceorder.aging.AgingProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+@Configuration
+@EnableScheduling
+@EnableConfigurationProperties(AgingProperties.class)
+public class SchedulingConfig {
+}
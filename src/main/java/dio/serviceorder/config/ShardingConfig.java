@@ -0,0 +1,106 @@
+package dio.serviceorder.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import dio.serviceorder.bulkhead.BulkheadProperties;
+import dio.serviceorder.bulkhead.Workload;
+import dio.serviceorder.shard.ConsistentHashRing;
+import dio.serviceorder.shard.ShardProperties;
+import dio.serviceorder.shard.ShardRouter;
+import dio.serviceorder.shard.ShardRoutingDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.util.StreamUtils;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+@Configuration
+@EnableConfigurationProperties(ShardProperties.class)
+public class ShardingConfig {
+    @Value("classpath:schema-sharded.sql")
+    private Resource shardSchema;
+
+    @Bean
+    @ConditionalOnProperty(name = "serviceorder.sharding.enabled", havingValue = "true")
+    public ShardRoutingDataSource shardRoutingDataSource(ShardProperties shardProperties) throws IOException {
+        List<ShardProperties.Shard> shards = shardProperties.getShards();
+        if (shards.isEmpty())
+            throw new IllegalStateException("Sharding is enabled but serviceorder.sharding.shards is empty");
+        String schema = StreamUtils.copyToString(shardSchema.getInputStream(), StandardCharsets.UTF_8);
+
+        Map<Object, Object> targets = new HashMap<>();
+        for (int index = 0; index < shards.size(); index++) {
+            ShardProperties.Shard shard = shards.get(index);
+            HikariDataSource shardDataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(shard.getUrl())
+                    .username(shard.getUsername())
+                    .password(shard.getPassword())
+                    .build();
+            shardDataSource.setPoolName("shard-" + index);
+            // Shard i hands out ids from (i << SHARD_ID_SHIFT) + 1 on, so the id tells its shard.
+            String shardSchemaScript = schema
+                    .replace("${identity-start}", String.valueOf(ShardRouter.firstServiceOrderId(index)));
+            DatabasePopulatorUtils.execute(new ResourceDatabasePopulator(
+                    new ByteArrayResource(shardSchemaScript.getBytes(StandardCharsets.UTF_8))), shardDataSource);
+            targets.put(index, shardDataSource);
+        }
+
+        ShardRoutingDataSource routingDataSource = new ShardRoutingDataSource();
+        routingDataSource.setTargetDataSources(targets);
+        routingDataSource.setDefaultTargetDataSource(targets.get(0));
+        routingDataSource.afterPropertiesSet();
+        return routingDataSource;
+    }
+
+    /**
+     * Service methods may open their transaction before the shard is chosen, so the connection is only
+     * taken from the routing data source when the first statement runs.
+     */
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "serviceorder.sharding.enabled", havingValue = "true")
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    @Bean
+    public ShardRouter shardRouter(ShardProperties shardProperties, ObjectProvider<DataSource> dataSource,
+                                   ObjectProvider<BulkheadProperties> bulkheadProperties) {
+        if (!shardProperties.isEnabled() || shardProperties.getShards().size() < 2)
+            return ShardRouter.unsharded();
+        List<ShardProperties.Shard> shards = shardProperties.getShards();
+        List<String> names = IntStream.range(0, shards.size())
+                .mapToObj(index -> shards.get(index).getName() != null ? shards.get(index).getName() : "shard" + index)
+                .collect(Collectors.toList());
+        List<Integer> virtualNodes = shards.stream()
+                .map(ShardProperties.Shard::getVirtualNodes)
+                .collect(Collectors.toList());
+        Map<Workload, Integer> workloadQueryThreads = new EnumMap<>(Workload.class);
+        bulkheadProperties.ifAvailable(bulkheads -> {
+            for (Workload workload : Workload.values())
+                workloadQueryThreads.put(workload, bulkheads.getWorkload(workload).getShardQueryThreads());
+        });
+        return new ShardRouter(new ConsistentHashRing(names, virtualNodes), shards.size(),
+                new JdbcTemplate(dataSource.getObject()), shardProperties.getQueryThreads(), workloadQueryThreads);
+    }
+}
@@ -0,0 +1,31 @@
+package dio.serviceorder.config;
+
+import dio.serviceorder.aging.AgingJob;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.persistence.EntityManagerFactory;
+
+@Configuration
+public class StartupConfig {
+
+    /**
+     * With lazy initialization on, the entity manager factory would otherwise only be built by the first
+     * request. Keeping it eager lets the deferred JPA bootstrap run in the background during startup.
+     */
+    @Bean
+    static LazyInitializationExcludeFilter eagerEntityManagerFactory() {
+        return LazyInitializationExcludeFilter.forBeanTypes(EntityManagerFactory.class);
+    }
+
+    /**
+     * Nothing depends on the aging job, so with lazy initialization on its nightly run would only be
+     * scheduled through Spring Boot detecting its {@code @Scheduled} method. Keeping it eager does not
+     * depend on that detection.
+     */
+    @Bean
+    static LazyInitializationExcludeFilter eagerAgingJob() {
+        return LazyInitializationExcludeFilter.forBeanTypes(AgingJob.class);
+    }
+}
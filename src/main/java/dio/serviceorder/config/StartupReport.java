@@ -0,0 +1,91 @@
+package dio.serviceorder.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.StringJoiner;
+
+/**
+ * Logs the time to ready against {@code serviceorder.startup.target} and, when the startup timeline is
+ * recorded, the slowest startup steps. With {@code serviceorder.startup.exit-after-ready} the application
+ * warms up its main endpoints and exits, which is how the class-data-sharing training run is driven.
+ */
+@Slf4j
+@Component
+public class StartupReport implements ApplicationListener<ApplicationReadyEvent> {
+    private static final String[] WARM_UP_PATHS = {
+            "/api/v1/service-order", "/api/v1/service-order/open", "/api/v1/customers", "/v3/api-docs"
+    };
+
+    @Autowired
+    private ConfigurableApplicationContext context;
+
+    @Value("${serviceorder.startup.target:10s}")
+    private Duration target;
+
+    @Value("${serviceorder.startup.report-steps:15}")
+    private int reportSteps;
+
+    @Value("${serviceorder.startup.exit-after-ready:false}")
+    private boolean exitAfterReady;
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        Duration timeToReady = event.getTimeTaken();
+        if (timeToReady != null && timeToReady.compareTo(target) > 0)
+            log.warn("Application ready in {} ms, above the startup target of {} ms", timeToReady.toMillis(), target.toMillis());
+        else if (timeToReady != null)
+            log.info("Application ready in {} ms (startup target {} ms)", timeToReady.toMillis(), target.toMillis());
+
+        ApplicationStartup applicationStartup = context.getApplicationStartup();
+        if (applicationStartup instanceof BufferingApplicationStartup)
+            logSlowestSteps(((BufferingApplicationStartup) applicationStartup).getBufferedTimeline());
+
+        if (exitAfterReady) {
+            warmUp();
+            System.exit(SpringApplication.exit(context));
+        }
+    }
+
+    private void logSlowestSteps(StartupTimeline timeline) {
+        log.info("Slowest startup steps:");
+        timeline.getEvents().stream()
+                .sorted(Comparator.comparing(StartupTimeline.TimelineEvent::getDuration).reversed())
+                .limit(reportSteps)
+                .forEach(step -> log.info("  {} ms  {} {}", step.getDuration().toMillis(),
+                        step.getStartupStep().getName(), describeTags(step.getStartupStep())));
+    }
+
+    private String describeTags(StartupStep step) {
+        StringJoiner tags = new StringJoiner(", ");
+        step.getTags().forEach(tag -> tags.add(tag.getKey() + "=" + tag.getValue()));
+        return tags.toString();
+    }
+
+    private void warmUp() {
+        String port = context.getEnvironment().getProperty("local.server.port");
+        if (port == null)
+            return;
+        RestTemplate restTemplate = new RestTemplate();
+        for (String path : WARM_UP_PATHS) {
+            try {
+                restTemplate.getForObject("http://localhost:" + port + path, String.class);
+            } catch (RuntimeException e) {
+                log.debug("Warm-up request to {} failed", path, e);
+            }
+        }
+    }
+}
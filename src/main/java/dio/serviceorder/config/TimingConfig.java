@@ -0,0 +1,58 @@
+package dio.serviceorder.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dio.serviceorder.timing.FlightRecorder;
+import dio.serviceorder.timing.RepositoryTimingPostProcessor;
+import dio.serviceorder.timing.RequestTimingFilter;
+import dio.serviceorder.timing.TimedJacksonHttpMessageConverter;
+import dio.serviceorder.timing.TimedRequestMappingHandlerAdapter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcRegistrations;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import java.time.Duration;
+
+/**
+ * Per-request phase timers: controller methods, repository calls, mappers and JSON conversion.
+ */
+@Configuration
+@ConditionalOnProperty(name = "serviceorder.timing.enabled", havingValue = "true", matchIfMissing = true)
+public class TimingConfig {
+
+    @Bean
+    static RepositoryTimingPostProcessor repositoryTimingPostProcessor() {
+        return new RepositoryTimingPostProcessor();
+    }
+
+    // Replaces the converter Spring Boot would otherwise register.
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper) {
+        return new TimedJacksonHttpMessageConverter(objectMapper);
+    }
+
+    @Bean
+    public WebMvcRegistrations timedHandlerMethods() {
+        return new WebMvcRegistrations() {
+            @Override
+            public RequestMappingHandlerAdapter getRequestMappingHandlerAdapter() {
+                return new TimedRequestMappingHandlerAdapter();
+            }
+        };
+    }
+
+    @Bean
+    public FilterRegistrationBean<RequestTimingFilter> requestTimingFilter(FlightRecorder flightRecorder,
+                                                                          @Value("${serviceorder.timing.slow-request-threshold:1s}") Duration slowRequestThreshold) {
+        FilterRegistrationBean<RequestTimingFilter> registration =
+                new FilterRegistrationBean<>(new RequestTimingFilter(flightRecorder, slowRequestThreshold));
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(Ordered.LOWEST_PRECEDENCE - 1);
+        return registration;
+    }
+}
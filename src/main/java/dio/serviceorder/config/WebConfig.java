@@ -0,0 +1,39 @@
+package dio.serviceorder.config;
+
+import dio.serviceorder.bulkhead.QueryCancellingInterceptor;
+import dio.serviceorder.limiter.ConcurrencyLimitInterceptor;
+import dio.serviceorder.limiter.ConcurrencyLimiters;
+import dio.serviceorder.limiter.LimiterProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@EnableConfigurationProperties(LimiterProperties.class)
+public class WebConfig implements WebMvcConfigurer {
+    @Autowired
+    private LimiterProperties limiterProperties;
+
+    @Autowired
+    private ConcurrencyLimiters concurrencyLimiters;
+
+    @Value("${serviceorder.bulkhead.enabled:true}")
+    private boolean bulkheadEnabled;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (limiterProperties.isEnabled())
+            registry.addInterceptor(new ConcurrencyLimitInterceptor(concurrencyLimiters))
+                    .addPathPatterns("/api/**");
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        if (bulkheadEnabled)
+            configurer.registerCallableInterceptors(new QueryCancellingInterceptor());
+    }
+}
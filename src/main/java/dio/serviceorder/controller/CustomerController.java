@@ -1,11 +1,22 @@
 package dio.serviceorder.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import dio.serviceorder.dto.BatchDTO;
 import dio.serviceorder.dto.CustomerDTO;
+import dio.serviceorder.exception.BatchTooLargeException;
 import dio.serviceorder.exception.CustomerAlreadyExistsException;
+import dio.serviceorder.exception.CustomerHasServiceOrdersException;
 import dio.serviceorder.exception.CustomerNotFoundException;
+import dio.serviceorder.exception.CustomerVersionMismatchException;
+import dio.serviceorder.exception.InvalidPatchException;
+import dio.serviceorder.limiter.ConcurrencyLimited;
+import dio.serviceorder.limiter.LimitGroup;
+import dio.serviceorder.patch.JsonMergePatch;
 import dio.serviceorder.service.CustomerService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
@@ -18,30 +29,63 @@ public class CustomerController {
     @Autowired
     private CustomerService customerService;
 
+    @ConcurrencyLimited(LimitGroup.WRITE)
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public CustomerDTO createCustomer(@RequestBody @Valid CustomerDTO customerDTO) throws CustomerAlreadyExistsException {
         return customerService.createCustomer(customerDTO);
     }
 
+    @ConcurrencyLimited(LimitGroup.READ)
     @GetMapping("/{id}")
-    public CustomerDTO findById(@PathVariable Long id) throws CustomerNotFoundException {
-        return customerService.findById(id);
+    public ResponseEntity<CustomerDTO> findById(@PathVariable Long id) throws CustomerNotFoundException {
+        return withEntityTag(customerService.findById(id));
     }
 
+    @ConcurrencyLimited(LimitGroup.BULK)
     @GetMapping
     public List<CustomerDTO> listCustomers(){
         return customerService.listAll();
     }
 
+    @ConcurrencyLimited(LimitGroup.BULK)
+    @GetMapping(params = "ids")
+    public BatchDTO<CustomerDTO> findCustomersByIds(@RequestParam List<Long> ids) throws BatchTooLargeException {
+        return customerService.findByIds(ids);
+    }
+
+    // Same as GET ?ids=, for id lists too long for a URL.
+    @ConcurrencyLimited(LimitGroup.BULK)
+    @PostMapping("/batch")
+    public BatchDTO<CustomerDTO> findCustomersByIdList(@RequestBody List<Long> ids) throws BatchTooLargeException {
+        return customerService.findByIds(ids);
+    }
+
+    @ConcurrencyLimited(LimitGroup.WRITE)
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    public void deleteById(@PathVariable Long id) throws CustomerNotFoundException {
+    public void deleteById(@PathVariable Long id) throws CustomerNotFoundException, CustomerHasServiceOrdersException {
         customerService.deleteById(id);
     }
 
+    @ConcurrencyLimited(LimitGroup.WRITE)
     @PatchMapping()
-    public CustomerDTO updateCustomer(@RequestBody @Valid CustomerDTO customerDTO) throws CustomerNotFoundException {
-        return customerService.update(customerDTO);
+    public ResponseEntity<CustomerDTO> updateCustomer(@RequestBody @Valid CustomerDTO customerDTO,
+                                                      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) throws CustomerNotFoundException, CustomerVersionMismatchException {
+        return withEntityTag(customerService.update(customerDTO, EntityTags.expectedVersion(ifMatch)));
+    }
+
+    @ConcurrencyLimited(LimitGroup.WRITE)
+    @PatchMapping(value = "/{id}", consumes = JsonMergePatch.MEDIA_TYPE)
+    public ResponseEntity<CustomerDTO> patchCustomer(@PathVariable Long id,
+                                                     @RequestBody JsonNode mergePatch,
+                                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) throws CustomerNotFoundException, CustomerVersionMismatchException, InvalidPatchException {
+        return withEntityTag(customerService.patch(id, mergePatch, EntityTags.expectedVersion(ifMatch)));
+    }
+
+    private static ResponseEntity<CustomerDTO> withEntityTag(CustomerDTO customerDTO) {
+        if (customerDTO.getVersion() == null)
+            return ResponseEntity.ok(customerDTO);
+        return ResponseEntity.ok().eTag(EntityTags.of(customerDTO.getVersion())).body(customerDTO);
     }
 }
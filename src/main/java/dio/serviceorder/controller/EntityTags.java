@@ -0,0 +1,32 @@
+package dio.serviceorder.controller;
+
+/**
+ * Entity versions as strong ETags, and back from If-Match headers.
+ */
+final class EntityTags {
+
+    private EntityTags() {
+    }
+
+    static String of(Long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Version expected by an If-Match header, null when there is no precondition. Values that are not
+     * a single tag of ours come back as -1, which no entity version ever matches.
+     */
+    static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*"))
+            return null;
+        // If-Match compares strongly, so weak tags never match either.
+        String tag = ifMatch.trim();
+        if (tag.length() < 2 || !tag.startsWith("\"") || !tag.endsWith("\""))
+            return -1L;
+        try {
+            return Long.parseLong(tag.substring(1, tag.length() - 1));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package dio.serviceorder.controller;
+
+import dio.serviceorder.dto.ImportReportDTO;
+import dio.serviceorder.exception.InvalidCsvHeaderException;
+import dio.serviceorder.importer.BulkImporter;
+import dio.serviceorder.limiter.ConcurrencyLimited;
+import dio.serviceorder.limiter.LimitGroup;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+
+@RestController
+@RequestMapping("/api/v1/import")
+public class ImportController {
+
+    @Autowired
+    private BulkImporter bulkImporter;
+
+    // The request body is streamed through the importer, never held in memory as a whole.
+    @ConcurrencyLimited(LimitGroup.BULK)
+    @PostMapping(value = "/customers", consumes = BulkImporter.CSV_MEDIA_TYPE)
+    public ImportReportDTO importCustomers(InputStream csv) throws IOException, InvalidCsvHeaderException {
+        return bulkImporter.importCustomers(Channels.newChannel(csv));
+    }
+
+    @ConcurrencyLimited(LimitGroup.BULK)
+    @PostMapping(value = "/service-orders", consumes = BulkImporter.CSV_MEDIA_TYPE)
+    public ImportReportDTO importServiceOrders(InputStream csv) throws IOException, InvalidCsvHeaderException {
+        return bulkImporter.importServiceOrders(Channels.newChannel(csv));
+    }
+}
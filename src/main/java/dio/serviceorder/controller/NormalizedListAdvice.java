@@ -0,0 +1,61 @@
+package dio.serviceorder.controller;
+
+import dio.serviceorder.dto.BatchDTO;
+import dio.serviceorder.dto.ServiceOrderDTO;
+import dio.serviceorder.dto.ServiceOrderListDTO;
+import dio.serviceorder.dto.ServiceOrderPageDTO;
+import dio.serviceorder.mapper.ServiceOrderMapper;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import java.util.List;
+
+/**
+ * Answers the service order lists in normalized form to clients accepting {@link #MEDIA_TYPE}: each
+ * customer is sent once in a dictionary and the service orders refer to it by id. The JSON converter
+ * already produces any {@code application/*+json} type, so the media type only needs to be recognized
+ * here.
+ */
+@ControllerAdvice(assignableTypes = ServiceOrderController.class)
+public class NormalizedListAdvice implements ResponseBodyAdvice<Object> {
+    public static final String MEDIA_TYPE = "application/vnd.serviceorder.normalized+json";
+    private static final MediaType NORMALIZED = MediaType.parseMediaType(MEDIA_TYPE);
+
+    private final ServiceOrderMapper serviceOrderMapper = ServiceOrderMapper.INSTANCE;
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        // The declared type, as the parameter type is the class of the returned value.
+        ResolvableType type = ResolvableType.forMethodReturnType(returnType.getMethod());
+        return type.toClass() == ServiceOrderPageDTO.class
+                || (type.toClass() == BatchDTO.class || type.toClass() == List.class) && type.getGeneric(0).toClass() == ServiceOrderDTO.class;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (body == null || !NORMALIZED.equalsTypeAndSubtype(selectedContentType))
+            return body;
+        if (body instanceof ServiceOrderPageDTO) {
+            ServiceOrderPageDTO page = (ServiceOrderPageDTO) body;
+            ServiceOrderListDTO normalized = serviceOrderMapper.toListDTO(page.getItems());
+            normalized.setNextCursor(page.getNextCursor());
+            return normalized;
+        }
+        if (body instanceof BatchDTO) {
+            BatchDTO<ServiceOrderDTO> batch = (BatchDTO<ServiceOrderDTO>) body;
+            ServiceOrderListDTO normalized = serviceOrderMapper.toListDTO(batch.getItems());
+            normalized.setMissingIds(batch.getMissingIds());
+            return normalized;
+        }
+        return serviceOrderMapper.toListDTO((List<ServiceOrderDTO>) body);
+    }
+}
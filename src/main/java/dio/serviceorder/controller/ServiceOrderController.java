@@ -1,16 +1,38 @@
 package dio.serviceorder.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import dio.serviceorder.dto.BatchDTO;
 import dio.serviceorder.dto.CustomerDTO;
+import dio.serviceorder.dto.ServiceOrderClaimDTO;
 import dio.serviceorder.dto.ServiceOrderDTO;
+import dio.serviceorder.dto.ServiceOrderPageDTO;
+import dio.serviceorder.dto.ServiceOrderStatsDTO;
 import dio.serviceorder.enums.ServiceType;
+import dio.serviceorder.exception.BatchTooLargeException;
+import dio.serviceorder.exception.InvalidCursorException;
+import dio.serviceorder.exception.InvalidPatchException;
 import dio.serviceorder.exception.ServiceOrderAlreadyExistsException;
 import dio.serviceorder.exception.ServiceOrderNotFoundException;
+import dio.serviceorder.exception.ServiceOrderShardMoveException;
+import dio.serviceorder.exception.ServiceOrderVersionMismatchException;
+import dio.serviceorder.export.ExportFormat;
+import dio.serviceorder.export.ServiceOrderExporter;
+import dio.serviceorder.limiter.ConcurrencyLimited;
+import dio.serviceorder.limiter.LimitGroup;
+import dio.serviceorder.patch.JsonMergePatch;
 import dio.serviceorder.service.ServiceOrderService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.time.Instant;
 import java.util.List;
 
 @RestController
@@ -20,50 +42,137 @@ public class ServiceOrderController {
     @Autowired
     private ServiceOrderService serviceOrderService;
 
+    @Autowired
+    private ServiceOrderExporter serviceOrderExporter;
+
+    @ConcurrencyLimited(LimitGroup.WRITE)
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public ServiceOrderDTO createServiceOrder(@RequestBody @Valid ServiceOrderDTO serviceOrderDTO) throws ServiceOrderAlreadyExistsException {
         return serviceOrderService.create(serviceOrderDTO);
     }
 
+    @ConcurrencyLimited(LimitGroup.WRITE)
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void deleteServiceOrder(@PathVariable Long id) throws ServiceOrderNotFoundException {
         serviceOrderService.deleteById(id);
     }
 
+    @ConcurrencyLimited(LimitGroup.WRITE)
     @PatchMapping()
-    public ServiceOrderDTO updateServiceOrder(@RequestBody @Valid ServiceOrderDTO serviceOrderDTO) throws ServiceOrderNotFoundException {
-        return serviceOrderService.update(serviceOrderDTO);
+    public ResponseEntity<ServiceOrderDTO> updateServiceOrder(@RequestBody @Valid ServiceOrderDTO serviceOrderDTO,
+                                                              @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) throws ServiceOrderNotFoundException, ServiceOrderShardMoveException, ServiceOrderVersionMismatchException {
+        return withEntityTag(serviceOrderService.update(serviceOrderDTO, EntityTags.expectedVersion(ifMatch)));
     }
 
+    @ConcurrencyLimited(LimitGroup.WRITE)
+    @PatchMapping(value = "/{id}", consumes = JsonMergePatch.MEDIA_TYPE)
+    public ResponseEntity<ServiceOrderDTO> patchServiceOrder(@PathVariable Long id,
+                                                             @RequestBody JsonNode mergePatch,
+                                                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) throws ServiceOrderNotFoundException, ServiceOrderShardMoveException, ServiceOrderVersionMismatchException, InvalidPatchException {
+        return withEntityTag(serviceOrderService.patch(id, mergePatch, EntityTags.expectedVersion(ifMatch)));
+    }
+
+    @ConcurrencyLimited(LimitGroup.READ)
     @GetMapping("/{id}")
-    public ServiceOrderDTO findById(@PathVariable Long id) throws ServiceOrderNotFoundException {
-        return serviceOrderService.findById(id);
+    public ResponseEntity<ServiceOrderDTO> findById(@PathVariable Long id) throws ServiceOrderNotFoundException {
+        return withEntityTag(serviceOrderService.findById(id));
     }
 
+    @ConcurrencyLimited(LimitGroup.BULK)
     @GetMapping()
     public List<ServiceOrderDTO> listServiceOrders(){
         return serviceOrderService.listAll();
     }
 
+    @ConcurrencyLimited(LimitGroup.BULK)
+    @GetMapping(params = "ids")
+    public BatchDTO<ServiceOrderDTO> findServiceOrdersByIds(@RequestParam List<Long> ids) throws BatchTooLargeException {
+        return serviceOrderService.findByIds(ids);
+    }
+
+    // Same as GET ?ids=, for id lists too long for a URL.
+    @ConcurrencyLimited(LimitGroup.BULK)
+    @PostMapping("/batch")
+    public BatchDTO<ServiceOrderDTO> findServiceOrdersByIdList(@RequestBody List<Long> ids) throws BatchTooLargeException {
+        return serviceOrderService.findByIds(ids);
+    }
+
+    @ConcurrencyLimited(LimitGroup.BULK)
     @GetMapping("/open")
     public List<ServiceOrderDTO> listOpenServiceOrders(){
         return serviceOrderService.listAllWithClosedStatus(false);
     }
 
+    @ConcurrencyLimited(LimitGroup.BULK)
     @GetMapping("/closed")
     public List<ServiceOrderDTO> listClosedServiceOrders(){
         return serviceOrderService.listAllWithClosedStatus(true);
     }
 
+    @ConcurrencyLimited(LimitGroup.BULK)
     @GetMapping("/customer")
     public List<ServiceOrderDTO> listCustomerServiceOrders(@RequestBody @Valid CustomerDTO customerDTO){
         return serviceOrderService.listAllOfCustomer(customerDTO);
     }
 
+    @ConcurrencyLimited(LimitGroup.BULK)
     @GetMapping("/type/{serviceType}")
     public List<ServiceOrderDTO> listServiceOrdersByType(@PathVariable @Valid ServiceType serviceType){
         return serviceOrderService.listAllWithServiceType(serviceType);
     }
+
+    @ConcurrencyLimited(LimitGroup.BULK)
+    @GetMapping("/created")
+    public ServiceOrderPageDTO listServiceOrdersCreatedBetween(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant createdAfter,
+                                                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant createdBefore,
+                                                               @RequestParam(required = false) String cursor,
+                                                               @RequestParam(defaultValue = "100") int limit) throws InvalidCursorException {
+        return serviceOrderService.listCreatedBetween(createdAfter, createdBefore, cursor, limit);
+    }
+
+    // Written from an async thread as the rows are read, with chunked transfer, instead of on the request thread.
+    @ConcurrencyLimited(LimitGroup.BULK)
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportServiceOrders(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant createdAfter,
+                                                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant createdBefore,
+                                                                     @RequestParam(defaultValue = "CSV") ExportFormat format,
+                                                                     @RequestParam(defaultValue = "false") boolean gzip) {
+        String fileName = "service-orders." + format.getFileExtension() + (gzip ? ".gz" : "");
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(gzip ? "application/gzip" : format.getMediaType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString())
+                .body(out -> serviceOrderExporter.export(format, gzip, createdAfter, createdBefore, out));
+    }
+
+    // Hands the next open orders to the calling technician, instead of every technician racing for the same ones.
+    @ConcurrencyLimited(LimitGroup.WRITE)
+    @PostMapping("/claim")
+    public ServiceOrderClaimDTO claimServiceOrders(@RequestParam String assignee,
+                                                   @RequestParam(required = false) ServiceType type,
+                                                   @RequestParam(defaultValue = "10") int limit){
+        return serviceOrderService.claim(assignee, type, limit);
+    }
+
+    @ConcurrencyLimited(LimitGroup.READ)
+    @GetMapping("/count")
+    public long countServiceOrders(@RequestParam(required = false) Boolean closed,
+                                   @RequestParam(required = false) ServiceType type){
+        return serviceOrderService.countServiceOrders(closed, type);
+    }
+
+    @ConcurrencyLimited(LimitGroup.READ)
+    @GetMapping("/stats")
+    public ServiceOrderStatsDTO serviceOrderStats(@RequestParam(required = false) Long customerId,
+                                                  @RequestParam(required = false) ServiceType type,
+                                                  @RequestParam(required = false) Boolean closed){
+        return serviceOrderService.stats(customerId, type, closed);
+    }
+
+    private static ResponseEntity<ServiceOrderDTO> withEntityTag(ServiceOrderDTO serviceOrderDTO) {
+        if (serviceOrderDTO.getVersion() == null)
+            return ResponseEntity.ok(serviceOrderDTO);
+        return ResponseEntity.ok().eTag(EntityTags.of(serviceOrderDTO.getVersion())).body(serviceOrderDTO);
+    }
 }
@@ -0,0 +1,19 @@
+package dio.serviceorder.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchDTO<T> {
+    // Found entities, in the order their ids were requested.
+    private List<T> items;
+
+    private List<Long> missingIds;
+}
@@ -1,15 +1,17 @@
 package dio.serviceorder.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class CustomerDTO {
@@ -18,4 +20,9 @@ public class CustomerDTO {
     @NotNull
     @Size(min = 1, max = 200)
     private String name;
+
+    // Sent as the ETag header instead of in the body, and not part of the compared state.
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private Long version;
 }
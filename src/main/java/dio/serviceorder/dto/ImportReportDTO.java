@@ -0,0 +1,33 @@
+package dio.serviceorder.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportReportDTO {
+    // Non-blank lines after the header.
+    private long lines;
+
+    private long imported;
+
+    private long rejected;
+
+    // First rejected lines only, up to serviceorder.import.max-errors.
+    private List<LineError> errors;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LineError {
+        private long line;
+        private String message;
+    }
+}
@@ -0,0 +1,36 @@
+package dio.serviceorder.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import dio.serviceorder.enums.ServiceType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// Service order of a normalized list, referring to its customer by id.
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NormalizedServiceOrderDTO {
+    private Long id;
+
+    private Long customerId;
+
+    private Boolean closed;
+
+    private ServiceType type;
+
+    private Instant createdAt;
+
+    private Instant closedAt;
+
+    private Instant escalatedAt;
+
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private Long version;
+}
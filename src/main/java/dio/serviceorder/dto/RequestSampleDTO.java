@@ -0,0 +1,28 @@
+package dio.serviceorder.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RequestSampleDTO {
+    private Instant timestamp;
+    private String method;
+    private String uri;
+    private int status;
+    private double durationMs;
+
+    // Time per phase, which may nest: the controller contains the repository and mapper calls.
+    private Map<String, Double> phasesMs;
+
+    private long sqlStatements;
+    private long sqlRows;
+    private double sqlMs;
+}
@@ -0,0 +1,23 @@
+package dio.serviceorder.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ServiceOrderClaimDTO {
+    private String assignee;
+
+    // The orders go back to the queue at this time unless closed before.
+    private Instant leaseExpiresAt;
+
+    // Claimed service orders, oldest first. Fewer than requested, or none, when the queue runs dry.
+    private List<ServiceOrderDTO> items;
+}
@@ -1,17 +1,21 @@
 package dio.serviceorder.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import dio.serviceorder.enums.ServiceType;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.validation.constraints.NotNull;
+import java.time.Instant;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class ServiceOrderDTO {
@@ -26,4 +30,20 @@ public class ServiceOrderDTO {
     @NotNull
     @Enumerated(EnumType.STRING)
     private ServiceType type;
+
+    // Set by the service, values sent by clients are ignored.
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Instant createdAt;
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Instant closedAt;
+
+    // Set by the aging job only.
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Instant escalatedAt;
+
+    // Sent as the ETag header instead of in the body, and not part of the compared state.
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private Long version;
 }
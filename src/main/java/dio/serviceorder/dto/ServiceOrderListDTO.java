@@ -0,0 +1,29 @@
+package dio.serviceorder.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ServiceOrderListDTO {
+    private List<NormalizedServiceOrderDTO> items;
+
+    // Each customer referenced by the items once, by id, in order of first reference.
+    private Map<Long, CustomerDTO> customers;
+
+    // Only sent for paged listings, see ServiceOrderPageDTO.
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
+
+    // Only sent for batch lookups, see BatchDTO.
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<Long> missingIds;
+}
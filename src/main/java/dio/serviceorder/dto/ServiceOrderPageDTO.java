@@ -0,0 +1,19 @@
+package dio.serviceorder.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ServiceOrderPageDTO {
+    private List<ServiceOrderDTO> items;
+
+    // Opaque position to pass back as the cursor parameter, null on the last page.
+    private String nextCursor;
+}
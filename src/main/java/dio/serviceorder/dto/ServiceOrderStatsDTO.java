@@ -0,0 +1,30 @@
+package dio.serviceorder.dto;
+
+import dio.serviceorder.enums.ServiceType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ServiceOrderStatsDTO {
+    private long total;
+
+    private List<Count> counts;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Count {
+        private Long customerId;
+        private ServiceType type;
+        private Boolean closed;
+        private long total;
+    }
+}
@@ -0,0 +1,10 @@
+package dio.serviceorder.enums;
+
+/**
+ * What the aging job does with a service order left open longer than its type allows.
+ */
+public enum AgingAction {
+    // Marks the order as escalated, once, and leaves it open.
+    ESCALATE,
+    CLOSE
+}
@@ -0,0 +1,6 @@
+package dio.serviceorder.enums;
+
+public enum ChangedEntity {
+    SERVICE_ORDER,
+    CUSTOMER
+}
@@ -0,0 +1,132 @@
+package dio.serviceorder.eventlog;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * History of every service order and customer state transition, kept in a local
+ * {@link SegmentedEventLog}. When disabled, appends are ignored.
+ */
+@Slf4j
+@Component
+public class EventLog implements MeterBinder {
+    @Value("${serviceorder.event-log.enabled:false}")
+    private boolean enabled;
+
+    @Value("${serviceorder.event-log.directory:event-log}")
+    private String directory;
+
+    @Value("${serviceorder.event-log.segment-size:64MB}")
+    private DataSize segmentSize;
+
+    @Value("${serviceorder.event-log.max-batch-size:512}")
+    private int maxBatchSize;
+
+    @Value("${serviceorder.event-log.await-durability:true}")
+    private boolean awaitDurability;
+
+    @Value("${serviceorder.event-log.compaction.enabled:false}")
+    private boolean compactionEnabled;
+
+    private SegmentedEventLog segmentedEventLog;
+
+    @PostConstruct
+    void open() throws IOException {
+        if (enabled)
+            segmentedEventLog = new SegmentedEventLog(Paths.get(directory), segmentSize.toBytes(), maxBatchSize);
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        if (segmentedEventLog != null)
+            segmentedEventLog.close();
+    }
+
+    /**
+     * Appends the event, waiting for the group commit that makes it durable unless configured otherwise.
+     * Events are appended after the write committed, so a failed append is logged rather than thrown.
+     */
+    public void append(LogEvent event) {
+        if (segmentedEventLog == null)
+            return;
+        await(segmentedEventLog.append(event), 1);
+    }
+
+    /**
+     * Appends the events in order. Batches are written in order too, so only the last one is waited for.
+     */
+    public void appendAll(List<LogEvent> events) {
+        if (segmentedEventLog == null || events.isEmpty())
+            return;
+        CompletableFuture<Long> last = null;
+        for (LogEvent event : events)
+            last = segmentedEventLog.append(event);
+        await(last, events.size());
+    }
+
+    private void await(CompletableFuture<Long> appended, int events) {
+        if (!awaitDurability) {
+            appended.exceptionally(e -> {
+                log.error("Could not append {} events to the event log", events, e);
+                return null;
+            });
+            return;
+        }
+        try {
+            appended.join();
+        } catch (CompletionException e) {
+            log.error("Could not append {} events to the event log", events, e.getCause());
+        }
+    }
+
+    /**
+     * Replays the history from the given sequence number, to rebuild state or project a new read model.
+     */
+    public void replay(long fromSequence, Consumer<LogEvent> consumer) {
+        if (segmentedEventLog == null)
+            throw new IllegalStateException("Event log is disabled");
+        try {
+            segmentedEventLog.replay(fromSequence, consumer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Scheduled(cron = "${serviceorder.event-log.compaction.cron:0 30 3 * * *}")
+    public void compact() {
+        if (segmentedEventLog == null || !compactionEnabled)
+            return;
+        try {
+            long removed = segmentedEventLog.compact();
+            log.info("Event log compaction removed {} superseded events", removed);
+        } catch (IOException e) {
+            log.warn("Event log compaction failed", e);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (segmentedEventLog == null)
+            return;
+        FunctionCounter.builder("serviceorder.event-log.events", segmentedEventLog, SegmentedEventLog::getAppendedEvents)
+                .register(registry);
+        FunctionCounter.builder("serviceorder.event-log.batches", segmentedEventLog, SegmentedEventLog::getWrittenBatches)
+                .register(registry);
+    }
+}
@@ -0,0 +1,106 @@
+package dio.serviceorder.eventlog;
+
+import dio.serviceorder.dto.CustomerDTO;
+import dio.serviceorder.dto.ServiceOrderDTO;
+import dio.serviceorder.enums.ServiceType;
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Instant;
+
+/**
+ * A state transition recorded in the {@link EventLog}. Sequence numbers are assigned by the log
+ * when the event is appended.
+ */
+@Value
+@Builder(toBuilder = true)
+public class LogEvent {
+    long sequence;
+    long timestamp;
+    EntityType entity;
+    EventAction action;
+    Long entityId;
+    // Version of the entity after the transition, so replay can tell events appended out of commit order.
+    Long version;
+
+    // Service order state after the transition.
+    Long customerId;
+    Boolean closed;
+    ServiceType type;
+    Instant createdAt;
+    Instant closedAt;
+    Instant escalatedAt;
+
+    // Customer state after the transition.
+    String name;
+
+    /**
+     * Whether this event is older than {@code other} of the same entity: both have a version and this one
+     * is lower. Events without a version are never older.
+     */
+    public boolean isOlderThan(LogEvent other) {
+        return version != null && other.version != null && version < other.version;
+    }
+
+    public enum EntityType {
+        SERVICE_ORDER,
+        CUSTOMER
+    }
+
+    public enum EventAction {
+        CREATED,
+        UPDATED,
+        CLOSED,
+        REOPENED,
+        DELETED,
+        ESCALATED
+    }
+
+    public static LogEvent serviceOrder(EventAction action, ServiceOrderDTO serviceOrderDTO) {
+        return LogEvent.builder()
+                .entity(EntityType.SERVICE_ORDER)
+                .action(action)
+                .entityId(serviceOrderDTO.getId())
+                .version(serviceOrderDTO.getVersion())
+                .customerId(serviceOrderDTO.getCustomer() == null ? null : serviceOrderDTO.getCustomer().getId())
+                .closed(serviceOrderDTO.getClosed())
+                .type(serviceOrderDTO.getType())
+                .createdAt(serviceOrderDTO.getCreatedAt())
+                .closedAt(serviceOrderDTO.getClosedAt())
+                .escalatedAt(serviceOrderDTO.getEscalatedAt())
+                .build();
+    }
+
+    /**
+     * Deletion of a service order last seen at {@code version}, recorded one version after it so no earlier
+     * event replayed later brings it back.
+     */
+    public static LogEvent serviceOrderDeleted(Long id, Long version) {
+        return LogEvent.builder()
+                .entity(EntityType.SERVICE_ORDER)
+                .action(EventAction.DELETED)
+                .entityId(id)
+                .version(version == null ? null : version + 1)
+                .build();
+    }
+
+    public static LogEvent customer(EventAction action, CustomerDTO customerDTO) {
+        return LogEvent.builder()
+                .entity(EntityType.CUSTOMER)
+                .action(action)
+                .entityId(customerDTO.getId())
+                .version(customerDTO.getVersion())
+                .name(customerDTO.getName())
+                .build();
+    }
+
+    // Same as serviceOrderDeleted.
+    public static LogEvent customerDeleted(Long id, Long version) {
+        return LogEvent.builder()
+                .entity(EntityType.CUSTOMER)
+                .action(EventAction.DELETED)
+                .entityId(id)
+                .version(version == null ? null : version + 1)
+                .build();
+    }
+}
@@ -0,0 +1,128 @@
+package dio.serviceorder.eventlog;
+
+import dio.serviceorder.enums.ServiceType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Binary record layout of the event log: {@code [body length][crc32 of body][body]}, where the body holds
+ * sequence, timestamp, entity, action, entity id, version, customer id, closed flag, type, createdAt, closedAt
+ * and escalatedAt in epoch microseconds, and customer name. Absent values are written as -1, absent timestamps
+ * as {@link Long#MIN_VALUE}.
+ */
+final class LogEventCodec {
+    static final int RECORD_HEADER_SIZE = 8;
+    private static final int FIXED_BODY_SIZE = 8 + 8 + 1 + 1 + 8 + 8 + 8 + 1 + 1 + 8 + 8 + 8 + 4;
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+    private static final ServiceType[] TYPES = ServiceType.values();
+    private static final LogEvent.EntityType[] ENTITIES = LogEvent.EntityType.values();
+    private static final LogEvent.EventAction[] ACTIONS = LogEvent.EventAction.values();
+
+    private LogEventCodec() {
+    }
+
+    static int encodedSize(LogEvent event) {
+        return RECORD_HEADER_SIZE + FIXED_BODY_SIZE + (event.getName() == null ? 0 : event.getName().getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    static void encode(LogEvent event, ByteBuffer buffer) {
+        byte[] name = event.getName() == null ? null : event.getName().getBytes(StandardCharsets.UTF_8);
+        int bodyLength = FIXED_BODY_SIZE + (name == null ? 0 : name.length);
+        int headerPosition = buffer.position();
+        buffer.position(headerPosition + RECORD_HEADER_SIZE);
+        int bodyPosition = buffer.position();
+
+        buffer.putLong(event.getSequence());
+        buffer.putLong(event.getTimestamp());
+        buffer.put((byte) event.getEntity().ordinal());
+        buffer.put((byte) event.getAction().ordinal());
+        buffer.putLong(event.getEntityId() == null ? -1 : event.getEntityId());
+        buffer.putLong(event.getVersion() == null ? -1 : event.getVersion());
+        buffer.putLong(event.getCustomerId() == null ? -1 : event.getCustomerId());
+        buffer.put((byte) (event.getClosed() == null ? -1 : event.getClosed() ? 1 : 0));
+        buffer.put((byte) (event.getType() == null ? -1 : event.getType().ordinal()));
+        buffer.putLong(toMicros(event.getCreatedAt()));
+        buffer.putLong(toMicros(event.getClosedAt()));
+        buffer.putLong(toMicros(event.getEscalatedAt()));
+        buffer.putInt(name == null ? -1 : name.length);
+        if (name != null)
+            buffer.put(name);
+
+        ByteBuffer body = buffer.duplicate();
+        body.position(bodyPosition);
+        body.limit(bodyPosition + bodyLength);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        buffer.putInt(headerPosition, bodyLength);
+        buffer.putInt(headerPosition + 4, (int) crc.getValue());
+    }
+
+    /**
+     * Decodes the record at the buffer position and advances past it, or returns null without
+     * moving when the remaining bytes do not hold a complete and intact record.
+     */
+    static LogEvent decode(ByteBuffer buffer) {
+        int start = buffer.position();
+        if (buffer.remaining() < RECORD_HEADER_SIZE)
+            return null;
+        int bodyLength = buffer.getInt(start);
+        int checksum = buffer.getInt(start + 4);
+        if (bodyLength < FIXED_BODY_SIZE || bodyLength > buffer.remaining() - RECORD_HEADER_SIZE)
+            return null;
+        ByteBuffer body = buffer.duplicate();
+        body.position(start + RECORD_HEADER_SIZE);
+        body.limit(start + RECORD_HEADER_SIZE + bodyLength);
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+        if ((int) crc.getValue() != checksum)
+            return null;
+
+        long sequence = body.getLong();
+        long timestamp = body.getLong();
+        LogEvent.EntityType entity = ENTITIES[body.get()];
+        LogEvent.EventAction action = ACTIONS[body.get()];
+        long entityId = body.getLong();
+        long version = body.getLong();
+        long customerId = body.getLong();
+        byte closed = body.get();
+        byte type = body.get();
+        long createdAt = body.getLong();
+        long closedAt = body.getLong();
+        long escalatedAt = body.getLong();
+        int nameLength = body.getInt();
+        String name = null;
+        if (nameLength >= 0) {
+            byte[] nameBytes = new byte[nameLength];
+            body.get(nameBytes);
+            name = new String(nameBytes, StandardCharsets.UTF_8);
+        }
+        buffer.position(start + RECORD_HEADER_SIZE + bodyLength);
+        return LogEvent.builder()
+                .sequence(sequence)
+                .timestamp(timestamp)
+                .entity(entity)
+                .action(action)
+                .entityId(entityId < 0 ? null : entityId)
+                .version(version < 0 ? null : version)
+                .customerId(customerId < 0 ? null : customerId)
+                .closed(closed < 0 ? null : closed == 1)
+                .type(type < 0 ? null : TYPES[type])
+                .createdAt(fromMicros(createdAt))
+                .closedAt(fromMicros(closedAt))
+                .escalatedAt(fromMicros(escalatedAt))
+                .name(name)
+                .build();
+    }
+
+    private static long toMicros(Instant instant) {
+        return instant == null ? NO_TIMESTAMP : ChronoUnit.MICROS.between(Instant.EPOCH, instant);
+    }
+
+    private static Instant fromMicros(long micros) {
+        return micros == NO_TIMESTAMP ? null : Instant.EPOCH.plus(micros, ChronoUnit.MICROS);
+    }
+}
@@ -0,0 +1,361 @@
+package dio.serviceorder.eventlog;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log split in segment files named after the first sequence they hold.
+ *
+ * <p>A single writer thread drains every append queued while the previous batch was being
+ * written, writes the batch with one call and forces it to disk once (group commit), then
+ * completes the futures of the whole batch. On open, a torn record left at the tail of the last
+ * segment by a crash is truncated; a batch that fails to be written is truncated the same way before
+ * the next one is appended, as replay stops at the first torn record. If the writer thread stops, every
+ * append still queued and every later one fails instead of waiting forever.
+ *
+ * <p>Events are appended after their transaction commits, so two writes of the same entity may be logged
+ * out of commit order; replay and compaction skip an event older than a version already seen for its entity.
+ */
+@Slf4j
+public class SegmentedEventLog implements Closeable {
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final int maxBatchSize;
+
+    private final BlockingQueue<PendingAppend> queue = new LinkedBlockingQueue<>();
+    private final ReadWriteLock segmentsLock = new ReentrantReadWriteLock();
+    private final Thread writer;
+    private volatile boolean closing;
+    private volatile boolean stopped;
+
+    private FileChannel activeChannel;
+    private volatile long activeBaseSequence;
+    private long activeSize;
+    private boolean tornTail;
+    private long nextSequence;
+
+    private final LongAdder appendedEvents = new LongAdder();
+    private final LongAdder writtenBatches = new LongAdder();
+
+    public SegmentedEventLog(Path directory, long segmentBytes, int maxBatchSize) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxBatchSize = maxBatchSize;
+        Files.createDirectories(directory);
+        recover();
+        writer = new Thread(this::writeLoop, "event-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues the event and returns its sequence number once the batch holding it is on disk. The future
+     * fails if the log is closed or its writer has stopped.
+     */
+    public CompletableFuture<Long> append(LogEvent event) {
+        if (closing || stopped)
+            return CompletableFuture.failedFuture(new IllegalStateException("Event log is closed"));
+        PendingAppend pendingAppend = new PendingAppend(event);
+        queue.add(pendingAppend);
+        // The writer may have stopped after the check above, after failing what was queued then.
+        if (stopped)
+            failPending(new IllegalStateException("Event log writer has stopped"));
+        return pendingAppend.future;
+    }
+
+    /**
+     * Feeds every intact event with a sequence of at least {@code fromSequence} to the consumer, in order,
+     * skipping events older than one already fed for the same entity.
+     */
+    public void replay(long fromSequence, Consumer<LogEvent> consumer) throws IOException {
+        segmentsLock.readLock().lock();
+        try {
+            Map<String, LogEvent> latestByEntity = new HashMap<>();
+            List<Path> segments = segments();
+            for (int i = 0; i < segments.size(); i++) {
+                if (i + 1 < segments.size() && baseSequence(segments.get(i + 1)) <= fromSequence)
+                    continue;
+                ByteBuffer buffer = map(segments.get(i));
+                LogEvent event;
+                while ((event = LogEventCodec.decode(buffer)) != null) {
+                    if (event.getSequence() < fromSequence)
+                        continue;
+                    LogEvent latest = latestByEntity.get(key(event));
+                    if (latest != null && event.isOlderThan(latest))
+                        continue;
+                    latestByEntity.put(key(event), event);
+                    consumer.accept(event);
+                }
+            }
+        } finally {
+            segmentsLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrites the sealed segments keeping only the latest event of each entity, and dropping deleted
+     * entities altogether. The active segment is left untouched. Returns the number of events removed.
+     *
+     * <p>The compacted file atomically replaces the first sealed segment before the others are deleted, so
+     * a crash in between leaves events that are either superseded by or equal to the compacted ones.
+     */
+    public long compact() throws IOException {
+        List<Path> sealedSegments;
+        segmentsLock.readLock().lock();
+        try {
+            sealedSegments = segments().stream()
+                    .filter(segment -> baseSequence(segment) < activeBaseSequence)
+                    .collect(Collectors.toList());
+        } finally {
+            segmentsLock.readLock().unlock();
+        }
+        if (sealedSegments.isEmpty())
+            return 0;
+
+        Map<String, LogEvent> latestByEntity = new LinkedHashMap<>();
+        long eventsRead = 0;
+        for (Path segment : sealedSegments) {
+            ByteBuffer buffer = map(segment);
+            LogEvent event;
+            while ((event = LogEventCodec.decode(buffer)) != null) {
+                eventsRead++;
+                LogEvent latest = latestByEntity.get(key(event));
+                if (latest == null || !event.isOlderThan(latest))
+                    latestByEntity.put(key(event), event);
+            }
+        }
+
+        List<LogEvent> survivors = latestByEntity.values().stream()
+                .filter(event -> event.getAction() != LogEvent.EventAction.DELETED)
+                .collect(Collectors.toList());
+        survivors.sort(Comparator.comparingLong(LogEvent::getSequence));
+        Path compacted = directory.resolve(sealedSegments.get(0).getFileName() + ".compacting");
+        try (FileChannel channel = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(channel, encode(survivors));
+            channel.force(true);
+        }
+
+        segmentsLock.writeLock().lock();
+        try {
+            Files.move(compacted, sealedSegments.get(0), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            for (Path segment : sealedSegments.subList(1, sealedSegments.size()))
+                Files.delete(segment);
+        } finally {
+            segmentsLock.writeLock().unlock();
+        }
+        return eventsRead - survivors.size();
+    }
+
+    public long getAppendedEvents() {
+        return appendedEvents.sum();
+    }
+
+    public long getWrittenBatches() {
+        return writtenBatches.sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closing = true;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        activeChannel.close();
+    }
+
+    private void writeLoop() {
+        List<PendingAppend> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (!closing || !queue.isEmpty()) {
+                try {
+                    PendingAppend first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null)
+                        continue;
+                    batch.add(first);
+                    queue.drainTo(batch, maxBatchSize - 1);
+                    writeBatch(batch);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (IOException | RuntimeException e) {
+                    log.error("Could not append {} events to the event log", batch.size(), e);
+                    batch.forEach(pendingAppend -> pendingAppend.future.completeExceptionally(e));
+                }
+                batch.clear();
+            }
+        } finally {
+            stopped = true;
+            IllegalStateException stoppedException = new IllegalStateException("Event log writer has stopped");
+            batch.forEach(pendingAppend -> pendingAppend.future.completeExceptionally(stoppedException));
+            failPending(stoppedException);
+        }
+    }
+
+    private void failPending(Exception e) {
+        PendingAppend pendingAppend;
+        while ((pendingAppend = queue.poll()) != null)
+            pendingAppend.future.completeExceptionally(e);
+    }
+
+    private void writeBatch(List<PendingAppend> batch) throws IOException {
+        long timestamp = System.currentTimeMillis();
+        List<LogEvent> events = new ArrayList<>(batch.size());
+        for (PendingAppend pendingAppend : batch)
+            events.add(pendingAppend.event.toBuilder().sequence(nextSequence + events.size()).timestamp(timestamp).build());
+        ByteBuffer buffer = encode(events);
+
+        if (tornTail)
+            truncateTornTail();
+        if (activeSize > 0 && activeSize + buffer.remaining() > segmentBytes)
+            roll();
+        int written;
+        try {
+            written = writeToSegment(activeChannel, buffer);
+            activeChannel.force(false);
+        } catch (IOException e) {
+            tornTail = true;
+            try {
+                truncateTornTail();
+            } catch (IOException truncateFailure) {
+                e.addSuppressed(truncateFailure);
+            }
+            throw e;
+        }
+        activeSize += written;
+
+        for (int i = 0; i < batch.size(); i++)
+            batch.get(i).future.complete(nextSequence + i);
+        nextSequence += batch.size();
+        appendedEvents.add(batch.size());
+        writtenBatches.increment();
+    }
+
+    /**
+     * Drops what a failed write left after the last complete batch of the active segment.
+     */
+    private void truncateTornTail() throws IOException {
+        log.warn("Truncating {} bytes of a failed write at the end of segment {}", activeChannel.size() - activeSize, activeBaseSequence);
+        activeChannel.truncate(activeSize);
+        activeChannel.position(activeSize);
+        tornTail = false;
+    }
+
+    // Package-private so tests can make the write fail.
+    int writeToSegment(FileChannel channel, ByteBuffer buffer) throws IOException {
+        return writeFully(channel, buffer);
+    }
+
+    private void roll() throws IOException {
+        segmentsLock.writeLock().lock();
+        try {
+            activeChannel.close();
+            openSegment(nextSequence);
+        } finally {
+            segmentsLock.writeLock().unlock();
+        }
+    }
+
+    private void recover() throws IOException {
+        List<Path> segments = segments();
+        if (segments.isEmpty()) {
+            nextSequence = 1;
+            openSegment(nextSequence);
+            return;
+        }
+        Path lastSegment = segments.get(segments.size() - 1);
+        ByteBuffer buffer = map(lastSegment);
+        long lastSequence = baseSequence(lastSegment) - 1;
+        LogEvent event;
+        while ((event = LogEventCodec.decode(buffer)) != null)
+            lastSequence = event.getSequence();
+        long validLength = buffer.position();
+
+        nextSequence = lastSequence + 1;
+        activeBaseSequence = baseSequence(lastSegment);
+        activeChannel = FileChannel.open(lastSegment, StandardOpenOption.WRITE);
+        if (validLength < activeChannel.size()) {
+            log.warn("Truncating {} torn bytes at the end of {}", activeChannel.size() - validLength, lastSegment);
+            activeChannel.truncate(validLength);
+        }
+        activeChannel.position(validLength);
+        activeSize = validLength;
+    }
+
+    private void openSegment(long baseSequence) throws IOException {
+        activeBaseSequence = baseSequence;
+        activeChannel = FileChannel.open(directory.resolve(String.format("%020d%s", baseSequence, SEGMENT_SUFFIX)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        activeSize = activeChannel.size();
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted(Comparator.comparingLong(SegmentedEventLog::baseSequence))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static String key(LogEvent event) {
+        return event.getEntity() + ":" + event.getEntityId();
+    }
+
+    private static long baseSequence(Path segment) {
+        String fileName = segment.getFileName().toString();
+        return Long.parseLong(fileName.substring(0, fileName.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static ByteBuffer map(Path segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static ByteBuffer encode(List<LogEvent> events) {
+        int size = 0;
+        for (LogEvent event : events)
+            size += LogEventCodec.encodedSize(event);
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (LogEvent event : events)
+            LogEventCodec.encode(event, buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining())
+            written += channel.write(buffer);
+        return written;
+    }
+
+    private static class PendingAppend {
+        private final LogEvent event;
+        private final CompletableFuture<Long> future = new CompletableFuture<>();
+
+        private PendingAppend(LogEvent event) {
+            this.event = event;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package dio.serviceorder.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class BatchTooLargeException extends Exception{
+
+    public BatchTooLargeException(int requested, int max) {
+        super(String.format("At most %d ids can be fetched at once, %d were requested", max, requested));
+    }
+
+}
@@ -0,0 +1,13 @@
+package dio.serviceorder.exception;
+
+import dio.serviceorder.bulkhead.Workload;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// Unchecked, since it is thrown around service methods by the bulkhead interceptor.
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class BulkheadFullException extends RuntimeException {
+    public BulkheadFullException(Workload workload) {
+        super(String.format("Too many concurrent %s operations, try again later", workload.name().toLowerCase()), null, false, false);
+    }
+}
@@ -0,0 +1,13 @@
+package dio.serviceorder.exception;
+
+import dio.serviceorder.limiter.LimitGroup;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ConcurrencyLimitExceededException extends Exception {
+    public ConcurrencyLimitExceededException(LimitGroup group) {
+        // Rejections are expected under overload, so skip filling in the stack trace.
+        super(String.format("Too many concurrent %s requests, try again later", group.name().toLowerCase()), null, false, false);
+    }
+}
@@ -0,0 +1,13 @@
+package dio.serviceorder.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class CustomerHasServiceOrdersException extends Exception{
+
+    public CustomerHasServiceOrdersException(Long id) {
+        super(String.format("Customer with id %d still has service orders", id));
+    }
+
+}
@@ -3,13 +3,14 @@ package dio.serviceorder.exception;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
+// A missing id is an expected outcome, so the exception carries no stack trace.
 @ResponseStatus(HttpStatus.NOT_FOUND)
 public class CustomerNotFoundException extends Exception {
     public CustomerNotFoundException(Long id) {
-        super(String.format("Cannot found customer with id %d ", id));
+        super(String.format("Cannot found customer with id %d ", id), null, false, false);
     }
 
     public CustomerNotFoundException(String name) {
-        super(String.format("Cannot found customer with name %s ", name));
+        super(String.format("Cannot found customer with name %s ", name), null, false, false);
     }
 }
@@ -0,0 +1,15 @@
+package dio.serviceorder.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.List;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidCsvHeaderException extends Exception{
+
+    public InvalidCsvHeaderException(List<String> missingColumns) {
+        super(String.format("CSV header is missing columns %s", missingColumns));
+    }
+
+}
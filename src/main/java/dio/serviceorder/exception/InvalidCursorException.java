@@ -0,0 +1,13 @@
+package dio.serviceorder.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidCursorException extends Exception{
+
+    public InvalidCursorException(String cursor) {
+        super(String.format("Invalid page cursor %s", cursor));
+    }
+
+}
@@ -0,0 +1,13 @@
+package dio.serviceorder.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidPatchException extends Exception{
+
+    public InvalidPatchException(String reason) {
+        super(String.format("Invalid merge patch: %s", reason));
+    }
+
+}
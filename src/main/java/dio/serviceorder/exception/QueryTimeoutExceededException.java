@@ -0,0 +1,15 @@
+package dio.serviceorder.exception;
+
+import dio.serviceorder.bulkhead.Workload;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.time.Duration;
+
+// Unchecked, since it is thrown around service methods by the bulkhead interceptor.
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class QueryTimeoutExceededException extends RuntimeException {
+    public QueryTimeoutExceededException(Workload workload, Duration timeout, Throwable cause) {
+        super(String.format("The queries of a %s operation took longer than %s", workload.name().toLowerCase(), timeout), cause);
+    }
+}
@@ -3,9 +3,10 @@ package dio.serviceorder.exception;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
+// A missing id is an expected outcome, so the exception carries no stack trace.
 @ResponseStatus(HttpStatus.NOT_FOUND)
 public class ServiceOrderNotFoundException extends Exception{
     public ServiceOrderNotFoundException(Long id) {
-        super(String.format("Service order with id %s not found.", id));
+        super(String.format("Service order with id %s not found.", id), null, false, false);
     }
 }
@@ -0,0 +1,13 @@
+package dio.serviceorder.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class ServiceOrderShardMoveException extends Exception{
+
+    public ServiceOrderShardMoveException(Long id, Long customerId) {
+        super(String.format("Service order with id %d cannot be moved to customer %d, which is on another shard", id, customerId));
+    }
+
+}
@@ -0,0 +1,13 @@
+package dio.serviceorder.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+public class ServiceOrderVersionMismatchException extends Exception{
+
+    public ServiceOrderVersionMismatchException(Long id) {
+        super(String.format("Service order with id %d was modified concurrently, fetch it again before updating", id));
+    }
+
+}
@@ -0,0 +1,104 @@
+package dio.serviceorder.export;
+
+import dio.serviceorder.enums.ServiceType;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.Arrays;
+
+import static dio.serviceorder.export.ColumnarFormat.*;
+
+/**
+ * Reads back a file in the {@link ColumnarFormat}, one group at a time.
+ */
+public final class ColumnarExportReader {
+    private final DataInputStream in;
+    private ExportRow[] group = new ExportRow[0];
+    private int position;
+    private boolean finished;
+    private long previousId;
+    private long previousCreatedAt;
+
+    public ColumnarExportReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in, 64 * 1024));
+        byte[] magic = new byte[MAGIC.length];
+        this.in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC))
+            throw new IOException("Not a columnar service order export");
+        int version = this.in.readUnsignedByte();
+        if (version != VERSION)
+            throw new IOException("Unsupported columnar export version " + version);
+    }
+
+    /**
+     * Next row, or null after the last one.
+     */
+    public ExportRow next() throws IOException {
+        while (position == group.length) {
+            if (finished)
+                return null;
+            readGroup();
+        }
+        return group[position++];
+    }
+
+    private void readGroup() throws IOException {
+        int rows = (int) readVarLong(in);
+        position = 0;
+        if (rows == 0) {
+            finished = true;
+            group = new ExportRow[0];
+            return;
+        }
+        long[] ids = new long[rows];
+        for (int i = 0; i < rows; i++)
+            ids[i] = previousId += readZigZag(in);
+        int customerCount = (int) readVarLong(in);
+        Long[] customerIds = new Long[customerCount];
+        String[] customerNames = new String[customerCount];
+        for (int i = 0; i < customerCount; i++) {
+            long customerId = readZigZag(in);
+            String name = readString(in);
+            customerIds[i] = customerId < 0 ? null : customerId;
+            customerNames[i] = customerId < 0 ? null : name;
+        }
+        int[] customers = new int[rows];
+        for (int i = 0; i < rows; i++)
+            customers[i] = (int) readVarLong(in);
+        ServiceType[] typeDictionary = new ServiceType[(int) readVarLong(in)];
+        for (int i = 0; i < typeDictionary.length; i++)
+            typeDictionary[i] = ServiceType.valueOf(readString(in));
+        int[] types = new int[rows];
+        for (int i = 0; i < rows; i++)
+            types[i] = (int) readVarLong(in);
+        boolean[] closed = readBitmap(rows);
+        long[] createdAts = new long[rows];
+        for (int i = 0; i < rows; i++)
+            createdAts[i] = previousCreatedAt += readZigZag(in);
+        boolean[] closedAtPresent = readBitmap(rows);
+
+        group = new ExportRow[rows];
+        for (int i = 0; i < rows; i++) {
+            Instant closedAt = closedAtPresent[i] ? fromMicros(createdAts[i] + readZigZag(in)) : null;
+            group[i] = new ExportRow(ids[i], customerIds[customers[i]], customerNames[customers[i]],
+                    typeDictionary[types[i]], closed[i], fromMicros(createdAts[i]), closedAt);
+        }
+    }
+
+    private boolean[] readBitmap(int rows) throws IOException {
+        boolean[] bits = new boolean[rows];
+        for (int start = 0; start < rows; start += 8) {
+            int b = in.readUnsignedByte();
+            for (int bit = 0; bit < 8 && start + bit < rows; bit++)
+                bits[start + bit] = (b & (1 << bit)) != 0;
+        }
+        return bits;
+    }
+
+    private static Instant fromMicros(long micros) {
+        return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000);
+    }
+}
@@ -0,0 +1,137 @@
+package dio.serviceorder.export;
+
+import dio.serviceorder.enums.ServiceType;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static dio.serviceorder.export.ColumnarFormat.*;
+
+/**
+ * Writes the {@link ColumnarFormat}, buffering one group of rows in primitive arrays.
+ */
+final class ColumnarExportWriter implements ExportWriter {
+    static final String MEDIA_TYPE = "application/vnd.serviceorder.columnar";
+    static final int DEFAULT_GROUP_SIZE = 64 * 1024;
+    private static final long NO_CUSTOMER = -1;
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private final DataOutputStream out;
+    private final int groupSize;
+    private final long[] ids;
+    private final int[] customers;
+    private final int[] types;
+    private final boolean[] closed;
+    private final long[] createdAts;
+    private final long[] closedAts;
+    private final Map<Long, Integer> customerIndexes = new HashMap<>();
+    private final List<Long> customerIds = new ArrayList<>();
+    private final List<String> customerNames = new ArrayList<>();
+    private final Map<ServiceType, Integer> typeIndexes = new HashMap<>();
+    private final List<ServiceType> typeDictionary = new ArrayList<>();
+    private int rows;
+    private long previousId;
+    private long previousCreatedAt;
+
+    ColumnarExportWriter(OutputStream out, int groupSize) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        this.groupSize = groupSize;
+        this.ids = new long[groupSize];
+        this.customers = new int[groupSize];
+        this.types = new int[groupSize];
+        this.closed = new boolean[groupSize];
+        this.createdAts = new long[groupSize];
+        this.closedAts = new long[groupSize];
+        this.out.write(MAGIC);
+        this.out.writeByte(VERSION);
+    }
+
+    @Override
+    public void write(ExportRow row) throws IOException {
+        long customerId = row.getCustomerId() == null ? NO_CUSTOMER : row.getCustomerId();
+        ids[rows] = row.getId();
+        customers[rows] = customerIndexes.computeIfAbsent(customerId, id -> {
+            customerIds.add(id);
+            customerNames.add(row.getCustomerName() == null ? "" : row.getCustomerName());
+            return customerIds.size() - 1;
+        });
+        types[rows] = typeIndexes.computeIfAbsent(row.getType(), type -> {
+            typeDictionary.add(type);
+            return typeDictionary.size() - 1;
+        });
+        closed[rows] = row.isClosed();
+        createdAts[rows] = toMicros(row.getCreatedAt());
+        closedAts[rows] = row.getClosedAt() == null ? NO_TIMESTAMP : toMicros(row.getClosedAt());
+        if (++rows == groupSize)
+            writeGroup();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (rows > 0)
+            writeGroup();
+        writeVarLong(out, 0);
+        out.flush();
+    }
+
+    private void writeGroup() throws IOException {
+        writeVarLong(out, rows);
+        for (int i = 0; i < rows; i++) {
+            writeZigZag(out, ids[i] - previousId);
+            previousId = ids[i];
+        }
+        writeVarLong(out, customerIds.size());
+        for (int i = 0; i < customerIds.size(); i++) {
+            writeZigZag(out, customerIds.get(i));
+            writeString(out, customerNames.get(i));
+        }
+        for (int i = 0; i < rows; i++)
+            writeVarLong(out, customers[i]);
+        writeVarLong(out, typeDictionary.size());
+        for (ServiceType type : typeDictionary)
+            writeString(out, type.name());
+        for (int i = 0; i < rows; i++)
+            writeVarLong(out, types[i]);
+        writeBitmap(closed);
+        for (int i = 0; i < rows; i++) {
+            writeZigZag(out, createdAts[i] - previousCreatedAt);
+            previousCreatedAt = createdAts[i];
+        }
+        boolean[] closedAtPresent = new boolean[rows];
+        for (int i = 0; i < rows; i++)
+            closedAtPresent[i] = closedAts[i] != NO_TIMESTAMP;
+        writeBitmap(closedAtPresent);
+        for (int i = 0; i < rows; i++) {
+            if (closedAtPresent[i])
+                writeZigZag(out, closedAts[i] - createdAts[i]);
+        }
+        rows = 0;
+        customerIndexes.clear();
+        customerIds.clear();
+        customerNames.clear();
+        typeIndexes.clear();
+        typeDictionary.clear();
+    }
+
+    private void writeBitmap(boolean[] bits) throws IOException {
+        for (int start = 0; start < rows; start += 8) {
+            int b = 0;
+            for (int bit = 0; bit < 8 && start + bit < rows; bit++) {
+                if (bits[start + bit])
+                    b |= 1 << bit;
+            }
+            out.writeByte(b);
+        }
+    }
+
+    private static long toMicros(Instant instant) {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1_000);
+    }
+}
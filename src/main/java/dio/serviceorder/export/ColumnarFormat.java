@@ -0,0 +1,75 @@
+package dio.serviceorder.export;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Layout of the columnar export. Rows are written in groups, each group column after column, so a
+ * writer only ever holds one group in memory:
+ *
+ * <pre>
+ * file      = "SOCF" version:u8 group* varint(0)
+ * group     = varint(rowCount) id customer type closed createdAt closedAt
+ * id        = zigzag(id - previous id) per row, continuing across groups
+ * customer  = varint(dictionary size) (zigzag(customer id or -1) string(name))* varint(index) per row
+ * type      = varint(dictionary size) string(name)* varint(index) per row
+ * closed    = bitmap of ceil(rowCount / 8) bytes, least significant bit first
+ * createdAt = zigzag(epoch micros - previous) per row, continuing across groups
+ * closedAt  = bitmap of present values, then zigzag(epoch micros - createdAt) per present value
+ * string    = varint(UTF-8 length) bytes
+ * </pre>
+ *
+ * Varints are unsigned LEB128. Dictionaries are per group.
+ */
+final class ColumnarFormat {
+    static final byte[] MAGIC = {'S', 'O', 'C', 'F'};
+    static final int VERSION = 1;
+
+    private ColumnarFormat() {
+    }
+
+    static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static void writeZigZag(DataOutputStream out, long value) throws IOException {
+        writeVarLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0)
+                throw new EOFException();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    static long readZigZag(DataInputStream in) throws IOException {
+        long value = readVarLong(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[(int) readVarLong(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,59 @@
+package dio.serviceorder.export;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * CSV with a header line, using the column names the bulk import reads back.
+ */
+final class CsvExportWriter implements ExportWriter {
+    static final String HEADER = "id,customer_id,customer_name,type,closed,created_at,closed_at";
+
+    private final Writer writer;
+
+    CsvExportWriter(OutputStream out) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        writer.write(HEADER);
+        writer.write('\n');
+    }
+
+    @Override
+    public void write(ExportRow row) throws IOException {
+        writer.write(Long.toString(row.getId()));
+        writer.write(',');
+        if (row.getCustomerId() != null)
+            writer.write(row.getCustomerId().toString());
+        writer.write(',');
+        if (row.getCustomerName() != null)
+            writeQuoted(row.getCustomerName());
+        writer.write(',');
+        writer.write(row.getType().name());
+        writer.write(',');
+        writer.write(row.isClosed() ? "true" : "false");
+        writer.write(',');
+        writer.write(row.getCreatedAt().toString());
+        writer.write(',');
+        if (row.getClosedAt() != null)
+            writer.write(row.getClosedAt().toString());
+        writer.write('\n');
+    }
+
+    @Override
+    public void finish() throws IOException {
+        writer.flush();
+    }
+
+    private void writeQuoted(String value) throws IOException {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
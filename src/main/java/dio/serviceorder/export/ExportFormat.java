@@ -0,0 +1,22 @@
+package dio.serviceorder.export;
+
+public enum ExportFormat {
+    CSV("text/csv", "csv"),
+    COLUMNAR(ColumnarExportWriter.MEDIA_TYPE, "socf");
+
+    private final String mediaType;
+    private final String fileExtension;
+
+    ExportFormat(String mediaType, String fileExtension) {
+        this.mediaType = mediaType;
+        this.fileExtension = fileExtension;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public String getFileExtension() {
+        return fileExtension;
+    }
+}
@@ -0,0 +1,20 @@
+package dio.serviceorder.export;
+
+import dio.serviceorder.enums.ServiceType;
+import lombok.Value;
+
+import java.time.Instant;
+
+/**
+ * One exported service order, flattened with the name of its customer.
+ */
+@Value
+public class ExportRow {
+    long id;
+    Long customerId;
+    String customerName;
+    ServiceType type;
+    boolean closed;
+    Instant createdAt;
+    Instant closedAt;
+}
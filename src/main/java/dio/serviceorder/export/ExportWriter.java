@@ -0,0 +1,13 @@
+package dio.serviceorder.export;
+
+import java.io.IOException;
+
+interface ExportWriter {
+
+    void write(ExportRow row) throws IOException;
+
+    /**
+     * Writes whatever is still buffered and the end of the file, leaving the underlying stream open.
+     */
+    void finish() throws IOException;
+}
@@ -0,0 +1,108 @@
+package dio.serviceorder.export;
+
+import dio.serviceorder.bulkhead.Bulkhead;
+import dio.serviceorder.bulkhead.Workload;
+import dio.serviceorder.enums.ServiceType;
+import dio.serviceorder.shard.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams service orders created in a time range straight from a forward-only JDBC cursor to an output
+ * stream, so memory use does not depend on how many rows are exported.
+ *
+ * <p>Rows come in creation order, shard after shard when sharded. Each shard is read in one read-only
+ * transaction, which also sends the query to the replica when there is one.
+ */
+@Slf4j
+@Component
+public class ServiceOrderExporter {
+    private static final String QUERY = "select s.id, s.customer_id, c.name, s.type, s.closed, s.created_at, s.closed_at " +
+            "from tb_service_order s left join tb_customer c on c.id = s.customer_id " +
+            "where s.created_at >= ? and s.created_at < ? order by s.created_at, s.id";
+    private static final Instant END_OF_TIME = Instant.parse("9999-12-31T00:00:00Z");
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Value("${serviceorder.export.fetch-size:1000}")
+    private int fetchSize;
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readOnlyTransaction;
+
+    @PostConstruct
+    void init() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(fetchSize);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Writes the service orders created in {@code [createdAfter, createdBefore)}, either bound being
+     * optional, and returns how many there were. The output stream is flushed but left open.
+     */
+    @Bulkhead(Workload.BULK)
+    public long export(ExportFormat format, boolean gzip, Instant createdAfter, Instant createdBefore, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        Instant from = createdAfter != null ? createdAfter : Instant.EPOCH;
+        Instant to = createdBefore != null ? createdBefore : END_OF_TIME;
+        GZIPOutputStream gzipOut = gzip ? new GZIPOutputStream(out, 64 * 1024) : null;
+        ExportWriter writer = format == ExportFormat.COLUMNAR
+                ? new ColumnarExportWriter(gzip ? gzipOut : out, ColumnarExportWriter.DEFAULT_GROUP_SIZE)
+                : new CsvExportWriter(gzip ? gzipOut : out);
+        long[] rows = new long[1];
+        try {
+            shardRouter.forEachShard(() -> readOnlyTransaction.executeWithoutResult(status ->
+                    jdbcTemplate.query(QUERY, resultSet -> {
+                        try {
+                            writer.write(new ExportRow(
+                                    resultSet.getLong(1),
+                                    resultSet.getObject(2) == null ? null : resultSet.getLong(2),
+                                    resultSet.getString(3),
+                                    ServiceType.valueOf(resultSet.getString(4)),
+                                    resultSet.getBoolean(5),
+                                    resultSet.getTimestamp(6).toInstant(),
+                                    toInstant(resultSet.getTimestamp(7))));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        rows[0]++;
+                    }, Timestamp.from(from), Timestamp.from(to))));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.finish();
+        if (gzipOut != null)
+            gzipOut.finish();
+        out.flush();
+        log.info("Exported {} service orders as {} in {} ms", rows[0], format, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return rows[0];
+    }
+
+    private static Instant toInstant(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toInstant();
+    }
+}
@@ -0,0 +1,150 @@
+package dio.serviceorder.importer;
+
+import dio.serviceorder.dto.CustomerDTO;
+import dio.serviceorder.dto.ImportReportDTO;
+import dio.serviceorder.dto.ServiceOrderDTO;
+import dio.serviceorder.enums.ServiceType;
+import dio.serviceorder.exception.InvalidCsvHeaderException;
+import dio.serviceorder.service.CustomerService;
+import dio.serviceorder.service.ServiceOrderService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Bulk imports of customers and service orders from CSV files of any size, read as a stream and
+ * written in batches through the services.
+ *
+ * <p>Customer files have a {@code name} column. Service order files have {@code customer_id},
+ * {@code type} and {@code closed} columns, and optionally {@code created_at} and {@code closed_at} as
+ * ISO-8601 instants; customer ids are resolved against an in-memory map of every customer loaded when
+ * the import starts. Rows are checked against the DTO constraints, and rejected lines are reported
+ * without stopping the import.
+ */
+@Component
+public class BulkImporter {
+    public static final String CSV_MEDIA_TYPE = "text/csv";
+    static final List<String> CUSTOMER_COLUMNS = Collections.singletonList("name");
+    static final List<String> SERVICE_ORDER_COLUMNS = Arrays.asList("customer_id", "type", "closed");
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private ServiceOrderService serviceOrderService;
+
+    @Autowired
+    private Validator validator;
+
+    @Value("${serviceorder.import.chunk-size:1MB}")
+    private DataSize chunkSize;
+
+    // 0 uses one thread per available processor.
+    @Value("${serviceorder.import.parallelism:0}")
+    private int parallelism;
+
+    @Value("${serviceorder.import.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${serviceorder.import.max-errors:1000}")
+    private int maxErrors;
+
+    private ForkJoinPool pool;
+    private CsvImport csvImport;
+
+    @PostConstruct
+    void init() {
+        pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        csvImport = new CsvImport(pool, validator, (int) chunkSize.toBytes(), batchSize, maxErrors);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    public ImportReportDTO importCustomers(ReadableByteChannel csv) throws IOException, InvalidCsvHeaderException {
+        return csvImport.run("customers", csv, CUSTOMER_COLUMNS, BulkImporter::toCustomer, customerService::importBatch);
+    }
+
+    public ImportReportDTO importServiceOrders(ReadableByteChannel csv) throws IOException, InvalidCsvHeaderException {
+        Map<Long, CustomerDTO> customers = new HashMap<>();
+        for (CustomerDTO customerDTO : customerService.listAll())
+            customers.put(customerDTO.getId(), customerDTO);
+        return csvImport.run("service orders", csv, SERVICE_ORDER_COLUMNS,
+                record -> toServiceOrder(record, customers), serviceOrderService::importBatch);
+    }
+
+    static CustomerDTO toCustomer(CsvRecord record) {
+        return CustomerDTO.builder()
+                .name(record.get("name"))
+                .build();
+    }
+
+    static ServiceOrderDTO toServiceOrder(CsvRecord record, Map<Long, CustomerDTO> customers) {
+        String customerId = record.get("customer_id");
+        CustomerDTO customerDTO = null;
+        if (customerId != null) {
+            try {
+                customerDTO = customers.get(Long.valueOf(customerId.trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(String.format("invalid customer_id %s", customerId));
+            }
+            if (customerDTO == null)
+                throw new IllegalArgumentException(String.format("unknown customer_id %s", customerId));
+        }
+        return ServiceOrderDTO.builder()
+                .customer(customerDTO)
+                .type(toType(record.get("type")))
+                .closed(toBoolean("closed", record.get("closed")))
+                .createdAt(toInstant("created_at", record.get("created_at")))
+                .closedAt(toInstant("closed_at", record.get("closed_at")))
+                .build();
+    }
+
+    private static ServiceType toType(String value) {
+        if (value == null)
+            return null;
+        try {
+            return ServiceType.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format("invalid type %s", value));
+        }
+    }
+
+    private static Boolean toBoolean(String column, String value) {
+        if (value == null)
+            return null;
+        if (value.trim().equalsIgnoreCase("true"))
+            return true;
+        if (value.trim().equalsIgnoreCase("false"))
+            return false;
+        throw new IllegalArgumentException(String.format("invalid %s %s", column, value));
+    }
+
+    private static Instant toInstant(String column, String value) {
+        if (value == null)
+            return null;
+        try {
+            return Instant.parse(value.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(String.format("invalid %s %s", column, value));
+        }
+    }
+}
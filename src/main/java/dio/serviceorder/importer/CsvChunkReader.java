@@ -0,0 +1,76 @@
+package dio.serviceorder.importer;
+
+import lombok.Value;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Cuts a CSV byte stream into chunks of whole lines, so the chunks can be parsed independently.
+ *
+ * <p>A chunk ends at the last line break that fits in the buffer and the rest is carried over to the
+ * next one; the buffer only grows for a single line longer than it. Line breaks are found on bytes,
+ * which is safe for UTF-8 since no multi-byte sequence contains a {@code '\n'} byte.
+ */
+final class CsvChunkReader {
+    private final ReadableByteChannel channel;
+    private ByteBuffer buffer;
+    private long nextLine = 1;
+    private boolean endOfInput;
+
+    CsvChunkReader(ReadableByteChannel channel, int chunkSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(chunkSize);
+    }
+
+    /**
+     * Next chunk of whole lines, the last one possibly without a trailing line break, or null once the
+     * input is exhausted.
+     */
+    Chunk next() throws IOException {
+        while (true) {
+            while (!endOfInput && buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0)
+                    endOfInput = true;
+            }
+            if (buffer.position() == 0)
+                return null;
+            int end = endOfInput ? buffer.position() : lastLineBreak() + 1;
+            if (end > 0)
+                return take(end);
+            ByteBuffer grown = ByteBuffer.allocate(buffer.capacity() * 2);
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+    }
+
+    private int lastLineBreak() {
+        byte[] bytes = buffer.array();
+        for (int i = buffer.position() - 1; i >= 0; i--) {
+            if (bytes[i] == '\n')
+                return i;
+        }
+        return -1;
+    }
+
+    private Chunk take(int length) {
+        byte[] bytes = new byte[length];
+        buffer.flip();
+        buffer.get(bytes);
+        buffer.compact();
+        Chunk chunk = new Chunk(nextLine, bytes);
+        for (byte b : bytes) {
+            if (b == '\n')
+                nextLine++;
+        }
+        return chunk;
+    }
+
+    @Value
+    static class Chunk {
+        long firstLine;
+        byte[] bytes;
+    }
+}
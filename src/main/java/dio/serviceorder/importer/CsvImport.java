@@ -0,0 +1,255 @@
+package dio.serviceorder.importer;
+
+import dio.serviceorder.dto.ImportReportDTO;
+import dio.serviceorder.exception.InvalidCsvHeaderException;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Streams a CSV file into batched writes. Chunks of lines are parsed and validated in parallel on the
+ * pool while the calling thread writes the valid rows in file order, with at most two chunks per pool
+ * thread in flight so memory stays bounded whatever the file size.
+ */
+@Slf4j
+final class CsvImport {
+    private static final long PROGRESS_INTERVAL_NANOS = 5_000_000_000L;
+
+    private final ForkJoinPool pool;
+    private final Validator validator;
+    private final int chunkSize;
+    private final int batchSize;
+    private final int maxErrors;
+
+    /**
+     * Maps one record to a row, throwing {@link IllegalArgumentException} with a message for the report
+     * when a field cannot be converted.
+     */
+    interface RowParser<T> {
+        T parse(CsvRecord record);
+    }
+
+    CsvImport(ForkJoinPool pool, Validator validator, int chunkSize, int batchSize, int maxErrors) {
+        this.pool = pool;
+        this.validator = validator;
+        this.chunkSize = chunkSize;
+        this.batchSize = batchSize;
+        this.maxErrors = maxErrors;
+    }
+
+    <T> ImportReportDTO run(String name, ReadableByteChannel csv, List<String> requiredColumns,
+                            RowParser<T> rowParser, Consumer<List<T>> writer) throws IOException, InvalidCsvHeaderException {
+        CsvChunkReader reader = new CsvChunkReader(csv, chunkSize);
+        CsvChunkReader.Chunk chunk = reader.next();
+        byte[] firstBytes = chunk == null ? new byte[0] : chunk.getBytes();
+        int headerEnd = indexOfLineBreak(firstBytes);
+        Map<String, Integer> columns = columns(new String(firstBytes, 0, headerEnd, StandardCharsets.UTF_8));
+        List<String> missingColumns = requiredColumns.stream()
+                .filter(column -> !columns.containsKey(column))
+                .collect(Collectors.toList());
+        if (!missingColumns.isEmpty())
+            throw new InvalidCsvHeaderException(missingColumns);
+
+        Progress<T> progress = new Progress<>(name, writer);
+        if (headerEnd + 1 < firstBytes.length) {
+            byte[] rest = new byte[firstBytes.length - headerEnd - 1];
+            System.arraycopy(firstBytes, headerEnd + 1, rest, 0, rest.length);
+            chunk = new CsvChunkReader.Chunk(chunk.getFirstLine() + 1, rest);
+        } else {
+            chunk = reader.next();
+        }
+
+        Deque<CompletableFuture<ParsedChunk<T>>> inFlight = new ArrayDeque<>();
+        int maxInFlight = 2 * pool.getParallelism();
+        while (chunk != null) {
+            CsvChunkReader.Chunk next = chunk;
+            inFlight.add(CompletableFuture.supplyAsync(() -> parse(next, columns, rowParser), pool));
+            if (inFlight.size() >= maxInFlight)
+                progress.accept(join(inFlight.poll()));
+            chunk = reader.next();
+        }
+        while (!inFlight.isEmpty())
+            progress.accept(join(inFlight.poll()));
+        progress.flush();
+        log.info("Import of {} done: {} lines, {} imported, {} rejected", name, progress.lines, progress.imported, progress.rejected);
+        return ImportReportDTO.builder()
+                .lines(progress.lines)
+                .imported(progress.imported)
+                .rejected(progress.rejected)
+                .errors(progress.errors)
+                .build();
+    }
+
+    private <T> ParsedChunk<T> parse(CsvChunkReader.Chunk chunk, Map<String, Integer> columns, RowParser<T> rowParser) {
+        ParsedChunk<T> parsed = new ParsedChunk<>();
+        String text = new String(chunk.getBytes(), StandardCharsets.UTF_8);
+        long lineNumber = chunk.getFirstLine();
+        for (int start = 0; start < text.length(); lineNumber++) {
+            int end = text.indexOf('\n', start);
+            if (end < 0)
+                end = text.length();
+            String line = stripCarriageReturn(text.substring(start, end));
+            start = end + 1;
+            if (line.trim().isEmpty())
+                continue;
+            parsed.lines++;
+            try {
+                List<String> fields = CsvRecord.split(line);
+                if (fields.size() != columns.size())
+                    throw new IllegalArgumentException(String.format("expected %d fields but found %d", columns.size(), fields.size()));
+                T row = rowParser.parse(new CsvRecord(columns, fields));
+                String violations = violations(row);
+                if (violations != null)
+                    throw new IllegalArgumentException(violations);
+                parsed.rows.add(row);
+                parsed.rowLines.add(lineNumber);
+            } catch (IllegalArgumentException e) {
+                parsed.errors.add(new ImportReportDTO.LineError(lineNumber, e.getMessage()));
+            }
+        }
+        return parsed;
+    }
+
+    private String violations(Object row) {
+        List<ConstraintViolation<Object>> violations = new ArrayList<>(validator.validate(row));
+        if (violations.isEmpty())
+            return null;
+        violations.sort(Comparator.comparing(violation -> violation.getPropertyPath().toString()));
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                .collect(Collectors.joining(", "));
+    }
+
+    private static Map<String, Integer> columns(String headerLine) {
+        String header = stripCarriageReturn(headerLine);
+        if (header.startsWith("\uFEFF"))
+            header = header.substring(1);
+        Map<String, Integer> columns = new HashMap<>();
+        if (header.trim().isEmpty())
+            return columns;
+        List<String> names = CsvRecord.split(header);
+        for (int index = 0; index < names.size(); index++)
+            columns.put(names.get(index).trim().toLowerCase(Locale.ROOT), index);
+        return columns;
+    }
+
+    private static int indexOfLineBreak(byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == '\n')
+                return i;
+        }
+        return bytes.length;
+    }
+
+    private static String stripCarriageReturn(String line) {
+        return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+    }
+
+    private static String rootCauseMessage(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null && cause.getCause() != cause)
+            cause = cause.getCause();
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    private static final class ParsedChunk<T> {
+        final List<T> rows = new ArrayList<>();
+        final List<Long> rowLines = new ArrayList<>();
+        final List<ImportReportDTO.LineError> errors = new ArrayList<>();
+        long lines;
+    }
+
+    private final class Progress<T> {
+        final String name;
+        final Consumer<List<T>> writer;
+        final List<T> batch = new ArrayList<>(batchSize);
+        final List<Long> batchLines = new ArrayList<>(batchSize);
+        final List<ImportReportDTO.LineError> errors = new ArrayList<>();
+        long lines;
+        long imported;
+        long rejected;
+        long lastLogged = System.nanoTime();
+
+        Progress(String name, Consumer<List<T>> writer) {
+            this.name = name;
+            this.writer = writer;
+        }
+
+        void accept(ParsedChunk<T> parsed) {
+            lines += parsed.lines;
+            rejected += parsed.errors.size();
+            parsed.errors.forEach(this::reject);
+            for (int i = 0; i < parsed.rows.size(); i++) {
+                batch.add(parsed.rows.get(i));
+                batchLines.add(parsed.rowLines.get(i));
+                if (batch.size() >= batchSize)
+                    flush();
+            }
+            if (System.nanoTime() - lastLogged >= PROGRESS_INTERVAL_NANOS) {
+                log.info("Importing {}: {} lines read, {} imported, {} rejected", name, lines, imported, rejected);
+                lastLogged = System.nanoTime();
+            }
+        }
+
+        void flush() {
+            if (batch.isEmpty())
+                return;
+            try {
+                writer.accept(new ArrayList<>(batch));
+                imported += batch.size();
+            } catch (RuntimeException e) {
+                log.warn("Import of {}: batch of lines {} to {} failed, writing its rows one by one", name,
+                        batchLines.get(0), batchLines.get(batchLines.size() - 1), e);
+                writeOneByOne();
+            }
+            batch.clear();
+            batchLines.clear();
+        }
+
+        // A failed batch was rolled back as a whole, so only the rows that fail on their own are rejected.
+        private void writeOneByOne() {
+            for (int i = 0; i < batch.size(); i++) {
+                try {
+                    writer.accept(Collections.singletonList(batch.get(i)));
+                    imported++;
+                } catch (RuntimeException e) {
+                    rejected++;
+                    reject(new ImportReportDTO.LineError(batchLines.get(i), "not written: " + rootCauseMessage(e)));
+                }
+            }
+        }
+
+        private void reject(ImportReportDTO.LineError error) {
+            if (errors.size() < maxErrors)
+                errors.add(error);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package dio.serviceorder.importer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One CSV line, with its fields looked up by header column name. Fields may be quoted, with {@code ""}
+ * for a quote inside a quoted field; line breaks inside fields are not supported.
+ */
+final class CsvRecord {
+    private final Map<String, Integer> columns;
+    private final List<String> fields;
+
+    CsvRecord(Map<String, Integer> columns, List<String> fields) {
+        this.columns = columns;
+        this.fields = fields;
+    }
+
+    /**
+     * The field of the given column, or null when it is empty or the column is not in the header.
+     */
+    String get(String column) {
+        Integer index = columns.get(column);
+        if (index == null)
+            return null;
+        String field = fields.get(index);
+        return field.isEmpty() ? null : field;
+    }
+
+    static List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"')
+                    field.append(c);
+                else if (i + 1 < line.length() && line.charAt(i + 1) == '"')
+                    field.append(line.charAt(++i));
+                else
+                    quoted = false;
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted)
+            throw new IllegalArgumentException("unterminated quoted field");
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,71 @@
+package dio.serviceorder.importer;
+
+import dio.serviceorder.dto.ImportReportDTO;
+import dio.serviceorder.exception.InvalidCsvHeaderException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Command line entry point of {@link BulkImporter}: started with {@code --import-customers=<file>}
+ * and/or {@code --import-service-orders=<file>}, the application imports the files, customers first,
+ * and exits with status 1 when any line was rejected.
+ */
+@Slf4j
+@Component
+public class ImportRunner implements ApplicationRunner {
+    static final String CUSTOMERS_OPTION = "import-customers";
+    static final String SERVICE_ORDERS_OPTION = "import-service-orders";
+
+    @Autowired
+    private BulkImporter bulkImporter;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException, InvalidCsvHeaderException {
+        String customersFile = optionValue(args, CUSTOMERS_OPTION);
+        String serviceOrdersFile = optionValue(args, SERVICE_ORDERS_OPTION);
+        if (customersFile == null && serviceOrdersFile == null)
+            return;
+        boolean complete = true;
+        if (customersFile != null)
+            complete = importFile(customersFile, bulkImporter::importCustomers);
+        if (serviceOrdersFile != null)
+            complete &= importFile(serviceOrdersFile, bulkImporter::importServiceOrders);
+        int exitCode = complete ? 0 : 1;
+        System.exit(SpringApplication.exit(applicationContext, () -> exitCode));
+    }
+
+    private static boolean importFile(String file, Import fileImport) throws IOException, InvalidCsvHeaderException {
+        ImportReportDTO report;
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            report = fileImport.run(channel);
+        }
+        for (ImportReportDTO.LineError error : report.getErrors())
+            log.warn("{}:{}: {}", file, error.getLine(), error.getMessage());
+        log.info("Imported {} of {} lines from {}, {} rejected", report.getImported(), report.getLines(), file, report.getRejected());
+        return report.getRejected() == 0;
+    }
+
+    private static String optionValue(ApplicationArguments args, String name) {
+        List<String> values = args.getOptionValues(name);
+        return values == null || values.isEmpty() ? null : values.get(values.size() - 1);
+    }
+
+    private interface Import {
+        ImportReportDTO run(ReadableByteChannel csv) throws IOException, InvalidCsvHeaderException;
+    }
+}
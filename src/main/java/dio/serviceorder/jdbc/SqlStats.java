@@ -0,0 +1,79 @@
+package dio.serviceorder.jdbc;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SQL statements, rows, JDBC time and connection hold time of one unit of work, usually an HTTP request.
+ * Safe to update from several threads, since sharded queries run on a pool.
+ */
+public final class SqlStats {
+    private final LongAdder statements = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final LongAdder connections = new LongAdder();
+    private final LongAdder connectionNanos = new LongAdder();
+    private final AtomicInteger openConnections = new AtomicInteger();
+
+    void recordStatement(long elapsedNanos) {
+        statements.increment();
+        nanos.add(elapsedNanos);
+    }
+
+    void recordRows(long count, long elapsedNanos) {
+        rows.add(count);
+        nanos.add(elapsedNanos);
+    }
+
+    void connectionOpened() {
+        connections.increment();
+        openConnections.incrementAndGet();
+    }
+
+    void connectionClosed(long heldNanos) {
+        openConnections.decrementAndGet();
+        connectionNanos.add(heldNanos);
+    }
+
+    public long getStatements() {
+        return statements.sum();
+    }
+
+    /**
+     * Rows read from result sets plus rows reported changed by updates.
+     */
+    public long getRows() {
+        return rows.sum();
+    }
+
+    /**
+     * Time spent in statement executions and result set fetches.
+     */
+    public long getNanos() {
+        return nanos.sum();
+    }
+
+    public long getConnections() {
+        return connections.sum();
+    }
+
+    /**
+     * Time connections were held, from being taken from the data source until being closed.
+     */
+    public long getConnectionNanos() {
+        return connectionNanos.sum();
+    }
+
+    /**
+     * Connections taken and not closed yet.
+     */
+    public int getOpenConnections() {
+        return openConnections.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d statements, %d rows, %.2f ms, connections held %.2f ms",
+                getStatements(), getRows(), getNanos() / 1e6, getConnectionNanos() / 1e6);
+    }
+}
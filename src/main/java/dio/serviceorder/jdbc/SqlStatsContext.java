@@ -0,0 +1,44 @@
+package dio.serviceorder.jdbc;
+
+import java.util.function.Supplier;
+
+/**
+ * {@link SqlStats} the statements of the current thread are counted in, if any.
+ */
+public final class SqlStatsContext {
+    private static final ThreadLocal<SqlStats> CURRENT = new ThreadLocal<>();
+
+    private SqlStatsContext() {
+    }
+
+    public static SqlStats current() {
+        return CURRENT.get();
+    }
+
+    public static void set(SqlStats stats) {
+        CURRENT.set(stats);
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Runs the action with its statements counted in the given stats, which may be null to count nothing.
+     */
+    public static <T> T callWith(SqlStats stats, Supplier<T> action) {
+        SqlStats previous = CURRENT.get();
+        if (stats == null)
+            CURRENT.remove();
+        else
+            CURRENT.set(stats);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null)
+                CURRENT.remove();
+            else
+                CURRENT.set(previous);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package dio.serviceorder.jdbc;
+
+import dio.serviceorder.timing.ServerTimingResponseWrapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the SQL statements of every request, reports them in a {@code Server-Timing} header such as
+ * {@code db;dur=1.52;desc="3 statements, 20 rows", conn;dur=2.10;desc="1 connections"} and records them per
+ * endpoint in the {@code serviceorder.request.sql.*} metrics. {@code conn} is how long the request held
+ * database connections.
+ */
+public class SqlStatsFilter extends OncePerRequestFilter {
+    private final MeterRegistry meterRegistry;
+
+    public SqlStatsFilter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        SqlStats stats = new SqlStats();
+        ServerTimingResponseWrapper timedResponse = new ServerTimingResponseWrapper(response, () -> serverTiming(stats));
+        SqlStatsContext.set(stats);
+        try {
+            filterChain.doFilter(request, timedResponse);
+        } finally {
+            SqlStatsContext.clear();
+            timedResponse.addServerTiming();
+            record(request, stats);
+        }
+    }
+
+    static String serverTiming(SqlStats stats) {
+        return String.format(Locale.ROOT, "db;dur=%.2f;desc=\"%d statements, %d rows\", conn;dur=%.2f;desc=\"%d connections\"",
+                stats.getNanos() / 1e6, stats.getStatements(), stats.getRows(),
+                stats.getConnectionNanos() / 1e6, stats.getConnections());
+    }
+
+    private void record(HttpServletRequest request, SqlStats stats) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+        String method = request.getMethod();
+        DistributionSummary.builder("serviceorder.request.sql.statements")
+                .tag("method", method)
+                .tag("uri", uri)
+                .register(meterRegistry)
+                .record(stats.getStatements());
+        DistributionSummary.builder("serviceorder.request.sql.rows")
+                .tag("method", method)
+                .tag("uri", uri)
+                .register(meterRegistry)
+                .record(stats.getRows());
+        Timer.builder("serviceorder.request.sql.time")
+                .tag("method", method)
+                .tag("uri", uri)
+                .register(meterRegistry)
+                .record(stats.getNanos(), TimeUnit.NANOSECONDS);
+        Timer.builder("serviceorder.request.sql.connection-time")
+                .tag("method", method)
+                .tag("uri", uri)
+                .register(meterRegistry)
+                .record(stats.getConnectionNanos(), TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,167 @@
+package dio.serviceorder.jdbc;
+
+import dio.serviceorder.jfr.SlowQueryEvent;
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Data source proxy counting the statements, rows and JDBC time of the threads that have a
+ * {@link SqlStatsContext}, and how long they hold their connections. A JDBC batch counts as one
+ * statement, since it is one round trip.
+ *
+ * <p>Every statement execution also emits a {@link SlowQueryEvent}, recorded by Java Flight Recorder
+ * when it runs longer than the threshold of the event.
+ *
+ * <p>Everything else is passed through, including {@code unwrap}, so pool metrics keep finding the
+ * pool behind the proxy.
+ */
+public final class StatementCountingDataSource {
+
+    private StatementCountingDataSource() {
+    }
+
+    /**
+     * Proxy of the data source, also {@link AutoCloseable} when the data source is, so a pool bean keeps
+     * being closed on shutdown.
+     */
+    public static DataSource wrap(DataSource dataSource) {
+        Class<?>[] types = dataSource instanceof AutoCloseable
+                ? new Class<?>[]{DataSource.class, AutoCloseable.class}
+                : new Class<?>[]{DataSource.class};
+        return proxy(types, dataSource, (target, method, args) -> {
+            Object result = invoke(target, method, args);
+            return result instanceof Connection ? wrapConnection((Connection) result) : result;
+        });
+    }
+
+    private static Connection wrapConnection(Connection connection) {
+        SqlStats connectionStats = SqlStatsContext.current();
+        long acquiredAt = System.nanoTime();
+        boolean[] closed = {false};
+        if (connectionStats != null)
+            connectionStats.connectionOpened();
+        return proxy(Connection.class, connection, (target, method, args) -> {
+            if (method.getName().equals("close") && connectionStats != null && !closed[0]) {
+                closed[0] = true;
+                connectionStats.connectionClosed(System.nanoTime() - acquiredAt);
+            }
+            Object result = invoke(target, method, args);
+            String sql = method.getName().startsWith("prepare") ? (String) args[0] : null;
+            if (result instanceof CallableStatement)
+                return wrapStatement(CallableStatement.class, (CallableStatement) result, sql);
+            if (result instanceof PreparedStatement)
+                return wrapStatement(PreparedStatement.class, (PreparedStatement) result, sql);
+            if (result instanceof Statement)
+                return wrapStatement(Statement.class, (Statement) result, null);
+            return result;
+        });
+    }
+
+    private static <S extends Statement> S wrapStatement(Class<S> type, S statement, String preparedSql) {
+        return proxy(type, statement, (target, method, args) -> {
+            SqlStats stats = SqlStatsContext.current();
+            if (!method.getName().startsWith("execute")) {
+                Object result = invoke(target, method, args);
+                return stats != null && method.getName().equals("getResultSet") && result != null
+                        ? wrapResultSet((ResultSet) result) : result;
+            }
+            if (stats == null)
+                return execute(target, method, args, preparedSql);
+            long start = System.nanoTime();
+            Object result = execute(target, method, args, preparedSql);
+            stats.recordStatement(System.nanoTime() - start);
+            if (result instanceof ResultSet)
+                return wrapResultSet((ResultSet) result);
+            if (result instanceof Number && method.getName().contains("Update"))
+                stats.recordRows(((Number) result).longValue(), 0);
+            else if (result instanceof int[])
+                stats.recordRows(updateCount((int[]) result), 0);
+            else if (result instanceof long[])
+                stats.recordRows(updateCount((long[]) result), 0);
+            return result;
+        });
+    }
+
+    private static ResultSet wrapResultSet(ResultSet resultSet) {
+        return proxy(ResultSet.class, resultSet, (target, method, args) -> {
+            SqlStats stats = SqlStatsContext.current();
+            if (stats == null || !method.getName().equals("next"))
+                return invoke(target, method, args);
+            long start = System.nanoTime();
+            Object result = invoke(target, method, args);
+            stats.recordRows(Boolean.TRUE.equals(result) ? 1 : 0, System.nanoTime() - start);
+            return result;
+        });
+    }
+
+    private static Object execute(Statement statement, Method method, Object[] args, String preparedSql) throws Throwable {
+        SlowQueryEvent event = new SlowQueryEvent();
+        event.begin();
+        try {
+            return invoke(statement, method, args);
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                String sql = preparedSql != null ? preparedSql : args != null && args.length > 0 ? String.valueOf(args[0]) : null;
+                event.set(sql, method.getName().endsWith("Batch"));
+                event.commit();
+            }
+        }
+    }
+
+    private static long updateCount(int[] counts) {
+        long total = 0;
+        for (int count : counts)
+            total += Math.max(count, 0);
+        return total;
+    }
+
+    private static long updateCount(long[] counts) {
+        long total = 0;
+        for (long count : counts)
+            total += Math.max(count, 0);
+        return total;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static <T> T proxy(Class<T> type, T target, Handler<T> handler) {
+        return proxy(new Class<?>[]{type}, target, handler);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<?>[] types, T target, Handler<T> handler) {
+        InvocationHandler invocationHandler = (proxy, method, args) -> {
+            // Identity semantics, since proxies are used as transaction resource keys.
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Counting " + target;
+                default:
+                    return handler.invoke(target, method, args);
+            }
+        };
+        return (T) Proxy.newProxyInstance(StatementCountingDataSource.class.getClassLoader(), types, invocationHandler);
+    }
+
+    private interface Handler<T> {
+        Object invoke(T target, Method method, Object[] args) throws Throwable;
+    }
+}
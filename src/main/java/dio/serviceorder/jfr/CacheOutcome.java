@@ -0,0 +1,15 @@
+package dio.serviceorder.jfr;
+
+/**
+ * How an in-memory structure answered a service operation, reported in its {@link ServiceOperationEvent}.
+ */
+public enum CacheOutcome {
+    // Answered from memory: the read model or the incrementally maintained counts.
+    HIT,
+    // Loaded from the database.
+    MISS,
+    // Shared the result of an identical call already in flight.
+    COALESCED,
+    // Rejected by an id Bloom filter without a database lookup.
+    FILTERED
+}
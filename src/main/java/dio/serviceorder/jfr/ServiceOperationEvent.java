@@ -0,0 +1,36 @@
+package dio.serviceorder.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("dio.serviceorder.ServiceOperation")
+@Label("Service Operation")
+@Category({"Service Order"})
+@Description("A call of a public CustomerService or ServiceOrderService method")
+@StackTrace(false)
+public class ServiceOperationEvent extends Event {
+    @Label("Service")
+    String service;
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Id")
+    @Description("Id the operation was called with, 0 when it takes none")
+    long id;
+
+    @Label("Rows")
+    @Description("Entities returned")
+    int rows;
+
+    @Label("Cache")
+    @Description("HIT, MISS, COALESCED or FILTERED when the operation looks at an in-memory structure")
+    String cache;
+
+    @Label("Exception")
+    String exception;
+}
@@ -0,0 +1,94 @@
+package dio.serviceorder.jfr;
+
+import dio.serviceorder.dto.BatchDTO;
+import dio.serviceorder.dto.CustomerDTO;
+import dio.serviceorder.dto.ServiceOrderDTO;
+import dio.serviceorder.dto.ServiceOrderPageDTO;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import java.util.Collection;
+
+/**
+ * Emits a {@link ServiceOperationEvent} around every intercepted service method.
+ *
+ * <p>Nothing but the event allocation, which escape analysis usually removes, happens while the event
+ * is disabled in the running recordings.
+ */
+public final class ServiceOperations implements MethodInterceptor {
+    private static final ThreadLocal<CacheOutcome[]> CACHE_OUTCOME = ThreadLocal.withInitial(() -> new CacheOutcome[1]);
+
+    /**
+     * Reports how the operation running on the current thread used its cache. The last call wins.
+     */
+    public static void cache(CacheOutcome outcome) {
+        CACHE_OUTCOME.get()[0] = outcome;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        ServiceOperationEvent event = new ServiceOperationEvent();
+        if (!event.isEnabled())
+            return invocation.proceed();
+        CacheOutcome[] cacheOutcome = CACHE_OUTCOME.get();
+        CacheOutcome outer = cacheOutcome[0];
+        cacheOutcome[0] = null;
+        Object result = null;
+        Throwable failure = null;
+        event.begin();
+        try {
+            result = invocation.proceed();
+            return result;
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.service = invocation.getMethod().getDeclaringClass().getSimpleName();
+                event.operation = invocation.getMethod().getName();
+                event.id = idOf(invocation.getArguments());
+                event.rows = rowsOf(result);
+                event.cache = cacheOutcome[0] != null ? cacheOutcome[0].name() : null;
+                event.exception = failure != null ? failure.getClass().getSimpleName() : null;
+                event.commit();
+            }
+            cacheOutcome[0] = outer;
+        }
+    }
+
+    /**
+     * The id of the entity a DTO argument carries, otherwise the first {@code Long} argument. Methods taking
+     * a DTO may also take a {@code Long} that is not an id, such as the expected version of an update.
+     */
+    private static long idOf(Object[] arguments) {
+        Long firstLong = null;
+        for (Object argument : arguments) {
+            if (argument instanceof ServiceOrderDTO)
+                return idOrZero(((ServiceOrderDTO) argument).getId());
+            if (argument instanceof CustomerDTO)
+                return idOrZero(((CustomerDTO) argument).getId());
+            if (argument instanceof Long && firstLong == null)
+                firstLong = (Long) argument;
+        }
+        return idOrZero(firstLong);
+    }
+
+    private static long idOrZero(Long id) {
+        return id == null ? 0 : id;
+    }
+
+    private static int rowsOf(Object result) {
+        if (result == null)
+            return 0;
+        if (result instanceof Collection)
+            return ((Collection<?>) result).size();
+        if (result instanceof BatchDTO)
+            return ((BatchDTO<?>) result).getItems().size();
+        if (result instanceof ServiceOrderPageDTO)
+            return ((ServiceOrderPageDTO) result).getItems().size();
+        if (result instanceof Number || result instanceof Boolean)
+            return 0;
+        return 1;
+    }
+}
@@ -0,0 +1,29 @@
+package dio.serviceorder.jfr;
+
+import org.springframework.aop.framework.autoproxy.AbstractBeanFactoryAwareAdvisingPostProcessor;
+import org.springframework.aop.support.ComposablePointcut;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcher;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Set;
+
+/**
+ * Emits a {@link ServiceOperationEvent} around every public method of the given service classes,
+ * outside of their transaction.
+ */
+public class ServiceOperationsPostProcessor extends AbstractBeanFactoryAwareAdvisingPostProcessor {
+
+    public ServiceOperationsPostProcessor(Set<Class<?>> serviceClasses) {
+        ComposablePointcut pointcut = new ComposablePointcut(serviceClasses::contains, new StaticMethodMatcher() {
+            @Override
+            public boolean matches(Method method, Class<?> targetClass) {
+                return Modifier.isPublic(method.getModifiers()) && method.getDeclaringClass() != Object.class;
+            }
+        });
+        this.advisor = new DefaultPointcutAdvisor(pointcut, new ServiceOperations());
+        setBeforeExistingAdvisors(true);
+        setProxyTargetClass(true);
+    }
+}
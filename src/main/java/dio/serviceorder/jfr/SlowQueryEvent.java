@@ -0,0 +1,24 @@
+package dio.serviceorder.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("dio.serviceorder.SlowQuery")
+@Label("Slow SQL Query")
+@Category({"Service Order"})
+@Description("A JDBC statement execution longer than the threshold")
+public class SlowQueryEvent extends Event {
+    @Label("SQL")
+    private String sql;
+
+    @Label("Batch")
+    private boolean batch;
+
+    public void set(String sql, boolean batch) {
+        this.sql = sql;
+        this.batch = batch;
+    }
+}
@@ -0,0 +1,91 @@
+package dio.serviceorder.limiter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gradient based concurrency limit: the limit follows the ratio between the long-term and the
+ * current request latency, so it shrinks as soon as the database slows down and grows back
+ * (by roughly the square root of the limit per sample) while latency stays flat.
+ * Failed requests apply a multiplicative decrease, as in AIMD.
+ */
+public class AdaptiveConcurrencyLimiter {
+    private static final int LONG_RTT_WINDOW = 600;
+
+    private final LimiterProperties.Group settings;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+
+    private volatile double limit;
+    private double longRttNanos;
+    private long samples;
+
+    public AdaptiveConcurrencyLimiter(LimiterProperties.Group settings) {
+        this.settings = settings;
+        this.limit = settings.getInitialLimit();
+    }
+
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1))
+                return true;
+        }
+    }
+
+    public void release(long rttNanos, boolean dropped) {
+        int inFlightAtRelease = inFlight.getAndDecrement();
+        if (dropped)
+            onDropped();
+        else
+            onSample(rttNanos, inFlightAtRelease);
+    }
+
+    private synchronized void onDropped() {
+        limit = clamp(limit * settings.getBackoffRatio());
+    }
+
+    private synchronized void onSample(long rttNanos, int inFlightAtRelease) {
+        if (rttNanos <= 0)
+            return;
+        samples++;
+        if (samples == 1) {
+            longRttNanos = rttNanos;
+            return;
+        }
+        double window = Math.min(samples, LONG_RTT_WINDOW);
+        longRttNanos = longRttNanos + (rttNanos - longRttNanos) / window;
+
+        // Let the long-term average recover after a sustained slowdown has passed.
+        if (longRttNanos / rttNanos > 2)
+            longRttNanos *= 0.95;
+
+        // The limit is not the bottleneck, so there is no signal to grow on.
+        if (inFlightAtRelease < limit / 2)
+            return;
+
+        double gradient = Math.max(0.5, Math.min(1.0, settings.getRttTolerance() * longRttNanos / rttNanos));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        limit = clamp(limit * (1 - settings.getSmoothing()) + newLimit * settings.getSmoothing());
+    }
+
+    private double clamp(double value) {
+        return Math.max(settings.getMinLimit(), Math.min(settings.getMaxLimit(), value));
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,47 @@
+package dio.serviceorder.limiter;
+
+import dio.serviceorder.exception.ConcurrencyLimitExceededException;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+public class ConcurrencyLimitInterceptor implements HandlerInterceptor {
+    private static final String LIMITER_ATTRIBUTE = ConcurrencyLimitInterceptor.class.getName() + ".limiter";
+    private static final String START_ATTRIBUTE = ConcurrencyLimitInterceptor.class.getName() + ".start";
+
+    private final ConcurrencyLimiters concurrencyLimiters;
+
+    public ConcurrencyLimitInterceptor(ConcurrencyLimiters concurrencyLimiters) {
+        this.concurrencyLimiters = concurrencyLimiters;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        // Async requests come back here once more to be completed, still holding their permit.
+        if (!(handler instanceof HandlerMethod) || request.getAttribute(LIMITER_ATTRIBUTE) != null)
+            return true;
+        ConcurrencyLimited concurrencyLimited = ((HandlerMethod) handler).getMethodAnnotation(ConcurrencyLimited.class);
+        if (concurrencyLimited == null)
+            return true;
+
+        AdaptiveConcurrencyLimiter limiter = concurrencyLimiters.get(concurrencyLimited.value());
+        if (!limiter.tryAcquire())
+            throw new ConcurrencyLimitExceededException(concurrencyLimited.value());
+        request.setAttribute(LIMITER_ATTRIBUTE, limiter);
+        request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        AdaptiveConcurrencyLimiter limiter = (AdaptiveConcurrencyLimiter) request.getAttribute(LIMITER_ATTRIBUTE);
+        if (limiter == null)
+            return;
+        request.removeAttribute(LIMITER_ATTRIBUTE);
+        long rtt = System.nanoTime() - (Long) request.getAttribute(START_ATTRIBUTE);
+        boolean dropped = ex != null || response.getStatus() >= 500;
+        limiter.release(rtt, dropped);
+    }
+}
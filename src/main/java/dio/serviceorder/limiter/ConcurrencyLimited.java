@@ -0,0 +1,13 @@
+package dio.serviceorder.limiter;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks a controller method as guarded by the adaptive concurrency limit of the given group.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ConcurrencyLimited {
+    LimitGroup value();
+}
@@ -0,0 +1,40 @@
+package dio.serviceorder.limiter;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+@Component
+public class ConcurrencyLimiters implements MeterBinder {
+    private final Map<LimitGroup, AdaptiveConcurrencyLimiter> limiters = new EnumMap<>(LimitGroup.class);
+
+    public ConcurrencyLimiters(LimiterProperties limiterProperties) {
+        for (LimitGroup group : LimitGroup.values())
+            limiters.put(group, new AdaptiveConcurrencyLimiter(limiterProperties.getGroup(group)));
+    }
+
+    public AdaptiveConcurrencyLimiter get(LimitGroup group) {
+        return limiters.get(group);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        limiters.forEach((group, limiter) -> {
+            String tag = group.name().toLowerCase();
+            Gauge.builder("serviceorder.limiter.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                    .tag("group", tag)
+                    .register(registry);
+            Gauge.builder("serviceorder.limiter.inflight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                    .tag("group", tag)
+                    .register(registry);
+            FunctionCounter.builder("serviceorder.limiter.rejected", limiter, AdaptiveConcurrencyLimiter::getRejected)
+                    .tag("group", tag)
+                    .register(registry);
+        });
+    }
+}
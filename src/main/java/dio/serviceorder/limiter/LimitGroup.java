@@ -0,0 +1,7 @@
+package dio.serviceorder.limiter;
+
+public enum LimitGroup {
+    READ,
+    WRITE,
+    BULK
+}
@@ -0,0 +1,31 @@
+package dio.serviceorder.limiter;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "serviceorder.limiter")
+public class LimiterProperties {
+    private boolean enabled = true;
+
+    private Map<LimitGroup, Group> groups = new EnumMap<>(LimitGroup.class);
+
+    public Group getGroup(LimitGroup limitGroup) {
+        return groups.computeIfAbsent(limitGroup, g -> new Group());
+    }
+
+    @Data
+    public static class Group {
+        private int initialLimit = 20;
+        private int minLimit = 2;
+        private int maxLimit = 200;
+        /** How much the short-term latency may exceed the long-term one before the limit shrinks. */
+        private double rttTolerance = 1.5;
+        private double smoothing = 0.2;
+        /** Multiplicative decrease applied when a request fails. */
+        private double backoffRatio = 0.9;
+    }
+}
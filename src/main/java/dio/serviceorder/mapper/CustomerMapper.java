@@ -2,11 +2,13 @@ package dio.serviceorder.mapper;
 
 import dio.serviceorder.dto.CustomerDTO;
 import dio.serviceorder.model.Customer;
+import org.mapstruct.DecoratedWith;
 import org.mapstruct.Mapper;
 import org.mapstruct.factory.Mappers;
 
 
 @Mapper
+@DecoratedWith(CustomerMapperDecorator.class)
 public interface CustomerMapper {
     CustomerMapper INSTANCE = Mappers.getMapper(CustomerMapper.class);
 
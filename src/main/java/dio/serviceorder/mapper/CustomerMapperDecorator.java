@@ -0,0 +1,35 @@
+package dio.serviceorder.mapper;
+
+import dio.serviceorder.dto.CustomerDTO;
+import dio.serviceorder.model.Customer;
+import dio.serviceorder.timing.Phase;
+import dio.serviceorder.timing.PhaseTimer;
+
+// Times the mappings as the mapper phase of the current request.
+public abstract class CustomerMapperDecorator implements CustomerMapper {
+    private final CustomerMapper delegate;
+
+    public CustomerMapperDecorator(CustomerMapper delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Customer toModel(CustomerDTO customerDTO) {
+        PhaseTimer.start(Phase.MAPPER);
+        try {
+            return delegate.toModel(customerDTO);
+        } finally {
+            PhaseTimer.stop(Phase.MAPPER);
+        }
+    }
+
+    @Override
+    public CustomerDTO toDTO(Customer customer) {
+        PhaseTimer.start(Phase.MAPPER);
+        try {
+            return delegate.toDTO(customer);
+        } finally {
+            PhaseTimer.stop(Phase.MAPPER);
+        }
+    }
+}
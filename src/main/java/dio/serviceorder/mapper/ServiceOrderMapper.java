@@ -1,15 +1,75 @@
 package dio.serviceorder.mapper;
 
+import dio.serviceorder.dto.CustomerDTO;
+import dio.serviceorder.dto.NormalizedServiceOrderDTO;
 import dio.serviceorder.dto.ServiceOrderDTO;
+import dio.serviceorder.dto.ServiceOrderListDTO;
+import dio.serviceorder.model.Customer;
 import dio.serviceorder.model.ServiceOrder;
+import org.mapstruct.DecoratedWith;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import org.mapstruct.factory.Mappers;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 @Mapper
+@DecoratedWith(ServiceOrderMapperDecorator.class)
 public interface ServiceOrderMapper {
     ServiceOrderMapper INSTANCE = Mappers.getMapper(ServiceOrderMapper.class);
 
+    // Assignments are only made by claims, and escalations by the aging job.
+    @Mapping(target = "assignee", ignore = true)
+    @Mapping(target = "leaseExpiresAt", ignore = true)
+    @Mapping(target = "escalatedAt", ignore = true)
     ServiceOrder toModel(ServiceOrderDTO serviceOrderDTO);
 
     ServiceOrderDTO toDTO(ServiceOrder serviceOrder);
+
+    // Leaves the customer to the caller, see toDTOs.
+    @Mapping(target = "customer", ignore = true)
+    ServiceOrderDTO toDTOWithoutCustomer(ServiceOrder serviceOrder);
+
+    CustomerDTO toCustomerDTO(Customer customer);
+
+    /**
+     * DTOs of a list of service orders, mapping each customer once and sharing its DTO between the
+     * service orders of that customer.
+     */
+    default List<ServiceOrderDTO> toDTOs(List<ServiceOrder> serviceOrders) {
+        List<ServiceOrderDTO> serviceOrderDTOs = new ArrayList<>(serviceOrders.size());
+        Map<Long, CustomerDTO> customers = new HashMap<>();
+        for (ServiceOrder serviceOrder : serviceOrders) {
+            ServiceOrderDTO serviceOrderDTO = toDTOWithoutCustomer(serviceOrder);
+            Customer customer = serviceOrder.getCustomer();
+            if (customer != null)
+                serviceOrderDTO.setCustomer(customer.getId() == null ? toCustomerDTO(customer)
+                        : customers.computeIfAbsent(customer.getId(), id -> toCustomerDTO(customer)));
+            serviceOrderDTOs.add(serviceOrderDTO);
+        }
+        return serviceOrderDTOs;
+    }
+
+    @Mapping(target = "customerId", source = "customer.id")
+    NormalizedServiceOrderDTO toNormalizedDTO(ServiceOrderDTO serviceOrderDTO);
+
+    /**
+     * Normalized form of a list, keeping the first customer DTO seen for each customer id and dropping
+     * the copies embedded in the other service orders.
+     */
+    default ServiceOrderListDTO toListDTO(List<ServiceOrderDTO> serviceOrderDTOs) {
+        List<NormalizedServiceOrderDTO> items = new ArrayList<>(serviceOrderDTOs.size());
+        Map<Long, CustomerDTO> customers = new LinkedHashMap<>();
+        for (ServiceOrderDTO serviceOrderDTO : serviceOrderDTOs) {
+            items.add(toNormalizedDTO(serviceOrderDTO));
+            CustomerDTO customer = serviceOrderDTO.getCustomer();
+            if (customer != null && customer.getId() != null)
+                customers.putIfAbsent(customer.getId(), customer);
+        }
+        return new ServiceOrderListDTO(items, customers, null, null);
+    }
 }
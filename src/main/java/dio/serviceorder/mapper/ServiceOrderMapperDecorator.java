@@ -0,0 +1,58 @@
+package dio.serviceorder.mapper;
+
+import dio.serviceorder.dto.ServiceOrderDTO;
+import dio.serviceorder.dto.ServiceOrderListDTO;
+import dio.serviceorder.model.ServiceOrder;
+import dio.serviceorder.timing.Phase;
+import dio.serviceorder.timing.PhaseTimer;
+
+import java.util.List;
+
+// Times the mappings as the mapper phase of the current request.
+public abstract class ServiceOrderMapperDecorator implements ServiceOrderMapper {
+    private final ServiceOrderMapper delegate;
+
+    public ServiceOrderMapperDecorator(ServiceOrderMapper delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public ServiceOrder toModel(ServiceOrderDTO serviceOrderDTO) {
+        PhaseTimer.start(Phase.MAPPER);
+        try {
+            return delegate.toModel(serviceOrderDTO);
+        } finally {
+            PhaseTimer.stop(Phase.MAPPER);
+        }
+    }
+
+    @Override
+    public ServiceOrderDTO toDTO(ServiceOrder serviceOrder) {
+        PhaseTimer.start(Phase.MAPPER);
+        try {
+            return delegate.toDTO(serviceOrder);
+        } finally {
+            PhaseTimer.stop(Phase.MAPPER);
+        }
+    }
+
+    @Override
+    public List<ServiceOrderDTO> toDTOs(List<ServiceOrder> serviceOrders) {
+        PhaseTimer.start(Phase.MAPPER);
+        try {
+            return delegate.toDTOs(serviceOrders);
+        } finally {
+            PhaseTimer.stop(Phase.MAPPER);
+        }
+    }
+
+    @Override
+    public ServiceOrderListDTO toListDTO(List<ServiceOrderDTO> serviceOrderDTOs) {
+        PhaseTimer.start(Phase.MAPPER);
+        try {
+            return delegate.toListDTO(serviceOrderDTOs);
+        } finally {
+            PhaseTimer.stop(Phase.MAPPER);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package dio.serviceorder.model;
+
+import dio.serviceorder.enums.ServiceType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+// Written and read with JDBC by the aging job, mapped so that the schema gets generated.
+@Entity
+@Table(name = "tb_aging_checkpoint", uniqueConstraints = @UniqueConstraint(
+        name = "uk_aging_checkpoint_range", columnNames = {"runId", "type", "rangeStart"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AgingCheckpoint {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 32)
+    private String runId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private ServiceType type;
+
+    // Service order ids in (rangeStart, rangeEnd], scanned by the worker holding the claim.
+    @Column(nullable = false)
+    private Long rangeStart;
+
+    @Column(nullable = false)
+    private Long rangeEnd;
+
+    // Age limit of the run, kept so a resumed run selects the same orders.
+    @Column(nullable = false)
+    private Instant createdBefore;
+
+    // Last service order id of the range whose chunk committed.
+    @Column(nullable = false)
+    private Long lastId;
+
+    @Column(nullable = false)
+    private Boolean done;
+
+    // Worker scanning the range, until the claim expires unless a checkpoint renews it.
+    @Column(length = 64)
+    private String claimedBy;
+
+    private Instant claimedUntil;
+}
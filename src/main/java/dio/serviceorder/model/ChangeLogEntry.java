@@ -0,0 +1,35 @@
+package dio.serviceorder.model;
+
+import dio.serviceorder.enums.ChangedEntity;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+// Written and read with JDBC by the change log, mapped so that the schema gets generated.
+@Entity
+@Table(name = "tb_change_log", indexes = @Index(name = "ix_change_log_created_at", columnList = "createdAt"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChangeLogEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private ChangedEntity entity;
+
+    @Column(nullable = false)
+    private Long entityId;
+
+    // Instance that made the change, which does not need to hear about it.
+    @Column(nullable = false, length = 64)
+    private String node;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+}
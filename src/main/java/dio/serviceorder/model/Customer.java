@@ -4,10 +4,12 @@ package dio.serviceorder.model;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.DynamicUpdate;
 
 import javax.persistence.*;
 
 @Entity
+@DynamicUpdate
 @Table(name = "tb_customer")
 @Data
 @NoArgsConstructor
@@ -19,4 +21,7 @@ public class Customer {
 
     @Column(nullable = false)
     private String name;
+
+    @Version
+    private long version;
 }
@@ -5,11 +5,17 @@ import dio.serviceorder.enums.ServiceType;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.DynamicUpdate;
 
 import javax.persistence.*;
+import java.time.Instant;
 
 @Entity
-@Table(name = "tb_service_order")
+@DynamicUpdate
+@Table(name = "tb_service_order", indexes = {
+        @Index(name = "ix_service_order_created_at", columnList = "createdAt, id"),
+        @Index(name = "ix_service_order_lease_expires_at", columnList = "leaseExpiresAt")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -27,4 +33,20 @@ public class ServiceOrder {
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private ServiceType type;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    private Instant closedAt;
+
+    // Technician working on the order until the lease expires, set by claims only.
+    private String assignee;
+
+    private Instant leaseExpiresAt;
+
+    // Set by the aging job when the order stayed open longer than its type allows.
+    private Instant escalatedAt;
+
+    @Version
+    private long version;
 }
@@ -0,0 +1,69 @@
+package dio.serviceorder.patch;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import dio.serviceorder.exception.InvalidPatchException;
+import org.springframework.stereotype.Component;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Applies RFC 7396 JSON merge patches to DTOs: members of the patch replace those of the target,
+ * nested objects are merged recursively and null members are removed. The patched DTO is validated
+ * like a request body would be.
+ */
+@Component
+public class JsonMergePatch {
+    public static final String MEDIA_TYPE = "application/merge-patch+json";
+
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    public JsonMergePatch(ObjectMapper objectMapper, Validator validator) {
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T apply(T target, JsonNode patch) throws InvalidPatchException {
+        if (patch == null || !patch.isObject())
+            throw new InvalidPatchException("the patch must be a JSON object");
+        ObjectNode patched = objectMapper.valueToTree(target);
+        merge(patched, patch);
+        T result;
+        try {
+            result = (T) objectMapper.treeToValue(patched, target.getClass());
+        } catch (JsonProcessingException e) {
+            throw new InvalidPatchException(e.getOriginalMessage());
+        }
+        Set<ConstraintViolation<T>> violations = validator.validate(result);
+        if (!violations.isEmpty())
+            throw new InvalidPatchException(violations.stream()
+                    .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", ")));
+        return result;
+    }
+
+    private static void merge(ObjectNode target, JsonNode patch) {
+        Iterator<Map.Entry<String, JsonNode>> fields = patch.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            JsonNode value = field.getValue();
+            JsonNode current = target.get(field.getKey());
+            if (value.isNull())
+                target.remove(field.getKey());
+            else if (value.isObject() && current != null && current.isObject())
+                merge((ObjectNode) current, value);
+            else
+                target.set(field.getKey(), value);
+        }
+    }
+}
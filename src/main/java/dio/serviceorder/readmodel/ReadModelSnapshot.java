@@ -0,0 +1,30 @@
+package dio.serviceorder.readmodel;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Point-in-time copy of the {@link ServiceOrderReadModel} columns. The high-water mark is the
+ * largest service order id the snapshot contains.
+ */
+@Getter
+@AllArgsConstructor
+public class ReadModelSnapshot {
+    private final long highWaterMark;
+
+    private final int customerCount;
+    private final long[] customerIds;
+    private final String[] customerNames;
+
+    private final int rowCount;
+    private final long[] ids;
+    private final int[] customerRefs;
+    private final byte[] types;
+    private final byte[] closed;
+    // Epoch microseconds, Long.MIN_VALUE when absent.
+    private final long[] createdAt;
+    private final long[] closedAt;
+    private final long[] escalatedAt;
+    // Long.MIN_VALUE when unknown.
+    private final long[] versions;
+}
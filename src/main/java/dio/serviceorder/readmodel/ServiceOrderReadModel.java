@@ -0,0 +1,464 @@
+package dio.serviceorder.readmodel;
+
+import dio.serviceorder.dto.CustomerDTO;
+import dio.serviceorder.dto.ServiceOrderDTO;
+import dio.serviceorder.enums.ServiceType;
+import dio.serviceorder.model.ServiceOrder;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * In-memory read model of the service orders, stored column by column in primitive arrays with
+ * bitmap indexes on the closed flag and on each {@link ServiceType}. Customers are kept in a
+ * dictionary referenced by an int per row, so list reads need neither JPA entities nor the mapper.
+ *
+ * <p>The model only answers once {@link #load} or {@link #restore} has completed. Writes made while
+ * a load is running are queued and replayed on top of the loaded rows; when a loaded model is
+ * reloaded in the background it keeps answering, with those writes applied, in the meantime. A load
+ * that fails is aborted with {@link #abortLoad}, leaving reads to the database.
+ *
+ * <p>Each row keeps the version it was written with, and an upsert carrying an older version than the
+ * row is ignored: writes reach the model after their transaction, so they may arrive out of order.
+ * Removed ids are kept with their last version until the next load, so a late upsert of an older
+ * version does not bring a deleted order back.
+ */
+@Component
+public class ServiceOrderReadModel {
+    private static final ServiceType[] TYPES = ServiceType.values();
+    private static final int INITIAL_CAPACITY = 1024;
+    // Timestamps are stored as epoch microseconds, with this value standing for null.
+    static final long NO_TIMESTAMP = Long.MIN_VALUE;
+    // Version of rows written without one, which any later write replaces.
+    static final long NO_VERSION = Long.MIN_VALUE;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Row columns, a row is live while its bit is set in liveRows.
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private int[] customerRefs = new int[INITIAL_CAPACITY];
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private long[] createdAt = new long[INITIAL_CAPACITY];
+    private long[] closedAt = new long[INITIAL_CAPACITY];
+    private long[] escalatedAt = new long[INITIAL_CAPACITY];
+    private long[] versions = new long[INITIAL_CAPACITY];
+    private int rowCount;
+    private final BitSet liveRows = new BitSet();
+    private final BitSet closedRows = new BitSet();
+    private final BitSet[] rowsByType = new BitSet[TYPES.length];
+    private final LongIntHashMap rowById = new LongIntHashMap(INITIAL_CAPACITY);
+    // Last version of each removed id.
+    private final Map<Long, Long> removedVersions = new HashMap<>();
+
+    // Customer dictionary, one shared DTO per customer.
+    private CustomerDTO[] customers = new CustomerDTO[INITIAL_CAPACITY];
+    private int customerCount;
+    private final LongIntHashMap customerRefById = new LongIntHashMap(INITIAL_CAPACITY);
+
+    private volatile boolean ready;
+    private List<Consumer<ServiceOrderReadModel>> pendingWrites;
+
+    public ServiceOrderReadModel() {
+        for (int i = 0; i < rowsByType.length; i++)
+            rowsByType[i] = new BitSet();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Marks the start of the initial load: from now on writes are recorded so they can be replayed
+     * after the rows read from the database.
+     */
+    public void beginLoad() {
+        lock.writeLock().lock();
+        try {
+            pendingWrites = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drops the writes recorded since {@link #beginLoad} after the load failed. A model that never loaded
+     * stays unready.
+     */
+    public void abortLoad() {
+        lock.writeLock().lock();
+        try {
+            pendingWrites = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void load(Collection<ServiceOrder> serviceOrders) {
+        lock.writeLock().lock();
+        try {
+            clear();
+            for (ServiceOrder serviceOrder : serviceOrders) {
+                int customerRef = serviceOrder.getCustomer() == null ? -1
+                        : customerRef(serviceOrder.getCustomer().getId(), serviceOrder.getCustomer().getName());
+                putRow(serviceOrder.getId(), customerRef, serviceOrder.getType(), Boolean.TRUE.equals(serviceOrder.getClosed()),
+                        toMicros(serviceOrder.getCreatedAt()), toMicros(serviceOrder.getClosedAt()), toMicros(serviceOrder.getEscalatedAt()),
+                        serviceOrder.getVersion());
+            }
+            if (pendingWrites != null)
+                pendingWrites.forEach(write -> write.accept(this));
+            pendingWrites = null;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the content with a previously taken snapshot, replaying writes queued since {@link #beginLoad}.
+     */
+    public void restore(ReadModelSnapshot snapshot) {
+        lock.writeLock().lock();
+        try {
+            clear();
+            for (int i = 0; i < snapshot.getCustomerCount(); i++)
+                customerRef(snapshot.getCustomerIds()[i], snapshot.getCustomerNames()[i]);
+            for (int i = 0; i < snapshot.getRowCount(); i++)
+                putRow(snapshot.getIds()[i], snapshot.getCustomerRefs()[i], TYPES[snapshot.getTypes()[i]], snapshot.getClosed()[i] != 0,
+                        snapshot.getCreatedAt()[i], snapshot.getClosedAt()[i], snapshot.getEscalatedAt()[i], snapshot.getVersions()[i]);
+            if (pendingWrites != null)
+                pendingWrites.forEach(write -> write.accept(this));
+            pendingWrites = null;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Copies the live rows and the customer dictionary, compacted, into a snapshot.
+     */
+    public ReadModelSnapshot snapshot() {
+        lock.readLock().lock();
+        try {
+            int liveCount = liveRows.cardinality();
+            long[] snapshotIds = new long[liveCount];
+            int[] snapshotCustomerRefs = new int[liveCount];
+            byte[] snapshotTypes = new byte[liveCount];
+            byte[] snapshotClosed = new byte[liveCount];
+            long[] snapshotCreatedAt = new long[liveCount];
+            long[] snapshotClosedAt = new long[liveCount];
+            long[] snapshotEscalatedAt = new long[liveCount];
+            long[] snapshotVersions = new long[liveCount];
+            long highWaterMark = 0;
+            int target = 0;
+            for (int row = liveRows.nextSetBit(0); row >= 0; row = liveRows.nextSetBit(row + 1), target++) {
+                snapshotIds[target] = ids[row];
+                snapshotCustomerRefs[target] = customerRefs[row];
+                snapshotTypes[target] = types[row];
+                snapshotClosed[target] = (byte) (closedRows.get(row) ? 1 : 0);
+                snapshotCreatedAt[target] = createdAt[row];
+                snapshotClosedAt[target] = closedAt[row];
+                snapshotEscalatedAt[target] = escalatedAt[row];
+                snapshotVersions[target] = versions[row];
+                highWaterMark = Math.max(highWaterMark, ids[row]);
+            }
+            long[] customerIds = new long[customerCount];
+            String[] customerNames = new String[customerCount];
+            for (int ref = 0; ref < customerCount; ref++) {
+                customerIds[ref] = customers[ref].getId();
+                customerNames[ref] = customers[ref].getName();
+            }
+            return new ReadModelSnapshot(highWaterMark, customerCount, customerIds, customerNames,
+                    liveCount, snapshotIds, snapshotCustomerRefs, snapshotTypes, snapshotClosed, snapshotCreatedAt, snapshotClosedAt,
+                    snapshotEscalatedAt, snapshotVersions);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ids whose row is missing or holds another version than the given stored one, followed by the
+     * ids of the rows no longer stored. Reloading them brings a restored model up to date.
+     */
+    public List<Long> staleIds(long[] storedIds, long[] storedVersions) {
+        lock.readLock().lock();
+        try {
+            List<Long> stale = new ArrayList<>();
+            BitSet storedRows = new BitSet(rowCount);
+            for (int i = 0; i < storedIds.length; i++) {
+                int row = rowById.get(storedIds[i]);
+                if (row == LongIntHashMap.MISSING) {
+                    stale.add(storedIds[i]);
+                    continue;
+                }
+                storedRows.set(row);
+                if (versions[row] != storedVersions[i])
+                    stale.add(storedIds[i]);
+            }
+            BitSet removedRows = (BitSet) liveRows.clone();
+            removedRows.andNot(storedRows);
+            for (int row = removedRows.nextSetBit(0); row >= 0; row = removedRows.nextSetBit(row + 1))
+                stale.add(ids[row]);
+            return stale;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void upsert(ServiceOrderDTO serviceOrderDTO) {
+        upsertAll(Collections.singletonList(serviceOrderDTO));
+    }
+
+    /**
+     * Upserts a batch of service orders under a single write lock. Orders older than their row are skipped.
+     */
+    public void upsertAll(List<ServiceOrderDTO> serviceOrderDTOs) {
+        write(model -> {
+            for (ServiceOrderDTO serviceOrderDTO : serviceOrderDTOs) {
+                CustomerDTO customer = serviceOrderDTO.getCustomer();
+                int customerRef = customer == null ? -1 : model.customerRef(customer.getId(), customer.getName());
+                model.putRow(serviceOrderDTO.getId(), customerRef, serviceOrderDTO.getType(), Boolean.TRUE.equals(serviceOrderDTO.getClosed()),
+                        toMicros(serviceOrderDTO.getCreatedAt()), toMicros(serviceOrderDTO.getClosedAt()), toMicros(serviceOrderDTO.getEscalatedAt()),
+                        serviceOrderDTO.getVersion() == null ? NO_VERSION : serviceOrderDTO.getVersion());
+            }
+        });
+    }
+
+    public void remove(Long id) {
+        remove(id, null);
+    }
+
+    /**
+     * Removes the order deleted at the given version, null when unknown.
+     */
+    public void remove(Long id, Long version) {
+        write(model -> model.removeRow(id, version == null ? NO_VERSION : version));
+    }
+
+    public void updateCustomer(CustomerDTO customerDTO) {
+        write(model -> {
+            int ref = model.customerRefById.get(customerDTO.getId());
+            if (ref != LongIntHashMap.MISSING)
+                model.customers[ref] = CustomerDTO.builder().id(customerDTO.getId()).name(customerDTO.getName()).build();
+        });
+    }
+
+    /**
+     * The customer with the given id as last stored, when some order of the model references it.
+     */
+    public Optional<CustomerDTO> findCustomer(Long customerId) {
+        lock.readLock().lock();
+        try {
+            int ref = customerRefById.get(customerId);
+            if (ref == LongIntHashMap.MISSING)
+                return Optional.empty();
+            return Optional.of(CustomerDTO.builder().id(customers[ref].getId()).name(customers[ref].getName()).build());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<ServiceOrderDTO> findByClosed(boolean closed) {
+        lock.readLock().lock();
+        try {
+            BitSet rows = (BitSet) liveRows.clone();
+            if (closed)
+                rows.and(closedRows);
+            else
+                rows.andNot(closedRows);
+            return materialize(rows);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<ServiceOrderDTO> findByType(ServiceType type) {
+        lock.readLock().lock();
+        try {
+            return materialize(rowsByType[type.ordinal()]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts the live rows matching the given filters, a null filter matches everything.
+     */
+    public long count(Boolean closed, ServiceType type) {
+        lock.readLock().lock();
+        try {
+            BitSet rows = type == null ? (BitSet) liveRows.clone() : (BitSet) rowsByType[type.ordinal()].clone();
+            if (Boolean.TRUE.equals(closed))
+                rows.and(closedRows);
+            else if (Boolean.FALSE.equals(closed))
+                rows.andNot(closedRows);
+            return rows.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void write(Consumer<ServiceOrderReadModel> write) {
+        lock.writeLock().lock();
+        try {
+            if (pendingWrites != null)
+                pendingWrites.add(write);
+            if (ready)
+                write.accept(this);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Builds the orders of the given rows in id order. Rows are mostly appended in id order, so they are
+     * only sorted when they are not. Customers are copied once per call, so callers may change them.
+     */
+    private List<ServiceOrderDTO> materialize(BitSet rows) {
+        List<ServiceOrderDTO> serviceOrders = new ArrayList<>(rows.cardinality());
+        CustomerDTO[] customerCopies = new CustomerDTO[customerCount];
+        boolean sorted = true;
+        long previousId = Long.MIN_VALUE;
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            int customerRef = customerRefs[row];
+            if (customerRef >= 0 && customerCopies[customerRef] == null)
+                customerCopies[customerRef] = CustomerDTO.builder().id(customers[customerRef].getId()).name(customers[customerRef].getName()).build();
+            sorted &= ids[row] > previousId;
+            previousId = ids[row];
+            serviceOrders.add(new ServiceOrderDTO(
+                    ids[row],
+                    customerRef < 0 ? null : customerCopies[customerRef],
+                    closedRows.get(row),
+                    TYPES[types[row]],
+                    fromMicros(createdAt[row]),
+                    fromMicros(closedAt[row]),
+                    fromMicros(escalatedAt[row]),
+                    versions[row] == NO_VERSION ? null : versions[row]));
+        }
+        if (!sorted)
+            serviceOrders.sort(Comparator.comparing(ServiceOrderDTO::getId));
+        return serviceOrders;
+    }
+
+    private void putRow(Long id, int customerRef, ServiceType type, boolean closed, long createdAtMicros, long closedAtMicros,
+                        long escalatedAtMicros, long version) {
+        int row = rowById.get(id);
+        if (row != LongIntHashMap.MISSING && version != NO_VERSION && version < versions[row])
+            return;
+        if (row == LongIntHashMap.MISSING && removedVersions.containsKey(id)) {
+            if (version == NO_VERSION || version <= removedVersions.get(id))
+                return;
+            removedVersions.remove(id);
+        }
+        if (row == LongIntHashMap.MISSING) {
+            row = rowCount++;
+            ensureRowCapacity(rowCount);
+            ids[row] = id;
+            rowById.put(id, row);
+            liveRows.set(row);
+        } else {
+            rowsByType[types[row]].clear(row);
+        }
+        customerRefs[row] = customerRef;
+        types[row] = (byte) type.ordinal();
+        rowsByType[type.ordinal()].set(row);
+        closedRows.set(row, closed);
+        createdAt[row] = createdAtMicros;
+        closedAt[row] = closedAtMicros;
+        escalatedAt[row] = escalatedAtMicros;
+        versions[row] = version;
+    }
+
+    private void removeRow(Long id, long version) {
+        int row = rowById.get(id);
+        long lastVersion = row == LongIntHashMap.MISSING ? version : Math.max(version, versions[row]);
+        removedVersions.merge(id, lastVersion, Math::max);
+        if (row == LongIntHashMap.MISSING)
+            return;
+        rowById.remove(id);
+        liveRows.clear(row);
+        closedRows.clear(row);
+        rowsByType[types[row]].clear(row);
+        if (rowCount > INITIAL_CAPACITY && liveRows.cardinality() < rowCount / 2)
+            compact();
+    }
+
+    /**
+     * Drops the holes left by removed rows, keeping the rows in their original order.
+     */
+    private void compact() {
+        int target = 0;
+        for (int row = liveRows.nextSetBit(0); row >= 0; row = liveRows.nextSetBit(row + 1), target++) {
+            ids[target] = ids[row];
+            customerRefs[target] = customerRefs[row];
+            types[target] = types[row];
+            createdAt[target] = createdAt[row];
+            closedAt[target] = closedAt[row];
+            escalatedAt[target] = escalatedAt[row];
+            versions[target] = versions[row];
+            closedRows.set(target, closedRows.get(row));
+        }
+        rowCount = target;
+        liveRows.clear();
+        liveRows.set(0, rowCount);
+        closedRows.clear(rowCount, closedRows.length());
+        rowById.clear();
+        for (BitSet typeRows : rowsByType)
+            typeRows.clear();
+        for (int row = 0; row < rowCount; row++) {
+            rowById.put(ids[row], row);
+            rowsByType[types[row]].set(row);
+        }
+    }
+
+    private int customerRef(Long customerId, String name) {
+        int ref = customerRefById.get(customerId);
+        if (ref != LongIntHashMap.MISSING)
+            return ref;
+        ref = customerCount++;
+        if (customerCount > customers.length)
+            customers = Arrays.copyOf(customers, customers.length * 2);
+        customers[ref] = CustomerDTO.builder().id(customerId).name(name).build();
+        customerRefById.put(customerId, ref);
+        return ref;
+    }
+
+    private void ensureRowCapacity(int capacity) {
+        if (capacity <= ids.length)
+            return;
+        int newCapacity = Math.max(capacity, ids.length * 2);
+        ids = Arrays.copyOf(ids, newCapacity);
+        customerRefs = Arrays.copyOf(customerRefs, newCapacity);
+        types = Arrays.copyOf(types, newCapacity);
+        createdAt = Arrays.copyOf(createdAt, newCapacity);
+        closedAt = Arrays.copyOf(closedAt, newCapacity);
+        escalatedAt = Arrays.copyOf(escalatedAt, newCapacity);
+        versions = Arrays.copyOf(versions, newCapacity);
+    }
+
+    private static long toMicros(Instant instant) {
+        return instant == null ? NO_TIMESTAMP : ChronoUnit.MICROS.between(Instant.EPOCH, instant);
+    }
+
+    private static Instant fromMicros(long micros) {
+        return micros == NO_TIMESTAMP ? null : Instant.EPOCH.plus(micros, ChronoUnit.MICROS);
+    }
+
+    private void clear() {
+        rowCount = 0;
+        liveRows.clear();
+        closedRows.clear();
+        for (BitSet typeRows : rowsByType)
+            typeRows.clear();
+        rowById.clear();
+        removedVersions.clear();
+        customerCount = 0;
+        Arrays.fill(customers, null);
+        customerRefById.clear();
+    }
+}
@@ -0,0 +1,26 @@
+package dio.serviceorder.replica;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Sends read-only transactions to the replica and everything else to the primary.
+ *
+ * <p>The read-only flag is only published once the transaction has begun, after the JPA transaction
+ * manager asked for a connection, so this data source must sit behind a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Target {
+        PRIMARY,
+        REPLICA
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly() && !ReplicaContext.isPinnedToPrimary())
+            return Target.REPLICA;
+        return Target.PRIMARY;
+    }
+}
@@ -0,0 +1,56 @@
+package dio.serviceorder.replica;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Read-your-writes stickiness: a write hands the client a short-lived cookie, and requests carrying it
+ * read from the primary until it expires, so they never see a replica that is behind their own write.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+    static final String COOKIE_NAME = "serviceorder-read-primary";
+
+    private final int windowSeconds;
+
+    public ReadYourWritesFilter(Duration readYourWritesWindow) {
+        this.windowSeconds = (int) Math.max(1, readYourWritesWindow.getSeconds());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        boolean write = !isReadMethod(request.getMethod());
+        if (write) {
+            Cookie cookie = new Cookie(COOKIE_NAME, "1");
+            cookie.setMaxAge(windowSeconds);
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            response.addCookie(cookie);
+        }
+        if (write || hasCookie(request))
+            ReplicaContext.pinToPrimary();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReplicaContext.clear();
+        }
+    }
+
+    private static boolean isReadMethod(String method) {
+        return HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method) || HttpMethod.OPTIONS.matches(method);
+    }
+
+    private static boolean hasCookie(HttpServletRequest request) {
+        return request.getCookies() != null
+                && Arrays.stream(request.getCookies()).anyMatch(cookie -> COOKIE_NAME.equals(cookie.getName()));
+    }
+}
@@ -0,0 +1,21 @@
+package dio.serviceorder.replica;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Read replica of the primary database configured by the usual {@code spring.datasource} properties.
+ */
+@Data
+@ConfigurationProperties(prefix = "serviceorder.replica")
+public class ReplicaProperties {
+    private boolean enabled = false;
+    private String url;
+    private String username = "sa";
+    private String password = "";
+
+    /** How long a client keeps reading from the primary after a write, to see its own changes. */
+    private Duration readYourWritesWindow = Duration.ofSeconds(5);
+}
@@ -0,0 +1,29 @@
+package dio.serviceorder.repository;
+
+import dio.serviceorder.enums.ServiceType;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Aging: finds open service orders older than their type allows, one id range at a time, and escalates
+ * or closes them with statements that check they still qualify.
+ */
+public interface AgingRepository {
+
+    /**
+     * Ids in {@code (afterId, toId]} of open service orders of the type created before
+     * {@code createdBefore}, the not yet escalated ones only when {@code notEscalated}, in id order.
+     */
+    List<Long> findAged(ServiceType type, Instant createdBefore, boolean notEscalated, long afterId, long toId, int limit);
+
+    /**
+     * Escalates the given orders that are still open and not escalated, and returns their ids.
+     */
+    List<Long> escalateAged(List<Long> ids, Instant escalatedAt);
+
+    /**
+     * Closes the given orders that are still open, releasing their claims, and returns their ids.
+     */
+    List<Long> closeAged(List<Long> ids, Instant closedAt);
+}
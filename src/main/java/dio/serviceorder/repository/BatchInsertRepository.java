@@ -0,0 +1,19 @@
+package dio.serviceorder.repository;
+
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * JDBC batch inserts for bulk loads. Hibernate cannot batch inserts of entities with identity ids, so
+ * these go around it and read the generated ids back from the batch.
+ */
+public interface BatchInsertRepository<T> {
+
+    /**
+     * Inserts every entity in a single JDBC batch and sets their generated ids. All or nothing, so a
+     * failed batch can be retried row by row.
+     */
+    @Transactional
+    List<T> insertAll(List<T> entities);
+}
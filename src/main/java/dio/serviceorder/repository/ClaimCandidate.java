@@ -0,0 +1,24 @@
+package dio.serviceorder.repository;
+
+import java.time.Instant;
+
+/**
+ * Id and creation time of a claimable service order, enough to merge the candidates of every shard by age.
+ */
+public final class ClaimCandidate {
+    private final Long id;
+    private final Instant createdAt;
+
+    public ClaimCandidate(Long id, Instant createdAt) {
+        this.id = id;
+        this.createdAt = createdAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -0,0 +1,26 @@
+package dio.serviceorder.repository;
+
+import dio.serviceorder.enums.ServiceType;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Work claiming: hands open service orders to one assignee at a time without holding locks while the
+ * next ones are looked for.
+ */
+public interface ClaimRepository {
+
+    /**
+     * Up to {@code limit} of the oldest open service orders, of the given type when not null, that are
+     * unassigned or whose lease expired by {@code now}, oldest first.
+     */
+    List<ClaimCandidate> findClaimable(ServiceType type, Instant now, int limit);
+
+    /**
+     * Assigns the given service orders that are still claimable by {@code now} and returns their ids.
+     * Every order is claimed by a single statement checking it is still claimable, so concurrent claims
+     * never get the same order; orders taken by another claim in the meantime are skipped.
+     */
+    List<Long> claimAll(List<Long> ids, String assignee, Instant now, Instant leaseExpiresAt);
+}
@@ -2,7 +2,12 @@ package dio.serviceorder.repository;
 
 import dio.serviceorder.model.Customer;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
-public interface CustomerRepository extends JpaRepository<Customer, Long> {
+import java.util.List;
 
+public interface CustomerRepository extends JpaRepository<Customer, Long>, BatchInsertRepository<Customer> {
+
+    @Query("select c.id from Customer c")
+    List<Long> findAllIds();
 }
@@ -0,0 +1,40 @@
+package dio.serviceorder.repository;
+
+import dio.serviceorder.model.Customer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+
+class CustomerRepositoryImpl implements BatchInsertRepository<Customer> {
+    private static final String INSERT = "insert into tb_customer (name, version) values (?, 0)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<Customer> insertAll(List<Customer> customers) {
+        if (customers.isEmpty())
+            return customers;
+        return jdbcTemplate.execute((ConnectionCallback<List<Customer>>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT, new String[]{"id"})) {
+                for (Customer customer : customers) {
+                    statement.setString(1, customer.getName());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    for (Customer customer : customers) {
+                        if (!keys.next())
+                            throw new IllegalStateException("The driver returned fewer generated ids than inserted rows");
+                        customer.setId(keys.getLong(1));
+                    }
+                }
+            }
+            return customers;
+        });
+    }
+}
@@ -0,0 +1,24 @@
+package dio.serviceorder.repository;
+
+import org.springframework.data.jpa.repository.QueryHints;
+
+import javax.persistence.QueryHint;
+import java.lang.annotation.*;
+
+import static org.hibernate.jpa.QueryHints.HINT_FLUSH_MODE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+/**
+ * Loads the entities of a repository query read-only: Hibernate keeps no snapshot of their state for
+ * dirty checking and does not flush the session before running the query. For queries whose results are
+ * only mapped to DTOs, including those run on shard query threads outside the caller's transaction.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@QueryHints({
+        @QueryHint(name = HINT_READONLY, value = "true"),
+        @QueryHint(name = HINT_FLUSH_MODE, value = "MANUAL")
+})
+public @interface ReadOnlyQuery {
+}
@@ -0,0 +1,13 @@
+package dio.serviceorder.repository;
+
+import dio.serviceorder.enums.ServiceType;
+
+/**
+ * Row of the service order count grouped by customer, type and closed status.
+ */
+public interface ServiceOrderCountRow {
+    Long getCustomerId();
+    ServiceType getType();
+    Boolean getClosed();
+    long getTotal();
+}
@@ -3,13 +3,87 @@ package dio.serviceorder.repository;
 import dio.serviceorder.enums.ServiceType;
 import dio.serviceorder.model.Customer;
 import dio.serviceorder.model.ServiceOrder;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
-public interface ServiceOrderRepository extends JpaRepository<ServiceOrder, Long> {
+public interface ServiceOrderRepository extends JpaRepository<ServiceOrder, Long>, BatchInsertRepository<ServiceOrder>, ClaimRepository,
+        AgingRepository {
 
+    // List queries fetch the customers in the same statement instead of one select per customer, and only
+    // feed DTOs, so their entities are loaded read-only.
+    @Override
+    @ReadOnlyQuery
+    @EntityGraph(attributePaths = "customer")
+    List<ServiceOrder> findAll();
+
+    @ReadOnlyQuery
+    @EntityGraph(attributePaths = "customer")
     List<ServiceOrder> findByClosed(Boolean closed);
+
+    @ReadOnlyQuery
     List<ServiceOrder> findByCustomer(Customer customer);
+
+    @ReadOnlyQuery
+    @EntityGraph(attributePaths = "customer")
     List<ServiceOrder> findByType(ServiceType type);
+
+    @ReadOnlyQuery
+    @EntityGraph(attributePaths = "customer")
+    List<ServiceOrder> findByIdGreaterThan(Long id);
+
+    boolean existsByCustomerId(Long customerId);
+
+    long countByClosed(Boolean closed);
+    long countByType(ServiceType type);
+    long countByClosedAndType(Boolean closed, ServiceType type);
+
+    // Fetches the customers in the same statement instead of one select per customer.
+    @ReadOnlyQuery
+    @Query("select s from ServiceOrder s left join fetch s.customer where s.id in :ids")
+    List<ServiceOrder> findByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select s.id from ServiceOrder s")
+    List<Long> findAllIds();
+
+    @Query("select s.id as id, s.version as version from ServiceOrder s")
+    List<ServiceOrderVersionRow> findAllVersions();
+
+    @Query("select c.id as customerId, s.type as type, s.closed as closed, count(s) as total " +
+            "from ServiceOrder s left join s.customer c group by c.id, s.type, s.closed")
+    List<ServiceOrderCountRow> countByCustomerTypeAndClosed();
+
+    // Keyset page over the (createdAt, id) index: rows created in [from, to) that sort after the cursor.
+    @ReadOnlyQuery
+    @EntityGraph(attributePaths = "customer")
+    @Query("select s from ServiceOrder s where s.createdAt >= :from and s.createdAt < :to " +
+            "and (s.createdAt > :afterCreatedAt or (s.createdAt = :afterCreatedAt and s.id > :afterId)) " +
+            "order by s.createdAt, s.id")
+    List<ServiceOrder> findCreatedBetween(@Param("from") Instant from, @Param("to") Instant to,
+                                          @Param("afterCreatedAt") Instant afterCreatedAt, @Param("afterId") Long afterId,
+                                          Pageable page);
+
+    @Query("select min(s.id) from ServiceOrder s")
+    Long findMinId();
+
+    @Query("select max(s.id) from ServiceOrder s")
+    Long findMaxId();
+
+    @Query("select s.createdAt from ServiceOrder s where s.closed = false")
+    List<Instant> findOpenCreatedAts();
+
+    // Unassigns open orders whose lease expired, so the table stops naming assignees whose lease is over.
+    // Claims do not wait for it: they already take orders whose lease expired. Versioned like a claim.
+    @Transactional
+    @Modifying
+    @Query("update versioned ServiceOrder s set s.assignee = null, s.leaseExpiresAt = null where s.leaseExpiresAt <= :now and s.closed = false")
+    int releaseExpiredLeases(@Param("now") Instant now);
 }
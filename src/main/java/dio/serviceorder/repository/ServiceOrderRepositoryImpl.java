@@ -0,0 +1,139 @@
+package dio.serviceorder.repository;
+
+import dio.serviceorder.enums.ServiceType;
+import dio.serviceorder.model.ServiceOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+class ServiceOrderRepositoryImpl implements BatchInsertRepository<ServiceOrder>, ClaimRepository, AgingRepository {
+    private static final String INSERT = "insert into tb_service_order (closed, type, customer_id, created_at, closed_at, version) " +
+            "values (?, ?, ?, ?, ?, 0)";
+    private static final String CLAIMABLE = "select id, created_at from tb_service_order " +
+            "where closed = false and (assignee is null or lease_expires_at <= ?) " +
+            "order by created_at, id limit ?";
+    private static final String CLAIMABLE_OF_TYPE = "select id, created_at from tb_service_order " +
+            "where closed = false and (assignee is null or lease_expires_at <= ?) and type = ? " +
+            "order by created_at, id limit ?";
+    // Rows locked by a concurrent claim are waited for, then skipped when that claim took them. The version
+    // is bumped so an update based on the unclaimed state fails instead of dropping the assignee.
+    private static final String CLAIM = "update tb_service_order set assignee = ?, lease_expires_at = ?, version = version + 1 " +
+            "where id = ? and closed = false and (assignee is null or lease_expires_at <= ?)";
+    // Primary key range scan, the other conditions filter the rows of the range.
+    private static final String AGED = "select id from tb_service_order " +
+            "where id > ? and id <= ? and type = ? and closed = false and created_at < ? order by id limit ?";
+    private static final String AGED_NOT_ESCALATED = "select id from tb_service_order " +
+            "where id > ? and id <= ? and type = ? and closed = false and created_at < ? and escalated_at is null order by id limit ?";
+    // Both bump the version like any other write, so clients holding the previous state get a version
+    // mismatch and restored read models reload the row.
+    private static final String ESCALATE = "update tb_service_order set escalated_at = ?, version = version + 1 " +
+            "where id = ? and closed = false and escalated_at is null";
+    private static final String CLOSE = "update tb_service_order set closed = true, closed_at = ?, assignee = null, " +
+            "lease_expires_at = null, version = version + 1 where id = ? and closed = false";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<ServiceOrder> insertAll(List<ServiceOrder> serviceOrders) {
+        if (serviceOrders.isEmpty())
+            return serviceOrders;
+        return jdbcTemplate.execute((ConnectionCallback<List<ServiceOrder>>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT, new String[]{"id"})) {
+                for (ServiceOrder serviceOrder : serviceOrders) {
+                    statement.setBoolean(1, serviceOrder.getClosed());
+                    statement.setString(2, serviceOrder.getType().name());
+                    statement.setLong(3, serviceOrder.getCustomer().getId());
+                    statement.setTimestamp(4, Timestamp.from(serviceOrder.getCreatedAt()));
+                    if (serviceOrder.getClosedAt() != null)
+                        statement.setTimestamp(5, Timestamp.from(serviceOrder.getClosedAt()));
+                    else
+                        statement.setNull(5, Types.TIMESTAMP);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    for (ServiceOrder serviceOrder : serviceOrders) {
+                        if (!keys.next())
+                            throw new IllegalStateException("The driver returned fewer generated ids than inserted rows");
+                        serviceOrder.setId(keys.getLong(1));
+                    }
+                }
+            }
+            return serviceOrders;
+        });
+    }
+
+    @Override
+    public List<ClaimCandidate> findClaimable(ServiceType type, Instant now, int limit) {
+        RowMapper<ClaimCandidate> candidate = (rs, rowNum) -> new ClaimCandidate(rs.getLong(1), rs.getTimestamp(2).toInstant());
+        return type == null
+                ? jdbcTemplate.query(CLAIMABLE, candidate, Timestamp.from(now), limit)
+                : jdbcTemplate.query(CLAIMABLE_OF_TYPE, candidate, Timestamp.from(now), type.name(), limit);
+    }
+
+    @Override
+    public List<Long> claimAll(List<Long> ids, String assignee, Instant now, Instant leaseExpiresAt) {
+        if (ids.isEmpty())
+            return Collections.emptyList();
+        Timestamp nowTimestamp = Timestamp.from(now);
+        Timestamp leaseExpiresAtTimestamp = Timestamp.from(leaseExpiresAt);
+        List<Long> chosen = new ArrayList<>(ids);
+        // Locked in id order, so two claims never wait for each other in a cycle.
+        Collections.sort(chosen);
+        int[][] counts = jdbcTemplate.batchUpdate(CLAIM, chosen, chosen.size(), (statement, id) -> {
+            statement.setString(1, assignee);
+            statement.setTimestamp(2, leaseExpiresAtTimestamp);
+            statement.setLong(3, id);
+            statement.setTimestamp(4, nowTimestamp);
+        });
+        List<Long> claimed = new ArrayList<>(chosen.size());
+        for (int i = 0; i < chosen.size(); i++) {
+            if (counts[0][i] > 0)
+                claimed.add(chosen.get(i));
+        }
+        return claimed;
+    }
+
+    @Override
+    public List<Long> findAged(ServiceType type, Instant createdBefore, boolean notEscalated, long afterId, long toId, int limit) {
+        return jdbcTemplate.queryForList(notEscalated ? AGED_NOT_ESCALATED : AGED, Long.class,
+                afterId, toId, type.name(), Timestamp.from(createdBefore), limit);
+    }
+
+    @Override
+    public List<Long> escalateAged(List<Long> ids, Instant escalatedAt) {
+        return updateEach(ESCALATE, ids, Timestamp.from(escalatedAt));
+    }
+
+    @Override
+    public List<Long> closeAged(List<Long> ids, Instant closedAt) {
+        return updateEach(CLOSE, ids, Timestamp.from(closedAt));
+    }
+
+    // Runs the update, taking a timestamp and an id, for every id and returns the ids of the updated rows.
+    private List<Long> updateEach(String update, List<Long> ids, Timestamp timestamp) {
+        if (ids.isEmpty())
+            return ids;
+        int[][] counts = jdbcTemplate.batchUpdate(update, ids, ids.size(), (statement, id) -> {
+            statement.setTimestamp(1, timestamp);
+            statement.setLong(2, id);
+        });
+        List<Long> updated = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            if (counts[0][i] > 0)
+                updated.add(ids.get(i));
+        }
+        return updated;
+    }
+}
@@ -0,0 +1,9 @@
+package dio.serviceorder.repository;
+
+/**
+ * Id and version of a stored service order, enough to tell whether a cached copy is current.
+ */
+public interface ServiceOrderVersionRow {
+    Long getId();
+    long getVersion();
+}
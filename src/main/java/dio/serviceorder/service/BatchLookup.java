@@ -0,0 +1,55 @@
+package dio.serviceorder.service;
+
+import dio.serviceorder.dto.BatchDTO;
+import dio.serviceorder.exception.BatchTooLargeException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Resolves a list of ids with as few IN queries as possible, keeping the requested order and reporting
+ * the ids that were not found.
+ */
+final class BatchLookup {
+    static final int MAX_IDS = 1000;
+    // Stays well below the IN list limits of common databases and keeps statement caching effective.
+    static final int CHUNK_SIZE = 250;
+
+    private BatchLookup() {
+    }
+
+    static <T> BatchDTO<T> lookup(List<Long> ids, Predicate<Long> mightExist,
+                                  Function<List<Long>, List<T>> query, Function<T, Long> idOf) throws BatchTooLargeException {
+        LinkedHashSet<Long> requested = new LinkedHashSet<>(ids);
+        requested.remove(null);
+        if (requested.size() > MAX_IDS)
+            throw new BatchTooLargeException(requested.size(), MAX_IDS);
+
+        List<Long> candidates = new ArrayList<>(requested.size());
+        for (Long id : requested) {
+            if (mightExist.test(id))
+                candidates.add(id);
+        }
+        Map<Long, T> found = new HashMap<>();
+        for (int start = 0; start < candidates.size(); start += CHUNK_SIZE) {
+            for (T item : query.apply(candidates.subList(start, Math.min(start + CHUNK_SIZE, candidates.size()))))
+                found.put(idOf.apply(item), item);
+        }
+
+        List<T> items = new ArrayList<>(found.size());
+        List<Long> missingIds = new ArrayList<>();
+        for (Long id : requested) {
+            T item = found.get(id);
+            if (item != null)
+                items.add(item);
+            else
+                missingIds.add(id);
+        }
+        return new BatchDTO<>(items, missingIds);
+    }
+}
@@ -1,13 +1,38 @@
 package dio.serviceorder.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import dio.serviceorder.bulkhead.Bulkhead;
+import dio.serviceorder.bulkhead.Workload;
+import dio.serviceorder.cache.IdBloomFilter;
+import dio.serviceorder.cache.ListResponseCache;
+import dio.serviceorder.changelog.ChangeLog;
+import dio.serviceorder.dto.BatchDTO;
 import dio.serviceorder.dto.CustomerDTO;
+import dio.serviceorder.enums.ChangedEntity;
+import dio.serviceorder.eventlog.EventLog;
+import dio.serviceorder.eventlog.LogEvent;
+import dio.serviceorder.exception.BatchTooLargeException;
 import dio.serviceorder.exception.CustomerAlreadyExistsException;
+import dio.serviceorder.exception.CustomerHasServiceOrdersException;
 import dio.serviceorder.exception.CustomerNotFoundException;
+import dio.serviceorder.exception.CustomerVersionMismatchException;
+import dio.serviceorder.exception.InvalidPatchException;
+import dio.serviceorder.jfr.CacheOutcome;
+import dio.serviceorder.jfr.ServiceOperations;
 import dio.serviceorder.mapper.CustomerMapper;
 import dio.serviceorder.model.Customer;
+import dio.serviceorder.patch.JsonMergePatch;
+import dio.serviceorder.readmodel.ServiceOrderReadModel;
 import dio.serviceorder.repository.CustomerRepository;
+import dio.serviceorder.repository.ServiceOrderRepository;
+import dio.serviceorder.shard.ShardRouter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -18,16 +43,68 @@ public class CustomerService {
     @Autowired
     private CustomerRepository customerRepository;
 
+    @Autowired
+    private ServiceOrderRepository serviceOrderRepository;
+
+    @Autowired
+    private IdBloomFilter customerIdFilter;
+
+    @Autowired
+    private ServiceOrderReadModel serviceOrderReadModel;
+
+    @Autowired
+    private ListResponseCache listResponseCache;
+
+    @Autowired
+    private ChangeLog changeLog;
+
+    @Autowired
+    private EventLog eventLog;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private JsonMergePatch jsonMergePatch;
+
     private final CustomerMapper customerMapper = CustomerMapper.INSTANCE;
 
+    @Bulkhead(Workload.INTERACTIVE)
     public CustomerDTO createCustomer(CustomerDTO customerDTO) throws CustomerAlreadyExistsException {
         Customer customer = customerMapper.toModel(customerDTO);
         if (customerDTO.getId() != null && checkIfCustomerExists(customer.getId()))
             throw new CustomerAlreadyExistsException(customer.getId());
-        Customer savedCustomer = customerRepository.save(customer);
-        return customerMapper.toDTO(savedCustomer);
+        Customer savedCustomer = changeLog.write(ChangedEntity.CUSTOMER, () -> customerRepository.save(customer), Customer::getId);
+        customerIdFilter.add(savedCustomer.getId());
+        CustomerDTO savedCustomerDTO = customerMapper.toDTO(savedCustomer);
+        shardRouter.replicateCustomer(savedCustomerDTO, null);
+        eventLog.append(LogEvent.customer(LogEvent.EventAction.CREATED, savedCustomerDTO));
+        return savedCustomerDTO;
     }
 
+    /**
+     * Inserts new customers with a single JDBC batch, for bulk imports.
+     */
+    @Bulkhead(Workload.BULK)
+    public List<CustomerDTO> importBatch(List<CustomerDTO> customerDTOs) {
+        List<Customer> customers = customerDTOs.stream()
+                .map(customerMapper::toModel)
+                .peek(customer -> customer.setId(null))
+                .collect(Collectors.toList());
+        List<CustomerDTO> savedCustomerDTOs = changeLog.writeAll(ChangedEntity.CUSTOMER, () -> customerRepository.insertAll(customers), Customer::getId)
+                .stream()
+                .map(customerMapper::toDTO)
+                .collect(Collectors.toList());
+        savedCustomerDTOs.forEach(customerDTO -> customerIdFilter.add(customerDTO.getId()));
+        shardRouter.replicateCustomers(savedCustomerDTOs);
+        eventLog.appendAll(savedCustomerDTOs.stream()
+                .map(customerDTO -> LogEvent.customer(LogEvent.EventAction.CREATED, customerDTO))
+                .collect(Collectors.toList()));
+        return savedCustomerDTOs;
+    }
+
+    @Transactional(readOnly = true)
+    @Bulkhead(Workload.LIST)
     public List<CustomerDTO> listAll(){
         return customerRepository.findAll()
                 .stream()
@@ -35,28 +112,121 @@ public class CustomerService {
                 .collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
+    @Bulkhead(Workload.INTERACTIVE)
     public CustomerDTO findById(Long id) throws CustomerNotFoundException {
+        if (!customerIdFilter.mightContain(id)) {
+            ServiceOperations.cache(CacheOutcome.FILTERED);
+            throw new CustomerNotFoundException(id);
+        }
+        ServiceOperations.cache(CacheOutcome.MISS);
         Customer foundCustomer = customerRepository.findById(id)
                 .orElseThrow(() -> new CustomerNotFoundException(id));
         return customerMapper.toDTO(foundCustomer);
     }
 
-    public void deleteById(Long id) throws CustomerNotFoundException {
-        if (!checkIfCustomerExists(id))
-            throw new CustomerNotFoundException(id);
-        customerRepository.deleteById(id);
+    /**
+     * Customers with the given ids, in request order, looked up with chunked IN queries.
+     */
+    @Transactional(readOnly = true)
+    @Bulkhead(Workload.LIST)
+    public BatchDTO<CustomerDTO> findByIds(List<Long> ids) throws BatchTooLargeException {
+        return BatchLookup.lookup(ids, customerIdFilter::mightContain,
+                chunk -> customerRepository.findAllById(chunk)
+                        .stream()
+                        .map(customerMapper::toDTO)
+                        .collect(Collectors.toList()),
+                CustomerDTO::getId);
     }
 
-    public CustomerDTO update(CustomerDTO customerDTO) throws CustomerNotFoundException {
-        if (!checkIfCustomerExists(customerDTO.getId()))
-            throw new CustomerNotFoundException(customerDTO.getId());
-        Customer customer = customerMapper.toModel(customerDTO);
-        Customer savedCustomer = customerRepository.save(customer);
-        return customerMapper.toDTO(savedCustomer);
+    /**
+     * Deletes a customer from every shard, failing while service orders still reference it.
+     */
+    @Bulkhead(Workload.INTERACTIVE)
+    public void deleteById(Long id) throws CustomerNotFoundException, CustomerHasServiceOrdersException {
+        Customer customer = findExisting(id).orElseThrow(() -> new CustomerNotFoundException(id));
+        if (shardRouter.onCustomerShard(id, () -> serviceOrderRepository.existsByCustomerId(id)))
+            throw new CustomerHasServiceOrdersException(id);
+        try {
+            // An order created meanwhile makes its foreign key refuse the delete, which is then undone.
+            shardRouter.deleteCustomer(customerMapper.toDTO(customer),
+                    () -> changeLog.delete(ChangedEntity.CUSTOMER, id, () -> customerRepository.deleteById(id)));
+        } catch (DataIntegrityViolationException e) {
+            throw new CustomerHasServiceOrdersException(id);
+        }
+        eventLog.append(LogEvent.customerDeleted(id, customer.getVersion()));
+    }
+
+    /**
+     * Replaces the state of a customer, failing when {@code expectedVersion} is set and no longer current.
+     */
+    @Bulkhead(Workload.INTERACTIVE)
+    public CustomerDTO update(CustomerDTO customerDTO, Long expectedVersion) throws CustomerNotFoundException, CustomerVersionMismatchException {
+        Customer customer = findExisting(customerDTO.getId())
+                .orElseThrow(() -> new CustomerNotFoundException(customerDTO.getId()));
+        return apply(customer, customerDTO, expectedVersion);
+    }
+
+    /**
+     * Applies a JSON merge patch to a customer, failing when {@code expectedVersion} is set and no longer
+     * current.
+     */
+    @Bulkhead(Workload.INTERACTIVE)
+    public CustomerDTO patch(Long id, JsonNode mergePatch, Long expectedVersion) throws CustomerNotFoundException, CustomerVersionMismatchException, InvalidPatchException {
+        Customer customer = findExisting(id).orElseThrow(() -> new CustomerNotFoundException(id));
+        CustomerDTO patchedCustomerDTO = jsonMergePatch.apply(customerMapper.toDTO(customer), mergePatch);
+        patchedCustomerDTO.setId(id);
+        return apply(customer, patchedCustomerDTO, expectedVersion);
+    }
+
+    private CustomerDTO apply(Customer customer, CustomerDTO customerDTO, Long expectedVersion) throws CustomerVersionMismatchException {
+        if (expectedVersion != null && expectedVersion != customer.getVersion())
+            throw new CustomerVersionMismatchException(customer.getId());
+        CustomerDTO previousCustomerDTO = customerMapper.toDTO(customer);
+        customer.setName(customerDTO.getName());
+        Customer savedCustomer;
+        try {
+            // Merging the loaded entity checks its version and updates the changed columns only.
+            savedCustomer = changeLog.write(ChangedEntity.CUSTOMER, () -> customerRepository.save(customer), Customer::getId);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            throw new CustomerVersionMismatchException(customer.getId());
+        }
+        CustomerDTO savedCustomerDTO = customerMapper.toDTO(savedCustomer);
+        shardRouter.replicateCustomer(savedCustomerDTO, previousCustomerDTO);
+        serviceOrderReadModel.updateCustomer(savedCustomerDTO);
+        listResponseCache.invalidate();
+        eventLog.append(LogEvent.customer(LogEvent.EventAction.UPDATED, savedCustomerDTO));
+        return savedCustomerDTO;
+    }
+
+    /**
+     * Reloads the given customers into the local caches after other instances changed them.
+     */
+    @Bulkhead(Workload.BULK)
+    public void refresh(List<Long> ids) {
+        for (Customer customer : customerRepository.findAllById(ids)) {
+            CustomerDTO customerDTO = customerMapper.toDTO(customer);
+            customerIdFilter.add(customerDTO.getId());
+            serviceOrderReadModel.updateCustomer(customerDTO);
+        }
+        listResponseCache.invalidate();
     }
 
+    @EventListener(ApplicationReadyEvent.class)
+    @Bulkhead(Workload.BULK)
+    public void rebuildIdFilter() {
+        customerIdFilter.beginRebuild();
+        customerIdFilter.finishRebuild(customerRepository.findAllIds());
+    }
+
+    @Bulkhead(Workload.INTERACTIVE)
     public boolean checkIfCustomerExists(Long id){
-        Optional<Customer> customerOptional = customerRepository.findById(id);
-        return customerOptional.isPresent();
+        return findExisting(id).isPresent();
+    }
+
+    private Optional<Customer> findExisting(Long id){
+        if (!customerIdFilter.mightContain(id))
+            return Optional.empty();
+        return customerRepository.findById(id);
     }
 }
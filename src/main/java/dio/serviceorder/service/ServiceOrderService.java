@@ -1,20 +1,75 @@
 package dio.serviceorder.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import dio.serviceorder.bulkhead.Bulkhead;
+import dio.serviceorder.bulkhead.Workload;
+import dio.serviceorder.cache.IdBloomFilter;
+import dio.serviceorder.cache.ListResponseCache;
+import dio.serviceorder.cache.ServiceOrderReadCoalescer;
+import dio.serviceorder.changelog.ChangeLog;
+import dio.serviceorder.dto.BatchDTO;
 import dio.serviceorder.dto.CustomerDTO;
+import dio.serviceorder.dto.ServiceOrderClaimDTO;
 import dio.serviceorder.dto.ServiceOrderDTO;
+import dio.serviceorder.dto.ServiceOrderPageDTO;
+import dio.serviceorder.dto.ServiceOrderStatsDTO;
+import dio.serviceorder.enums.ChangedEntity;
 import dio.serviceorder.enums.ServiceType;
+import dio.serviceorder.eventlog.EventLog;
+import dio.serviceorder.eventlog.LogEvent;
+import dio.serviceorder.exception.BatchTooLargeException;
+import dio.serviceorder.exception.InvalidCursorException;
+import dio.serviceorder.exception.InvalidPatchException;
 import dio.serviceorder.exception.ServiceOrderAlreadyExistsException;
 import dio.serviceorder.exception.ServiceOrderNotFoundException;
+import dio.serviceorder.exception.ServiceOrderShardMoveException;
+import dio.serviceorder.exception.ServiceOrderVersionMismatchException;
+import dio.serviceorder.jfr.CacheOutcome;
+import dio.serviceorder.jfr.ServiceOperations;
 import dio.serviceorder.mapper.CustomerMapper;
 import dio.serviceorder.mapper.ServiceOrderMapper;
 import dio.serviceorder.model.Customer;
 import dio.serviceorder.model.ServiceOrder;
+import dio.serviceorder.patch.JsonMergePatch;
+import dio.serviceorder.readmodel.ReadModelSnapshot;
+import dio.serviceorder.readmodel.ServiceOrderReadModel;
+import dio.serviceorder.repository.ClaimCandidate;
+import dio.serviceorder.repository.CustomerRepository;
 import dio.serviceorder.repository.ServiceOrderRepository;
+import dio.serviceorder.repository.ServiceOrderVersionRow;
+import dio.serviceorder.shard.ShardRouter;
+import dio.serviceorder.snapshot.ReadModelSnapshots;
+import dio.serviceorder.stats.ServiceOrderStats;
+import dio.serviceorder.stats.ServiceOrderTimeline;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -22,69 +77,597 @@ public class ServiceOrderService {
     @Autowired
     ServiceOrderRepository serviceOrderRepository;
 
+    @Autowired
+    CustomerRepository customerRepository;
+
+    @Autowired
+    ServiceOrderReadCoalescer readCoalescer;
+
+    @Autowired
+    ListResponseCache listResponseCache;
+
+    @Autowired
+    ChangeLog changeLog;
+
+    @Autowired
+    IdBloomFilter serviceOrderIdFilter;
+
+    @Autowired
+    ServiceOrderReadModel readModel;
+
+    @Autowired
+    ReadModelSnapshots readModelSnapshots;
+
+    @Autowired
+    EventLog eventLog;
+
+    @Autowired
+    ShardRouter shardRouter;
+
+    @Autowired
+    ServiceOrderStats serviceOrderStats;
+
+    @Autowired
+    ServiceOrderTimeline serviceOrderTimeline;
+
+    @Autowired
+    Clock clock;
+
+    @Autowired
+    JsonMergePatch jsonMergePatch;
+
+    @Value("${serviceorder.claim.lease-duration:PT15M}")
+    Duration leaseDuration;
+
+    private static final Comparator<ServiceOrderDTO> BY_ID = Comparator.comparing(ServiceOrderDTO::getId);
+    private static final Comparator<ServiceOrder> BY_ENTITY_ID = Comparator.comparing(ServiceOrder::getId);
+    private static final Comparator<ServiceOrder> BY_CREATED_AT = Comparator.comparing(ServiceOrder::getCreatedAt)
+            .thenComparing(ServiceOrder::getId);
+    private static final Comparator<ServiceOrderDTO> BY_CREATED_AT_DTO = Comparator.comparing(ServiceOrderDTO::getCreatedAt)
+            .thenComparing(ServiceOrderDTO::getId);
+    // Upper bound of open-ended time-range queries, far enough to cover every stored timestamp.
+    private static final Instant END_OF_TIME = Instant.parse("9999-12-31T00:00:00Z");
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_CLAIM_SIZE = 100;
+    // Candidates looked at per order to claim. Concurrent claims pick different random orders among
+    // the oldest ones, so they rarely wait for each other.
+    private static final int CANDIDATES_PER_CLAIM = 4;
+    private static final int MAX_CLAIM_ROUNDS = 4;
+    private static final Comparator<ClaimCandidate> BY_CREATED_AT_CANDIDATE = Comparator.comparing(ClaimCandidate::getCreatedAt)
+            .thenComparing(ClaimCandidate::getId);
+    private static final int RECONCILE_CHUNK_SIZE = 1000;
+
     ServiceOrderMapper serviceOrderMapper = ServiceOrderMapper.INSTANCE;
     CustomerMapper customerMapper = CustomerMapper.INSTANCE;
 
+    @Bulkhead(Workload.INTERACTIVE)
     public ServiceOrderDTO create(ServiceOrderDTO serviceOrderDTO) throws ServiceOrderAlreadyExistsException {
         ServiceOrder serviceOrder = serviceOrderMapper.toModel(serviceOrderDTO);
         if (serviceOrderDTO.getId() != null && checkIfServiceOrderExists(serviceOrderDTO.getId()))
             throw new ServiceOrderAlreadyExistsException(serviceOrderDTO.getId());
-        ServiceOrder savedServiceOrder = serviceOrderRepository.save(serviceOrder);
-        return serviceOrderMapper.toDTO(savedServiceOrder);
+        Instant now = now();
+        serviceOrder.setCreatedAt(now);
+        serviceOrder.setClosedAt(Boolean.TRUE.equals(serviceOrder.getClosed()) ? now : null);
+        ServiceOrderDTO savedServiceOrderDTO;
+        long statsWrite = serviceOrderStats.beginWrite();
+        try {
+            ServiceOrder savedServiceOrder = shardRouter.onCustomerShard(customerId(serviceOrderDTO),
+                    () -> changeLog.write(ChangedEntity.SERVICE_ORDER, () -> serviceOrderRepository.save(serviceOrder), ServiceOrder::getId));
+            savedServiceOrderDTO = serviceOrderMapper.toDTO(savedServiceOrder);
+            serviceOrderStats.recordChange(null, savedServiceOrderDTO);
+        } finally {
+            serviceOrderStats.endWrite(statsWrite);
+        }
+        serviceOrderIdFilter.add(savedServiceOrderDTO.getId());
+        resolveCustomers(Collections.singletonList(savedServiceOrderDTO));
+        readModel.upsert(savedServiceOrderDTO);
+        listResponseCache.invalidate();
+        serviceOrderTimeline.recordChange(null, savedServiceOrderDTO);
+        eventLog.append(LogEvent.serviceOrder(LogEvent.EventAction.CREATED, savedServiceOrderDTO));
+        return savedServiceOrderDTO;
     }
 
+    /**
+     * Inserts new service orders with one JDBC batch per shard, for bulk imports. Timestamps the orders
+     * do not carry are set to now. All or nothing: when a shard fails, the orders already inserted on the
+     * other shards are deleted again and the failure is rethrown.
+     */
+    @Bulkhead(Workload.BULK)
+    public List<ServiceOrderDTO> importBatch(List<ServiceOrderDTO> serviceOrderDTOs) {
+        Instant now = now();
+        Map<Integer, List<ServiceOrder>> serviceOrdersByShard = new LinkedHashMap<>();
+        for (ServiceOrderDTO serviceOrderDTO : serviceOrderDTOs) {
+            ServiceOrder serviceOrder = serviceOrderMapper.toModel(serviceOrderDTO);
+            serviceOrder.setId(null);
+            serviceOrder.setCreatedAt(serviceOrder.getCreatedAt() != null ? serviceOrder.getCreatedAt().truncatedTo(ChronoUnit.MICROS) : now);
+            if (!Boolean.TRUE.equals(serviceOrder.getClosed()))
+                serviceOrder.setClosedAt(null);
+            else
+                serviceOrder.setClosedAt(serviceOrder.getClosedAt() != null ? serviceOrder.getClosedAt().truncatedTo(ChronoUnit.MICROS) : now);
+            serviceOrdersByShard.computeIfAbsent(shardRouter.shardOfCustomer(customerId(serviceOrderDTO)), shard -> new ArrayList<>())
+                    .add(serviceOrder);
+        }
+        List<ServiceOrderDTO> savedServiceOrderDTOs = new ArrayList<>(serviceOrderDTOs.size());
+        List<List<ServiceOrderDTO>> savedShards = new ArrayList<>(serviceOrdersByShard.size());
+        long statsWrite = serviceOrderStats.beginWrite();
+        try {
+            for (List<ServiceOrder> serviceOrders : serviceOrdersByShard.values()) {
+                List<ServiceOrderDTO> shardServiceOrderDTOs = serviceOrderMapper.toDTOs(shardRouter.onCustomerShard(serviceOrders.get(0).getCustomer().getId(),
+                        () -> changeLog.writeAll(ChangedEntity.SERVICE_ORDER, () -> serviceOrderRepository.insertAll(serviceOrders), ServiceOrder::getId)));
+                // Recorded per shard, so a later shard failing does not leave committed orders uncounted.
+                shardServiceOrderDTOs.forEach(savedServiceOrderDTO -> serviceOrderStats.recordChange(null, savedServiceOrderDTO));
+                savedShards.add(shardServiceOrderDTOs);
+                savedServiceOrderDTOs.addAll(shardServiceOrderDTOs);
+            }
+        } catch (RuntimeException e) {
+            undoImport(savedShards, e);
+            throw e;
+        } finally {
+            serviceOrderStats.endWrite(statsWrite);
+        }
+        resolveCustomers(savedServiceOrderDTOs);
+        List<LogEvent> events = new ArrayList<>(savedServiceOrderDTOs.size());
+        for (ServiceOrderDTO savedServiceOrderDTO : savedServiceOrderDTOs) {
+            serviceOrderIdFilter.add(savedServiceOrderDTO.getId());
+            serviceOrderTimeline.recordChange(null, savedServiceOrderDTO);
+            events.add(LogEvent.serviceOrder(LogEvent.EventAction.CREATED, savedServiceOrderDTO));
+        }
+        readModel.upsertAll(savedServiceOrderDTOs);
+        listResponseCache.invalidate();
+        eventLog.appendAll(events);
+        return savedServiceOrderDTOs;
+    }
+
+    /**
+     * Deletes the service orders a failed import inserted, recording failures on {@code failure}. They
+     * were never published, so only the change log and the stats saw them.
+     */
+    private void undoImport(List<List<ServiceOrderDTO>> savedShards, RuntimeException failure) {
+        for (List<ServiceOrderDTO> shardServiceOrderDTOs : savedShards) {
+            List<Long> ids = shardServiceOrderDTOs.stream()
+                    .map(ServiceOrderDTO::getId)
+                    .collect(Collectors.toList());
+            try {
+                shardRouter.onCustomerShard(customerId(shardServiceOrderDTOs.get(0)), () -> changeLog.writeAll(ChangedEntity.SERVICE_ORDER, () -> {
+                    serviceOrderRepository.deleteAllByIdInBatch(ids);
+                    return ids;
+                }, Function.identity()));
+                shardServiceOrderDTOs.forEach(savedServiceOrderDTO -> serviceOrderStats.recordChange(savedServiceOrderDTO, null));
+            } catch (RuntimeException undoFailure) {
+                failure.addSuppressed(undoFailure);
+            }
+        }
+    }
+
+    @Bulkhead(Workload.INTERACTIVE)
     public void deleteById(Long id) throws ServiceOrderNotFoundException {
-        if (!checkIfServiceOrderExists(id))
-            throw new ServiceOrderNotFoundException(id);
-        serviceOrderRepository.deleteById(id);
+        ServiceOrderDTO previousServiceOrderDTO = findExisting(id)
+                .map(serviceOrderMapper::toDTO)
+                .orElseThrow(() -> new ServiceOrderNotFoundException(id));
+        long statsWrite = serviceOrderStats.beginWrite();
+        try {
+            shardRouter.onServiceOrderShard(id, () -> {
+                changeLog.delete(ChangedEntity.SERVICE_ORDER, id, () -> serviceOrderRepository.deleteById(id));
+                return null;
+            });
+            serviceOrderStats.recordChange(previousServiceOrderDTO, null);
+        } finally {
+            serviceOrderStats.endWrite(statsWrite);
+        }
+        readModel.remove(id, previousServiceOrderDTO.getVersion());
+        listResponseCache.invalidate();
+        serviceOrderTimeline.recordChange(previousServiceOrderDTO, null);
+        eventLog.append(LogEvent.serviceOrderDeleted(id, previousServiceOrderDTO.getVersion()));
     }
 
-    public ServiceOrderDTO update(ServiceOrderDTO serviceOrderDTO) throws ServiceOrderNotFoundException {
-        if (!checkIfServiceOrderExists(serviceOrderDTO.getId()))
-            throw new ServiceOrderNotFoundException(serviceOrderDTO.getId());
-        ServiceOrder serviceOrder = serviceOrderMapper.toModel(serviceOrderDTO);
-        ServiceOrder savedServiceOrder = serviceOrderRepository.save(serviceOrder);
-        return serviceOrderMapper.toDTO(savedServiceOrder);
+    /**
+     * Replaces the state of a service order, failing when {@code expectedVersion} is set and no longer
+     * current. Only the columns whose value changes are written.
+     */
+    @Bulkhead(Workload.INTERACTIVE)
+    public ServiceOrderDTO update(ServiceOrderDTO serviceOrderDTO, Long expectedVersion) throws ServiceOrderNotFoundException, ServiceOrderShardMoveException, ServiceOrderVersionMismatchException {
+        Long id = serviceOrderDTO.getId();
+        ServiceOrder serviceOrder = findExisting(id).orElseThrow(() -> new ServiceOrderNotFoundException(id));
+        return apply(serviceOrder, serviceOrderDTO, expectedVersion);
+    }
+
+    /**
+     * Applies a JSON merge patch to a service order, failing when {@code expectedVersion} is set and no
+     * longer current.
+     */
+    @Bulkhead(Workload.INTERACTIVE)
+    public ServiceOrderDTO patch(Long id, JsonNode mergePatch, Long expectedVersion) throws ServiceOrderNotFoundException, ServiceOrderShardMoveException, ServiceOrderVersionMismatchException, InvalidPatchException {
+        ServiceOrder serviceOrder = findExisting(id).orElseThrow(() -> new ServiceOrderNotFoundException(id));
+        ServiceOrderDTO patchedServiceOrderDTO = jsonMergePatch.apply(serviceOrderMapper.toDTO(serviceOrder), mergePatch);
+        patchedServiceOrderDTO.setId(id);
+        return apply(serviceOrder, patchedServiceOrderDTO, expectedVersion);
     }
 
+    @Transactional(readOnly = true)
+    @Bulkhead(Workload.INTERACTIVE)
     public ServiceOrderDTO findById(Long id) throws ServiceOrderNotFoundException {
-        ServiceOrder foundServiceOrder = serviceOrderRepository.findById(id)
+        if (!serviceOrderIdFilter.mightContain(id)) {
+            ServiceOperations.cache(CacheOutcome.FILTERED);
+            throw new ServiceOrderNotFoundException(id);
+        }
+        ServiceOperations.cache(CacheOutcome.COALESCED);
+        return readCoalescer.findById(id, () -> {
+                    ServiceOperations.cache(CacheOutcome.MISS);
+                    return shardRouter.onServiceOrderShard(id, () -> serviceOrderRepository.findById(id).map(serviceOrderMapper::toDTO));
+                })
                 .orElseThrow(()-> new ServiceOrderNotFoundException(id));
-        return serviceOrderMapper.toDTO(foundServiceOrder);
     }
 
+    /**
+     * Service orders with the given ids, in request order, looked up with chunked IN queries.
+     */
+    @Transactional(readOnly = true)
+    @Bulkhead(Workload.LIST)
+    public BatchDTO<ServiceOrderDTO> findByIds(List<Long> ids) throws BatchTooLargeException {
+        return BatchLookup.lookup(ids, serviceOrderIdFilter::mightContain,
+                chunk -> shardRouter.forServiceOrderIds(chunk, shardIds -> serviceOrderMapper.toDTOs(serviceOrderRepository.findByIdIn(shardIds))),
+                ServiceOrderDTO::getId);
+    }
+
+    @Transactional(readOnly = true)
+    @Bulkhead(Workload.LIST)
     public List<ServiceOrderDTO> listAll(){
-        return serviceOrderRepository.findAll()
-                .stream()
-                .map(serviceOrderMapper::toDTO)
-                .collect(Collectors.toList());
+        return shardRouter.scatterGather(() -> serviceOrderMapper.toDTOs(serviceOrderRepository.findAll()), BY_ID);
     }
 
+    @Transactional(readOnly = true)
+    @Bulkhead(Workload.LIST)
     public List<ServiceOrderDTO> listAllWithClosedStatus(Boolean closedStatus){
-        return serviceOrderRepository.findByClosed(closedStatus)
-                .stream()
-                .map(serviceOrderMapper::toDTO)
-                .collect(Collectors.toList());
+        if (readModel.isReady()) {
+            ServiceOperations.cache(CacheOutcome.HIT);
+            return readModel.findByClosed(closedStatus);
+        }
+        ServiceOperations.cache(CacheOutcome.COALESCED);
+        return readCoalescer.listByClosedStatus(closedStatus, () -> {
+            ServiceOperations.cache(CacheOutcome.MISS);
+            return shardRouter.scatterGather(() -> serviceOrderMapper.toDTOs(serviceOrderRepository.findByClosed(closedStatus)), BY_ID);
+        });
     }
 
+    @Transactional(readOnly = true)
+    @Bulkhead(Workload.LIST)
     public List<ServiceOrderDTO> listAllOfCustomer(CustomerDTO customerDTO){
         Customer customer = customerMapper.toModel(customerDTO);
-        return serviceOrderRepository.findByCustomer(customer)
-                .stream()
-                .map(serviceOrderMapper::toDTO)
-                .collect(Collectors.toList());
+        return shardRouter.onCustomerShard(customer.getId(), () -> serviceOrderMapper.toDTOs(serviceOrderRepository.findByCustomer(customer)));
     }
 
+    @Transactional(readOnly = true)
+    @Bulkhead(Workload.LIST)
     public List<ServiceOrderDTO> listAllWithServiceType(ServiceType type){
-        return serviceOrderRepository.findByType(type)
-                .stream()
-                .map(serviceOrderMapper::toDTO)
-                .collect(Collectors.toList());
+        if (readModel.isReady()) {
+            ServiceOperations.cache(CacheOutcome.HIT);
+            return readModel.findByType(type);
+        }
+        ServiceOperations.cache(CacheOutcome.COALESCED);
+        return readCoalescer.listByType(type, () -> {
+            ServiceOperations.cache(CacheOutcome.MISS);
+            return shardRouter.scatterGather(() -> serviceOrderMapper.toDTOs(serviceOrderRepository.findByType(type)), BY_ID);
+        });
+    }
+
+    /**
+     * Service orders created in {@code [createdAfter, createdBefore)}, oldest first, one keyset page at a time.
+     */
+    @Transactional(readOnly = true)
+    @Bulkhead(Workload.LIST)
+    public ServiceOrderPageDTO listCreatedBetween(Instant createdAfter, Instant createdBefore, String cursor, int limit) throws InvalidCursorException {
+        Instant from = createdAfter != null ? createdAfter : Instant.EPOCH;
+        Instant to = createdBefore != null ? createdBefore : END_OF_TIME;
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        ServiceOrder after = cursor != null ? decodeCursor(cursor) : null;
+        Instant afterCreatedAt = after != null ? after.getCreatedAt() : from;
+        Long afterId = after != null ? after.getId() : 0L;
+
+        // Every shard returns its own first page plus one row telling whether more follow.
+        List<ServiceOrder> serviceOrders = shardRouter.scatterGather(() -> serviceOrderRepository.findCreatedBetween(
+                from, to, afterCreatedAt, afterId, PageRequest.of(0, pageSize + 1)), BY_CREATED_AT);
+        boolean hasMore = serviceOrders.size() > pageSize;
+        List<ServiceOrder> page = hasMore ? serviceOrders.subList(0, pageSize) : serviceOrders;
+        return new ServiceOrderPageDTO(
+                serviceOrderMapper.toDTOs(page),
+                hasMore ? encodeCursor(page.get(page.size() - 1)) : null);
+    }
+
+    /**
+     * Assigns up to {@code limit} of the oldest open service orders, of the given type when not null, to
+     * {@code assignee} for the lease duration. Orders whose lease expired are claimable again; concurrent
+     * claims never get the same order.
+     */
+    @Bulkhead(Workload.INTERACTIVE)
+    public ServiceOrderClaimDTO claim(String assignee, ServiceType type, int limit){
+        int claimSize = Math.max(1, Math.min(limit, MAX_CLAIM_SIZE));
+        Instant now = now();
+        Instant leaseExpiresAt = now.plus(leaseDuration).truncatedTo(ChronoUnit.MICROS);
+        List<Long> claimedIds = new ArrayList<>(claimSize);
+        for (int round = 0; round < MAX_CLAIM_ROUNDS && claimedIds.size() < claimSize; round++) {
+            int candidateCount = (claimSize - claimedIds.size()) * CANDIDATES_PER_CLAIM;
+            // The oldest candidates of every shard merged by age, so no shard is drained before older orders elsewhere.
+            List<ClaimCandidate> candidates = shardRouter.scatterGather(
+                    () -> serviceOrderRepository.findClaimable(type, now, candidateCount), BY_CREATED_AT_CANDIDATE);
+            if (candidates.isEmpty())
+                break;
+            List<ClaimCandidate> oldest = new ArrayList<>(candidates.subList(0, Math.min(candidateCount, candidates.size())));
+            Collections.shuffle(oldest, ThreadLocalRandom.current());
+            List<Long> chosen = oldest.subList(0, Math.min(claimSize - claimedIds.size(), oldest.size())).stream()
+                    .map(ClaimCandidate::getId)
+                    .collect(Collectors.toList());
+            claimedIds.addAll(shardRouter.forServiceOrderIds(chosen,
+                    ids -> serviceOrderRepository.claimAll(ids, assignee, now, leaseExpiresAt)));
+        }
+        List<ServiceOrderDTO> claimed = new ArrayList<>(claimedIds.isEmpty() ? Collections.emptyList()
+                : shardRouter.forServiceOrderIds(claimedIds, ids -> serviceOrderMapper.toDTOs(serviceOrderRepository.findByIdIn(ids))));
+        claimed.sort(BY_CREATED_AT_DTO);
+        return new ServiceOrderClaimDTO(assignee, leaseExpiresAt, claimed);
+    }
+
+    /**
+     * Unassigns the open service orders whose lease expired and returns how many there were.
+     */
+    @Scheduled(fixedDelayString = "${serviceorder.claim.reaper-interval:PT1M}",
+            initialDelayString = "${serviceorder.claim.reaper-interval:PT1M}")
+    @Bulkhead(Workload.BULK)
+    public long releaseExpiredLeases() {
+        Instant now = now();
+        return shardRouter.sum(() -> serviceOrderRepository.releaseExpiredLeases(now));
+    }
+
+    @Transactional(readOnly = true)
+    @Bulkhead(Workload.LIST)
+    public long countServiceOrders(Boolean closedStatus, ServiceType type){
+        if (readModel.isReady()) {
+            ServiceOperations.cache(CacheOutcome.HIT);
+            return readModel.count(closedStatus, type);
+        }
+        ServiceOperations.cache(CacheOutcome.MISS);
+        if (closedStatus != null && type != null)
+            return shardRouter.sum(() -> serviceOrderRepository.countByClosedAndType(closedStatus, type));
+        if (closedStatus != null)
+            return shardRouter.sum(() -> serviceOrderRepository.countByClosed(closedStatus));
+        if (type != null)
+            return shardRouter.sum(() -> serviceOrderRepository.countByType(type));
+        return shardRouter.sum(serviceOrderRepository::count);
+    }
+
+    @Transactional(readOnly = true)
+    @Bulkhead(Workload.LIST)
+    public ServiceOrderStatsDTO stats(Long customerId, ServiceType type, Boolean closedStatus){
+        if (serviceOrderStats.isReady()) {
+            ServiceOperations.cache(CacheOutcome.HIT);
+            return serviceOrderStats.stats(customerId, type, closedStatus);
+        }
+        ServiceOperations.cache(CacheOutcome.MISS);
+        ServiceOrderStats freshStats = new ServiceOrderStats();
+        freshStats.finishReconcile(shardRouter.gather(serviceOrderRepository::countByCustomerTypeAndClosed));
+        return freshStats.stats(customerId, type, closedStatus);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${serviceorder.stats.reconcile-interval:PT5M}",
+            initialDelayString = "${serviceorder.stats.reconcile-interval:PT5M}")
+    @Bulkhead(Workload.BULK)
+    public void reconcileStats() {
+        serviceOrderStats.beginReconcile();
+        serviceOrderStats.finishReconcile(shardRouter.gather(serviceOrderRepository::countByCustomerTypeAndClosed));
+        serviceOrderTimeline.reloadOpen(shardRouter.gather(serviceOrderRepository::findOpenCreatedAts));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Bulkhead(Workload.BULK)
+    public void rebuildIdFilter() {
+        serviceOrderIdFilter.beginRebuild();
+        serviceOrderIdFilter.finishRebuild(shardRouter.scatterGather(serviceOrderRepository::findAllIds, Comparator.naturalOrder()));
+    }
+
+    /**
+     * Reloads the given service orders into the local caches after other instances changed them.
+     * Counts are left to the next stats reconcile.
+     */
+    @Bulkhead(Workload.BULK)
+    public void refresh(List<Long> ids) {
+        List<ServiceOrderDTO> current = shardRouter.forServiceOrderIds(ids, shardIds -> serviceOrderMapper.toDTOs(serviceOrderRepository.findByIdIn(shardIds)));
+        Set<Long> currentIds = new HashSet<>();
+        for (ServiceOrderDTO serviceOrderDTO : current) {
+            serviceOrderIdFilter.add(serviceOrderDTO.getId());
+            currentIds.add(serviceOrderDTO.getId());
+        }
+        readModel.upsertAll(current);
+        for (Long id : ids) {
+            if (!currentIds.contains(id))
+                readModel.remove(id);
+        }
+        listResponseCache.invalidate();
+    }
+
+    /**
+     * Brings the local caches, counts and event log up to date with service orders the aging job closed
+     * in bulk, straight in the database.
+     */
+    public void recordAgedClosed(List<Long> ids) {
+        List<ServiceOrderDTO> closed = shardRouter.forServiceOrderIds(ids, shardIds -> serviceOrderMapper.toDTOs(serviceOrderRepository.findByIdIn(shardIds)));
+        List<LogEvent> events = new ArrayList<>(closed.size());
+        for (ServiceOrderDTO closedServiceOrderDTO : closed) {
+            if (!Boolean.TRUE.equals(closedServiceOrderDTO.getClosed()))
+                continue;
+            // The job only closes open orders, so this was their state until then.
+            ServiceOrderDTO openServiceOrderDTO = closedServiceOrderDTO.toBuilder()
+                    .closed(false)
+                    .closedAt(null)
+                    .version(closedServiceOrderDTO.getVersion() - 1)
+                    .build();
+            serviceOrderStats.recordChange(openServiceOrderDTO, closedServiceOrderDTO);
+            serviceOrderTimeline.recordChange(openServiceOrderDTO, closedServiceOrderDTO);
+            events.add(LogEvent.serviceOrder(LogEvent.EventAction.CLOSED, closedServiceOrderDTO));
+        }
+        readModel.upsertAll(closed);
+        listResponseCache.invalidate();
+        eventLog.appendAll(events);
+    }
+
+    /**
+     * Brings the read model, the list responses and the event log up to date with service orders the aging
+     * job escalated in bulk, straight in the database. Escalations leave the counts unchanged.
+     */
+    public void recordAgedEscalated(List<Long> ids) {
+        List<ServiceOrderDTO> escalated = shardRouter.forServiceOrderIds(ids, shardIds -> serviceOrderMapper.toDTOs(serviceOrderRepository.findByIdIn(shardIds)));
+        List<LogEvent> events = new ArrayList<>(escalated.size());
+        for (ServiceOrderDTO escalatedServiceOrderDTO : escalated)
+            events.add(LogEvent.serviceOrder(LogEvent.EventAction.ESCALATED, escalatedServiceOrderDTO));
+        readModel.upsertAll(escalated);
+        listResponseCache.invalidate();
+        eventLog.appendAll(events);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Bulkhead(Workload.BULK)
+    public void loadReadModel() {
+        readModel.beginLoad();
+        Optional<ReadModelSnapshot> snapshot;
+        try {
+            snapshot = readModelSnapshots.readLatest();
+            if (!snapshot.isPresent()) {
+                readModel.load(shardRouter.scatterGather(serviceOrderRepository::findAll, BY_ENTITY_ID));
+                return;
+            }
+            readModel.restore(snapshot.get());
+        } catch (RuntimeException e) {
+            // Lists keep being read from the database instead of queueing writes for a load that never comes.
+            readModel.abortLoad();
+            throw e;
+        }
+        shardRouter.scatterGather(() -> serviceOrderRepository.findByIdGreaterThan(snapshot.get().getHighWaterMark()), BY_ENTITY_ID)
+                .forEach(serviceOrder -> readModel.upsert(serviceOrderMapper.toDTO(serviceOrder)));
+        // Older rows may have been updated or deleted since the snapshot was taken: compare the stored
+        // versions in the background, while the restored model already serves reads, and reload only those.
+        readModelSnapshots.runInBackground(this::reconcileReadModel);
+    }
+
+    private void reconcileReadModel() {
+        List<ServiceOrderVersionRow> stored = shardRouter.scatterGather(serviceOrderRepository::findAllVersions,
+                Comparator.comparing(ServiceOrderVersionRow::getId));
+        long[] storedIds = new long[stored.size()];
+        long[] storedVersions = new long[stored.size()];
+        for (int i = 0; i < storedIds.length; i++) {
+            storedIds[i] = stored.get(i).getId();
+            storedVersions[i] = stored.get(i).getVersion();
+        }
+        List<Long> staleIds = readModel.staleIds(storedIds, storedVersions);
+        for (int from = 0; from < staleIds.size(); from += RECONCILE_CHUNK_SIZE)
+            refresh(staleIds.subList(from, Math.min(from + RECONCILE_CHUNK_SIZE, staleIds.size())));
+    }
+
+    private ServiceOrderDTO apply(ServiceOrder serviceOrder, ServiceOrderDTO serviceOrderDTO, Long expectedVersion) throws ServiceOrderShardMoveException, ServiceOrderVersionMismatchException {
+        Long id = serviceOrder.getId();
+        if (expectedVersion != null && expectedVersion != serviceOrder.getVersion())
+            throw new ServiceOrderVersionMismatchException(id);
+        if (shardRouter.shardOfCustomer(customerId(serviceOrderDTO)) != shardRouter.shardOfServiceOrder(id))
+            throw new ServiceOrderShardMoveException(id, customerId(serviceOrderDTO));
+        ServiceOrderDTO previousServiceOrderDTO = serviceOrderMapper.toDTO(serviceOrder);
+        serviceOrder.setCustomer(customerMapper.toModel(serviceOrderDTO.getCustomer()));
+        serviceOrder.setClosed(serviceOrderDTO.getClosed());
+        serviceOrder.setType(serviceOrderDTO.getType());
+        serviceOrder.setClosedAt(closedAt(previousServiceOrderDTO, serviceOrderDTO.getClosed()));
+        ServiceOrderDTO savedServiceOrderDTO;
+        long statsWrite = serviceOrderStats.beginWrite();
+        try {
+            // Merging the loaded entity checks its version and updates the changed columns only.
+            ServiceOrder savedServiceOrder = shardRouter.onServiceOrderShard(id,
+                    () -> changeLog.write(ChangedEntity.SERVICE_ORDER, () -> serviceOrderRepository.save(serviceOrder), ServiceOrder::getId));
+            savedServiceOrderDTO = serviceOrderMapper.toDTO(savedServiceOrder);
+            serviceOrderStats.recordChange(previousServiceOrderDTO, savedServiceOrderDTO);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            throw new ServiceOrderVersionMismatchException(id);
+        } finally {
+            serviceOrderStats.endWrite(statsWrite);
+        }
+        resolveCustomers(Collections.singletonList(savedServiceOrderDTO));
+        readModel.upsert(savedServiceOrderDTO);
+        listResponseCache.invalidate();
+        serviceOrderTimeline.recordChange(previousServiceOrderDTO, savedServiceOrderDTO);
+        eventLog.append(LogEvent.serviceOrder(transition(previousServiceOrderDTO.getClosed(), savedServiceOrderDTO.getClosed()), savedServiceOrderDTO));
+        return savedServiceOrderDTO;
     }
 
     private boolean checkIfServiceOrderExists(Long id){
-        Optional<ServiceOrder> serviceOrderOptional = serviceOrderRepository.findById(id);
-        return serviceOrderOptional.isPresent();
+        return findExisting(id).isPresent();
+    }
+
+    private Optional<ServiceOrder> findExisting(Long id){
+        if (!serviceOrderIdFilter.mightContain(id))
+            return Optional.empty();
+        return shardRouter.onServiceOrderShard(id, () -> serviceOrderRepository.findById(id));
+    }
+
+    // Truncated to what the database column keeps, so returned values match what is read back later.
+    private Instant now(){
+        return clock.instant().truncatedTo(ChronoUnit.MICROS);
+    }
+
+    private Instant closedAt(ServiceOrderDTO previousServiceOrderDTO, Boolean closed){
+        if (!Boolean.TRUE.equals(closed))
+            return null;
+        return Boolean.TRUE.equals(previousServiceOrderDTO.getClosed()) ? previousServiceOrderDTO.getClosedAt() : now();
+    }
+
+    private static String encodeCursor(ServiceOrder last){
+        String position = last.getCreatedAt().getEpochSecond() + ":" + last.getCreatedAt().getNano() + ":" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ServiceOrder decodeCursor(String cursor) throws InvalidCursorException {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+            if (parts.length != 3)
+                throw new InvalidCursorException(cursor);
+            ServiceOrder position = new ServiceOrder();
+            position.setCreatedAt(Instant.ofEpochSecond(Long.parseLong(parts[0]), Long.parseLong(parts[1])));
+            position.setId(Long.parseLong(parts[2]));
+            return position;
+        } catch (IllegalArgumentException | DateTimeException e) {
+            throw new InvalidCursorException(cursor);
+        }
+    }
+
+    /**
+     * Replaces the customers of written orders, which are the ones the client sent, with the stored ones:
+     * from the read model when it knows them, from the database otherwise.
+     */
+    private void resolveCustomers(List<ServiceOrderDTO> serviceOrderDTOs) {
+        Map<Long, CustomerDTO> customers = new HashMap<>();
+        Set<Long> unknownIds = new HashSet<>();
+        for (ServiceOrderDTO serviceOrderDTO : serviceOrderDTOs) {
+            Long customerId = customerId(serviceOrderDTO);
+            if (customerId == null || customers.containsKey(customerId))
+                continue;
+            Optional<CustomerDTO> customer = readModel.findCustomer(customerId);
+            if (customer.isPresent())
+                customers.put(customerId, customer.get());
+            else
+                unknownIds.add(customerId);
+        }
+        if (!unknownIds.isEmpty())
+            customerRepository.findAllById(unknownIds).forEach(customer -> customers.put(customer.getId(), customerMapper.toDTO(customer)));
+        for (ServiceOrderDTO serviceOrderDTO : serviceOrderDTOs) {
+            CustomerDTO customer = customers.get(customerId(serviceOrderDTO));
+            if (customer != null)
+                serviceOrderDTO.setCustomer(customer);
+        }
+    }
+
+    private static Long customerId(ServiceOrderDTO serviceOrderDTO){
+        return serviceOrderDTO.getCustomer() == null ? null : serviceOrderDTO.getCustomer().getId();
+    }
+
+    private static LogEvent.EventAction transition(Boolean previouslyClosed, Boolean closed){
+        if (!Boolean.TRUE.equals(previouslyClosed) && Boolean.TRUE.equals(closed))
+            return LogEvent.EventAction.CLOSED;
+        if (Boolean.TRUE.equals(previouslyClosed) && !Boolean.TRUE.equals(closed))
+            return LogEvent.EventAction.REOPENED;
+        return LogEvent.EventAction.UPDATED;
     }
 
 }
@@ -0,0 +1,52 @@
+package dio.serviceorder.shard;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Consistent hash ring assigning customer ids to shards. Each shard owns a number of virtual nodes whose
+ * positions only depend on the shard name, so adding a shard only moves the customers it takes over.
+ */
+public class ConsistentHashRing {
+    private final long[] points;
+    private final int[] shards;
+
+    public ConsistentHashRing(List<String> shardNames, List<Integer> virtualNodes) {
+        int pointCount = virtualNodes.stream().mapToInt(Integer::intValue).sum();
+        long[][] entries = new long[pointCount][];
+        int next = 0;
+        for (int shard = 0; shard < shardNames.size(); shard++) {
+            long seed = shardNames.get(shard).hashCode();
+            for (int node = 0; node < virtualNodes.get(shard); node++)
+                entries[next++] = new long[]{mix((seed << 32) ^ node), shard};
+        }
+        Arrays.sort(entries, (a, b) -> Long.compare(a[0], b[0]));
+
+        points = new long[pointCount];
+        shards = new int[pointCount];
+        for (int i = 0; i < pointCount; i++) {
+            points[i] = entries[i][0];
+            shards[i] = (int) entries[i][1];
+        }
+    }
+
+    /**
+     * Returns the shard owning the first ring position at or after the hash of the key.
+     */
+    public int shardOf(long key) {
+        int index = Arrays.binarySearch(points, mix(key));
+        if (index < 0)
+            index = -index - 1;
+        return shards[index == points.length ? 0 : index];
+    }
+
+    // Finalization step of MurmurHash3, spreading sequential ids over the whole ring.
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
@@ -0,0 +1,31 @@
+package dio.serviceorder.shard;
+
+import java.util.function.Supplier;
+
+/**
+ * Shard the current thread talks to. Read by {@link ShardRoutingDataSource} when a transaction
+ * acquires its connection, so it must be set before the repository call that starts the transaction.
+ */
+public final class ShardContext {
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    public static Integer current() {
+        return CURRENT.get();
+    }
+
+    public static <T> T callOn(int shard, Supplier<T> action) {
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null)
+                CURRENT.remove();
+            else
+                CURRENT.set(previous);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package dio.serviceorder.shard;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "serviceorder.sharding")
+public class ShardProperties {
+    private boolean enabled = false;
+
+    /**
+     * Shard map, in shard index order. Service order ids carry the index of their shard in their high bits,
+     * so shards may only be appended to this list, never reordered or removed.
+     */
+    private List<Shard> shards = new ArrayList<>();
+
+    /** Threads running the per-shard queries of a scatter-gather read. */
+    private int queryThreads = 8;
+
+    @Data
+    public static class Shard {
+        /** Stable name the hash ring positions are derived from; defaults to shard&lt;index&gt;. */
+        private String name;
+        private String url;
+        private String username = "sa";
+        private String password = "";
+        /** Points on the hash ring, i.e. the share of customers relative to the other shards. */
+        private int virtualNodes = 128;
+    }
+}
@@ -0,0 +1,387 @@
+package dio.serviceorder.shard;
+
+import dio.serviceorder.bulkhead.QueryScope;
+import dio.serviceorder.bulkhead.Workload;
+import dio.serviceorder.dto.CustomerDTO;
+import dio.serviceorder.jdbc.SqlStats;
+import dio.serviceorder.jdbc.SqlStatsContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Routes service order reads and writes to the shard of their customer.
+ *
+ * <p>Service orders live on the shard their customer hashes to, and the identity column of shard
+ * {@code i} starts at {@code (i << SHARD_ID_SHIFT) + 1}, so the high bits of an id give its shard back
+ * whatever the number of shards: appending a shard never moves an existing id, and lookups by id or by
+ * customer touch a single shard. Other queries run on every shard in parallel and their id-ordered results are
+ * k-way merged. Customers are written to the first shard and replicated to the others, so the
+ * foreign key of every service order resolves locally. Replication and deletion go through the shards
+ * in a fixed order, the shard of the customer's service orders first, and undo what they already did
+ * when a shard fails, so the shards keep agreeing on whether and how the customer exists.
+ *
+ * <p>Each {@link Workload} may get its own pool of shard query threads, so listing queries fanned out to
+ * every shard cannot keep the threads from single-shard lookups.
+ */
+public class ShardRouter {
+    /**
+     * Bits of a service order id numbering the orders of its shard. Ids of the first 8192 shards stay below
+     * 2^53, so JavaScript clients read them exactly.
+     */
+    public static final int SHARD_ID_SHIFT = 40;
+
+    private static final String MERGE_CUSTOMER = "merge into tb_customer (id, name) key (id) values (?, ?)";
+    private static final String RESTORE_CUSTOMER = "merge into tb_customer (id, name, version) key (id) values (?, ?, ?)";
+    // Only undoes the write of the first shard if no other write came after it.
+    private static final String RESTORE_PRIMARY_CUSTOMER = "update tb_customer set name = ?, version = ? where id = ? and version = ?";
+    private static final String DELETE_CUSTOMER = "delete from tb_customer where id = ?";
+
+    private final int shardCount;
+    private final ConsistentHashRing ring;
+    private final JdbcTemplate jdbcTemplate;
+    private final ExecutorService executor;
+    private final Map<Workload, ExecutorService> workloadExecutors = new EnumMap<>(Workload.class);
+
+    public ShardRouter(ConsistentHashRing ring, int shardCount, JdbcTemplate jdbcTemplate, int queryThreads) {
+        this(ring, shardCount, jdbcTemplate, queryThreads, Collections.emptyMap());
+    }
+
+    /**
+     * Router with a pool of {@code queryThreads} threads for queries outside of any workload, and one for
+     * each workload in {@code workloadQueryThreads}.
+     */
+    public ShardRouter(ConsistentHashRing ring, int shardCount, JdbcTemplate jdbcTemplate, int queryThreads,
+                       Map<Workload, Integer> workloadQueryThreads) {
+        this.shardCount = shardCount;
+        this.ring = ring;
+        this.jdbcTemplate = jdbcTemplate;
+        this.executor = newQueryPool("shard-query-", queryThreads);
+        workloadQueryThreads.forEach((workload, threads) -> workloadExecutors.put(workload,
+                newQueryPool("shard-query-" + workload.name().toLowerCase() + "-", threads)));
+    }
+
+    private ShardRouter() {
+        this.shardCount = 1;
+        this.ring = null;
+        this.jdbcTemplate = null;
+        this.executor = null;
+    }
+
+    /**
+     * Router of an unsharded database, running everything directly on the calling thread.
+     */
+    public static ShardRouter unsharded() {
+        return new ShardRouter();
+    }
+
+    public boolean isSharded() {
+        return shardCount > 1;
+    }
+
+    public int shardOfCustomer(Long customerId) {
+        return isSharded() ? ring.shardOf(customerId == null ? 0 : customerId) : 0;
+    }
+
+    public int shardOfServiceOrder(Long serviceOrderId) {
+        return isSharded() ? (int) ((serviceOrderId - 1) >>> SHARD_ID_SHIFT) : 0;
+    }
+
+    /**
+     * First id the identity column of the given shard hands out.
+     */
+    public static long firstServiceOrderId(int shard) {
+        return ((long) shard << SHARD_ID_SHIFT) + 1;
+    }
+
+    public <T> T onCustomerShard(Long customerId, Supplier<T> action) {
+        return onShard(shardOfCustomer(customerId), action);
+    }
+
+    public <T> T onServiceOrderShard(Long serviceOrderId, Supplier<T> action) {
+        return onShard(shardOfServiceOrder(serviceOrderId), action);
+    }
+
+    /**
+     * Runs the query on every shard in parallel and merges the results in the given order. Each shard
+     * result is expected in that order already; it is sorted first when it is not.
+     */
+    public <T> List<T> scatterGather(Supplier<List<T>> query, Comparator<? super T> order) {
+        if (!isSharded())
+            return query.get();
+        List<List<T>> results = onEveryShard(query);
+        for (int i = 0; i < results.size(); i++) {
+            if (!isSorted(results.get(i), order)) {
+                List<T> sorted = new ArrayList<>(results.get(i));
+                sorted.sort(order);
+                results.set(i, sorted);
+            }
+        }
+        return merge(results, order);
+    }
+
+    /**
+     * Runs the query on every shard in parallel and concatenates the results, in no particular order.
+     */
+    public <T> List<T> gather(Supplier<List<T>> query) {
+        if (!isSharded())
+            return query.get();
+        List<T> gathered = new ArrayList<>();
+        onEveryShard(query).forEach(gathered::addAll);
+        return gathered;
+    }
+
+    /**
+     * Runs the query once on every shard holding some of the given service order ids, in parallel and with
+     * the ids of that shard only, and concatenates the results.
+     */
+    public <T> List<T> forServiceOrderIds(List<Long> ids, Function<List<Long>, List<T>> query) {
+        if (!isSharded())
+            return query.apply(ids);
+        Map<Integer, List<Long>> idsByShard = new LinkedHashMap<>();
+        for (Long id : ids)
+            idsByShard.computeIfAbsent(shardOfServiceOrder(id), shard -> new ArrayList<>()).add(id);
+        List<T> gathered = new ArrayList<>();
+        onShards(new ArrayList<>(idsByShard.keySet()), shard -> query.apply(idsByShard.get(shard))).forEach(gathered::addAll);
+        return gathered;
+    }
+
+    /**
+     * Runs the action on each shard in turn, on the calling thread.
+     */
+    public void forEachShard(Runnable action) {
+        forEachShard(shard -> action.run());
+    }
+
+    /**
+     * Runs the action on each shard in turn, on the calling thread, with the index of the shard.
+     */
+    public void forEachShard(IntConsumer action) {
+        for (int shard = 0; shard < shardCount; shard++) {
+            int current = shard;
+            onShard(shard, () -> {
+                action.accept(current);
+                return null;
+            });
+        }
+    }
+
+    public long sum(LongSupplier query) {
+        if (!isSharded())
+            return query.getAsLong();
+        return onEveryShard(query::getAsLong).stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * Copies a customer just written to the first shard to the other shards. When a shard fails, the
+     * shards already written and then the first one are put back to {@code previous}, or lose the customer
+     * when it was just created ({@code previous} is null), and the failure is rethrown.
+     */
+    public void replicateCustomer(CustomerDTO customerDTO, CustomerDTO previous) {
+        List<Integer> replicas = customerShards(customerDTO.getId());
+        replicas.remove(Integer.valueOf(0));
+        replicate(replicas, Collections.singletonList(new Object[]{customerDTO.getId(), customerDTO.getName()}), shard -> {
+            if (previous == null)
+                jdbcTemplate.update(DELETE_CUSTOMER, customerDTO.getId());
+            else if (shard == 0)
+                jdbcTemplate.update(RESTORE_PRIMARY_CUSTOMER, previous.getName(), previous.getVersion(), previous.getId(), customerDTO.getVersion());
+            else
+                jdbcTemplate.update(RESTORE_CUSTOMER, previous.getId(), previous.getName(), previous.getVersion());
+        });
+    }
+
+    /**
+     * Copies customers just created on the first shard to the other shards, in shard order. When a shard
+     * fails, the customers are deleted again from the shards already written and then from the first one,
+     * and the failure is rethrown.
+     */
+    public void replicateCustomers(List<CustomerDTO> customerDTOs) {
+        if (customerDTOs.isEmpty())
+            return;
+        List<Object[]> rows = new ArrayList<>(customerDTOs.size());
+        List<Object[]> ids = new ArrayList<>(customerDTOs.size());
+        for (CustomerDTO customerDTO : customerDTOs) {
+            rows.add(new Object[]{customerDTO.getId(), customerDTO.getName()});
+            ids.add(new Object[]{customerDTO.getId()});
+        }
+        List<Integer> replicas = new ArrayList<>();
+        for (int shard = 1; shard < shardCount; shard++)
+            replicas.add(shard);
+        replicate(replicas, rows, shard -> jdbcTemplate.batchUpdate(DELETE_CUSTOMER, ids));
+    }
+
+    /**
+     * Deletes a customer from every shard: first from the shard of its service orders, where their foreign
+     * key may refuse it, then from the other replicas and last from the first shard, through
+     * {@code deletePrimary}. When a shard fails, the copies already deleted are put back and the failure
+     * is rethrown.
+     */
+    public void deleteCustomer(CustomerDTO customerDTO, Runnable deletePrimary) {
+        if (!isSharded()) {
+            deletePrimary.run();
+            return;
+        }
+        List<Integer> shards = customerShards(customerDTO.getId());
+        if (shards.remove(Integer.valueOf(0)))
+            shards.add(0);
+        List<Integer> deleted = new ArrayList<>(shards.size());
+        try {
+            for (int shard : shards) {
+                onShard(shard, () -> {
+                    if (shard == 0)
+                        deletePrimary.run();
+                    else
+                        jdbcTemplate.update(DELETE_CUSTOMER, customerDTO.getId());
+                    return null;
+                });
+                deleted.add(shard);
+            }
+        } catch (RuntimeException e) {
+            undo(deleted, shard -> jdbcTemplate.update(RESTORE_CUSTOMER, customerDTO.getId(), customerDTO.getName(), customerDTO.getVersion()), e);
+            throw e;
+        }
+    }
+
+    public void shutdown() {
+        if (executor != null)
+            executor.shutdown();
+        workloadExecutors.values().forEach(ExecutorService::shutdown);
+    }
+
+    /**
+     * Shards holding a copy of the customer, in the order they are written: the shard of its service
+     * orders, then the others in index order.
+     */
+    private List<Integer> customerShards(Long customerId) {
+        int owner = shardOfCustomer(customerId);
+        List<Integer> shards = new ArrayList<>(shardCount);
+        shards.add(owner);
+        for (int shard = 0; shard < shardCount; shard++) {
+            if (shard != owner)
+                shards.add(shard);
+        }
+        return shards;
+    }
+
+    private void replicate(List<Integer> replicas, List<Object[]> rows, IntConsumer undo) {
+        List<Integer> written = new ArrayList<>(replicas.size() + 1);
+        // The first shard holds the write being replicated, so it is undone last.
+        written.add(0);
+        try {
+            for (int shard : replicas) {
+                onShard(shard, () -> jdbcTemplate.batchUpdate(MERGE_CUSTOMER, rows));
+                written.add(shard);
+            }
+        } catch (RuntimeException e) {
+            undo(written, undo, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Undoes the changes of the given shards in reverse order, recording failures on {@code failure}.
+     */
+    private void undo(List<Integer> changedShards, IntConsumer undo, RuntimeException failure) {
+        for (int i = changedShards.size() - 1; i >= 0; i--) {
+            int shard = changedShards.get(i);
+            try {
+                onShard(shard, () -> {
+                    undo.accept(shard);
+                    return null;
+                });
+            } catch (RuntimeException undoFailure) {
+                failure.addSuppressed(undoFailure);
+            }
+        }
+    }
+
+    /**
+     * Runs the action on the given shard, on the calling thread.
+     */
+    public <T> T onShard(int shard, Supplier<T> action) {
+        return isSharded() ? ShardContext.callOn(shard, action) : action.get();
+    }
+
+    private <T> List<T> onEveryShard(Supplier<T> query) {
+        List<Integer> shards = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++)
+            shards.add(shard);
+        return onShards(shards, shard -> query.get());
+    }
+
+    private <T> List<T> onShards(List<Integer> shards, Function<Integer, T> query) {
+        List<CompletableFuture<T>> futures = new ArrayList<>(shards.size());
+        SqlStats sqlStats = SqlStatsContext.current();
+        QueryScope queryScope = QueryScope.current();
+        ExecutorService queryExecutor = queryScope != null && queryScope.getWorkload() != null
+                ? workloadExecutors.getOrDefault(queryScope.getWorkload(), executor) : executor;
+        for (Integer shard : shards)
+            futures.add(CompletableFuture.supplyAsync(() -> SqlStatsContext.callWith(sqlStats, () -> QueryScope.callWith(queryScope,
+                    () -> ShardContext.callOn(shard, () -> query.apply(shard)))), queryExecutor));
+        List<T> results = new ArrayList<>(shards.size());
+        try {
+            for (CompletableFuture<T> future : futures)
+                results.add(future.join());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+        return results;
+    }
+
+    private static ExecutorService newQueryPool(String threadNamePrefix, int threads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, threadNamePrefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static <T> boolean isSorted(List<T> list, Comparator<? super T> order) {
+        for (int i = 1; i < list.size(); i++) {
+            if (order.compare(list.get(i - 1), list.get(i)) > 0)
+                return false;
+        }
+        return true;
+    }
+
+    static <T> List<T> merge(List<List<T>> sortedLists, Comparator<? super T> order) {
+        int total = sortedLists.stream().mapToInt(List::size).sum();
+        if (total == 0)
+            return Collections.emptyList();
+        // Heap entries are {list index, position in that list}.
+        PriorityQueue<int[]> heads = new PriorityQueue<>(sortedLists.size(),
+                (a, b) -> order.compare(sortedLists.get(a[0]).get(a[1]), sortedLists.get(b[0]).get(b[1])));
+        for (int i = 0; i < sortedLists.size(); i++) {
+            if (!sortedLists.get(i).isEmpty())
+                heads.add(new int[]{i, 0});
+        }
+        List<T> merged = new ArrayList<>(total);
+        while (!heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<T> list = sortedLists.get(head[0]);
+            merged.add(list.get(head[1]));
+            if (++head[1] < list.size())
+                heads.add(head);
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,31 @@
+package dio.serviceorder.shard;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+
+/**
+ * Hands out connections of the shard set in the {@link ShardContext}, or of the first shard when none is
+ * set. Customers are replicated to every shard, so customer repositories can use any of them.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardContext.current();
+    }
+
+    @Override
+    public void close() {
+        for (DataSource shard : getResolvedDataSources().values()) {
+            if (shard instanceof Closeable) {
+                try {
+                    ((Closeable) shard).close();
+                } catch (Exception e) {
+                    logger.warn("Could not close shard data source", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package dio.serviceorder.snapshot;
+
+import dio.serviceorder.readmodel.ReadModelSnapshot;
+import dio.serviceorder.readmodel.ServiceOrderReadModel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+/**
+ * Periodically persists the read model to a local snapshot file so a restarted node can serve
+ * reads right away instead of reloading every row from the database.
+ */
+@Slf4j
+@Component
+public class ReadModelSnapshots {
+    @Autowired
+    private ServiceOrderReadModel readModel;
+
+    @Autowired
+    private TaskExecutor applicationTaskExecutor;
+
+    @Value("${serviceorder.snapshot.enabled:false}")
+    private boolean enabled;
+
+    @Value("${serviceorder.snapshot.file:snapshots/service-orders.snapshot}")
+    private String file;
+
+    private SnapshotStore snapshotStore;
+
+    @PostConstruct
+    void init() {
+        snapshotStore = new SnapshotStore(Paths.get(file));
+    }
+
+    public Optional<ReadModelSnapshot> readLatest() {
+        if (!enabled)
+            return Optional.empty();
+        Optional<ReadModelSnapshot> snapshot = snapshotStore.read();
+        snapshot.ifPresent(s -> log.info("Restoring read model from snapshot {} with {} rows up to id {}",
+                file, s.getRowCount(), s.getHighWaterMark()));
+        return snapshot;
+    }
+
+    public void runInBackground(Runnable task) {
+        applicationTaskExecutor.execute(task);
+    }
+
+    @Scheduled(fixedDelayString = "${serviceorder.snapshot.interval:PT5M}", initialDelayString = "${serviceorder.snapshot.interval:PT5M}")
+    public void writeSnapshot() {
+        if (!enabled || !readModel.isReady())
+            return;
+        try {
+            ReadModelSnapshot snapshot = readModel.snapshot();
+            snapshotStore.write(snapshot);
+            log.debug("Wrote snapshot {} with {} rows", file, snapshot.getRowCount());
+        } catch (IOException e) {
+            log.warn("Could not write snapshot {}", file, e);
+        }
+    }
+
+    @PreDestroy
+    void writeSnapshotOnShutdown() {
+        writeSnapshot();
+    }
+}
@@ -0,0 +1,244 @@
+package dio.serviceorder.snapshot;
+
+import dio.serviceorder.readmodel.ReadModelSnapshot;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot file of the read model, written and read through memory mapping, one window of
+ * the file at a time.
+ *
+ * <pre>
+ * header: magic, version, createdAt, highWaterMark, customerCount, rowCount, bodyLength, crc32(body)
+ * body:   customerCount x (id, name length, UTF-8 name),
+ *         rowCount x (id, customer ref, type, closed, createdAt micros, closedAt micros, escalatedAt micros, version)
+ * </pre>
+ *
+ * Snapshots are written to a temporary file and atomically moved over the previous one, so a
+ * crash while writing never leaves a torn snapshot behind.
+ */
+@Slf4j
+public class SnapshotStore {
+    private static final int MAGIC = 0x534F534E;
+    private static final int VERSION = 4;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 4 + 8 + 8;
+    private static final int ROW_SIZE = 8 + 4 + 1 + 1 + 8 + 8 + 8 + 8;
+
+    // A single mapping cannot go past 2 GB, so files are mapped one window at a time.
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    private final Path file;
+    private final long windowSize;
+
+    public SnapshotStore(Path file) {
+        this(file, WINDOW_SIZE);
+    }
+
+    SnapshotStore(Path file, long windowSize) {
+        this.file = file;
+        this.windowSize = windowSize;
+    }
+
+    public void write(ReadModelSnapshot snapshot) throws IOException {
+        byte[][] names = new byte[snapshot.getCustomerCount()][];
+        long bodyLength = (long) snapshot.getRowCount() * ROW_SIZE;
+        for (int i = 0; i < names.length; i++) {
+            String name = snapshot.getCustomerNames()[i];
+            names[i] = name == null ? new byte[0] : name.getBytes(StandardCharsets.UTF_8);
+            bodyLength += 8 + 4 + names[i].length;
+        }
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedWindows buffer = new MappedWindows(channel, FileChannel.MapMode.READ_WRITE, HEADER_SIZE + bodyLength, windowSize);
+            buffer.seek(HEADER_SIZE);
+            for (int i = 0; i < names.length; i++) {
+                buffer.putLong(snapshot.getCustomerIds()[i]);
+                buffer.putInt(names[i].length);
+                buffer.put(names[i]);
+            }
+            for (int i = 0; i < snapshot.getRowCount(); i++) {
+                buffer.putLong(snapshot.getIds()[i]);
+                buffer.putInt(snapshot.getCustomerRefs()[i]);
+                buffer.put(snapshot.getTypes()[i]);
+                buffer.put(snapshot.getClosed()[i]);
+                buffer.putLong(snapshot.getCreatedAt()[i]);
+                buffer.putLong(snapshot.getClosedAt()[i]);
+                buffer.putLong(snapshot.getEscalatedAt()[i]);
+                buffer.putLong(snapshot.getVersions()[i]);
+            }
+            buffer.force();
+
+            buffer.seek(0);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putLong(System.currentTimeMillis());
+            buffer.putLong(snapshot.getHighWaterMark());
+            buffer.putInt(snapshot.getCustomerCount());
+            buffer.putInt(snapshot.getRowCount());
+            buffer.putLong(bodyLength);
+            buffer.putLong(checksum(channel, bodyLength));
+            buffer.force();
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads the last snapshot, or returns empty when there is none or it is unreadable.
+     */
+    public Optional<ReadModelSnapshot> read() {
+        if (!Files.isRegularFile(file))
+            return Optional.empty();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedWindows buffer = new MappedWindows(channel, FileChannel.MapMode.READ_ONLY, channel.size(), windowSize);
+            if (channel.size() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                log.warn("Ignoring snapshot {} with an unknown format", file);
+                return Optional.empty();
+            }
+            buffer.getLong();
+            long highWaterMark = buffer.getLong();
+            int customerCount = buffer.getInt();
+            int rowCount = buffer.getInt();
+            long bodyLength = buffer.getLong();
+            long expectedChecksum = buffer.getLong();
+            if (bodyLength != channel.size() - HEADER_SIZE || checksum(channel, bodyLength) != expectedChecksum) {
+                log.warn("Ignoring snapshot {} with a bad checksum", file);
+                return Optional.empty();
+            }
+
+            buffer.seek(HEADER_SIZE);
+            long[] customerIds = new long[customerCount];
+            String[] customerNames = new String[customerCount];
+            for (int i = 0; i < customerCount; i++) {
+                customerIds[i] = buffer.getLong();
+                byte[] name = new byte[buffer.getInt()];
+                buffer.get(name);
+                customerNames[i] = new String(name, StandardCharsets.UTF_8);
+            }
+            long[] ids = new long[rowCount];
+            int[] customerRefs = new int[rowCount];
+            byte[] types = new byte[rowCount];
+            byte[] closed = new byte[rowCount];
+            long[] createdAt = new long[rowCount];
+            long[] closedAt = new long[rowCount];
+            long[] escalatedAt = new long[rowCount];
+            long[] versions = new long[rowCount];
+            for (int i = 0; i < rowCount; i++) {
+                ids[i] = buffer.getLong();
+                customerRefs[i] = buffer.getInt();
+                types[i] = buffer.get();
+                closed[i] = buffer.get();
+                createdAt[i] = buffer.getLong();
+                closedAt[i] = buffer.getLong();
+                escalatedAt[i] = buffer.getLong();
+                versions[i] = buffer.getLong();
+            }
+            return Optional.of(new ReadModelSnapshot(highWaterMark, customerCount, customerIds, customerNames,
+                    rowCount, ids, customerRefs, types, closed, createdAt, closedAt, escalatedAt, versions));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not read snapshot {}", file, e);
+            return Optional.empty();
+        }
+    }
+
+    private long checksum(FileChannel channel, long bodyLength) throws IOException {
+        CRC32 crc = new CRC32();
+        for (long offset = 0; offset < bodyLength; offset += windowSize)
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + offset, Math.min(windowSize, bodyLength - offset)));
+        return crc.getValue();
+    }
+
+    /**
+     * Sequential reads and writes over a file mapped in windows of at most {@code windowSize} bytes. A
+     * value that does not fit in what is left of the window starts a new window at its own position.
+     */
+    private static final class MappedWindows {
+        private final FileChannel channel;
+        private final FileChannel.MapMode mode;
+        private final long length;
+        private final long windowSize;
+        private MappedByteBuffer window;
+        private long windowStart;
+
+        MappedWindows(FileChannel channel, FileChannel.MapMode mode, long length, long windowSize) {
+            this.channel = channel;
+            this.mode = mode;
+            this.length = length;
+            this.windowSize = windowSize;
+        }
+
+        void seek(long position) throws IOException {
+            force();
+            windowStart = position;
+            window = channel.map(mode, position, Math.min(windowSize, length - position));
+        }
+
+        void force() {
+            if (window != null && mode == FileChannel.MapMode.READ_WRITE)
+                window.force();
+        }
+
+        private ByteBuffer window(int bytes) throws IOException {
+            if (window == null)
+                seek(0);
+            else if (window.remaining() < bytes)
+                seek(windowStart + window.position());
+            return window;
+        }
+
+        long getLong() throws IOException {
+            return window(8).getLong();
+        }
+
+        int getInt() throws IOException {
+            return window(4).getInt();
+        }
+
+        byte get() throws IOException {
+            return window(1).get();
+        }
+
+        void get(byte[] bytes) throws IOException {
+            for (int offset = 0; offset < bytes.length; ) {
+                ByteBuffer buffer = window(1);
+                int count = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.get(bytes, offset, count);
+                offset += count;
+            }
+        }
+
+        void putLong(long value) throws IOException {
+            window(8).putLong(value);
+        }
+
+        void putInt(int value) throws IOException {
+            window(4).putInt(value);
+        }
+
+        void put(byte value) throws IOException {
+            window(1).put(value);
+        }
+
+        void put(byte[] bytes) throws IOException {
+            for (int offset = 0; offset < bytes.length; ) {
+                ByteBuffer buffer = window(1);
+                int count = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, count);
+                offset += count;
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package dio.serviceorder.stats;
+
+import dio.serviceorder.dto.ServiceOrderDTO;
+import dio.serviceorder.dto.ServiceOrderStatsDTO;
+import dio.serviceorder.enums.ServiceType;
+import dio.serviceorder.repository.ServiceOrderCountRow;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Service order counts by customer, type and closed status, kept up to date on every write so reports
+ * never scan the table.
+ *
+ * <p>A periodic reconcile against a GROUP BY corrects any drift. Counts changed while the query runs
+ * are left alone, since the query result may or may not include those changes. Writes register with
+ * {@link #beginWrite} before they are made, and the reconcile waits for the ones in flight when the query
+ * returned to record their change, so a change the query already counted is never added on top of it.
+ */
+@Slf4j
+@Component
+public class ServiceOrderStats {
+    private static final Comparator<ServiceOrderStatsDTO.Count> COUNT_ORDER =
+            Comparator.comparing(ServiceOrderStatsDTO.Count::getCustomerId, Comparator.nullsFirst(Comparator.naturalOrder()))
+                    .thenComparing(ServiceOrderStatsDTO.Count::getType)
+                    .thenComparing(ServiceOrderStatsDTO.Count::getClosed);
+
+    private final Map<Key, LongAdder> counters = new ConcurrentHashMap<>();
+    private volatile Set<Key> changedDuringReconcile;
+    private volatile boolean ready;
+
+    private static final Duration WRITES_IN_FLIGHT_TIMEOUT = Duration.ofSeconds(30);
+    // Tickets of the writes between beginWrite and endWrite, guarded by this.
+    private final NavigableSet<Long> writesInFlight = new TreeSet<>();
+    private long lastTicket;
+
+    /**
+     * Moves one service order from the counter of its previous state to the one of its new state.
+     * Either state may be null, for a create or a delete.
+     */
+    public void recordChange(ServiceOrderDTO before, ServiceOrderDTO after) {
+        if (before != null)
+            add(Key.of(before), -1);
+        if (after != null)
+            add(Key.of(after), 1);
+    }
+
+    /**
+     * Registers a write about to be made, whose change is then recorded. Must be followed by {@link #endWrite}
+     * with the returned ticket once the change is recorded, or the write failed.
+     */
+    public synchronized long beginWrite() {
+        long ticket = ++lastTicket;
+        writesInFlight.add(ticket);
+        return ticket;
+    }
+
+    public synchronized void endWrite(long ticket) {
+        writesInFlight.remove(ticket);
+        notifyAll();
+    }
+
+    public void beginReconcile() {
+        changedDuringReconcile = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Corrects the counts with the result of the query. A reconcile whose writes in flight do not finish in
+     * time is given up, leaving the counts to the next one.
+     */
+    public void finishReconcile(List<ServiceOrderCountRow> rows) {
+        if (!awaitWritesInFlight()) {
+            log.warn("Service order stats not reconciled, writes still in flight after {}", WRITES_IN_FLIGHT_TIMEOUT);
+            changedDuringReconcile = null;
+            return;
+        }
+        Map<Key, Long> actual = new HashMap<>();
+        for (ServiceOrderCountRow row : rows)
+            actual.merge(new Key(row.getCustomerId(), row.getType(), Boolean.TRUE.equals(row.getClosed())), row.getTotal(), Long::sum);
+        Set<Key> changed = changedDuringReconcile != null ? changedDuringReconcile : ConcurrentHashMap.newKeySet();
+
+        for (Map.Entry<Key, Long> entry : actual.entrySet()) {
+            if (!changed.contains(entry.getKey())) {
+                LongAdder counter = counters.computeIfAbsent(entry.getKey(), key -> new LongAdder());
+                counter.add(entry.getValue() - counter.sum());
+            }
+        }
+        for (Map.Entry<Key, LongAdder> entry : counters.entrySet()) {
+            if (!actual.containsKey(entry.getKey()) && !changed.contains(entry.getKey()))
+                entry.getValue().add(-entry.getValue().sum());
+        }
+        counters.entrySet().removeIf(entry -> entry.getValue().sum() == 0 && !changed.contains(entry.getKey()));
+        changedDuringReconcile = null;
+        ready = true;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Counts matching the given filters, each of which may be null to match everything.
+     */
+    public ServiceOrderStatsDTO stats(Long customerId, ServiceType type, Boolean closed) {
+        List<ServiceOrderStatsDTO.Count> counts = new ArrayList<>();
+        long total = 0;
+        for (Map.Entry<Key, LongAdder> entry : counters.entrySet()) {
+            Key key = entry.getKey();
+            long count = entry.getValue().sum();
+            if (count <= 0 || !key.matches(customerId, type, closed))
+                continue;
+            counts.add(new ServiceOrderStatsDTO.Count(key.getCustomerId(), key.getType(), key.isClosed(), count));
+            total += count;
+        }
+        counts.sort(COUNT_ORDER);
+        return new ServiceOrderStatsDTO(total, counts);
+    }
+
+    /**
+     * Waits for the writes registered so far to end. Their changes are recorded while the changed keys are
+     * still tracked, so the reconcile leaves those keys alone.
+     */
+    private synchronized boolean awaitWritesInFlight() {
+        long lastStarted = lastTicket;
+        long deadline = System.nanoTime() + WRITES_IN_FLIGHT_TIMEOUT.toNanos();
+        while (!writesInFlight.isEmpty() && writesInFlight.first() <= lastStarted) {
+            long remainingNanos = deadline - System.nanoTime();
+            if (remainingNanos <= 0)
+                return false;
+            try {
+                TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void add(Key key, long delta) {
+        Set<Key> changed = changedDuringReconcile;
+        if (changed != null)
+            changed.add(key);
+        counters.computeIfAbsent(key, k -> new LongAdder()).add(delta);
+    }
+
+    @Value
+    static class Key {
+        Long customerId;
+        ServiceType type;
+        boolean closed;
+
+        static Key of(ServiceOrderDTO serviceOrderDTO) {
+            Long customerId = serviceOrderDTO.getCustomer() == null ? null : serviceOrderDTO.getCustomer().getId();
+            return new Key(customerId, serviceOrderDTO.getType(), Boolean.TRUE.equals(serviceOrderDTO.getClosed()));
+        }
+
+        boolean matches(Long customerId, ServiceType type, Boolean closed) {
+            return (customerId == null || customerId.equals(this.customerId))
+                    && (type == null || type == this.type)
+                    && (closed == null || closed == this.closed);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package dio.serviceorder.stats;
+
+import dio.serviceorder.dto.ServiceOrderDTO;
+import dio.serviceorder.enums.ServiceType;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Service orders created and closed per type over the last hour, and the age of open service orders,
+ * exposed as gauges.
+ *
+ * <p>Throughput lives in a ring of per-minute buckets fed by every write, so it only covers what this
+ * instance handled since it started. Open orders are counted by the hour they were created in, which
+ * answers age buckets to the hour without scanning the table; those counts are reloaded on every
+ * stats reconcile to correct drift.
+ */
+@Component
+public class ServiceOrderTimeline implements MeterBinder {
+    static final int MINUTES = 60;
+    private static final ServiceType[] TYPES = ServiceType.values();
+    private static final Duration[] WINDOWS = {Duration.ofMinutes(5), Duration.ofHours(1)};
+    private static final String[] WINDOW_TAGS = {"5m", "1h"};
+    private static final Duration[] AGES = {Duration.ofHours(1), Duration.ofHours(4), Duration.ofDays(1), Duration.ofDays(7), Duration.ofDays(30)};
+    private static final String[] AGE_TAGS = {"1h", "4h", "1d", "7d", "30d"};
+
+    private final Clock clock;
+    private final AtomicReferenceArray<Minute> minutes = new AtomicReferenceArray<>(MINUTES);
+    private volatile Map<Long, LongAdder> openByCreationHour = new ConcurrentHashMap<>();
+
+    public ServiceOrderTimeline(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Records a write of one service order. Either state may be null, for a create or a delete.
+     */
+    public void recordChange(ServiceOrderDTO before, ServiceOrderDTO after) {
+        if (after != null) {
+            if (before == null)
+                currentMinute().created[after.getType().ordinal()].increment();
+            if (isClosed(after) && (before == null || !isClosed(before)))
+                currentMinute().closed[after.getType().ordinal()].increment();
+        }
+        if (before != null && !isClosed(before))
+            addOpen(before.getCreatedAt(), -1);
+        if (after != null && !isClosed(after))
+            addOpen(after.getCreatedAt(), 1);
+    }
+
+    /**
+     * Replaces the open order counts with the creation timestamps of every open service order.
+     */
+    public void reloadOpen(List<Instant> openCreatedAts) {
+        Map<Long, LongAdder> reloaded = new ConcurrentHashMap<>();
+        for (Instant createdAt : openCreatedAts)
+            reloaded.computeIfAbsent(hourOf(createdAt), hour -> new LongAdder()).increment();
+        openByCreationHour = reloaded;
+    }
+
+    public long created(ServiceType type, Duration window) {
+        return sum(window, minute -> minute.created[type.ordinal()].sum());
+    }
+
+    public long closed(ServiceType type, Duration window) {
+        return sum(window, minute -> minute.closed[type.ordinal()].sum());
+    }
+
+    /**
+     * Open service orders created at most {@code age} ago, by the hour they were created in.
+     */
+    public long openAtMost(Duration age) {
+        long currentHour = hourOf(clock.instant());
+        long maxHours = age.toHours();
+        long total = 0;
+        for (Map.Entry<Long, LongAdder> entry : openByCreationHour.entrySet()) {
+            if (currentHour - entry.getKey() < maxHours)
+                total += entry.getValue().sum();
+        }
+        return total;
+    }
+
+    public long open() {
+        return openByCreationHour.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (ServiceType type : TYPES) {
+            for (int i = 0; i < WINDOWS.length; i++) {
+                Duration window = WINDOWS[i];
+                Gauge.builder("serviceorder.throughput.created", this, timeline -> timeline.created(type, window))
+                        .tag("type", type.name())
+                        .tag("window", WINDOW_TAGS[i])
+                        .register(registry);
+                Gauge.builder("serviceorder.throughput.closed", this, timeline -> timeline.closed(type, window))
+                        .tag("type", type.name())
+                        .tag("window", WINDOW_TAGS[i])
+                        .register(registry);
+            }
+        }
+        for (int i = 0; i < AGES.length; i++) {
+            Duration age = AGES[i];
+            Gauge.builder("serviceorder.open.age", this, timeline -> timeline.openAtMost(age))
+                    .tag("le", AGE_TAGS[i])
+                    .register(registry);
+        }
+        Gauge.builder("serviceorder.open.age", this, ServiceOrderTimeline::open)
+                .tag("le", "+Inf")
+                .register(registry);
+    }
+
+    private long sum(Duration window, ToLongFunction<Minute> counter) {
+        long currentMinute = minuteOf(clock.instant());
+        long total = 0;
+        for (long index = currentMinute; index > currentMinute - Math.min(window.toMinutes(), MINUTES); index--) {
+            Minute minute = minutes.get((int) Math.floorMod(index, (long) MINUTES));
+            if (minute != null && minute.index == index)
+                total += counter.applyAsLong(minute);
+        }
+        return total;
+    }
+
+    private Minute currentMinute() {
+        long index = minuteOf(clock.instant());
+        int slot = (int) Math.floorMod(index, (long) MINUTES);
+        while (true) {
+            Minute minute = minutes.get(slot);
+            if (minute != null && minute.index >= index)
+                return minute;
+            if (minutes.compareAndSet(slot, minute, new Minute(index)))
+                return minutes.get(slot);
+        }
+    }
+
+    private void addOpen(Instant createdAt, long delta) {
+        if (createdAt != null)
+            openByCreationHour.computeIfAbsent(hourOf(createdAt), hour -> new LongAdder()).add(delta);
+    }
+
+    private static boolean isClosed(ServiceOrderDTO serviceOrderDTO) {
+        return Boolean.TRUE.equals(serviceOrderDTO.getClosed());
+    }
+
+    private static long minuteOf(Instant instant) {
+        return Math.floorDiv(instant.getEpochSecond(), 60L);
+    }
+
+    private static long hourOf(Instant instant) {
+        return Math.floorDiv(instant.getEpochSecond(), 3600L);
+    }
+
+    private static final class Minute {
+        final long index;
+        final LongAdder[] created = new LongAdder[TYPES.length];
+        final LongAdder[] closed = new LongAdder[TYPES.length];
+
+        Minute(long index) {
+            this.index = index;
+            for (int i = 0; i < TYPES.length; i++) {
+                created[i] = new LongAdder();
+                closed[i] = new LongAdder();
+            }
+        }
+    }
+}
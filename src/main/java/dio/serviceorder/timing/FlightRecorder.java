@@ -0,0 +1,96 @@
+package dio.serviceorder.timing;
+
+import dio.serviceorder.dto.RequestSampleDTO;
+import dio.serviceorder.jdbc.SqlStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ring buffer of the latest requests with their phase breakdown, so a slow request can be looked at
+ * after the fact. Slots are allocated once and overwritten in place.
+ */
+@Component
+public class FlightRecorder {
+    private static final Phase[] PHASES = Phase.values();
+
+    private final Slot[] slots;
+    private final AtomicLong next = new AtomicLong();
+
+    public FlightRecorder(@Value("${serviceorder.timing.flight-recorder.size:1024}") int size) {
+        slots = new Slot[size];
+        for (int i = 0; i < size; i++)
+            slots[i] = new Slot();
+    }
+
+    public void record(long timestampMillis, String method, String uri, int status, PhaseTimer timer, long durationNanos, SqlStats sqlStats) {
+        Slot slot = slots[(int) Math.floorMod(next.getAndIncrement(), (long) slots.length)];
+        synchronized (slot) {
+            slot.used = true;
+            slot.timestampMillis = timestampMillis;
+            slot.method = method;
+            slot.uri = uri;
+            slot.status = status;
+            slot.durationNanos = durationNanos;
+            for (Phase phase : PHASES)
+                slot.phaseNanos[phase.ordinal()] = timer.nanos(phase);
+            slot.sqlStatements = sqlStats == null ? 0 : sqlStats.getStatements();
+            slot.sqlRows = sqlStats == null ? 0 : sqlStats.getRows();
+            slot.sqlNanos = sqlStats == null ? 0 : sqlStats.getNanos();
+        }
+    }
+
+    /**
+     * Recorded requests, newest first, that took at least {@code minDuration} and, when {@code uri} is
+     * given, were handled by that URI pattern.
+     */
+    public List<RequestSampleDTO> samples(Duration minDuration, String uri, int limit) {
+        List<RequestSampleDTO> samples = new ArrayList<>();
+        long last = next.get() - 1;
+        for (long index = last; index > last - slots.length && index >= 0 && samples.size() < limit; index--) {
+            Slot slot = slots[(int) Math.floorMod(index, (long) slots.length)];
+            synchronized (slot) {
+                if (slot.used && slot.durationNanos >= minDuration.toNanos() && (uri == null || uri.equals(slot.uri)))
+                    samples.add(slot.toDTO());
+            }
+        }
+        return samples;
+    }
+
+    private static final class Slot {
+        final long[] phaseNanos = new long[PHASES.length];
+        boolean used;
+        long timestampMillis;
+        String method;
+        String uri;
+        int status;
+        long durationNanos;
+        long sqlStatements;
+        long sqlRows;
+        long sqlNanos;
+
+        RequestSampleDTO toDTO() {
+            Map<String, Double> phasesMs = new LinkedHashMap<>();
+            for (Phase phase : PHASES)
+                phasesMs.put(phase.getMetricName(), phaseNanos[phase.ordinal()] / 1e6);
+            return RequestSampleDTO.builder()
+                    .timestamp(Instant.ofEpochMilli(timestampMillis))
+                    .method(method)
+                    .uri(uri)
+                    .status(status)
+                    .durationMs(durationNanos / 1e6)
+                    .phasesMs(phasesMs)
+                    .sqlStatements(sqlStatements)
+                    .sqlRows(sqlRows)
+                    .sqlMs(sqlNanos / 1e6)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package dio.serviceorder.timing;
+
+import dio.serviceorder.dto.RequestSampleDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * {@code /actuator/flightrecorder}: the latest requests and their phase breakdown, optionally only those
+ * slower than {@code minDurationMs} or of one {@code uri} pattern.
+ */
+@Component
+@Endpoint(id = "flightrecorder")
+public class FlightRecorderEndpoint {
+    @Autowired
+    private FlightRecorder flightRecorder;
+
+    @ReadOperation
+    public List<RequestSampleDTO> samples(@Nullable Long minDurationMs, @Nullable String uri, @Nullable Integer limit) {
+        return flightRecorder.samples(Duration.ofMillis(minDurationMs == null ? 0 : minDurationMs), uri,
+                limit == null ? 100 : limit);
+    }
+}
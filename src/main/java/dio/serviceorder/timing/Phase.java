@@ -0,0 +1,22 @@
+package dio.serviceorder.timing;
+
+/**
+ * Parts of a request timed by {@link PhaseTimer}. Phases may nest: the controller phase contains the
+ * repository and mapper calls made by the services.
+ */
+public enum Phase {
+    CONTROLLER("controller"),
+    REPOSITORY("repository"),
+    MAPPER("mapper"),
+    JSON("json");
+
+    private final String metricName;
+
+    Phase(String metricName) {
+        this.metricName = metricName;
+    }
+
+    public String getMetricName() {
+        return metricName;
+    }
+}
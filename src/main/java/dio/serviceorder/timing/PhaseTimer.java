@@ -0,0 +1,87 @@
+package dio.serviceorder.timing;
+
+import java.util.Locale;
+
+/**
+ * Time spent in each {@link Phase} of the request handled by the current thread.
+ *
+ * <p>Each thread reuses one timer, so starting and stopping a phase costs a thread-local lookup and a
+ * {@code nanoTime} call and allocates nothing. Re-entering a phase that is already running is only
+ * counted once. Outside of a request, on threads where no timer was begun, every call is a no-op.
+ */
+public final class PhaseTimer {
+    private static final Phase[] PHASES = Phase.values();
+    private static final ThreadLocal<PhaseTimer> CURRENT = ThreadLocal.withInitial(PhaseTimer::new);
+
+    private final long[] nanos = new long[PHASES.length];
+    private final long[] starts = new long[PHASES.length];
+    private final int[] depths = new int[PHASES.length];
+    private boolean active;
+    private long requestStart;
+
+    private PhaseTimer() {
+    }
+
+    /**
+     * Resets the timer of the current thread and starts timing a new request.
+     */
+    public static PhaseTimer begin() {
+        PhaseTimer timer = CURRENT.get();
+        for (int i = 0; i < PHASES.length; i++) {
+            timer.nanos[i] = 0;
+            timer.depths[i] = 0;
+        }
+        timer.active = true;
+        timer.requestStart = System.nanoTime();
+        return timer;
+    }
+
+    public static boolean isActive() {
+        return CURRENT.get().active;
+    }
+
+    public static void start(Phase phase) {
+        PhaseTimer timer = CURRENT.get();
+        if (timer.active && timer.depths[phase.ordinal()]++ == 0)
+            timer.starts[phase.ordinal()] = System.nanoTime();
+    }
+
+    public static void stop(Phase phase) {
+        PhaseTimer timer = CURRENT.get();
+        int i = phase.ordinal();
+        if (timer.active && timer.depths[i] > 0 && --timer.depths[i] == 0)
+            timer.nanos[i] += System.nanoTime() - timer.starts[i];
+    }
+
+    public void end() {
+        active = false;
+    }
+
+    public long nanos(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    /**
+     * Time since the request began.
+     */
+    public long elapsedNanos() {
+        return System.nanoTime() - requestStart;
+    }
+
+    /**
+     * {@code Server-Timing} header value with the request time so far and the time of every phase.
+     */
+    public String serverTiming() {
+        StringBuilder header = new StringBuilder(128);
+        appendMetric(header, "total", elapsedNanos());
+        for (Phase phase : PHASES) {
+            header.append(", ");
+            appendMetric(header, phase.getMetricName(), nanos[phase.ordinal()]);
+        }
+        return header.toString();
+    }
+
+    private static void appendMetric(StringBuilder header, String name, long nanos) {
+        header.append(name).append(";dur=").append(String.format(Locale.ROOT, "%.2f", nanos / 1e6));
+    }
+}
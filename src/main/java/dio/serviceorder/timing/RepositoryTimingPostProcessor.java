@@ -0,0 +1,29 @@
+package dio.serviceorder.timing;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+
+/**
+ * Adds an interceptor timing every Spring Data repository call as the {@link Phase#REPOSITORY} phase,
+ * including the transaction the repository opens. Calls made on the shard query pool are not
+ * part of the request thread and are not timed.
+ */
+public class RepositoryTimingPostProcessor implements BeanPostProcessor {
+    private static final MethodInterceptor TIMING = invocation -> {
+        PhaseTimer.start(Phase.REPOSITORY);
+        try {
+            return invocation.proceed();
+        } finally {
+            PhaseTimer.stop(Phase.REPOSITORY);
+        }
+    };
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof RepositoryFactoryBeanSupport)
+            ((RepositoryFactoryBeanSupport<?, ?, ?>) bean).addRepositoryFactoryCustomizer(factory ->
+                    factory.addRepositoryProxyPostProcessor((proxyFactory, repositoryInformation) -> proxyFactory.addAdvice(0, TIMING)));
+        return bean;
+    }
+}
@@ -0,0 +1,54 @@
+package dio.serviceorder.timing;
+
+import dio.serviceorder.jdbc.SqlStats;
+import dio.serviceorder.jdbc.SqlStatsContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Times the phases of every request, reports them in a {@code Server-Timing} header, records them in the
+ * {@link FlightRecorder} and logs the breakdown of requests slower than the threshold.
+ *
+ * <p>Runs inside the SQL statement counting filter, so the statements of the request are still
+ * available when it is recorded.
+ */
+@Slf4j
+public class RequestTimingFilter extends OncePerRequestFilter {
+    private final FlightRecorder flightRecorder;
+    private final long slowRequestNanos;
+
+    public RequestTimingFilter(FlightRecorder flightRecorder, Duration slowRequestThreshold) {
+        this.flightRecorder = flightRecorder;
+        this.slowRequestNanos = slowRequestThreshold.toNanos();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long timestamp = System.currentTimeMillis();
+        PhaseTimer timer = PhaseTimer.begin();
+        ServerTimingResponseWrapper timedResponse = new ServerTimingResponseWrapper(response, timer::serverTiming);
+        try {
+            filterChain.doFilter(request, timedResponse);
+        } finally {
+            timedResponse.addServerTiming();
+            timer.end();
+            long durationNanos = timer.elapsedNanos();
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+            SqlStats sqlStats = SqlStatsContext.current();
+            flightRecorder.record(timestamp, request.getMethod(), uri, response.getStatus(), timer, durationNanos, sqlStats);
+            if (durationNanos >= slowRequestNanos)
+                log.warn("Slow request {} {} took {} ms: {}{}", request.getMethod(), uri, durationNanos / 1_000_000,
+                        timer.serverTiming(), sqlStats == null ? "" : ", sql " + sqlStats);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package dio.serviceorder.timing;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.function.Supplier;
+
+/**
+ * Adds a {@code Server-Timing} header right before the body starts, the last moment headers can still
+ * be set, or when the request completes without a body. Nested wrappers each add their own header.
+ */
+public class ServerTimingResponseWrapper extends HttpServletResponseWrapper {
+    public static final String SERVER_TIMING = "Server-Timing";
+
+    private final Supplier<String> serverTiming;
+    private boolean added;
+
+    public ServerTimingResponseWrapper(HttpServletResponse response, Supplier<String> serverTiming) {
+        super(response);
+        this.serverTiming = serverTiming;
+    }
+
+    public void addServerTiming() {
+        if (added || isCommitted())
+            return;
+        added = true;
+        String value = serverTiming.get();
+        if (value != null && !value.isEmpty())
+            addHeader(SERVER_TIMING, value);
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        addServerTiming();
+        return super.getOutputStream();
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        addServerTiming();
+        return super.getWriter();
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        addServerTiming();
+        super.flushBuffer();
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        addServerTiming();
+        super.sendError(sc);
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        addServerTiming();
+        super.sendError(sc, msg);
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        addServerTiming();
+        super.sendRedirect(location);
+    }
+}
@@ -0,0 +1,82 @@
+package dio.serviceorder.timing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+
+/**
+ * JSON converter timing reads and writes as the {@link Phase#JSON} phase.
+ *
+ * <p>During a timed request the body is serialized into a per-thread buffer first, so the time is
+ * known before the response headers go out and it can be part of the {@code Server-Timing} header.
+ * This also sets the content length. Buffers that grew beyond 1 MB are dropped after use.
+ */
+public class TimedJacksonHttpMessageConverter extends MappingJackson2HttpMessageConverter {
+    private static final int MAX_RETAINED_BUFFER = 1024 * 1024;
+    private static final ThreadLocal<Buffer> BUFFER = ThreadLocal.withInitial(Buffer::new);
+
+    public TimedJacksonHttpMessageConverter(ObjectMapper objectMapper) {
+        super(objectMapper);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException, HttpMessageNotReadableException {
+        PhaseTimer.start(Phase.JSON);
+        try {
+            return super.read(type, contextClass, inputMessage);
+        } finally {
+            PhaseTimer.stop(Phase.JSON);
+        }
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+        if (!PhaseTimer.isActive()) {
+            super.writeInternal(object, type, outputMessage);
+            return;
+        }
+        Buffer buffer = BUFFER.get();
+        buffer.reset();
+        PhaseTimer.start(Phase.JSON);
+        try {
+            super.writeInternal(object, type, new HttpOutputMessage() {
+                @Override
+                public OutputStream getBody() {
+                    return buffer;
+                }
+
+                @Override
+                public HttpHeaders getHeaders() {
+                    return outputMessage.getHeaders();
+                }
+            });
+        } finally {
+            PhaseTimer.stop(Phase.JSON);
+        }
+        try {
+            outputMessage.getHeaders().setContentLength(buffer.size());
+            buffer.writeTo(outputMessage.getBody());
+        } finally {
+            if (buffer.capacity() > MAX_RETAINED_BUFFER)
+                BUFFER.remove();
+        }
+    }
+
+    private static final class Buffer extends ByteArrayOutputStream {
+        Buffer() {
+            super(8 * 1024);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package dio.serviceorder.timing;
+
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.ServletInvocableHandlerMethod;
+
+/**
+ * Times the controller method itself as the {@link Phase#CONTROLLER} phase, without argument
+ * resolution and return value handling, where the JSON conversion happens.
+ */
+public class TimedRequestMappingHandlerAdapter extends RequestMappingHandlerAdapter {
+
+    @Override
+    protected ServletInvocableHandlerMethod createInvocableHandlerMethod(HandlerMethod handlerMethod) {
+        return new ServletInvocableHandlerMethod(handlerMethod) {
+            @Override
+            protected Object doInvoke(Object... args) throws Exception {
+                PhaseTimer.start(Phase.CONTROLLER);
+                try {
+                    return super.doInvoke(args);
+                } finally {
+                    PhaseTimer.stop(Phase.CONTROLLER);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,48 @@
+-- Schema of every shard of the sharded profile. ${identity-start} is replaced per shard with the first id
+-- of the shard's id range, so that service order ids never collide across shards and tell their shard.
+create table if not exists tb_customer (
+    id bigint generated by default as identity primary key,
+    name varchar(255) not null,
+    version bigint default 0 not null
+);
+
+create table if not exists tb_service_order (
+    id bigint generated by default as identity (start with ${identity-start}) primary key,
+    closed boolean not null,
+    type varchar(255) not null,
+    customer_id bigint references tb_customer (id),
+    created_at timestamp not null,
+    closed_at timestamp,
+    assignee varchar(255),
+    lease_expires_at timestamp,
+    escalated_at timestamp,
+    version bigint default 0 not null
+);
+
+create index if not exists ix_service_order_customer on tb_service_order (customer_id);
+create index if not exists ix_service_order_created_at on tb_service_order (created_at, id);
+create index if not exists ix_service_order_lease_expires_at on tb_service_order (lease_expires_at);
+
+create table if not exists tb_change_log (
+    id bigint generated by default as identity primary key,
+    entity varchar(32) not null,
+    entity_id bigint not null,
+    node varchar(64) not null,
+    created_at timestamp not null
+);
+
+create index if not exists ix_change_log_created_at on tb_change_log (created_at);
+
+create table if not exists tb_aging_checkpoint (
+    id bigint generated by default as identity primary key,
+    run_id varchar(32) not null,
+    type varchar(32) not null,
+    range_start bigint not null,
+    range_end bigint not null,
+    created_before timestamp not null,
+    last_id bigint not null,
+    done boolean not null,
+    claimed_by varchar(64),
+    claimed_until timestamp,
+    constraint uk_aging_checkpoint_range unique (run_id, type, range_start)
+);
@@ -0,0 +1,189 @@
+package dio.serviceorder.aging;
+
+import dio.serviceorder.dto.CustomerDTO;
+import dio.serviceorder.dto.ServiceOrderDTO;
+import dio.serviceorder.enums.AgingAction;
+import dio.serviceorder.enums.ServiceType;
+import dio.serviceorder.service.CustomerService;
+import dio.serviceorder.service.ServiceOrderService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@SpringBootTest(properties = {
+        "serviceorder.aging.chunk-size=3",
+        "serviceorder.aging.parallelism=2",
+        "serviceorder.aging.rules.removal.max-age=30d",
+        "serviceorder.aging.rules.removal.action=close",
+        "serviceorder.aging.rules.repair.max-age=7d",
+        "serviceorder.aging.rules.repair.action=escalate"
+})
+public class AgingJobTest {
+    @Autowired
+    private AgingJob agingJob;
+
+    @Autowired
+    private AgingProperties properties;
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private ServiceOrderService serviceOrderService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void whenServiceOrdersOutliveTheRuleOfTheirTypeThenTheRunShouldCloseOrEscalateThem() throws Exception {
+        // given
+        CustomerDTO customer = customerService.createCustomer(new CustomerDTO(null, "Aging", null));
+        List<ServiceOrderDTO> agedRemovals = importServiceOrders(customer, ServiceType.REMOVAL, false, Duration.ofDays(40), 10);
+        ServiceOrderDTO recentRemoval = importServiceOrders(customer, ServiceType.REMOVAL, false, Duration.ofDays(1), 1).get(0);
+        ServiceOrderDTO closedRemoval = importServiceOrders(customer, ServiceType.REMOVAL, true, Duration.ofDays(40), 1).get(0);
+        List<ServiceOrderDTO> agedRepairs = importServiceOrders(customer, ServiceType.REPAIR, false, Duration.ofDays(10), 4);
+        ServiceOrderDTO agedInstallation = importServiceOrders(customer, ServiceType.INSTALLATION, false, Duration.ofDays(100), 1).get(0);
+
+        // when
+        Map<AgingAction, Long> aged = agingJob.run("aging-test");
+
+        // then
+        assertThat(aged.get(AgingAction.CLOSE), is(10L));
+        assertThat(aged.get(AgingAction.ESCALATE), is(4L));
+        for (ServiceOrderDTO agedRemoval : agedRemovals) {
+            ServiceOrderDTO found = serviceOrderService.findById(agedRemoval.getId());
+            assertThat(found.getClosed(), is(true));
+            assertThat(found.getClosedAt(), is(notNullValue()));
+        }
+        assertThat(serviceOrderService.findById(recentRemoval.getId()).getClosed(), is(false));
+        assertThat(serviceOrderService.findById(closedRemoval.getId()).getClosedAt(), is(closedRemoval.getClosedAt()));
+        assertThat(serviceOrderService.findById(agedInstallation.getId()).getClosed(), is(false));
+        for (ServiceOrderDTO agedRepair : agedRepairs) {
+            ServiceOrderDTO found = serviceOrderService.findById(agedRepair.getId());
+            assertThat(found.getClosed(), is(false));
+            assertThat(found.getEscalatedAt(), is(equalTo(escalatedAt(agedRepair.getId()).toInstant())));
+            assertThat(found.getVersion(), is(agedRepair.getVersion() + 1));
+        }
+        List<ServiceOrderDTO> repairs = serviceOrderService.listAllWithServiceType(ServiceType.REPAIR);
+        assertThat(repairs.stream()
+                .filter(serviceOrder -> serviceOrder.getId().equals(agedRepairs.get(0).getId()))
+                .map(ServiceOrderDTO::getEscalatedAt)
+                .findFirst()
+                .orElse(null), is(notNullValue()));
+        List<Long> openIds = serviceOrderService.listAllWithClosedStatus(false).stream()
+                .map(ServiceOrderDTO::getId)
+                .collect(Collectors.toList());
+        assertThat(openIds, not(hasItem(agedRemovals.get(0).getId())));
+        assertThat(serviceOrderService.stats(customer.getId(), ServiceType.REMOVAL, true).getTotal(), is(11L));
+        assertThat(agingJob.run("aging-test").values(), everyItem(is(0L)));
+    }
+
+    @Test
+    void whenARunIsResumedThenItShouldOnlyScanTheRangesItHadNotFinished() throws Exception {
+        // given
+        CustomerDTO customer = customerService.createCustomer(new CustomerDTO(null, "Aging resume", null));
+        ServiceOrderDTO first = importServiceOrders(customer, ServiceType.REMOVAL, false, Duration.ofDays(40), 1).get(0);
+        // Enough orders in between for the two aged ones to fall in different ranges.
+        importServiceOrders(customer, ServiceType.INSTALLATION, false, Duration.ofDays(1), 40);
+        ServiceOrderDTO second = importServiceOrders(customer, ServiceType.REMOVAL, false, Duration.ofDays(40), 1).get(0);
+        agingJob.run("aging-resume");
+        ServiceOrderDTO interrupted = reopen(first);
+        ServiceOrderDTO finished = reopen(second);
+        // As if the run had stopped before committing the first chunk of the range of the interrupted order.
+        jdbcTemplate.update("update tb_aging_checkpoint set done = false, last_id = range_start " +
+                "where run_id = ? and type = ? and range_start < ? and range_end >= ?",
+                "aging-resume", ServiceType.REMOVAL.name(), interrupted.getId(), interrupted.getId());
+        jdbcTemplate.update("update tb_aging_checkpoint set done = true " +
+                "where run_id = ? and type = ? and range_start < ? and range_end >= ?",
+                "aging-resume", ServiceType.REMOVAL.name(), finished.getId(), finished.getId());
+
+        // when
+        Map<AgingAction, Long> resumed = agingJob.run("aging-resume");
+
+        // then
+        assertThat(resumed.get(AgingAction.CLOSE), is(1L));
+        assertThat(serviceOrderService.findById(interrupted.getId()).getClosed(), is(true));
+        assertThat(serviceOrderService.findById(finished.getId()).getClosed(), is(false));
+        assertThat(agingJob.run("aging-resume-next").get(AgingAction.CLOSE), is(1L));
+        assertThat(serviceOrderService.findById(finished.getId()).getClosed(), is(true));
+    }
+
+    @Test
+    void whenARangeIsClaimedByAnotherWorkerThenTheRunShouldLeaveIt() throws Exception {
+        // given
+        CustomerDTO customer = customerService.createCustomer(new CustomerDTO(null, "Aging claimed", null));
+        ServiceOrderDTO aged = importServiceOrders(customer, ServiceType.REMOVAL, false, Duration.ofDays(40), 1).get(0);
+        agingJob.run("aging-claimed");
+        ServiceOrderDTO reopened = reopen(aged);
+        // As if another instance had claimed the range and not yet committed its first chunk.
+        jdbcTemplate.update("update tb_aging_checkpoint set done = false, last_id = range_start, claimed_by = ?, claimed_until = ? " +
+                "where run_id = ? and type = ? and range_start < ? and range_end >= ?",
+                "other-instance", Timestamp.from(Instant.now().plus(Duration.ofMinutes(5))),
+                "aging-claimed", ServiceType.REMOVAL.name(), reopened.getId(), reopened.getId());
+
+        // when
+        Map<AgingAction, Long> resumed = agingJob.run("aging-claimed");
+
+        // then
+        assertThat(resumed.get(AgingAction.CLOSE), is(0L));
+        assertThat(serviceOrderService.findById(reopened.getId()).getClosed(), is(false));
+        assertThat(agingJob.run("aging-claimed-next").get(AgingAction.CLOSE), is(1L));
+    }
+
+    @Test
+    void whenTheRuleOfAnUnfinishedRunIsRemovedThenItsRangesShouldBeSkipped() throws Exception {
+        // given
+        CustomerDTO customer = customerService.createCustomer(new CustomerDTO(null, "Aging removed rule", null));
+        ServiceOrderDTO aged = importServiceOrders(customer, ServiceType.REMOVAL, false, Duration.ofDays(40), 1).get(0);
+        agingJob.run("aging-removed-rule");
+        ServiceOrderDTO reopened = reopen(aged);
+        jdbcTemplate.update("update tb_aging_checkpoint set done = false, last_id = range_start where run_id = ? and type = ?",
+                "aging-removed-rule", ServiceType.REMOVAL.name());
+        AgingProperties.Rule removed = properties.getRules().remove(ServiceType.REMOVAL);
+
+        // when
+        Map<AgingAction, Long> resumed;
+        try {
+            resumed = agingJob.run("aging-removed-rule");
+        } finally {
+            properties.getRules().put(ServiceType.REMOVAL, removed);
+        }
+
+        // then
+        assertThat(resumed.get(AgingAction.CLOSE), is(0L));
+        assertThat(serviceOrderService.findById(reopened.getId()).getClosed(), is(false));
+        assertThat(jdbcTemplate.queryForObject("select count(*) from tb_aging_checkpoint where run_id = ? and done = false",
+                Long.class, "aging-removed-rule"), is(0L));
+        assertThat(agingJob.run("aging-removed-rule-next").get(AgingAction.CLOSE), is(1L));
+    }
+
+    private List<ServiceOrderDTO> importServiceOrders(CustomerDTO customer, ServiceType type, boolean closed, Duration age, int count) {
+        Instant createdAt = Instant.now().minus(age);
+        List<ServiceOrderDTO> serviceOrders = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            serviceOrders.add(new ServiceOrderDTO(null, customer, closed, type, createdAt, closed ? createdAt : null, null, null));
+        return serviceOrderService.importBatch(serviceOrders);
+    }
+
+    private ServiceOrderDTO reopen(ServiceOrderDTO serviceOrder) throws Exception {
+        ServiceOrderDTO reopened = serviceOrderService.findById(serviceOrder.getId());
+        reopened.setClosed(false);
+        return serviceOrderService.update(reopened, null);
+    }
+
+    private Timestamp escalatedAt(Long id) {
+        return jdbcTemplate.queryForObject("select escalated_at from tb_service_order where id = ?", Timestamp.class, id);
+    }
+}
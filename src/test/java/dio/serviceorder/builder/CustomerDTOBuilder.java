@@ -12,10 +12,13 @@ public class CustomerDTOBuilder {
     @Builder.Default
     private String name = "Alfredo";
 
+    private Long version;
+
     public CustomerDTO toCustomerDTO(){
         return new CustomerDTO(
                 id,
-                name
+                name,
+                version
         );
     }
 }
@@ -5,6 +5,8 @@ import dio.serviceorder.dto.ServiceOrderDTO;
 import dio.serviceorder.enums.ServiceType;
 import lombok.Builder;
 
+import java.time.Instant;
+
 @Builder
 public class ServiceOrderDTOBuilder {
     @Builder.Default
@@ -19,10 +21,22 @@ public class ServiceOrderDTOBuilder {
     @Builder.Default
     private ServiceType type = ServiceType.INSTALLATION;
 
+    private Instant createdAt;
+
+    private Instant closedAt;
+
+    private Instant escalatedAt;
+
+    private Long version;
+
     public ServiceOrderDTO toServiceOrderDTO() {
         return new ServiceOrderDTO(id,
                 customer,
                 closed,
-                type);
+                type,
+                createdAt,
+                closedAt,
+                escalatedAt,
+                version);
     }
 }
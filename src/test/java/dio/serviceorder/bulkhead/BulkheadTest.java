@@ -0,0 +1,128 @@
+package dio.serviceorder.bulkhead;
+
+import dio.serviceorder.exception.BulkheadFullException;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class BulkheadTest {
+    private static final String SLOW_QUERY = "select sum(x) from system_range(1, 100000000000)";
+
+    private final DataSource dataSource = QueryScopeDataSource.wrap(h2());
+
+    @AfterEach
+    void clearScope() {
+        QueryScope.clear();
+    }
+
+    @Test
+    void whenAQueryOutlivesTheTimeoutOfItsWorkloadThenItShouldBeCancelled() throws SQLException {
+        // given
+        QueryScope.open().enter(Workload.LIST, Duration.ofSeconds(1));
+        long start = System.nanoTime();
+
+        // when
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            assertThrows(SQLException.class, () -> statement.executeQuery(SLOW_QUERY));
+        }
+
+        // then
+        assertThat(Duration.ofNanos(System.nanoTime() - start), is(lessThan(Duration.ofSeconds(5))));
+    }
+
+    @Test
+    void whenTheTimeoutIsAlreadySpentThenNoQueryShouldRun() throws SQLException {
+        // given
+        QueryScope.open().enter(Workload.INTERACTIVE, Duration.ZERO);
+
+        // then
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            assertThrows(SQLTimeoutException.class, () -> statement.executeQuery("select 1"));
+        }
+    }
+
+    @Test
+    void whenTheScopeIsCancelledThenItsRunningQueryShouldStop() throws Exception {
+        // given
+        QueryScope scope = new QueryScope();
+        CompletableFuture<Object> query = CompletableFuture.supplyAsync(() -> QueryScope.callWith(scope, () -> {
+            try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+                return statement.executeQuery(SLOW_QUERY);
+            } catch (SQLException e) {
+                return e;
+            }
+        }));
+
+        // when
+        Thread.sleep(200);
+        scope.cancel();
+
+        // then
+        assertThat(query.get(5, TimeUnit.SECONDS), is(instanceOf(SQLException.class)));
+    }
+
+    @Test
+    void whenAWorkloadHasNoPermitLeftThenItsOperationsShouldBeRejected() throws Exception {
+        // given
+        BulkheadProperties bulkheadProperties = new BulkheadProperties();
+        bulkheadProperties.getWorkload(Workload.LIST).setMaxConcurrent(1);
+        bulkheadProperties.getWorkload(Workload.LIST).setMaxWait(Duration.ofMillis(10));
+        BulkheadInterceptor bulkheadInterceptor = new BulkheadInterceptor(bulkheadProperties);
+        ProxyFactory proxyFactory = new ProxyFactory(new Operations());
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(bulkheadInterceptor);
+        Operations operations = (Operations) proxyFactory.getProxy();
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // when
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> operations.list(running, release));
+        running.await();
+
+        // then
+        assertThrows(BulkheadFullException.class, () -> operations.list(new CountDownLatch(1), new CountDownLatch(0)));
+        operations.interactive();
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        assertThat(bulkheadInterceptor.availablePermits(Workload.LIST), is(equalTo(1)));
+    }
+
+    public static class Operations {
+        @Bulkhead(Workload.LIST)
+        public void list(CountDownLatch running, CountDownLatch release) {
+            assertThat(QueryScope.current().getWorkload(), is(Workload.LIST));
+            running.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Bulkhead(Workload.INTERACTIVE)
+        public void interactive() {
+            assertThat(QueryScope.current().getWorkload(), is(Workload.INTERACTIVE));
+        }
+    }
+
+    private static DataSource h2() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:bulkhead");
+        return dataSource;
+    }
+}
@@ -0,0 +1,87 @@
+package dio.serviceorder.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class IdBloomFilterTest {
+
+    @Test
+    void whenFilterIsNotBuiltThenEveryIdShouldBePossiblyPresent() {
+        // given
+        IdBloomFilter filter = new IdBloomFilter(1000, 0.01);
+
+        // then
+        assertThat(filter.isReady(), is(false));
+        assertThat(filter.mightContain(42L), is(true));
+    }
+
+    @Test
+    void whenFilterIsRebuiltThenKnownIdsShouldBePresentAndUnknownIdsMostlyAbsent() {
+        // given
+        IdBloomFilter filter = new IdBloomFilter(10_000, 0.01);
+
+        // when
+        filter.beginRebuild();
+        filter.finishRebuild(LongStream.rangeClosed(1, 10_000).boxed().collect(Collectors.toList()));
+        long falsePositives = LongStream.rangeClosed(10_001, 20_000).filter(filter::mightContain).count();
+
+        // then
+        assertThat(LongStream.rangeClosed(1, 10_000).allMatch(filter::mightContain), is(true));
+        assertThat(falsePositives, is(lessThan(300L)));
+    }
+
+    @Test
+    void whenIdIsAddedAfterRebuildThenItShouldBePresent() {
+        // given
+        IdBloomFilter filter = new IdBloomFilter(1000, 0.01);
+        filter.beginRebuild();
+        filter.finishRebuild(Arrays.asList(1L, 2L));
+
+        // when
+        filter.add(3L);
+
+        // then
+        assertThat(filter.mightContain(3L), is(true));
+    }
+
+    @Test
+    void whenAnIdIsAddedWhileTheIdsAreReadThenTheRebuildShouldKeepIt() {
+        // given
+        IdBloomFilter filter = new IdBloomFilter(1000, 0.01);
+        filter.beginRebuild();
+        filter.finishRebuild(Collections.singletonList(1L));
+
+        // when
+        filter.beginRebuild();
+        List<Long> ids = Arrays.asList(1L, 2L);
+        filter.add(3L);
+        filter.finishRebuild(ids);
+
+        // then
+        assertThat(filter.mightContain(3L), is(true));
+    }
+
+    @Test
+    void whenRebuildReplacesTheContentThenRemovedIdsShouldBeAbsent() {
+        // given
+        IdBloomFilter filter = new IdBloomFilter(1000, 0.01);
+        filter.beginRebuild();
+        filter.finishRebuild(Collections.singletonList(1L));
+
+        // when
+        filter.beginRebuild();
+        filter.finishRebuild(Collections.singletonList(2L));
+
+        // then
+        assertThat(filter.mightContain(1L), is(false));
+        assertThat(filter.getDefiniteMisses(), is(equalTo(1L)));
+    }
+}
@@ -0,0 +1,116 @@
+package dio.serviceorder.cache;
+
+import dio.serviceorder.dto.CustomerDTO;
+import dio.serviceorder.dto.ServiceOrderDTO;
+import dio.serviceorder.enums.ServiceType;
+import dio.serviceorder.readmodel.ServiceOrderReadModel;
+import dio.serviceorder.service.CustomerService;
+import dio.serviceorder.service.ServiceOrderService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class ListResponseCacheTest {
+    private static final byte[] SMALL_BODY = "[]".getBytes(StandardCharsets.UTF_8);
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private ServiceOrderService serviceOrderService;
+
+    @Autowired
+    private ServiceOrderReadModel readModel;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void whenAWriteHappensAfterAResponseWasComputedThenItShouldNotBeStored() {
+        // given
+        ListResponseCache cache = new ListResponseCache(64, DataSize.ofMegabytes(1), true);
+        long generation = cache.generation();
+
+        // when
+        cache.invalidate();
+        cache.put("/open", generation, "application/json", SMALL_BODY);
+
+        // then
+        assertThat(cache.get("/open"), is(nullValue()));
+        assertThat(cache.bytes(), is(0L));
+    }
+
+    @Test
+    void whenTheCacheIsFullThenNewResponsesShouldNotBeStored() {
+        // given
+        ListResponseCache cache = new ListResponseCache(2, DataSize.ofBytes(5), false);
+
+        // when
+        cache.put("/open", cache.generation(), "application/json", SMALL_BODY);
+        cache.put("/closed", cache.generation(), "application/json", "[{}]".getBytes(StandardCharsets.UTF_8));
+        cache.put("/type/REPAIR", cache.generation(), "application/json", SMALL_BODY);
+        cache.put("/type/REMOVAL", cache.generation(), "application/json", SMALL_BODY);
+
+        // then
+        assertThat(cache.get("/open").getBody(), is(SMALL_BODY));
+        assertThat(cache.get("/closed"), is(nullValue()));
+        assertThat(cache.get("/type/REPAIR").getBody(), is(SMALL_BODY));
+        assertThat(cache.get("/type/REMOVAL"), is(nullValue()));
+        assertThat(cache.bytes(), is(4L));
+    }
+
+    @Test
+    void whenAListIsRequestedAgainThenItShouldBeServedFromTheCacheUntilTheNextWrite() throws Exception {
+        // given
+        CustomerDTO customer = customerService.createCustomer(new CustomerDTO(null, "Cached customer", null));
+        List<ServiceOrderDTO> created = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+            created.add(serviceOrderService.create(new ServiceOrderDTO(null, customer, false, ServiceType.REMOVAL, null, null, null, null)));
+        ServiceOrderDTO hidden = created.get(0);
+        mockMvc.perform(get("/api/v1/service-order/type/REMOVAL"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, is(nullValue())));
+
+        try {
+            // when
+            // Changes the list behind the back of the service, which is the only one invalidating the cache.
+            readModel.remove(hidden.getId());
+            byte[] gzipped = mockMvc.perform(get("/api/v1/service-order/type/REMOVAL")
+                            .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                    .andReturn().getResponse().getContentAsByteArray();
+            String cached = StreamUtils.copyToString(new GZIPInputStream(new ByteArrayInputStream(gzipped)), StandardCharsets.UTF_8);
+            serviceOrderService.create(new ServiceOrderDTO(null, customer, false, ServiceType.REMOVAL, null, null, null, null));
+
+            // then
+            assertThat(cached, containsString("\"id\":" + hidden.getId() + ","));
+            mockMvc.perform(get("/api/v1/service-order/type/REMOVAL"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$[*].id", not(hasItem(hidden.getId().intValue()))))
+                    .andExpect(jsonPath("$[*].id", hasItem(created.get(1).getId().intValue())));
+        } finally {
+            readModel.upsert(hidden);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package dio.serviceorder.cache;
+
+import dio.serviceorder.builder.ServiceOrderDTOBuilder;
+import dio.serviceorder.dto.ServiceOrderDTO;
+import dio.serviceorder.replica.ReplicaContext;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ServiceOrderReadCoalescerTest {
+
+    @Test
+    void whenTheCallerIsPinnedToThePrimaryThenItShouldNotJoinAReadInFlight() throws Exception {
+        // given
+        ServiceOrderReadCoalescer readCoalescer = new ServiceOrderReadCoalescer(Duration.ofSeconds(5));
+        ServiceOrderDTO beforeWrite = ServiceOrderDTOBuilder.builder().id(1L).closed(false).build().toServiceOrderDTO();
+        ServiceOrderDTO afterWrite = ServiceOrderDTOBuilder.builder().id(1L).closed(true).build().toServiceOrderDTO();
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoader = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Optional<ServiceOrderDTO>> inFlight = executor.submit(() -> readCoalescer.findById(1L, () -> {
+            loaderStarted.countDown();
+            await(releaseLoader);
+            return Optional.of(beforeWrite);
+        }));
+        loaderStarted.await();
+
+        // when
+        Optional<ServiceOrderDTO> found;
+        ReplicaContext.pinToPrimary();
+        try {
+            found = readCoalescer.findById(1L, () -> Optional.of(afterWrite));
+        } finally {
+            ReplicaContext.clear();
+            releaseLoader.countDown();
+        }
+
+        // then
+        assertThat(found.get().getClosed(), is(true));
+        assertThat(inFlight.get().get().getClosed(), is(false));
+        executor.shutdown();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
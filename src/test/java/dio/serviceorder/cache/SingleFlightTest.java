@@ -0,0 +1,125 @@
+package dio.serviceorder.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SingleFlightTest {
+
+    @Test
+    void whenIdenticalCallsAreConcurrentThenTheLoaderShouldRunOnce() throws Exception {
+        // given
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>(Duration.ofSeconds(5));
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoader = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        // when
+        Future<String> leader = executor.submit(() -> singleFlight.execute(1L, () -> {
+            loads.incrementAndGet();
+            loaderStarted.countDown();
+            await(releaseLoader);
+            return "order-1";
+        }));
+        loaderStarted.await();
+        Future<String> follower1 = executor.submit(() -> singleFlight.execute(1L, () -> "unexpected"));
+        Future<String> follower2 = executor.submit(() -> singleFlight.execute(1L, () -> "unexpected"));
+        while (singleFlight.getCoalesced() < 2)
+            Thread.yield();
+        releaseLoader.countDown();
+
+        // then
+        assertThat(leader.get(), is(equalTo("order-1")));
+        assertThat(follower1.get(), is(equalTo("order-1")));
+        assertThat(follower2.get(), is(equalTo("order-1")));
+        assertThat(loads.get(), is(equalTo(1)));
+        assertThat(singleFlight.getExecutions(), is(equalTo(1L)));
+        executor.shutdown();
+    }
+
+    @Test
+    void whenTheSharedCallTakesTooLongThenTheFollowerShouldLoadOnItsOwn() throws Exception {
+        // given
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>(Duration.ofMillis(50));
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoader = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        // when
+        Future<String> leader = executor.submit(() -> singleFlight.execute(1L, () -> {
+            loaderStarted.countDown();
+            await(releaseLoader);
+            return "slow";
+        }));
+        loaderStarted.await();
+        String followerResult = singleFlight.execute(1L, () -> "own");
+        releaseLoader.countDown();
+
+        // then
+        assertThat(followerResult, is(equalTo("own")));
+        assertThat(leader.get(), is(equalTo("slow")));
+        assertThat(singleFlight.getWaitTimeouts(), is(equalTo(1L)));
+        executor.shutdown();
+    }
+
+    @Test
+    void whenCallsAreCoalescedThenEachWaiterShouldGetItsOwnCopy() throws Exception {
+        // given
+        SingleFlight<Long, StringBuilder> singleFlight = new SingleFlight<>(Duration.ofSeconds(5), StringBuilder::new);
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoader = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+
+        // when
+        Future<StringBuilder> leader = executor.submit(() -> singleFlight.execute(1L, () -> {
+            loaderStarted.countDown();
+            await(releaseLoader);
+            return new StringBuilder("order-1");
+        }));
+        loaderStarted.await();
+        Future<StringBuilder> follower1 = executor.submit(() -> singleFlight.execute(1L, StringBuilder::new));
+        Future<StringBuilder> follower2 = executor.submit(() -> singleFlight.execute(1L, StringBuilder::new));
+        while (singleFlight.getCoalesced() < 2)
+            Thread.yield();
+        releaseLoader.countDown();
+        follower1.get().append("-changed");
+
+        // then
+        assertThat(follower1.get().toString(), is(equalTo("order-1-changed")));
+        assertThat(follower2.get().toString(), is(equalTo("order-1")));
+        assertThat(leader.get().toString(), is(equalTo("order-1")));
+        assertThat(follower2.get(), is(not(sameInstance(leader.get()))));
+        executor.shutdown();
+    }
+
+    @Test
+    void whenTheLoaderFailsThenTheNextCallShouldLoadAgain() {
+        // given
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>(Duration.ofSeconds(1));
+
+        // when
+        assertThrows(IllegalStateException.class, () -> singleFlight.execute(1L, () -> {
+            throw new IllegalStateException("database unavailable");
+        }));
+        String result = singleFlight.execute(1L, () -> "order-1");
+
+        // then
+        assertThat(result, is(equalTo("order-1")));
+        assertThat(singleFlight.getExecutions(), is(equalTo(2L)));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
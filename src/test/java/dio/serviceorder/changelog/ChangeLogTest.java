@@ -0,0 +1,108 @@
+package dio.serviceorder.changelog;
+
+import dio.serviceorder.ServiceorderApplication;
+import dio.serviceorder.dto.CustomerDTO;
+import dio.serviceorder.dto.ServiceOrderDTO;
+import dio.serviceorder.enums.ServiceType;
+import dio.serviceorder.exception.ServiceOrderNotFoundException;
+import dio.serviceorder.service.CustomerService;
+import dio.serviceorder.service.ServiceOrderService;
+import org.h2.tools.Server;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Two application instances sharing one database through an H2 server.
+ */
+public class ChangeLogTest {
+    private static final Duration MAX_STALENESS = Duration.ofSeconds(5);
+
+    private static Server server;
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+
+    @BeforeAll
+    static void startNodes() throws SQLException {
+        server = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+        String url = "jdbc:h2:tcp://localhost:" + server.getPort() + "/mem:change-log;DB_CLOSE_DELAY=-1";
+        nodeA = startNode("a", url);
+        nodeB = startNode("b", url);
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        nodeB.close();
+        nodeA.close();
+        server.stop();
+    }
+
+    @Test
+    void whenAServiceOrderIsCreatedOnOneNodeThenTheOtherShouldSeeItWithinThePollInterval() throws Exception {
+        // given
+        CustomerDTO customer = nodeA.getBean(CustomerService.class).createCustomer(new CustomerDTO(null, "Node A customer", null));
+
+        // when
+        ServiceOrderDTO created = nodeA.getBean(ServiceOrderService.class)
+                .create(new ServiceOrderDTO(null, customer, false, ServiceType.REPAIR, null, null, null, null));
+
+        // then
+        ServiceOrderService serviceOrderServiceB = nodeB.getBean(ServiceOrderService.class);
+        awaitOnNodeB(() -> serviceOrderServiceB.listAllWithClosedStatus(false).contains(created));
+        assertThat(serviceOrderServiceB.findById(created.getId()), is(equalTo(created)));
+        assertThat(nodeB.getBean(CustomerService.class).findById(customer.getId()), is(equalTo(customer)));
+    }
+
+    @Test
+    void whenACustomerIsRenamedAndAServiceOrderDeletedOnOneNodeThenTheOtherShouldDropItsStaleCopies() throws Exception {
+        // given
+        CustomerDTO customer = nodeA.getBean(CustomerService.class).createCustomer(new CustomerDTO(null, "Before rename", null));
+        ServiceOrderDTO kept = nodeA.getBean(ServiceOrderService.class)
+                .create(new ServiceOrderDTO(null, customer, false, ServiceType.INSTALLATION, null, null, null, null));
+        ServiceOrderDTO deleted = nodeA.getBean(ServiceOrderService.class)
+                .create(new ServiceOrderDTO(null, customer, false, ServiceType.INSTALLATION, null, null, null, null));
+        ServiceOrderService serviceOrderServiceB = nodeB.getBean(ServiceOrderService.class);
+        awaitOnNodeB(() -> serviceOrderServiceB.listAllWithServiceType(ServiceType.INSTALLATION).contains(deleted));
+
+        // when
+        nodeA.getBean(CustomerService.class).update(new CustomerDTO(customer.getId(), "After rename", null), null);
+        nodeA.getBean(ServiceOrderService.class).deleteById(deleted.getId());
+
+        // then
+        awaitOnNodeB(() -> !serviceOrderServiceB.listAllWithServiceType(ServiceType.INSTALLATION).contains(deleted));
+        assertThat(serviceOrderServiceB.listAllWithServiceType(ServiceType.INSTALLATION).stream()
+                .filter(serviceOrder -> serviceOrder.getId().equals(kept.getId()))
+                .map(serviceOrder -> serviceOrder.getCustomer().getName())
+                .findFirst()
+                .orElse(null), is("After rename"));
+        assertThrows(ServiceOrderNotFoundException.class, () -> serviceOrderServiceB.findById(deleted.getId()));
+    }
+
+    private static ConfigurableApplicationContext startNode(String nodeId, String url) {
+        return new SpringApplicationBuilder(ServiceorderApplication.class)
+                .run("--server.port=0",
+                        "--spring.datasource.url=" + url,
+                        "--spring.jpa.hibernate.ddl-auto=update",
+                        "--serviceorder.change-log.enabled=true",
+                        "--serviceorder.change-log.node-id=" + nodeId,
+                        "--serviceorder.change-log.poll-interval=PT0.1S");
+    }
+
+    private static void awaitOnNodeB(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + MAX_STALENESS.toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat("node b still stale after " + MAX_STALENESS, System.nanoTime(), is(lessThan(deadline)));
+            Thread.sleep(50);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package dio.serviceorder.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+@SpringBootTest(properties = "spring.main.lazy-initialization=true")
+public class StartupConfigTest {
+    @Autowired
+    private ConfigurableApplicationContext context;
+
+    @Test
+    void whenInitializationIsLazyThenTheAgingJobShouldStillBeCreatedAtStartup() {
+        // then
+        assertThat(context.getBeanFactory().containsSingleton("agingJob"), is(true));
+    }
+}
@@ -1,10 +1,13 @@
 package dio.serviceorder.controller;
 
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import dio.serviceorder.builder.CustomerDTOBuilder;
+import dio.serviceorder.dto.BatchDTO;
 import dio.serviceorder.dto.CustomerDTO;
 import dio.serviceorder.exception.CustomerAlreadyExistsException;
 import dio.serviceorder.exception.CustomerNotFoundException;
+import dio.serviceorder.patch.JsonMergePatch;
 import dio.serviceorder.service.CustomerService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,11 +16,13 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.servlet.view.json.MappingJackson2JsonView;
 
+import java.util.Arrays;
 import java.util.Collections;
 
 import static dio.serviceorder.utils.JsonConvertionUtils.asJsonString;
@@ -25,6 +30,7 @@ import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -108,6 +114,57 @@ public class CustomerControllerTest {
                 .andExpect(jsonPath("$.name", is(customerDTO.getName())));
     }
 
+    @Test
+    void whenGETWithIdsIsCalledThenTheFoundCustomersAndMissingIdsAreReturned() throws Exception {
+        // given
+        CustomerDTO customerDTO = CustomerDTOBuilder.builder().build().toCustomerDTO();
+
+        // when
+        when(customerService.findByIds(Arrays.asList(1L, 9L)))
+                .thenReturn(new BatchDTO<>(Collections.singletonList(customerDTO), Collections.singletonList(9L)));
+
+        // then
+        mockMvc.perform(get(API_URL_PATH)
+                        .param("ids", "1,9")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].name", is(customerDTO.getName())))
+                .andExpect(jsonPath("$.missingIds[0]", is(9)));
+    }
+
+    @Test
+    void whenGETIsCalledThenTheVersionIsReturnedAsETag() throws Exception {
+        // given
+        CustomerDTO customerDTO = CustomerDTOBuilder.builder().version(7L).build().toCustomerDTO();
+
+        // when
+        when(customerService.findById(customerDTO.getId())).thenReturn(customerDTO);
+
+        // then
+        mockMvc.perform(get(API_URL_PATH + "/" + customerDTO.getId())
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"7\""));
+    }
+
+    @Test
+    void whenAMergePatchIsSentThenOnlyTheGivenFieldsAreSentToTheService() throws Exception {
+        // given
+        CustomerDTO customerDTO = CustomerDTOBuilder.builder().name("Maria").version(2L).build().toCustomerDTO();
+        String mergePatch = "{\"name\": \"Maria\"}";
+
+        // when
+        when(customerService.patch(customerDTO.getId(), new ObjectMapper().readTree(mergePatch), null)).thenReturn(customerDTO);
+
+        // then
+        mockMvc.perform(patch(API_URL_PATH + "/" + customerDTO.getId())
+                        .contentType(JsonMergePatch.MEDIA_TYPE)
+                        .content(mergePatch))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"2\""))
+                .andExpect(jsonPath("$.name", is("Maria")));
+    }
+
     @Test
     void whenGETIsCalledWithoutRegisteredIdThenNotFoundStatusIsReturned() throws Exception {
         // given
@@ -183,7 +240,7 @@ public class CustomerControllerTest {
         CustomerDTO customerDTO = CustomerDTOBuilder.builder().build().toCustomerDTO();
 
         // when
-        when(customerService.update(customerDTO)).thenReturn(customerDTO);
+        when(customerService.update(customerDTO, null)).thenReturn(customerDTO);
 
         // then
         mockMvc.perform(patch(API_URL_PATH)
@@ -199,7 +256,7 @@ public class CustomerControllerTest {
         CustomerDTO customerDTO = CustomerDTOBuilder.builder().build().toCustomerDTO();
 
         // when
-        when(customerService.update(customerDTO)).thenThrow(CustomerNotFoundException.class);
+        when(customerService.update(customerDTO, null)).thenThrow(CustomerNotFoundException.class);
 
         // then
         mockMvc.perform(patch(API_URL_PATH)
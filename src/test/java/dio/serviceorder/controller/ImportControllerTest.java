@@ -0,0 +1,74 @@
+package dio.serviceorder.controller;
+
+import dio.serviceorder.dto.ImportReportDTO;
+import dio.serviceorder.exception.InvalidCsvHeaderException;
+import dio.serviceorder.importer.BulkImporter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.view.json.MappingJackson2JsonView;
+
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+public class ImportControllerTest {
+
+    private static final String API_URL_PATH = "/api/v1/import";
+
+    private MockMvc mockMvc;
+
+    @Mock
+    private BulkImporter bulkImporter;
+
+    @InjectMocks
+    private ImportController importController;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(importController)
+                .setViewResolvers((s, locale) -> new MappingJackson2JsonView())
+                .build();
+    }
+
+    @Test
+    void whenPOSTIsCalledWithACsvFileThenTheImportReportIsReturned() throws Exception {
+        // given
+        ImportReportDTO report = new ImportReportDTO(2, 1, 1,
+                Collections.singletonList(new ImportReportDTO.LineError(3, "unknown customer_id 8")));
+
+        // when
+        when(bulkImporter.importServiceOrders(any())).thenReturn(report);
+
+        // then
+        mockMvc.perform(post(API_URL_PATH + "/service-orders")
+                        .contentType(BulkImporter.CSV_MEDIA_TYPE)
+                        .content("customer_id,type,closed\n7,REPAIR,false\n8,REPAIR,false\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported", is(1)))
+                .andExpect(jsonPath("$.errors[0].line", is(3)))
+                .andExpect(jsonPath("$.errors[0].message", is("unknown customer_id 8")));
+    }
+
+    @Test
+    void whenPOSTIsCalledWithAnIncompleteHeaderThenAnErrorIsReturned() throws Exception {
+        // when
+        when(bulkImporter.importCustomers(any())).thenThrow(new InvalidCsvHeaderException(Collections.singletonList("name")));
+
+        // then
+        mockMvc.perform(post(API_URL_PATH + "/customers")
+                        .contentType(BulkImporter.CSV_MEDIA_TYPE)
+                        .content("title\nMr\n"))
+                .andExpect(status().isBadRequest());
+    }
+}
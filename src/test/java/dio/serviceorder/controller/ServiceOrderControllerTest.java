@@ -1,10 +1,20 @@
 package dio.serviceorder.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import dio.serviceorder.builder.ServiceOrderDTOBuilder;
+import dio.serviceorder.dto.BatchDTO;
 import dio.serviceorder.dto.CustomerDTO;
+import dio.serviceorder.dto.ServiceOrderClaimDTO;
 import dio.serviceorder.dto.ServiceOrderDTO;
+import dio.serviceorder.dto.ServiceOrderPageDTO;
+import dio.serviceorder.dto.ServiceOrderStatsDTO;
+import dio.serviceorder.enums.ServiceType;
 import dio.serviceorder.exception.ServiceOrderAlreadyExistsException;
 import dio.serviceorder.exception.ServiceOrderNotFoundException;
+import dio.serviceorder.exception.ServiceOrderVersionMismatchException;
+import dio.serviceorder.export.ExportFormat;
+import dio.serviceorder.export.ServiceOrderExporter;
+import dio.serviceorder.patch.JsonMergePatch;
 import dio.serviceorder.service.ServiceOrderService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,20 +23,30 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.servlet.view.json.MappingJackson2JsonView;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
 import java.util.Collections;
 
 import static dio.serviceorder.utils.JsonConvertionUtils.asJsonString;
+import static org.hamcrest.Matchers.aMapWithSize;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(MockitoExtension.class)
@@ -39,6 +59,9 @@ public class ServiceOrderControllerTest {
     @Mock
     private ServiceOrderService serviceOrderService;
 
+    @Mock
+    private ServiceOrderExporter serviceOrderExporter;
+
     @InjectMocks
     private ServiceOrderController serviceOrderController;
 
@@ -47,6 +70,7 @@ public class ServiceOrderControllerTest {
         mockMvc = MockMvcBuilders.standaloneSetup(serviceOrderController)
                 .setCustomArgumentResolvers(new PageableHandlerMethodArgumentResolver())
                 .setViewResolvers((s, locale) -> new MappingJackson2JsonView())
+                .setControllerAdvice(new NormalizedListAdvice())
                 .build();
     }
 
@@ -97,6 +121,36 @@ public class ServiceOrderControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    /*          POST - /claim            */
+
+    @Test
+    void whenPOSTClaimIsCalledThenTheClaimedServiceOrdersAreReturned() throws Exception {
+        // given
+        ServiceOrderDTO serviceOrderDTO = ServiceOrderDTOBuilder.builder().build().toServiceOrderDTO();
+        Instant leaseExpiresAt = Instant.parse("2022-07-01T00:15:00Z");
+
+        // when
+        when(serviceOrderService.claim("technician", ServiceType.REPAIR, 5))
+                .thenReturn(new ServiceOrderClaimDTO("technician", leaseExpiresAt, Collections.singletonList(serviceOrderDTO)));
+
+        // then
+        mockMvc.perform(post(API_URL_PATH + "/claim")
+                        .param("assignee", "technician")
+                        .param("type", "REPAIR")
+                        .param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.assignee", is("technician")))
+                .andExpect(jsonPath("$.items[0].id", is(serviceOrderDTO.getId().intValue())));
+    }
+
+    @Test
+    void whenPOSTClaimIsCalledWithoutAssigneeThenAnErrorIsReturned() throws Exception {
+        // then
+        mockMvc.perform(post(API_URL_PATH + "/claim"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(serviceOrderService);
+    }
+
     /*          GET - /id            */
 
     @Test
@@ -162,6 +216,28 @@ public class ServiceOrderControllerTest {
                 .andExpect(jsonPath("$", is(empty())));
     }
 
+    @Test
+    void whenGETListOfOpenServiceOrderIsCalledAcceptingTheNormalizedFormThenEachCustomerIsSentOnce() throws Exception {
+        // given
+        ServiceOrderDTO first = ServiceOrderDTOBuilder.builder().id(1L).build().toServiceOrderDTO();
+        ServiceOrderDTO second = ServiceOrderDTOBuilder.builder().id(2L).build().toServiceOrderDTO();
+
+        // when
+        when(serviceOrderService.listAllWithClosedStatus(false)).thenReturn(Arrays.asList(first, second));
+
+        // then
+        mockMvc.perform(get(API_URL_PATH + "/open")
+                        .accept(NormalizedListAdvice.MEDIA_TYPE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(NormalizedListAdvice.MEDIA_TYPE))
+                .andExpect(jsonPath("$.items[1].id", is(2)))
+                .andExpect(jsonPath("$.items[1].customerId", is(first.getCustomer().getId().intValue())))
+                .andExpect(jsonPath("$.items[1].customer").doesNotExist())
+                .andExpect(jsonPath("$.customers", aMapWithSize(1)))
+                .andExpect(jsonPath("$.customers." + first.getCustomer().getId() + ".name", is(first.getCustomer().getName())))
+                .andExpect(jsonPath("$.missingIds").doesNotExist());
+    }
+
     /*          GET - /closed            */
     @Test
     void whenGETListOfClosedServiceOrderIsCalledWithServiceOrdersThenOkStatusIsReturned() throws Exception {
@@ -272,6 +348,115 @@ public class ServiceOrderControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void whenGETCountIsCalledWithFiltersThenTheCountIsReturned() throws Exception {
+        // when
+        when(serviceOrderService.countServiceOrders(false, ServiceType.REPAIR)).thenReturn(3L);
+
+        // then
+        mockMvc.perform(get(API_URL_PATH + "/count")
+                        .param("closed", "false")
+                        .param("type", ServiceType.REPAIR.toString())
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", is(3)));
+    }
+
+    @Test
+    void whenGETCreatedIsCalledThenAPageOfServiceOrdersIsReturned() throws Exception {
+        // given
+        Instant createdAfter = Instant.parse("2022-07-01T00:00:00Z");
+        ServiceOrderDTO serviceOrderDTO = ServiceOrderDTOBuilder.builder().createdAt(createdAfter.plusSeconds(30)).build().toServiceOrderDTO();
+
+        // when
+        when(serviceOrderService.listCreatedBetween(createdAfter, null, null, 50))
+                .thenReturn(new ServiceOrderPageDTO(Collections.singletonList(serviceOrderDTO), "next"));
+
+        // then
+        mockMvc.perform(get(API_URL_PATH + "/created")
+                        .param("createdAfter", createdAfter.toString())
+                        .param("limit", "50")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id", is(serviceOrderDTO.getId().intValue())))
+                .andExpect(jsonPath("$.nextCursor", is("next")));
+    }
+
+    @Test
+    void whenGETWithIdsIsCalledAcceptingTheNormalizedFormThenTheMissingIdsAreKept() throws Exception {
+        // given
+        ServiceOrderDTO serviceOrderDTO = ServiceOrderDTOBuilder.builder().id(2L).build().toServiceOrderDTO();
+
+        // when
+        when(serviceOrderService.findByIds(Arrays.asList(2L, 5L)))
+                .thenReturn(new BatchDTO<>(Collections.singletonList(serviceOrderDTO), Collections.singletonList(5L)));
+
+        // then
+        mockMvc.perform(get(API_URL_PATH)
+                        .param("ids", "2,5")
+                        .accept(NormalizedListAdvice.MEDIA_TYPE))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].customerId", is(serviceOrderDTO.getCustomer().getId().intValue())))
+                .andExpect(jsonPath("$.customers", aMapWithSize(1)))
+                .andExpect(jsonPath("$.missingIds[0]", is(5)));
+    }
+
+    @Test
+    void whenGETWithIdsIsCalledThenTheFoundServiceOrdersAndMissingIdsAreReturned() throws Exception {
+        // given
+        ServiceOrderDTO serviceOrderDTO = ServiceOrderDTOBuilder.builder().id(2L).build().toServiceOrderDTO();
+
+        // when
+        when(serviceOrderService.findByIds(Arrays.asList(2L, 5L)))
+                .thenReturn(new BatchDTO<>(Collections.singletonList(serviceOrderDTO), Collections.singletonList(5L)));
+
+        // then
+        mockMvc.perform(get(API_URL_PATH)
+                        .param("ids", "2,5")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id", is(2)))
+                .andExpect(jsonPath("$.missingIds[0]", is(5)));
+    }
+
+    @Test
+    void whenPOSTBatchIsCalledThenTheIdsFromTheBodyAreLookedUp() throws Exception {
+        // given
+        ServiceOrderDTO serviceOrderDTO = ServiceOrderDTOBuilder.builder().id(2L).build().toServiceOrderDTO();
+
+        // when
+        when(serviceOrderService.findByIds(Arrays.asList(2L, 5L)))
+                .thenReturn(new BatchDTO<>(Collections.singletonList(serviceOrderDTO), Collections.singletonList(5L)));
+
+        // then
+        mockMvc.perform(post(API_URL_PATH + "/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[2, 5]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id", is(2)))
+                .andExpect(jsonPath("$.missingIds[0]", is(5)));
+    }
+
+    @Test
+    void whenGETStatsIsCalledThenTheFilteredCountsAreReturned() throws Exception {
+        // given
+        ServiceOrderStatsDTO stats = new ServiceOrderStatsDTO(3L, Collections.singletonList(
+                new ServiceOrderStatsDTO.Count(1L, ServiceType.REPAIR, false, 3L)));
+
+        // when
+        when(serviceOrderService.stats(null, ServiceType.REPAIR, false)).thenReturn(stats);
+
+        // then
+        mockMvc.perform(get(API_URL_PATH + "/stats")
+                        .param("closed", "false")
+                        .param("type", ServiceType.REPAIR.toString())
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total", is(3)))
+                .andExpect(jsonPath("$.counts[0].customerId", is(1)))
+                .andExpect(jsonPath("$.counts[0].total", is(3)));
+    }
+
     /*          GET            */
 
     @Test
@@ -338,7 +523,7 @@ public class ServiceOrderControllerTest {
         ServiceOrderDTO serviceOrderDTO = ServiceOrderDTOBuilder.builder().build().toServiceOrderDTO();
 
         // when
-        when(serviceOrderService.update(serviceOrderDTO)).thenReturn(serviceOrderDTO);
+        when(serviceOrderService.update(serviceOrderDTO, null)).thenReturn(serviceOrderDTO);
 
         // then
         mockMvc.perform(patch(API_URL_PATH)
@@ -355,7 +540,7 @@ public class ServiceOrderControllerTest {
         ServiceOrderDTO serviceOrderDTO = ServiceOrderDTOBuilder.builder().build().toServiceOrderDTO();
 
         // when
-        when(serviceOrderService.update(serviceOrderDTO)).thenThrow(ServiceOrderNotFoundException.class);
+        when(serviceOrderService.update(serviceOrderDTO, null)).thenThrow(ServiceOrderNotFoundException.class);
 
         // then
         mockMvc.perform(patch(API_URL_PATH)
@@ -364,4 +549,63 @@ public class ServiceOrderControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    void whenAMergePatchIsSentWithACurrentIfMatchThenTheNewETagIsReturned() throws Exception {
+        // given
+        ServiceOrderDTO serviceOrderDTO = ServiceOrderDTOBuilder.builder().closed(true).version(4L).build().toServiceOrderDTO();
+        String mergePatch = "{\"closed\": true}";
+
+        // when
+        when(serviceOrderService.patch(serviceOrderDTO.getId(), new ObjectMapper().readTree(mergePatch), 3L)).thenReturn(serviceOrderDTO);
+
+        // then
+        mockMvc.perform(patch(API_URL_PATH + "/" + serviceOrderDTO.getId())
+                        .contentType(JsonMergePatch.MEDIA_TYPE)
+                        .header(HttpHeaders.IF_MATCH, "\"3\"")
+                        .content(mergePatch))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""))
+                .andExpect(jsonPath("$.closed", is(true)));
+    }
+
+    @Test
+    void whenAMergePatchIsSentWithAStaleIfMatchThenPreconditionFailedIsReturned() throws Exception {
+        // given
+        String mergePatch = "{\"type\": \"REPAIR\"}";
+
+        // when
+        when(serviceOrderService.patch(1L, new ObjectMapper().readTree(mergePatch), 2L)).thenThrow(ServiceOrderVersionMismatchException.class);
+
+        // then
+        mockMvc.perform(patch(API_URL_PATH + "/1")
+                        .contentType(JsonMergePatch.MEDIA_TYPE)
+                        .header(HttpHeaders.IF_MATCH, "\"2\"")
+                        .content(mergePatch))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void whenExportIsCalledThenTheFileShouldBeStreamedAsAnAttachment() throws Exception {
+        // given
+        Instant createdAfter = Instant.parse("2022-07-01T00:00:00Z");
+
+        // when
+        when(serviceOrderExporter.export(eq(ExportFormat.CSV), eq(true), eq(createdAfter), isNull(), any())).thenAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(4);
+            out.write("exported".getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        });
+        MvcResult result = mockMvc.perform(get(API_URL_PATH + "/export")
+                        .param("createdAfter", createdAfter.toString())
+                        .param("gzip", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // then
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "application/gzip"))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"service-orders.csv.gz\""))
+                .andExpect(content().string("exported"));
+    }
 }
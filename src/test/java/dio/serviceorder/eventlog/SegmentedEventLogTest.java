@@ -0,0 +1,210 @@
+package dio.serviceorder.eventlog;
+
+import dio.serviceorder.builder.ServiceOrderDTOBuilder;
+import dio.serviceorder.dto.ServiceOrderDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SegmentedEventLogTest {
+
+    @TempDir
+    Path directory;
+
+    private static LogEvent created(long id) {
+        ServiceOrderDTO serviceOrderDTO = ServiceOrderDTOBuilder.builder().id(id).build().toServiceOrderDTO();
+        return LogEvent.serviceOrder(LogEvent.EventAction.CREATED, serviceOrderDTO);
+    }
+
+    private static List<Long> replayedIds(SegmentedEventLog eventLog, long fromSequence) throws IOException {
+        List<Long> ids = new ArrayList<>();
+        eventLog.replay(fromSequence, event -> ids.add(event.getEntityId()));
+        return ids;
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(".log")).count();
+        }
+    }
+
+    @Test
+    void whenEventsAreAppendedThenTheyShouldBeReplayedInOrder() throws IOException {
+        // given
+        try (SegmentedEventLog eventLog = new SegmentedEventLog(directory, 1024 * 1024, 16)) {
+            // when
+            List<Long> sequences = new ArrayList<>();
+            for (long id = 1; id <= 5; id++)
+                sequences.add(eventLog.append(created(id)).join());
+
+            // then
+            assertThat(sequences, contains(1L, 2L, 3L, 4L, 5L));
+            assertThat(replayedIds(eventLog, 1), contains(1L, 2L, 3L, 4L, 5L));
+        }
+    }
+
+    @Test
+    void whenTheSegmentIsFullThenReplayShouldSpanEverySegment() throws IOException {
+        // given
+        try (SegmentedEventLog eventLog = new SegmentedEventLog(directory, 128, 1)) {
+            // when
+            for (long id = 1; id <= 10; id++)
+                eventLog.append(created(id)).join();
+
+            // then
+            assertThat(segmentCount(), greaterThan(1L));
+            assertThat(replayedIds(eventLog, 1), hasSize(10));
+            assertThat(replayedIds(eventLog, 8), contains(8L, 9L, 10L));
+        }
+    }
+
+    @Test
+    void whenTheLastRecordIsTornThenReopeningShouldTruncateItAndContinueTheSequence() throws IOException {
+        // given
+        try (SegmentedEventLog eventLog = new SegmentedEventLog(directory, 1024 * 1024, 16)) {
+            eventLog.append(created(1L)).join();
+            eventLog.append(created(2L)).join();
+        }
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        // when
+        try (SegmentedEventLog eventLog = new SegmentedEventLog(directory, 1024 * 1024, 16)) {
+            long sequence = eventLog.append(created(3L)).join();
+
+            // then
+            assertThat(sequence, equalTo(2L));
+            assertThat(replayedIds(eventLog, 1), contains(1L, 3L));
+        }
+    }
+
+    @Test
+    void whenAWriteFailsHalfwayThenLaterEventsShouldStillBeReplayed() throws IOException {
+        // given
+        AtomicBoolean failNextWrite = new AtomicBoolean();
+        try (SegmentedEventLog eventLog = new SegmentedEventLog(directory, 1024 * 1024, 1) {
+            @Override
+            int writeToSegment(FileChannel channel, ByteBuffer buffer) throws IOException {
+                if (!failNextWrite.getAndSet(false))
+                    return super.writeToSegment(channel, buffer);
+                ByteBuffer half = buffer.duplicate();
+                half.limit(half.position() + half.remaining() / 2);
+                channel.write(half);
+                throw new IOException("No space left on device");
+            }
+        }) {
+            eventLog.append(created(1L)).join();
+
+            // when
+            failNextWrite.set(true);
+            CompletableFuture<Long> failed = eventLog.append(created(2L));
+            long sequence = eventLog.append(created(3L)).join();
+
+            // then
+            assertThat(failed.isCompletedExceptionally(), is(true));
+            assertThat(sequence, is(equalTo(2L)));
+            assertThat(replayedIds(eventLog, 1), contains(1L, 3L));
+        }
+        try (SegmentedEventLog reopened = new SegmentedEventLog(directory, 1024 * 1024, 1)) {
+            assertThat(reopened.append(created(4L)).join(), is(equalTo(3L)));
+            assertThat(replayedIds(reopened, 1), contains(1L, 3L, 4L));
+        }
+    }
+
+    @Test
+    void whenCompactedThenOnlyTheLastEventOfEachLiveEntityShouldRemain() throws IOException {
+        // given
+        try (SegmentedEventLog eventLog = new SegmentedEventLog(directory, 128, 1)) {
+            eventLog.append(created(1L)).join();
+            eventLog.append(created(2L)).join();
+            eventLog.append(LogEvent.serviceOrder(LogEvent.EventAction.CLOSED,
+                    ServiceOrderDTOBuilder.builder().id(1L).closed(true).build().toServiceOrderDTO())).join();
+            eventLog.append(LogEvent.serviceOrderDeleted(2L, null)).join();
+            eventLog.append(created(3L)).join();
+
+            // when
+            long removed = eventLog.compact();
+
+            // then
+            List<LogEvent> events = new ArrayList<>();
+            eventLog.replay(1, events::add);
+            assertThat(removed, equalTo(3L));
+            assertThat(events.stream().map(LogEvent::getEntityId).collect(Collectors.toList()), contains(1L, 3L));
+            assertThat(events.get(0).getAction(), equalTo(LogEvent.EventAction.CLOSED));
+        }
+    }
+
+    @Test
+    void whenAnOlderVersionIsAppendedAfterANewerOneThenReplayShouldSkipIt() throws IOException {
+        // given
+        try (SegmentedEventLog eventLog = new SegmentedEventLog(directory, 1024 * 1024, 16)) {
+            eventLog.append(LogEvent.serviceOrder(LogEvent.EventAction.CLOSED,
+                    ServiceOrderDTOBuilder.builder().id(1L).closed(true).version(2L).build().toServiceOrderDTO())).join();
+            eventLog.append(LogEvent.serviceOrder(LogEvent.EventAction.UPDATED,
+                    ServiceOrderDTOBuilder.builder().id(1L).version(1L).build().toServiceOrderDTO())).join();
+
+            // when
+            List<LogEvent> events = new ArrayList<>();
+            eventLog.replay(1, events::add);
+            long removed = eventLog.compact();
+
+            // then
+            assertThat(events.stream().map(LogEvent::getAction).collect(Collectors.toList()), contains(LogEvent.EventAction.CLOSED));
+            assertThat(events.get(0).getVersion(), equalTo(2L));
+            assertThat(removed, equalTo(0L));
+        }
+    }
+
+    @Test
+    void whenTheWriterStopsThenPendingAndLaterAppendsShouldFail() throws IOException {
+        // given
+        try (SegmentedEventLog eventLog = new SegmentedEventLog(directory, 1024 * 1024, 1) {
+            @Override
+            int writeToSegment(FileChannel channel, ByteBuffer buffer) {
+                throw new OutOfMemoryError("Java heap space");
+            }
+        }) {
+            // when
+            CompletableFuture<Long> pending = eventLog.append(created(1L));
+
+            // then
+            assertThrows(CompletionException.class, pending::join);
+            assertThrows(CompletionException.class, () -> eventLog.append(created(2L)).join());
+        }
+    }
+
+    @Test
+    void whenClosedThenAppendShouldReturnAFailedFuture() throws IOException {
+        // given
+        SegmentedEventLog eventLog = new SegmentedEventLog(directory, 1024 * 1024, 1);
+        eventLog.close();
+
+        // when
+        CompletableFuture<Long> appended = eventLog.append(created(1L));
+
+        // then
+        assertThat(appended.isCompletedExceptionally(), is(true));
+    }
+}
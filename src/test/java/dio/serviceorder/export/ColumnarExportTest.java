@@ -0,0 +1,52 @@
+package dio.serviceorder.export;
+
+import dio.serviceorder.enums.ServiceType;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ColumnarExportTest {
+
+    @Test
+    void whenRowsAreWrittenInSeveralGroupsThenTheyShouldBeReadBackUnchanged() throws IOException {
+        // given
+        Instant createdAt = Instant.parse("2022-07-01T10:15:30.123456Z");
+        List<ExportRow> rows = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            boolean closed = i % 3 == 0;
+            rows.add(new ExportRow(100 - i * 7, i % 4 == 0 ? null : (long) (i % 2),
+                    i % 4 == 0 ? null : "Customer " + (i % 2), ServiceType.values()[i % ServiceType.values().length],
+                    closed, createdAt.plusSeconds(i * 90), closed ? createdAt.plusSeconds(i * 90 + 5) : null));
+        }
+
+        // when
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ColumnarExportWriter writer = new ColumnarExportWriter(out, 4);
+        for (ExportRow row : rows)
+            writer.write(row);
+        writer.finish();
+        ColumnarExportReader reader = new ColumnarExportReader(new ByteArrayInputStream(out.toByteArray()));
+        List<ExportRow> read = new ArrayList<>();
+        for (ExportRow row = reader.next(); row != null; row = reader.next())
+            read.add(row);
+
+        // then
+        assertThat(read, equalTo(rows));
+        assertThat(reader.next(), is(nullValue()));
+    }
+
+    @Test
+    void whenTheFileIsNotAColumnarExportThenAnExceptionShouldBeThrown() {
+        // then
+        assertThrows(IOException.class, () -> new ColumnarExportReader(new ByteArrayInputStream("id,customer_id\n".getBytes())));
+    }
+}
@@ -0,0 +1,33 @@
+package dio.serviceorder.export;
+
+import dio.serviceorder.enums.ServiceType;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class CsvExportWriterTest {
+
+    @Test
+    void whenRowsAreWrittenThenFieldsShouldBeQuotedOnlyWhenNeeded() throws IOException {
+        // given
+        Instant createdAt = Instant.parse("2022-07-01T10:15:30Z");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CsvExportWriter writer = new CsvExportWriter(out);
+
+        // when
+        writer.write(new ExportRow(1, 7L, "Smith, \"Jr\"", ServiceType.REPAIR, true, createdAt, createdAt.plusSeconds(60)));
+        writer.write(new ExportRow(2, null, null, ServiceType.REPAIR, false, createdAt, null));
+        writer.finish();
+
+        // then
+        assertThat(new String(out.toByteArray(), StandardCharsets.UTF_8), is(equalTo(CsvExportWriter.HEADER + "\n"
+                + "1,7,\"Smith, \"\"Jr\"\"\",REPAIR,true,2022-07-01T10:15:30Z,2022-07-01T10:16:30Z\n"
+                + "2,,,REPAIR,false,2022-07-01T10:15:30Z,\n")));
+    }
+}
@@ -0,0 +1,53 @@
+package dio.serviceorder.importer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class CsvChunkReaderTest {
+
+    @Test
+    void whenTheInputIsLargerThanAChunkThenItShouldBeCutAtLineBreaks() throws Exception {
+        // given
+        String csv = "aaa\nbbb\nccc\nddd";
+        CsvChunkReader reader = new CsvChunkReader(Channels.newChannel(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))), 10);
+
+        // when
+        List<CsvChunkReader.Chunk> chunks = new ArrayList<>();
+        for (CsvChunkReader.Chunk chunk = reader.next(); chunk != null; chunk = reader.next())
+            chunks.add(chunk);
+
+        // then
+        assertThat(chunks, hasSize(2));
+        assertThat(new String(chunks.get(0).getBytes(), StandardCharsets.UTF_8), is(equalTo("aaa\nbbb\n")));
+        assertThat(chunks.get(0).getFirstLine(), is(1L));
+        assertThat(new String(chunks.get(1).getBytes(), StandardCharsets.UTF_8), is(equalTo("ccc\nddd")));
+        assertThat(chunks.get(1).getFirstLine(), is(3L));
+    }
+
+    @Test
+    void whenALineIsLongerThanAChunkThenTheChunkShouldGrowToHoldIt() throws Exception {
+        // given
+        String csv = "a line longer than the chunk\nshort\n";
+        CsvChunkReader reader = new CsvChunkReader(Channels.newChannel(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))), 8);
+
+        // when
+        CsvChunkReader.Chunk first = reader.next();
+        CsvChunkReader.Chunk second = reader.next();
+
+        // then
+        assertThat(new String(first.getBytes(), StandardCharsets.UTF_8), is(equalTo("a line longer than the chunk\n")));
+        assertThat(new String(second.getBytes(), StandardCharsets.UTF_8), is(equalTo("short\n")));
+        assertThat(second.getFirstLine(), is(2L));
+        assertThat(reader.next(), is(nullValue()));
+    }
+}
@@ -0,0 +1,132 @@
+package dio.serviceorder.importer;
+
+import dio.serviceorder.dto.CustomerDTO;
+import dio.serviceorder.dto.ImportReportDTO;
+import dio.serviceorder.dto.ServiceOrderDTO;
+import dio.serviceorder.enums.ServiceType;
+import dio.serviceorder.exception.InvalidCsvHeaderException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.validation.Validation;
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CsvImportTest {
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    // Tiny chunks and batches so a short file goes through several of each.
+    private final CsvImport csvImport = new CsvImport(pool,
+            Validation.buildDefaultValidatorFactory().getValidator(), 32, 3, 2);
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void whenCustomersAreImportedThenValidRowsShouldBeWrittenInFileOrderAndInvalidOnesReported() throws Exception {
+        // given
+        StringBuilder csv = new StringBuilder("\uFEFFname\r\n");
+        for (int i = 1; i <= 10; i++)
+            csv.append("\"Customer, ").append(i).append("\"\r\n");
+        csv.append("\n").append("\"\"\n").append("two,fields\n").append("\"unterminated\n");
+        List<List<CustomerDTO>> batches = Collections.synchronizedList(new ArrayList<>());
+
+        // when
+        ImportReportDTO report = csvImport.run("customers", channel(csv.toString()), BulkImporter.CUSTOMER_COLUMNS,
+                BulkImporter::toCustomer, batches::add);
+
+        // then
+        List<String> names = batches.stream()
+                .flatMap(List::stream)
+                .map(CustomerDTO::getName)
+                .collect(Collectors.toList());
+        assertThat(names, hasSize(10));
+        assertThat(names.get(0), is(equalTo("Customer, 1")));
+        assertThat(names.get(9), is(equalTo("Customer, 10")));
+        assertThat(batches.stream().mapToInt(List::size).max().getAsInt(), is(lessThanOrEqualTo(3)));
+        assertThat(report.getLines(), is(13L));
+        assertThat(report.getImported(), is(10L));
+        assertThat(report.getRejected(), is(3L));
+        assertThat(report.getErrors(), hasSize(2));
+        assertThat(report.getErrors().get(0).getLine(), is(13L));
+        assertThat(report.getErrors().get(0).getMessage(), containsString("name"));
+        assertThat(report.getErrors().get(1).getLine(), is(14L));
+    }
+
+    @Test
+    void whenServiceOrdersAreImportedThenCustomersShouldBeResolvedFromTheMap() throws Exception {
+        // given
+        CustomerDTO customer = new CustomerDTO(7L, "Customer", null);
+        Map<Long, CustomerDTO> customers = Collections.singletonMap(7L, customer);
+        String csv = "type,customer_id,closed,created_at\n"
+                + "repair,7,true,2022-07-01T10:15:30Z\n"
+                + "REPAIR,8,false,\n"
+                + "UNKNOWN,7,false,\n";
+        List<ServiceOrderDTO> imported = Collections.synchronizedList(new ArrayList<>());
+
+        // when
+        ImportReportDTO report = csvImport.run("service orders", channel(csv), BulkImporter.SERVICE_ORDER_COLUMNS,
+                record -> BulkImporter.toServiceOrder(record, customers), imported::addAll);
+
+        // then
+        assertThat(imported, hasSize(1));
+        assertThat(imported.get(0).getCustomer(), is(equalTo(customer)));
+        assertThat(imported.get(0).getType(), is(ServiceType.REPAIR));
+        assertThat(imported.get(0).getClosed(), is(true));
+        assertThat(imported.get(0).getCreatedAt(), is(equalTo(Instant.parse("2022-07-01T10:15:30Z"))));
+        assertThat(report.getErrors().get(0).getMessage(), is(equalTo("unknown customer_id 8")));
+        assertThat(report.getErrors().get(1).getMessage(), is(equalTo("invalid type UNKNOWN")));
+    }
+
+    @Test
+    void whenABatchFailsToBeWrittenThenItsRowsShouldBeRetriedOneByOneAndTheFailingOnesReported() throws Exception {
+        // given
+        StringBuilder csv = new StringBuilder("name\n");
+        for (int i = 1; i <= 7; i++)
+            csv.append("Customer ").append(i).append("\n");
+        List<String> written = new ArrayList<>();
+
+        // when
+        ImportReportDTO report = csvImport.run("customers", channel(csv.toString()), BulkImporter.CUSTOMER_COLUMNS,
+                BulkImporter::toCustomer, customers -> {
+                    if (customers.stream().anyMatch(customer -> customer.getName().equals("Customer 5")))
+                        throw new IllegalStateException("write failed", new RuntimeException("duplicate name"));
+                    customers.forEach(customer -> written.add(customer.getName()));
+                });
+
+        // then
+        assertThat(written, contains("Customer 1", "Customer 2", "Customer 3", "Customer 4", "Customer 6", "Customer 7"));
+        assertThat(report.getLines(), is(7L));
+        assertThat(report.getImported(), is(6L));
+        assertThat(report.getRejected(), is(1L));
+        assertThat(report.getErrors(), hasSize(1));
+        assertThat(report.getErrors().get(0).getLine(), is(6L));
+        assertThat(report.getErrors().get(0).getMessage(), is(equalTo("not written: duplicate name")));
+    }
+
+    @Test
+    void whenARequiredColumnIsMissingThenAnExceptionShouldBeThrown() {
+        // then
+        assertThrows(InvalidCsvHeaderException.class, () -> csvImport.run("service orders", channel("customer_id,type\n1,REPAIR\n"),
+                BulkImporter.SERVICE_ORDER_COLUMNS, record -> null, rows -> { }));
+    }
+
+    private static ReadableByteChannel channel(String csv) {
+        return Channels.newChannel(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,123 @@
+package dio.serviceorder.jdbc;
+
+import dio.serviceorder.ServiceorderApplication;
+import dio.serviceorder.dto.CustomerDTO;
+import dio.serviceorder.dto.ServiceOrderDTO;
+import dio.serviceorder.enums.ServiceType;
+import dio.serviceorder.service.CustomerService;
+import dio.serviceorder.service.ServiceOrderService;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Before/after measurement of open session in view, left out of the regular test run by its name:
+ * {@code mvn -B test -Dtest=OpenInViewHarness}. Starts the application with {@code spring.jpa.open-in-view}
+ * on and then off, lists the same service orders through MockMvc on the calling thread and prints, per
+ * request, the bytes the thread allocated according to {@code ThreadMXBean} and how long it held database
+ * connections. {@code -Dharness.service-orders}, {@code -Dharness.warmup-requests} and
+ * {@code -Dharness.requests} change the workload.
+ */
+public class OpenInViewHarness {
+    private static final int SERVICE_ORDERS = Integer.getInteger("harness.service-orders", 500);
+    private static final int CUSTOMERS = 50;
+    private static final int WARMUP_REQUESTS = Integer.getInteger("harness.warmup-requests", 300);
+    private static final int REQUESTS = Integer.getInteger("harness.requests", 500);
+
+    @Test
+    void compareOpenInViewOnAndOff() throws Exception {
+        Measurement on = measure(true);
+        Measurement off = measure(false);
+
+        System.out.printf(Locale.ROOT, "%nGET /api/v1/service-order, %d service orders, %d requests after %d warm-up requests%n",
+                SERVICE_ORDERS, REQUESTS, WARMUP_REQUESTS);
+        System.out.printf(Locale.ROOT, "%-12s %18s %24s %18s%n", "open-in-view", "allocated/request", "connection held/request", "latency/request");
+        System.out.println(on);
+        System.out.println(off);
+
+        // Only the connection hold time is a property of the setting; the other numbers are for the record.
+        assertThat(off.connectionNanos, lessThan(on.connectionNanos));
+    }
+
+    private static Measurement measure(boolean openInView) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ServiceorderApplication.class)
+                .run("--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:open-in-view-" + openInView,
+                        "--spring.jpa.open-in-view=" + openInView,
+                        "--logging.level.root=WARN")) {
+            createServiceOrders(context);
+            MockMvc mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+            for (int i = 0; i < WARMUP_REQUESTS; i++)
+                listServiceOrders(mockMvc, new SqlStats());
+
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long threadId = Thread.currentThread().getId();
+            SqlStats stats = new SqlStats();
+            long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+            long startedAt = System.nanoTime();
+            for (int i = 0; i < REQUESTS; i++)
+                listServiceOrders(mockMvc, stats);
+            long elapsedNanos = System.nanoTime() - startedAt;
+            long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+            return new Measurement(openInView, allocated / REQUESTS, stats.getConnectionNanos() / REQUESTS, elapsedNanos / REQUESTS);
+        }
+    }
+
+    private static void createServiceOrders(ConfigurableApplicationContext context) throws Exception {
+        CustomerService customerService = context.getBean(CustomerService.class);
+        ServiceOrderService serviceOrderService = context.getBean(ServiceOrderService.class);
+        List<CustomerDTO> customers = new ArrayList<>();
+        for (int i = 0; i < CUSTOMERS; i++)
+            customers.add(customerService.createCustomer(new CustomerDTO(null, "Harness customer " + i, null)));
+        List<ServiceOrderDTO> serviceOrders = new ArrayList<>();
+        Instant createdAt = Instant.now();
+        for (int i = 0; i < SERVICE_ORDERS; i++)
+            serviceOrders.add(new ServiceOrderDTO(null, customers.get(i % CUSTOMERS), false,
+                    ServiceType.values()[i % ServiceType.values().length], createdAt, null, null, null));
+        serviceOrderService.importBatch(serviceOrders);
+    }
+
+    private static void listServiceOrders(MockMvc mockMvc, SqlStats stats) throws Exception {
+        // The filters are not part of this MockMvc, so nothing else sets the stats of the thread.
+        SqlStatsContext.set(stats);
+        try {
+            mockMvc.perform(get("/api/v1/service-order")).andExpect(status().isOk());
+        } finally {
+            SqlStatsContext.clear();
+        }
+    }
+
+    private static final class Measurement {
+        final boolean openInView;
+        final long allocatedBytes;
+        final long connectionNanos;
+        final long latencyNanos;
+
+        Measurement(boolean openInView, long allocatedBytes, long connectionNanos, long latencyNanos) {
+            this.openInView = openInView;
+            this.allocatedBytes = allocatedBytes;
+            this.connectionNanos = connectionNanos;
+            this.latencyNanos = latencyNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-12s %15.1f KB %21.1f us %15.1f us", openInView ? "on" : "off",
+                    allocatedBytes / 1024.0, connectionNanos / 1e3, latencyNanos / 1e3);
+        }
+    }
+}
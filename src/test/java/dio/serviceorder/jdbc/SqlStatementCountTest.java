@@ -0,0 +1,121 @@
+package dio.serviceorder.jdbc;
+
+import dio.serviceorder.dto.CustomerDTO;
+import dio.serviceorder.dto.ServiceOrderDTO;
+import dio.serviceorder.enums.ServiceType;
+import dio.serviceorder.service.CustomerService;
+import dio.serviceorder.service.ServiceOrderService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static dio.serviceorder.utils.SqlStatements.assertAtMostStatements;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class SqlStatementCountTest {
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private ServiceOrderService serviceOrderService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void whenMoreServiceOrdersOfOtherCustomersExistThenListingThemShouldNotIssueMoreStatements() throws Throwable {
+        // given
+        List<ServiceOrderDTO> created = createServiceOrders(3);
+        SqlStats few = assertAtMostStatements(2, () -> serviceOrderService.listAll());
+
+        // when
+        created.addAll(createServiceOrders(30));
+        SqlStats many = assertAtMostStatements(2, () -> serviceOrderService.listAll());
+        List<Long> ids = created.stream().map(ServiceOrderDTO::getId).collect(Collectors.toList());
+
+        // then
+        assertThat(many.getStatements(), is(equalTo(few.getStatements())));
+        assertThat(many.getRows(), is(greaterThanOrEqualTo(33L)));
+        assertAtMostStatements(1, () -> serviceOrderService.findByIds(ids));
+    }
+
+    @Test
+    void whenAnEndpointIsCalledThenItsStatementsShouldBeReportedInTheServerTimingHeader() throws Exception {
+        // given
+        CustomerDTO customer = customerService.createCustomer(new CustomerDTO(null, "Server timing", null));
+
+        // then
+        mockMvc.perform(get("/api/v1/customers?ids=" + customer.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().stringValues("Server-Timing", hasItem(allOf(startsWith("db;dur="),
+                        containsString("1 statements, 1 rows")))));
+    }
+
+    @Test
+    void whenAResponseIsRenderedThenTheConnectionsOfTheRequestShouldBeBackInThePool() throws Exception {
+        // given
+        CustomerDTO customer = customerService.createCustomer(new CustomerDTO(null, "Connection hold", null));
+        OpenConnectionsAtRendering.OPEN.set(-1);
+
+        // when
+        mockMvc.perform(get("/api/v1/customers?ids=" + customer.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().stringValues("Server-Timing", hasItem(containsString("conn;dur="))));
+
+        // then
+        assertThat(OpenConnectionsAtRendering.OPEN.get(), is(0));
+    }
+
+    private List<ServiceOrderDTO> createServiceOrders(int count) throws Exception {
+        List<ServiceOrderDTO> created = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            CustomerDTO customer = customerService.createCustomer(new CustomerDTO(null, "Statement count " + i, null));
+            created.add(serviceOrderService.create(new ServiceOrderDTO(null, customer, false, ServiceType.REPAIR, null, null, null, null)));
+        }
+        return created;
+    }
+
+    /**
+     * Records how many connections the request still holds when its body is about to be written.
+     */
+    @TestConfiguration
+    @ControllerAdvice
+    static class OpenConnectionsAtRendering implements ResponseBodyAdvice<Object> {
+        static final AtomicInteger OPEN = new AtomicInteger();
+
+        @Override
+        public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+            return true;
+        }
+
+        @Override
+        public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                      Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                      ServerHttpRequest request, ServerHttpResponse response) {
+            SqlStats stats = SqlStatsContext.current();
+            OPEN.set(stats != null ? stats.getOpenConnections() : -1);
+            return body;
+        }
+    }
+}
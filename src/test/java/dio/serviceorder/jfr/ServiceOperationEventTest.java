@@ -0,0 +1,82 @@
+package dio.serviceorder.jfr;
+
+import dio.serviceorder.dto.CustomerDTO;
+import dio.serviceorder.exception.CustomerNotFoundException;
+import dio.serviceorder.service.CustomerService;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+public class ServiceOperationEventTest {
+    @Autowired
+    private CustomerService customerService;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void whenServiceOperationsRunDuringARecordingThenTheirEventsShouldBeRecorded() throws Exception {
+        // given
+        Configuration profile;
+        try (Reader reader = new InputStreamReader(new ClassPathResource("jfr/serviceorder.jfc").getInputStream(), StandardCharsets.UTF_8)) {
+            profile = Configuration.create(reader);
+        }
+        Path file = directory.resolve("recording.jfr");
+
+        // when
+        CustomerDTO customer;
+        try (Recording recording = new Recording(profile)) {
+            recording.enable(SlowQueryEvent.class).withoutThreshold();
+            recording.start();
+            customer = customerService.createCustomer(new CustomerDTO(null, "Flight recorded", null));
+            customerService.findById(customer.getId());
+            customerService.update(new CustomerDTO(customer.getId(), "Flight recorded again", null), customer.getVersion());
+            assertThrows(CustomerNotFoundException.class, () -> customerService.findById(Long.MAX_VALUE));
+            recording.stop();
+            recording.dump(file);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        List<RecordedEvent> findById = events.stream()
+                .filter(event -> event.getEventType().getName().equals("dio.serviceorder.ServiceOperation"))
+                .filter(event -> event.getString("operation").equals("findById"))
+                .collect(Collectors.toList());
+        Optional<RecordedEvent> update = events.stream()
+                .filter(event -> event.getEventType().getName().equals("dio.serviceorder.ServiceOperation"))
+                .filter(event -> event.getString("operation").equals("update"))
+                .findFirst();
+        Optional<RecordedEvent> insert = events.stream()
+                .filter(event -> event.getEventType().getName().equals("dio.serviceorder.SlowQuery"))
+                .filter(event -> event.getString("sql").startsWith("insert into tb_customer"))
+                .findFirst();
+
+        // then
+        assertThat(findById, hasSize(2));
+        assertThat(findById.get(0).getString("service"), is(equalTo("CustomerService")));
+        assertThat(findById.get(0).getLong("id"), is(equalTo(customer.getId())));
+        assertThat(findById.get(0).getInt("rows"), is(equalTo(1)));
+        assertThat(findById.get(0).getString("cache"), is(equalTo("MISS")));
+        assertThat(findById.get(1).getString("cache"), is(equalTo("FILTERED")));
+        assertThat(findById.get(1).getString("exception"), is(equalTo("CustomerNotFoundException")));
+        assertThat(update.map(event -> event.getLong("id")).orElse(null), is(equalTo(customer.getId())));
+        assertThat(insert.isPresent(), is(true));
+    }
+}
@@ -0,0 +1,84 @@
+package dio.serviceorder.limiter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+    private LimiterProperties.Group settings(int initialLimit) {
+        LimiterProperties.Group group = new LimiterProperties.Group();
+        group.setInitialLimit(initialLimit);
+        group.setMinLimit(1);
+        group.setMaxLimit(100);
+        return group;
+    }
+
+    @Test
+    void whenLimitIsReachedThenNewRequestsShouldBeRejected() {
+        // given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(settings(2));
+
+        // when
+        boolean first = limiter.tryAcquire();
+        boolean second = limiter.tryAcquire();
+        boolean third = limiter.tryAcquire();
+
+        // then
+        assertThat(first, is(true));
+        assertThat(second, is(true));
+        assertThat(third, is(false));
+        assertThat(limiter.getInFlight(), is(equalTo(2)));
+        assertThat(limiter.getRejected(), is(equalTo(1L)));
+    }
+
+    @Test
+    void whenLatencyIsStableAndLimitIsSaturatedThenTheLimitShouldGrow() {
+        // given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(settings(10));
+
+        // when
+        for (int i = 0; i < 50; i++) {
+            while (limiter.tryAcquire()) { }
+            limiter.release(1_000_000, false);
+        }
+
+        // then
+        assertThat(limiter.getLimit(), is(greaterThan(10)));
+    }
+
+    @Test
+    void whenLatencyIncreasesThenTheLimitShouldShrink() {
+        // given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(settings(50));
+        for (int i = 0; i < 100; i++) {
+            while (limiter.tryAcquire()) { }
+            limiter.release(1_000_000, false);
+        }
+        int limitBeforeSlowdown = limiter.getLimit();
+
+        // when
+        for (int i = 0; i < 50; i++) {
+            while (limiter.tryAcquire()) { }
+            limiter.release(20_000_000, false);
+        }
+
+        // then
+        assertThat(limiter.getLimit(), is(lessThan(limitBeforeSlowdown)));
+    }
+
+    @Test
+    void whenRequestsAreDroppedThenTheLimitShouldBackOff() {
+        // given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(settings(20));
+
+        // when
+        limiter.tryAcquire();
+        limiter.release(1_000_000, true);
+
+        // then
+        assertThat(limiter.getLimit(), is(equalTo(18)));
+        assertThat(limiter.getInFlight(), is(equalTo(0)));
+    }
+}
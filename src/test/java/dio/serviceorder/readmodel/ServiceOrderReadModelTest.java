@@ -0,0 +1,201 @@
+package dio.serviceorder.readmodel;
+
+import dio.serviceorder.builder.CustomerDTOBuilder;
+import dio.serviceorder.builder.ServiceOrderDTOBuilder;
+import dio.serviceorder.dto.CustomerDTO;
+import dio.serviceorder.dto.ServiceOrderDTO;
+import dio.serviceorder.enums.ServiceType;
+import dio.serviceorder.mapper.ServiceOrderMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ServiceOrderReadModelTest {
+
+    private final ServiceOrderMapper serviceOrderMapper = ServiceOrderMapper.INSTANCE;
+
+    private ServiceOrderDTO serviceOrder(long id, boolean closed, ServiceType type) {
+        return ServiceOrderDTOBuilder.builder().id(id).closed(closed).type(type).build().toServiceOrderDTO();
+    }
+
+    private ServiceOrderReadModel loadedWith(ServiceOrderDTO... serviceOrders) {
+        ServiceOrderReadModel readModel = new ServiceOrderReadModel();
+        readModel.beginLoad();
+        readModel.load(Arrays.stream(serviceOrders).map(serviceOrderMapper::toModel).collect(Collectors.toList()));
+        return readModel;
+    }
+
+    @Test
+    void whenLoadedThenOrdersShouldBeListedByClosedStatusAndType() {
+        // given
+        ServiceOrderDTO open = serviceOrder(1L, false, ServiceType.REPAIR);
+        ServiceOrderDTO closed = serviceOrder(2L, true, ServiceType.REPAIR);
+        ServiceOrderDTO removal = serviceOrder(3L, false, ServiceType.REMOVAL);
+
+        // when
+        ServiceOrderReadModel readModel = loadedWith(open, closed, removal);
+
+        // then
+        assertThat(readModel.findByClosed(false), contains(open, removal));
+        assertThat(readModel.findByClosed(true), contains(closed));
+        assertThat(readModel.findByType(ServiceType.REPAIR), contains(open, closed));
+        assertThat(readModel.count(false, ServiceType.REPAIR), is(equalTo(1L)));
+        assertThat(readModel.count(null, null), is(equalTo(3L)));
+    }
+
+    @Test
+    void whenOrdersAreUpdatedAndRemovedThenTheIndexesShouldFollow() {
+        // given
+        ServiceOrderReadModel readModel = loadedWith(serviceOrder(1L, false, ServiceType.REPAIR), serviceOrder(2L, false, ServiceType.REPAIR));
+        ServiceOrderDTO closedAsRemoval = serviceOrder(1L, true, ServiceType.REMOVAL);
+
+        // when
+        readModel.upsert(closedAsRemoval);
+        readModel.remove(2L);
+
+        // then
+        assertThat(readModel.findByClosed(false), is(empty()));
+        assertThat(readModel.findByType(ServiceType.REMOVAL), contains(closedAsRemoval));
+        assertThat(readModel.findByType(ServiceType.REPAIR), is(empty()));
+    }
+
+    @Test
+    void whenWritesHappenDuringTheLoadThenTheyShouldBeAppliedAfterIt() {
+        // given
+        ServiceOrderReadModel readModel = new ServiceOrderReadModel();
+        readModel.beginLoad();
+        ServiceOrderDTO created = serviceOrder(2L, false, ServiceType.INSTALLATION);
+
+        // when
+        readModel.upsert(created);
+        readModel.remove(1L);
+        readModel.load(Collections.singletonList(serviceOrderMapper.toModel(serviceOrder(1L, false, ServiceType.REPAIR))));
+
+        // then
+        assertThat(readModel.findByClosed(false), contains(created));
+    }
+
+    @Test
+    void whenAnOlderVersionArrivesAfterANewerOneThenItShouldBeIgnored() {
+        // given
+        ServiceOrderReadModel readModel = loadedWith();
+        ServiceOrderDTO closed = ServiceOrderDTOBuilder.builder().id(1L).closed(true).version(2L).build().toServiceOrderDTO();
+        ServiceOrderDTO reopened = ServiceOrderDTOBuilder.builder().id(1L).closed(false).version(1L).build().toServiceOrderDTO();
+
+        // when
+        readModel.upsert(closed);
+        readModel.upsert(reopened);
+
+        // then
+        assertThat(readModel.findByClosed(true), contains(closed));
+        assertThat(readModel.findByClosed(true).get(0).getVersion(), is(equalTo(2L)));
+        assertThat(readModel.findByClosed(false), is(empty()));
+    }
+
+    @Test
+    void whenAnOlderVersionArrivesAfterTheOrderWasRemovedThenItShouldStayRemoved() {
+        // given
+        ServiceOrderReadModel readModel = loadedWith();
+        ServiceOrderDTO created = ServiceOrderDTOBuilder.builder().id(1L).version(0L).build().toServiceOrderDTO();
+        ServiceOrderDTO updated = ServiceOrderDTOBuilder.builder().id(1L).type(ServiceType.REMOVAL).version(1L).build().toServiceOrderDTO();
+
+        // when
+        readModel.upsert(created);
+        readModel.remove(1L, 1L);
+        readModel.upsert(updated);
+
+        // then
+        assertThat(readModel.count(null, null), is(equalTo(0L)));
+    }
+
+    @Test
+    void whenComparedWithTheStoredVersionsThenNewChangedAndDeletedOrdersShouldBeStale() {
+        // given
+        ServiceOrderReadModel readModel = loadedWith(serviceOrder(1L, false, ServiceType.REPAIR),
+                serviceOrder(2L, false, ServiceType.REPAIR), serviceOrder(3L, false, ServiceType.REPAIR));
+
+        // when
+        List<Long> staleIds = readModel.staleIds(new long[]{1L, 3L, 4L}, new long[]{0L, 1L, 0L});
+
+        // then
+        assertThat(staleIds, contains(3L, 4L, 2L));
+    }
+
+    @Test
+    void whenACustomerIsRenamedThenItsOrdersShouldShowTheNewName() {
+        // given
+        ServiceOrderReadModel readModel = loadedWith(serviceOrder(1L, false, ServiceType.REPAIR));
+        CustomerDTO renamed = CustomerDTOBuilder.builder().name("Beatriz").build().toCustomerDTO();
+
+        // when
+        readModel.updateCustomer(renamed);
+
+        // then
+        List<ServiceOrderDTO> serviceOrders = readModel.findByClosed(false);
+        assertThat(serviceOrders.get(0).getCustomer(), is(equalTo(renamed)));
+    }
+
+    @Test
+    void whenManyOrdersAreRemovedThenRemainingOrdersShouldStayListed() {
+        // given
+        ServiceOrderReadModel readModel = loadedWith();
+        for (long id = 1; id <= 3000; id++)
+            readModel.upsert(serviceOrder(id, id % 2 == 0, ServiceType.REPAIR));
+
+        // when
+        for (long id = 1; id <= 2500; id++)
+            readModel.remove(id);
+
+        // then
+        assertThat(readModel.count(null, null), is(equalTo(500L)));
+        assertThat(readModel.findByClosed(true).size(), is(equalTo(250)));
+        assertThat(readModel.findByType(ServiceType.REPAIR).get(0).getId(), is(equalTo(2501L)));
+    }
+
+    @Test
+    void whenOrdersArriveOutOfIdOrderThenTheyShouldBeListedById() {
+        // given
+        ServiceOrderReadModel readModel = loadedWith(serviceOrder(1L, false, ServiceType.REPAIR), serviceOrder(5L, false, ServiceType.REPAIR));
+
+        // when
+        readModel.upsert(serviceOrder(3L, false, ServiceType.REPAIR));
+
+        // then
+        assertThat(readModel.findByClosed(false).stream().map(ServiceOrderDTO::getId).collect(Collectors.toList()), contains(1L, 3L, 5L));
+    }
+
+    @Test
+    void whenAListedCustomerIsChangedThenTheModelShouldKeepItsOwn() {
+        // given
+        ServiceOrderReadModel readModel = loadedWith(serviceOrder(1L, false, ServiceType.REPAIR));
+
+        // when
+        readModel.findByClosed(false).get(0).getCustomer().setName("Changed by a caller");
+
+        // then
+        assertThat(readModel.findByClosed(false).get(0).getCustomer().getName(), is(equalTo("Alfredo")));
+    }
+
+    @Test
+    void whenTheLoadIsAbortedThenWritesShouldNoLongerBeQueued() {
+        // given
+        ServiceOrderReadModel readModel = new ServiceOrderReadModel();
+        readModel.beginLoad();
+
+        // when
+        readModel.abortLoad();
+        readModel.upsert(serviceOrder(1L, false, ServiceType.REPAIR));
+        readModel.beginLoad();
+        readModel.load(Collections.emptyList());
+
+        // then
+        assertThat(readModel.isReady(), is(true));
+        assertThat(readModel.count(null, null), is(equalTo(0L)));
+    }
+}
@@ -0,0 +1,76 @@
+package dio.serviceorder.replica;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ReadWriteRoutingDataSourceTest {
+    private final ReadWriteRoutingDataSource routingDataSource = new ReadWriteRoutingDataSource();
+    private final ReadYourWritesFilter readYourWritesFilter = new ReadYourWritesFilter(Duration.ofSeconds(5));
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        ReplicaContext.clear();
+    }
+
+    private Object lookupKeyDuring(MockHttpServletRequest request, MockHttpServletResponse response) throws ServletException, IOException {
+        AtomicReference<Object> lookupKey = new AtomicReference<>();
+        readYourWritesFilter.doFilter(request, response, new MockFilterChain() {
+            @Override
+            public void doFilter(javax.servlet.ServletRequest request, javax.servlet.ServletResponse response) {
+                lookupKey.set(routingDataSource.determineCurrentLookupKey());
+            }
+        });
+        return lookupKey.get();
+    }
+
+    @Test
+    void whenTheTransactionIsReadOnlyThenTheReplicaShouldBeUsed() {
+        // given
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        // then
+        assertThat(routingDataSource.determineCurrentLookupKey(), equalTo(ReadWriteRoutingDataSource.Target.REPLICA));
+    }
+
+    @Test
+    void whenTheTransactionIsNotReadOnlyThenThePrimaryShouldBeUsed() {
+        // then
+        assertThat(routingDataSource.determineCurrentLookupKey(), equalTo(ReadWriteRoutingDataSource.Target.PRIMARY));
+    }
+
+    @Test
+    void whenAClientWritesThenItsNextReadsShouldStayOnThePrimary() throws ServletException, IOException {
+        // given
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        MockHttpServletResponse writeResponse = new MockHttpServletResponse();
+        lookupKeyDuring(new MockHttpServletRequest("POST", "/api/v1/service-order"), writeResponse);
+        Cookie stickiness = writeResponse.getCookie(ReadYourWritesFilter.COOKIE_NAME);
+
+        // when
+        MockHttpServletRequest stickyRead = new MockHttpServletRequest("GET", "/api/v1/service-order");
+        stickyRead.setCookies(stickiness);
+        Object stickyReadKey = lookupKeyDuring(stickyRead, new MockHttpServletResponse());
+        Object otherReadKey = lookupKeyDuring(new MockHttpServletRequest("GET", "/api/v1/service-order"), new MockHttpServletResponse());
+
+        // then
+        assertThat(stickiness, is(notNullValue()));
+        assertThat(stickiness.getMaxAge(), equalTo(5));
+        assertThat(stickyReadKey, equalTo(ReadWriteRoutingDataSource.Target.PRIMARY));
+        assertThat(otherReadKey, equalTo(ReadWriteRoutingDataSource.Target.REPLICA));
+        assertThat(ReplicaContext.isPinnedToPrimary(), is(false));
+    }
+}
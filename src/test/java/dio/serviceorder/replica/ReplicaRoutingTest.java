@@ -0,0 +1,50 @@
+package dio.serviceorder.replica;
+
+import com.zaxxer.hikari.HikariDataSource;
+import dio.serviceorder.dto.CustomerDTO;
+import dio.serviceorder.service.CustomerService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.SQLException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@ActiveProfiles("replica")
+public class ReplicaRoutingTest {
+    @Autowired
+    private CustomerService customerService;
+
+    @SpyBean(name = "primaryDataSource")
+    private HikariDataSource primaryDataSource;
+
+    @SpyBean(name = "replicaDataSource")
+    private HikariDataSource replicaDataSource;
+
+    @Test
+    void whenCustomersAreWrittenAndReadThenWritesShouldHitThePrimaryAndReadsTheReplica() throws Exception {
+        // given
+        clearInvocations(primaryDataSource, replicaDataSource);
+
+        // when
+        CustomerDTO created = customerService.createCustomer(new CustomerDTO(null, "Replica reader", null));
+        verifyConnections(1, 0);
+        CustomerDTO found = customerService.findById(created.getId());
+
+        // then
+        assertThat(found, equalTo(created));
+        verifyConnections(0, 1);
+    }
+
+    private void verifyConnections(int primary, int replica) throws SQLException {
+        verify(primaryDataSource, times(primary)).getConnection();
+        verify(replicaDataSource, times(replica)).getConnection();
+        clearInvocations(primaryDataSource, replicaDataSource);
+    }
+}
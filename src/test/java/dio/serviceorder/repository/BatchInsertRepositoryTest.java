@@ -0,0 +1,34 @@
+package dio.serviceorder.repository;
+
+import dio.serviceorder.model.Customer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessException;
+
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+public class BatchInsertRepositoryTest {
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Test
+    void whenARowOfTheBatchFailsThenNoRowShouldBeInserted() {
+        // given
+        long count = customerRepository.count();
+        Customer valid = new Customer();
+        valid.setName("Batch insert");
+        Customer invalid = new Customer();
+
+        // when
+        assertThrows(DataAccessException.class, () -> customerRepository.insertAll(Arrays.asList(valid, invalid)));
+
+        // then
+        assertThat(customerRepository.count(), is(count));
+    }
+}
@@ -0,0 +1,57 @@
+package dio.serviceorder.repository;
+
+import dio.serviceorder.dto.CustomerDTO;
+import dio.serviceorder.dto.ServiceOrderDTO;
+import dio.serviceorder.enums.ServiceType;
+import dio.serviceorder.model.ServiceOrder;
+import dio.serviceorder.service.CustomerService;
+import dio.serviceorder.service.ServiceOrderService;
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@SpringBootTest
+public class ReadOnlyQueryTest {
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private ServiceOrderService serviceOrderService;
+
+    @Autowired
+    private ServiceOrderRepository serviceOrderRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void whenServiceOrdersAreListedInAWriteTransactionThenTheyShouldBeLoadedReadOnly() throws Exception {
+        // given
+        CustomerDTO customer = customerService.createCustomer(new CustomerDTO(null, "Read-only query", null));
+        Long id = serviceOrderService.create(new ServiceOrderDTO(null, customer, false, ServiceType.REPAIR, null, null, null, null)).getId();
+
+        // when
+        Boolean readOnly = new TransactionTemplate(transactionManager).execute(status -> {
+            ServiceOrder listed = serviceOrderRepository.findByIdIn(List.of(id)).get(0);
+            listed.setClosed(true);
+            return entityManager.unwrap(Session.class).isReadOnly(listed);
+        });
+
+        // then
+        assertThat(readOnly, is(true));
+        assertThat(serviceOrderService.findById(id).getClosed(), is(false));
+        assertThat(serviceOrderRepository.findById(id).orElseThrow().getClosed(), is(false));
+    }
+}
@@ -1,18 +1,35 @@
 package dio.serviceorder.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import dio.serviceorder.builder.CustomerDTOBuilder;
+import dio.serviceorder.cache.IdBloomFilter;
+import dio.serviceorder.cache.ListResponseCache;
+import dio.serviceorder.changelog.ChangeLog;
+import dio.serviceorder.dto.BatchDTO;
 import dio.serviceorder.dto.CustomerDTO;
+import dio.serviceorder.eventlog.EventLog;
 import dio.serviceorder.exception.CustomerAlreadyExistsException;
+import dio.serviceorder.exception.CustomerHasServiceOrdersException;
 import dio.serviceorder.exception.CustomerNotFoundException;
+import dio.serviceorder.exception.CustomerVersionMismatchException;
 import dio.serviceorder.mapper.CustomerMapper;
 import dio.serviceorder.model.Customer;
+import dio.serviceorder.patch.JsonMergePatch;
+import dio.serviceorder.readmodel.ServiceOrderReadModel;
 import dio.serviceorder.repository.CustomerRepository;
+import dio.serviceorder.repository.ServiceOrderRepository;
+import dio.serviceorder.shard.ShardRouter;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
 
+import javax.validation.Validation;
+
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -28,6 +45,32 @@ public class CustomerServiceTest {
     @Mock
     private CustomerRepository customerRepository;
 
+    @Mock
+    private ServiceOrderRepository serviceOrderRepository;
+
+    @Mock
+    private EventLog eventLog;
+
+    @Spy
+    private IdBloomFilter customerIdFilter = new IdBloomFilter(1000, 0.01);
+
+    @Spy
+    private ServiceOrderReadModel serviceOrderReadModel = new ServiceOrderReadModel();
+
+    @Spy
+    private ListResponseCache listResponseCache = new ListResponseCache(64, DataSize.ofMegabytes(1), true);
+
+    // Disabled, writes run as they are.
+    @Spy
+    private ChangeLog changeLog = new ChangeLog();
+
+    @Spy
+    private ShardRouter shardRouter = ShardRouter.unsharded();
+
+    @Spy
+    private JsonMergePatch jsonMergePatch = new JsonMergePatch(new ObjectMapper(),
+            Validation.buildDefaultValidatorFactory().getValidator());
+
     private CustomerMapper customerMapper = CustomerMapper.INSTANCE;
     @InjectMocks
     private CustomerService customerService;
@@ -131,7 +174,7 @@ public class CustomerServiceTest {
     }
 
     @Test
-    void whenDeleteIsCalledWithAValidCustomerIdThenACustomerShouldBeDeleted() throws CustomerNotFoundException {
+    void whenDeleteIsCalledWithAValidCustomerIdThenACustomerShouldBeDeleted() throws CustomerNotFoundException, CustomerHasServiceOrdersException {
         // given
         CustomerDTO customerDTO = CustomerDTOBuilder.builder().build().toCustomerDTO();
         Customer customer = customerMapper.toModel(customerDTO);
@@ -146,6 +189,21 @@ public class CustomerServiceTest {
         verify(customerRepository, times(1)).deleteById(customerDTO.getId());
     }
 
+    @Test
+    void whenTheCustomerStillHasServiceOrdersThenItShouldNotBeDeleted() {
+        // given
+        CustomerDTO customerDTO = CustomerDTOBuilder.builder().build().toCustomerDTO();
+        Customer customer = customerMapper.toModel(customerDTO);
+
+        // when
+        when(customerRepository.findById(customerDTO.getId())).thenReturn(Optional.of(customer));
+        when(serviceOrderRepository.existsByCustomerId(customerDTO.getId())).thenReturn(true);
+
+        // then
+        assertThrows(CustomerHasServiceOrdersException.class, () -> customerService.deleteById(customerDTO.getId()));
+        verify(customerRepository, never()).deleteById(customerDTO.getId());
+    }
+
     @Test
     void whenDeleteIsCalledWithAnInvalidCustomerIdThenAnExceptionShouldBeThrown() {
         // given
@@ -159,7 +217,7 @@ public class CustomerServiceTest {
     }
 
     @Test
-    void whenUpdateIsCalledWithAValidCustomerThenTheCustomerShouldBeUpdated() throws CustomerNotFoundException {
+    void whenUpdateIsCalledWithAValidCustomerThenTheCustomerShouldBeUpdated() throws CustomerNotFoundException, CustomerVersionMismatchException {
         // given
         CustomerDTO customerDTO = CustomerDTOBuilder.builder().build().toCustomerDTO();
         CustomerDTO customerToUpdateDTO = CustomerDTOBuilder.builder().build().toCustomerDTO();
@@ -172,11 +230,60 @@ public class CustomerServiceTest {
         when(customerRepository.save(updatedCustomer)).thenReturn(updatedCustomer);
 
         // then
-        CustomerDTO updatedCustomerDTO = customerService.update(customerToUpdateDTO);
+        CustomerDTO updatedCustomerDTO = customerService.update(customerToUpdateDTO, null);
 
         assertThat(updatedCustomerDTO, equalTo(customerToUpdateDTO));
     }
 
+    @Test
+    void whenAMergePatchRenamesACustomerWithTheCurrentVersionThenItShouldBeUpdated() throws Exception {
+        // given
+        Customer foundCustomer = customerMapper.toModel(CustomerDTOBuilder.builder().build().toCustomerDTO());
+        foundCustomer.setVersion(2L);
+        Customer renamedCustomer = customerMapper.toModel(CustomerDTOBuilder.builder().name("Maria").build().toCustomerDTO());
+        renamedCustomer.setVersion(2L);
+
+        // when
+        when(customerRepository.findById(foundCustomer.getId())).thenReturn(Optional.of(foundCustomer));
+        when(customerRepository.save(renamedCustomer)).thenReturn(renamedCustomer);
+        CustomerDTO updatedCustomerDTO = customerService.patch(foundCustomer.getId(), new ObjectMapper().readTree("{\"name\": \"Maria\"}"), 2L);
+
+        // then
+        assertThat(updatedCustomerDTO.getName(), is("Maria"));
+        verify(serviceOrderReadModel).updateCustomer(updatedCustomerDTO);
+    }
+
+    @Test
+    void whenTheExpectedCustomerVersionIsStaleThenAnExceptionShouldBeThrown() {
+        // given
+        CustomerDTO customerDTO = CustomerDTOBuilder.builder().build().toCustomerDTO();
+        Customer foundCustomer = customerMapper.toModel(customerDTO);
+        foundCustomer.setVersion(5L);
+
+        // when
+        when(customerRepository.findById(customerDTO.getId())).thenReturn(Optional.of(foundCustomer));
+
+        // then
+        assertThrows(CustomerVersionMismatchException.class, () -> customerService.update(customerDTO, 4L));
+        verify(customerRepository, never()).save(any());
+    }
+
+    @Test
+    void whenFindByIdsIsCalledThenCustomersShouldComeInRequestOrderWithTheMissingIds() throws Exception {
+        // given
+        CustomerDTO alfredo = CustomerDTOBuilder.builder().id(2L).build().toCustomerDTO();
+        CustomerDTO maria = CustomerDTOBuilder.builder().id(5L).name("Maria").build().toCustomerDTO();
+
+        // when
+        when(customerRepository.findAllById(Arrays.asList(5L, 4L, 2L)))
+                .thenReturn(Arrays.asList(customerMapper.toModel(alfredo), customerMapper.toModel(maria)));
+        BatchDTO<CustomerDTO> found = customerService.findByIds(Arrays.asList(5L, 4L, 2L));
+
+        // then
+        assertThat(found.getItems(), contains(maria, alfredo));
+        assertThat(found.getMissingIds(), contains(4L));
+    }
+
     @Test
     void whenUpdateIsCalledWithAnInvalidCustomerIdThenAnExceptionShouldBeThrown() {
         // given
@@ -187,7 +294,7 @@ public class CustomerServiceTest {
         when(customerRepository.findById(customerDTO.getId())).thenReturn(Optional.empty());
 
         // then
-        assertThrows(CustomerNotFoundException.class, () -> customerService.update(customerDTO));
+        assertThrows(CustomerNotFoundException.class, () -> customerService.update(customerDTO, null));
         verify(customerRepository, times(0)).save(customer);
     }
 }
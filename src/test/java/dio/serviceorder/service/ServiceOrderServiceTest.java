@@ -1,26 +1,62 @@
 package dio.serviceorder.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import dio.serviceorder.builder.CustomerDTOBuilder;
 import dio.serviceorder.builder.ServiceOrderDTOBuilder;
+import dio.serviceorder.cache.IdBloomFilter;
+import dio.serviceorder.cache.ListResponseCache;
+import dio.serviceorder.cache.ServiceOrderReadCoalescer;
+import dio.serviceorder.changelog.ChangeLog;
+import dio.serviceorder.dto.BatchDTO;
 import dio.serviceorder.dto.CustomerDTO;
 import dio.serviceorder.dto.ServiceOrderDTO;
+import dio.serviceorder.dto.ServiceOrderPageDTO;
+import dio.serviceorder.dto.ServiceOrderStatsDTO;
 import dio.serviceorder.enums.ServiceType;
+import dio.serviceorder.eventlog.EventLog;
+import dio.serviceorder.eventlog.LogEvent;
+import dio.serviceorder.exception.BatchTooLargeException;
+import dio.serviceorder.exception.InvalidCursorException;
+import dio.serviceorder.exception.InvalidPatchException;
 import dio.serviceorder.exception.ServiceOrderAlreadyExistsException;
 import dio.serviceorder.exception.ServiceOrderNotFoundException;
+import dio.serviceorder.exception.ServiceOrderShardMoveException;
+import dio.serviceorder.exception.ServiceOrderVersionMismatchException;
 import dio.serviceorder.mapper.CustomerMapper;
 import dio.serviceorder.mapper.ServiceOrderMapper;
 import dio.serviceorder.model.Customer;
 import dio.serviceorder.model.ServiceOrder;
+import dio.serviceorder.patch.JsonMergePatch;
+import dio.serviceorder.readmodel.ReadModelSnapshot;
+import dio.serviceorder.readmodel.ServiceOrderReadModel;
+import dio.serviceorder.repository.CustomerRepository;
 import dio.serviceorder.repository.ServiceOrderRepository;
+import dio.serviceorder.repository.ServiceOrderVersionRow;
+import dio.serviceorder.shard.ShardRouter;
+import dio.serviceorder.snapshot.ReadModelSnapshots;
+import dio.serviceorder.stats.ServiceOrderStats;
+import dio.serviceorder.stats.ServiceOrderTimeline;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.util.unit.DataSize;
+
+import javax.validation.Validation;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 import static org.hamcrest.MatcherAssert.*;
 import static org.hamcrest.Matchers.*;
@@ -29,19 +65,92 @@ import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 public class ServiceOrderServiceTest {
+    private static final Instant NOW = Instant.parse("2022-07-01T10:15:30.123456Z");
+
     @Mock
     private ServiceOrderRepository serviceOrderRepository;
 
+    @Mock
+    private EventLog eventLog;
+
+    @Mock
+    private CustomerRepository customerRepository;
+
+    @Spy
+    private ServiceOrderReadCoalescer readCoalescer = new ServiceOrderReadCoalescer(Duration.ofSeconds(1));
+
+    @Spy
+    private IdBloomFilter serviceOrderIdFilter = new IdBloomFilter(1000, 0.01);
+
+    @Spy
+    private ServiceOrderReadModel readModel = new ServiceOrderReadModel();
+
+    @Spy
+    private ListResponseCache listResponseCache = new ListResponseCache(64, DataSize.ofMegabytes(1), true);
+
+    // Disabled, writes run as they are.
+    @Spy
+    private ChangeLog changeLog = new ChangeLog();
+
+    @Spy
+    private ShardRouter shardRouter = ShardRouter.unsharded();
+
+    @Spy
+    private ServiceOrderStats serviceOrderStats = new ServiceOrderStats();
+
+    @Mock
+    private ServiceOrderTimeline serviceOrderTimeline;
+
+    @Mock
+    private Clock clock;
+
+    @Mock
+    private ReadModelSnapshots readModelSnapshots;
+
+    @Spy
+    private JsonMergePatch jsonMergePatch = new JsonMergePatch(new ObjectMapper().findAndRegisterModules(),
+            Validation.buildDefaultValidatorFactory().getValidator());
+
     private ServiceOrderMapper serviceOrderMapper = ServiceOrderMapper.INSTANCE;
 
     @InjectMocks
     private ServiceOrderService serviceOrderService;
 
+    @BeforeEach
+    void setUp() {
+        lenient().when(clock.instant()).thenReturn(NOW);
+    }
+
+    @Test
+    void whenServiceOrderIsCreatedThenItShouldCarryTheStoredCustomerRatherThanTheOneSent() throws ServiceOrderAlreadyExistsException {
+        // given
+        readModel.beginLoad();
+        readModel.load(Collections.emptyList());
+        ServiceOrderDTO serviceOrderDTO = ServiceOrderDTOBuilder.builder()
+                .customer(CustomerDTOBuilder.builder().name("Sent name").build().toCustomerDTO())
+                .build().toServiceOrderDTO();
+        ServiceOrder serviceOrder = serviceOrderMapper.toModel(serviceOrderDTO);
+        serviceOrder.setCreatedAt(NOW);
+
+        // when
+        when(serviceOrderRepository.findById(serviceOrderDTO.getId())).thenReturn(Optional.empty());
+        when(serviceOrderRepository.save(serviceOrder)).thenReturn(serviceOrder);
+        when(customerRepository.findAllById(Collections.singleton(serviceOrderDTO.getCustomer().getId())))
+                .thenReturn(Collections.singletonList(new Customer(serviceOrderDTO.getCustomer().getId(), "Stored name", 3L)));
+
+        // then
+        ServiceOrderDTO savedServiceOrderDTO = serviceOrderService.create(serviceOrderDTO);
+
+        assertThat(savedServiceOrderDTO.getCustomer().getName(), is(equalTo("Stored name")));
+        assertThat(readModel.findByClosed(false).get(0).getCustomer().getName(), is(equalTo("Stored name")));
+    }
+
     @Test
     void whenServiceOrderInformedThenItShouldBeCreated() throws ServiceOrderAlreadyExistsException {
         // given
         ServiceOrderDTO serviceOrderDTO = ServiceOrderDTOBuilder.builder().build().toServiceOrderDTO();
         ServiceOrder serviceOrder = serviceOrderMapper.toModel(serviceOrderDTO);
+        serviceOrder.setCreatedAt(NOW);
 
         // when
         when(serviceOrderRepository.findById(serviceOrderDTO.getId())).thenReturn(Optional.empty());
@@ -75,6 +184,7 @@ public class ServiceOrderServiceTest {
         ServiceOrderDTO serviceOrderDTO = ServiceOrderDTOBuilder.builder().build().toServiceOrderDTO();
         serviceOrderDTO.setId(null);
         ServiceOrder serviceOrder = serviceOrderMapper.toModel(serviceOrderDTO);
+        serviceOrder.setCreatedAt(NOW);
 
         // when
         when(serviceOrderRepository.save(serviceOrder)).thenReturn(serviceOrder);
@@ -85,6 +195,111 @@ public class ServiceOrderServiceTest {
         assertThat(savedServiceOrderDTO.getCustomer(), is(equalTo(serviceOrderDTO.getCustomer())));
         assertThat(savedServiceOrderDTO.getType(), is(equalTo(serviceOrderDTO.getType())));
         assertThat(savedServiceOrderDTO.getClosed(), is(equalTo(serviceOrderDTO.getClosed())));
+        assertThat(savedServiceOrderDTO.getCreatedAt(), is(equalTo(NOW)));
+        assertThat(savedServiceOrderDTO.getClosedAt(), is(nullValue()));
+    }
+
+    @Test
+    void whenAClosedServiceOrderIsCreatedThenItsClosureTimeShouldBeSet() throws ServiceOrderAlreadyExistsException {
+        // given
+        ServiceOrderDTO serviceOrderDTO = ServiceOrderDTOBuilder.builder().id(null).closed(true).build().toServiceOrderDTO();
+        ServiceOrder serviceOrder = serviceOrderMapper.toModel(serviceOrderDTO);
+        serviceOrder.setCreatedAt(NOW);
+        serviceOrder.setClosedAt(NOW);
+
+        // when
+        when(serviceOrderRepository.save(serviceOrder)).thenReturn(serviceOrder);
+        ServiceOrderDTO savedServiceOrderDTO = serviceOrderService.create(serviceOrderDTO);
+
+        // then
+        assertThat(savedServiceOrderDTO.getClosedAt(), is(equalTo(NOW)));
+        verify(serviceOrderTimeline).recordChange(null, savedServiceOrderDTO);
+    }
+
+    @Test
+    void whenABatchIsImportedThenItShouldBeInsertedAtOnceWithMissingTimestampsSet() {
+        // given
+        Instant createdAt = NOW.minusSeconds(3600);
+        ServiceOrderDTO open = ServiceOrderDTOBuilder.builder().id(null).build().toServiceOrderDTO();
+        ServiceOrderDTO closed = ServiceOrderDTOBuilder.builder().id(null).closed(true).build().toServiceOrderDTO();
+        closed.setCreatedAt(createdAt);
+
+        // when
+        when(serviceOrderRepository.insertAll(anyList())).thenAnswer(invocation -> {
+            List<ServiceOrder> serviceOrders = invocation.getArgument(0);
+            for (int i = 0; i < serviceOrders.size(); i++)
+                serviceOrders.get(i).setId(100L + i);
+            return serviceOrders;
+        });
+        List<ServiceOrderDTO> imported = serviceOrderService.importBatch(Arrays.asList(open, closed));
+
+        // then
+        assertThat(imported.stream().map(ServiceOrderDTO::getId).collect(Collectors.toList()), contains(100L, 101L));
+        assertThat(imported.get(0).getCreatedAt(), is(equalTo(NOW)));
+        assertThat(imported.get(0).getClosedAt(), is(nullValue()));
+        assertThat(imported.get(1).getCreatedAt(), is(equalTo(createdAt)));
+        assertThat(imported.get(1).getClosedAt(), is(equalTo(NOW)));
+        verify(serviceOrderRepository, times(1)).insertAll(anyList());
+        verify(readModel).upsertAll(imported);
+        verify(eventLog).appendAll(anyList());
+    }
+
+    @Test
+    void whenListCreatedBetweenHasMoreRowsThenACursorToTheNextPageShouldBeReturned() throws InvalidCursorException {
+        // given
+        Instant from = NOW.minusSeconds(60);
+        Instant to = NOW.plusSeconds(60);
+        ServiceOrder first = serviceOrderMapper.toModel(ServiceOrderDTOBuilder.builder().id(1L).createdAt(NOW).build().toServiceOrderDTO());
+        ServiceOrder second = serviceOrderMapper.toModel(ServiceOrderDTOBuilder.builder().id(2L).createdAt(NOW).build().toServiceOrderDTO());
+        ServiceOrder third = serviceOrderMapper.toModel(ServiceOrderDTOBuilder.builder().id(3L).createdAt(NOW.plusSeconds(1)).build().toServiceOrderDTO());
+
+        // when
+        when(serviceOrderRepository.findCreatedBetween(from, to, from, 0L, PageRequest.of(0, 3)))
+                .thenReturn(Arrays.asList(first, second, third));
+        when(serviceOrderRepository.findCreatedBetween(from, to, NOW, 2L, PageRequest.of(0, 3)))
+                .thenReturn(Collections.singletonList(third));
+        ServiceOrderPageDTO firstPage = serviceOrderService.listCreatedBetween(from, to, null, 2);
+        ServiceOrderPageDTO lastPage = serviceOrderService.listCreatedBetween(from, to, firstPage.getNextCursor(), 2);
+
+        // then
+        assertThat(firstPage.getItems(), contains(serviceOrderMapper.toDTO(first), serviceOrderMapper.toDTO(second)));
+        assertThat(firstPage.getNextCursor(), is(notNullValue()));
+        assertThat(lastPage.getItems(), contains(serviceOrderMapper.toDTO(third)));
+        assertThat(lastPage.getNextCursor(), is(nullValue()));
+    }
+
+    @Test
+    void whenListCreatedBetweenIsCalledWithAnInvalidCursorThenAnExceptionShouldBeThrown() {
+        // then
+        assertThrows(InvalidCursorException.class, () -> serviceOrderService.listCreatedBetween(null, null, "not-a-cursor", 10));
+    }
+
+    @Test
+    void whenFindByIdsIsCalledThenServiceOrdersShouldComeInRequestOrderWithTheMissingIds() throws BatchTooLargeException {
+        // given
+        ServiceOrderDTO first = ServiceOrderDTOBuilder.builder().id(3L).build().toServiceOrderDTO();
+        ServiceOrderDTO second = ServiceOrderDTOBuilder.builder().id(1L).build().toServiceOrderDTO();
+        serviceOrderIdFilter.beginRebuild();
+        serviceOrderIdFilter.finishRebuild(Arrays.asList(1L, 2L, 3L));
+
+        // when
+        when(serviceOrderRepository.findByIdIn(Arrays.asList(3L, 2L, 1L)))
+                .thenReturn(Arrays.asList(serviceOrderMapper.toModel(second), serviceOrderMapper.toModel(first)));
+        BatchDTO<ServiceOrderDTO> found = serviceOrderService.findByIds(Arrays.asList(3L, 2L, 1L, 3L, 99L));
+
+        // then
+        assertThat(found.getItems(), contains(first, second));
+        assertThat(found.getMissingIds(), contains(2L, 99L));
+    }
+
+    @Test
+    void whenTooManyIdsAreRequestedThenAnExceptionShouldBeThrown() {
+        // given
+        List<Long> ids = LongStream.rangeClosed(1, 1001).boxed().collect(Collectors.toList());
+
+        // then
+        assertThrows(BatchTooLargeException.class, () -> serviceOrderService.findByIds(ids));
+        verify(serviceOrderRepository, never()).findByIdIn(any());
     }
 
     @Test
@@ -139,6 +354,33 @@ public class ServiceOrderServiceTest {
         assertThrows(ServiceOrderNotFoundException.class, ()-> serviceOrderService.findById(1L));
     }
 
+    @Test
+    void whenAServiceOrderIsCreatedWhileTheIdFilterIsRebuiltThenItShouldStillBeFound() {
+        // given
+        when(serviceOrderRepository.findAllIds()).thenAnswer(invocation -> {
+            // Created after the ids were read, but before the rebuilt filter is installed.
+            serviceOrderIdFilter.add(3L);
+            return Arrays.asList(1L, 2L);
+        });
+
+        // when
+        serviceOrderService.rebuildIdFilter();
+
+        // then
+        assertThat(serviceOrderIdFilter.mightContain(3L), is(true));
+    }
+
+    @Test
+    void whenTheIdFilterRulesOutTheIdThenTheRepositoryShouldNotBeQueried() {
+        // given
+        serviceOrderIdFilter.beginRebuild();
+        serviceOrderIdFilter.finishRebuild(Collections.singletonList(2L));
+
+        // then
+        assertThrows(ServiceOrderNotFoundException.class, ()-> serviceOrderService.findById(1L));
+        verify(serviceOrderRepository, never()).findById(1L);
+    }
+
     @Test
     void whenListByClosedStatusIsCalledThenAListOfServiceOrderShouldBeReturned() {
         // given
@@ -169,6 +411,28 @@ public class ServiceOrderServiceTest {
         assertThat(foundListOfServiceOrdersDTO, is(empty()));
     }
 
+    @Test
+    void whenTheReadModelIsLoadedThenListByClosedStatusShouldNotQueryTheRepository() {
+        // given
+        ServiceOrderDTO serviceOrderDTO = ServiceOrderDTOBuilder.builder().build().toServiceOrderDTO();
+        readModel.load(Collections.singletonList(serviceOrderMapper.toModel(serviceOrderDTO)));
+
+        // then
+        List<ServiceOrderDTO> foundListOfServiceOrdersDTO = serviceOrderService.listAllWithClosedStatus(serviceOrderDTO.getClosed());
+
+        assertThat(foundListOfServiceOrdersDTO, contains(serviceOrderDTO));
+        verify(serviceOrderRepository, never()).findByClosed(serviceOrderDTO.getClosed());
+    }
+
+    @Test
+    void whenCountIsCalledBeforeTheReadModelIsLoadedThenTheRepositoryShouldBeQueried() {
+        // when
+        when(serviceOrderRepository.countByClosedAndType(false, ServiceType.REPAIR)).thenReturn(2L);
+
+        // then
+        assertThat(serviceOrderService.countServiceOrders(false, ServiceType.REPAIR), is(equalTo(2L)));
+    }
+
     @Test
     void whenListByCustomerIsCalledThenAListOfServiceOrderShouldBeReturned() {
         // given
@@ -186,6 +450,25 @@ public class ServiceOrderServiceTest {
         assertThat(foundListOfServiceOrdersDTO, is(not(empty())));
     }
 
+    @Test
+    void whenServiceOrdersOfTheSameCustomerAreListedThenTheyShouldShareOneCustomerDTO() {
+        // given
+        ServiceOrderDTO first = ServiceOrderDTOBuilder.builder().id(1L).build().toServiceOrderDTO();
+        ServiceOrderDTO second = ServiceOrderDTOBuilder.builder().id(2L).build().toServiceOrderDTO();
+        ServiceOrder firstServiceOrder = serviceOrderMapper.toModel(first);
+        ServiceOrder secondServiceOrder = serviceOrderMapper.toModel(second);
+
+        // when
+        when(serviceOrderRepository.findByCustomer(firstServiceOrder.getCustomer()))
+                .thenReturn(Arrays.asList(firstServiceOrder, secondServiceOrder));
+
+        // then
+        List<ServiceOrderDTO> found = serviceOrderService.listAllOfCustomer(first.getCustomer());
+
+        assertThat(found, contains(first, second));
+        assertThat(found.get(1).getCustomer(), is(sameInstance(found.get(0).getCustomer())));
+    }
+
     @Test
     void whenListByCustomerIsCalledThenAEmptyListShouldBeReturned() {
         // given
@@ -261,12 +544,15 @@ public class ServiceOrderServiceTest {
         assertThrows(ServiceOrderNotFoundException.class, () -> serviceOrderService.deleteById(serviceOrderDTO.getId()));
     }
     @Test
-    void whenUpdateIsCalledWithAValidServiceOrderThenTheServiceOrderShouldBeUpdated() throws ServiceOrderNotFoundException {
+    void whenUpdateIsCalledWithAValidServiceOrderThenTheServiceOrderShouldBeUpdated() throws ServiceOrderNotFoundException, ServiceOrderShardMoveException, ServiceOrderVersionMismatchException {
         // given
-        ServiceOrderDTO foundedServiceOrderDTO = ServiceOrderDTOBuilder.builder().build().toServiceOrderDTO();
+        Instant createdAt = NOW.minusSeconds(3600);
+        ServiceOrderDTO foundedServiceOrderDTO = ServiceOrderDTOBuilder.builder().createdAt(createdAt).build().toServiceOrderDTO();
         ServiceOrderDTO serviceOrderToUpdateDTO = ServiceOrderDTOBuilder.builder().build().toServiceOrderDTO();
         serviceOrderToUpdateDTO.setClosed(!foundedServiceOrderDTO.getClosed());
         serviceOrderToUpdateDTO.setType(ServiceType.REMOVAL);
+        serviceOrderToUpdateDTO.setCreatedAt(createdAt);
+        serviceOrderToUpdateDTO.setClosedAt(NOW);
 
         ServiceOrder foundedServiceOrder = serviceOrderMapper.toModel(foundedServiceOrderDTO);
         ServiceOrder serviceOrderToUpdate = serviceOrderMapper.toModel(serviceOrderToUpdateDTO);
@@ -276,9 +562,102 @@ public class ServiceOrderServiceTest {
         when(serviceOrderRepository.save(serviceOrderToUpdate)).thenReturn(serviceOrderToUpdate);
 
         // then
-        ServiceOrderDTO updatedServiceOrderDTO = serviceOrderService.update(serviceOrderToUpdateDTO);
+        ServiceOrderDTO updatedServiceOrderDTO = serviceOrderService.update(serviceOrderToUpdateDTO, null);
 
         assertThat(updatedServiceOrderDTO, equalTo(serviceOrderToUpdateDTO));
+        verify(eventLog).append(LogEvent.serviceOrder(LogEvent.EventAction.CLOSED, updatedServiceOrderDTO));
+    }
+
+    @Test
+    void whenAServiceOrderIsUpdatedThenTheStatsShouldMoveItToItsNewState() throws ServiceOrderNotFoundException, ServiceOrderShardMoveException, ServiceOrderVersionMismatchException {
+        // given
+        ServiceOrderDTO foundedServiceOrderDTO = ServiceOrderDTOBuilder.builder().build().toServiceOrderDTO();
+        ServiceOrderDTO serviceOrderToUpdateDTO = ServiceOrderDTOBuilder.builder().closed(true).type(ServiceType.REPAIR).closedAt(NOW).build().toServiceOrderDTO();
+        ServiceOrder serviceOrderToUpdate = serviceOrderMapper.toModel(serviceOrderToUpdateDTO);
+        serviceOrderStats.beginReconcile();
+        serviceOrderStats.finishReconcile(Collections.emptyList());
+        serviceOrderStats.recordChange(null, foundedServiceOrderDTO);
+
+        // when
+        when(serviceOrderRepository.findById(foundedServiceOrderDTO.getId())).thenReturn(Optional.of(serviceOrderMapper.toModel(foundedServiceOrderDTO)));
+        when(serviceOrderRepository.save(serviceOrderToUpdate)).thenReturn(serviceOrderToUpdate);
+        serviceOrderService.update(serviceOrderToUpdateDTO, null);
+
+        // then
+        ServiceOrderStatsDTO stats = serviceOrderService.stats(null, null, null);
+        assertThat(stats.getTotal(), is(1L));
+        assertThat(stats.getCounts(), contains(new ServiceOrderStatsDTO.Count(
+                serviceOrderToUpdateDTO.getCustomer().getId(), ServiceType.REPAIR, true, 1)));
+        verify(serviceOrderRepository, never()).countByCustomerTypeAndClosed();
+    }
+
+    @Test
+    void whenAMergePatchIsAppliedThenOnlyTheGivenFieldsShouldChange() throws Exception {
+        // given
+        ServiceOrderDTO foundedServiceOrderDTO = ServiceOrderDTOBuilder.builder().createdAt(NOW.minusSeconds(60)).build().toServiceOrderDTO();
+        ServiceOrder foundedServiceOrder = serviceOrderMapper.toModel(foundedServiceOrderDTO);
+        foundedServiceOrder.setVersion(4L);
+        ServiceOrder patchedServiceOrder = serviceOrderMapper.toModel(foundedServiceOrderDTO);
+        patchedServiceOrder.setVersion(4L);
+        patchedServiceOrder.setClosed(true);
+        patchedServiceOrder.setClosedAt(NOW);
+
+        // when
+        when(serviceOrderRepository.findById(foundedServiceOrderDTO.getId())).thenReturn(Optional.of(foundedServiceOrder));
+        when(serviceOrderRepository.save(patchedServiceOrder)).thenReturn(patchedServiceOrder);
+        ServiceOrderDTO updatedServiceOrderDTO = serviceOrderService.patch(foundedServiceOrderDTO.getId(),
+                new ObjectMapper().readTree("{\"closed\": true}"), 4L);
+
+        // then
+        assertThat(updatedServiceOrderDTO.getClosed(), is(true));
+        assertThat(updatedServiceOrderDTO.getType(), is(equalTo(foundedServiceOrderDTO.getType())));
+        assertThat(updatedServiceOrderDTO.getCustomer(), is(equalTo(foundedServiceOrderDTO.getCustomer())));
+        assertThat(updatedServiceOrderDTO.getVersion(), is(4L));
+    }
+
+    @Test
+    void whenAMergePatchRemovesARequiredFieldThenAnExceptionShouldBeThrown() throws Exception {
+        // given
+        ServiceOrderDTO foundedServiceOrderDTO = ServiceOrderDTOBuilder.builder().build().toServiceOrderDTO();
+
+        // when
+        when(serviceOrderRepository.findById(foundedServiceOrderDTO.getId())).thenReturn(Optional.of(serviceOrderMapper.toModel(foundedServiceOrderDTO)));
+
+        // then
+        assertThrows(InvalidPatchException.class, () -> serviceOrderService.patch(foundedServiceOrderDTO.getId(),
+                new ObjectMapper().readTree("{\"type\": null}"), null));
+        verify(serviceOrderRepository, never()).save(any());
+    }
+
+    @Test
+    void whenTheExpectedVersionIsStaleThenTheUpdateShouldFailWithoutWriting() {
+        // given
+        ServiceOrderDTO serviceOrderDTO = ServiceOrderDTOBuilder.builder().build().toServiceOrderDTO();
+        ServiceOrder foundedServiceOrder = serviceOrderMapper.toModel(serviceOrderDTO);
+        foundedServiceOrder.setVersion(3L);
+
+        // when
+        when(serviceOrderRepository.findById(serviceOrderDTO.getId())).thenReturn(Optional.of(foundedServiceOrder));
+
+        // then
+        assertThrows(ServiceOrderVersionMismatchException.class, () -> serviceOrderService.update(serviceOrderDTO, 2L));
+        verify(serviceOrderRepository, never()).save(any());
+    }
+
+    @Test
+    void whenAConcurrentUpdateWinsThenAVersionMismatchShouldBeThrown() {
+        // given
+        ServiceOrderDTO serviceOrderDTO = ServiceOrderDTOBuilder.builder().build().toServiceOrderDTO();
+        ServiceOrder foundedServiceOrder = serviceOrderMapper.toModel(serviceOrderDTO);
+
+        // when
+        when(serviceOrderRepository.findById(serviceOrderDTO.getId())).thenReturn(Optional.of(foundedServiceOrder));
+        when(serviceOrderRepository.save(foundedServiceOrder))
+                .thenThrow(new ObjectOptimisticLockingFailureException(ServiceOrder.class, serviceOrderDTO.getId()));
+
+        // then
+        assertThrows(ServiceOrderVersionMismatchException.class, () -> serviceOrderService.update(serviceOrderDTO, null));
+        verify(eventLog, never()).append(any());
     }
 
     @Test
@@ -291,8 +670,68 @@ public class ServiceOrderServiceTest {
         when(serviceOrderRepository.findById(serviceOrderDTO.getId())).thenReturn(Optional.empty());
 
         // then
-        assertThrows(ServiceOrderNotFoundException.class, () -> serviceOrderService.update(serviceOrderDTO));
+        assertThrows(ServiceOrderNotFoundException.class, () -> serviceOrderService.update(serviceOrderDTO, null));
         verify(serviceOrderRepository, times(0)).save(serviceOrder);
     }
 
+    @Test
+    void whenTheReadModelIsRestoredFromASnapshotThenOnlyTheChangedServiceOrdersShouldBeReloaded() {
+        // given
+        ServiceOrderDTO unchanged = ServiceOrderDTOBuilder.builder().id(1L).version(1L).build().toServiceOrderDTO();
+        ServiceOrderDTO updated = ServiceOrderDTOBuilder.builder().id(2L).version(1L).build().toServiceOrderDTO();
+        ServiceOrderDTO deleted = ServiceOrderDTOBuilder.builder().id(3L).version(1L).build().toServiceOrderDTO();
+        ServiceOrderReadModel snapshotted = new ServiceOrderReadModel();
+        snapshotted.load(Collections.emptyList());
+        snapshotted.upsertAll(Arrays.asList(unchanged, updated, deleted));
+        ReadModelSnapshot snapshot = snapshotted.snapshot();
+        ServiceOrderDTO updatedSinceSnapshot = ServiceOrderDTOBuilder.builder().id(2L).closed(true).version(2L).build().toServiceOrderDTO();
+
+        // when
+        when(readModelSnapshots.readLatest()).thenReturn(Optional.of(snapshot));
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(readModelSnapshots).runInBackground(any());
+        when(serviceOrderRepository.findAllVersions()).thenReturn(Arrays.asList(versionRow(1L, 1L), versionRow(2L, 2L)));
+        when(serviceOrderRepository.findByIdIn(Arrays.asList(2L, 3L)))
+                .thenReturn(Collections.singletonList(serviceOrderMapper.toModel(updatedSinceSnapshot)));
+        serviceOrderService.loadReadModel();
+
+        // then
+        verify(serviceOrderRepository, never()).findAll();
+        assertThat(readModel.findByClosed(false), contains(unchanged));
+        assertThat(readModel.findByClosed(true), contains(updatedSinceSnapshot));
+    }
+
+    @Test
+    void whenTheAgingJobEscalatesServiceOrdersThenTheReadModelAndTheEventLogShouldSeeIt() {
+        // given
+        readModel.load(Collections.emptyList());
+        readModel.upsert(ServiceOrderDTOBuilder.builder().id(1L).version(1L).build().toServiceOrderDTO());
+        ServiceOrderDTO escalated = ServiceOrderDTOBuilder.builder().id(1L).escalatedAt(NOW).version(2L).build().toServiceOrderDTO();
+        ServiceOrder escalatedServiceOrder = serviceOrderMapper.toModel(escalated);
+        escalatedServiceOrder.setEscalatedAt(NOW);
+
+        // when
+        when(serviceOrderRepository.findByIdIn(Collections.singletonList(1L))).thenReturn(Collections.singletonList(escalatedServiceOrder));
+        serviceOrderService.recordAgedEscalated(Collections.singletonList(1L));
+
+        // then
+        assertThat(readModel.findByClosed(false), contains(escalated));
+        verify(eventLog).appendAll(Collections.singletonList(LogEvent.serviceOrder(LogEvent.EventAction.ESCALATED, escalated)));
+    }
+
+    private static ServiceOrderVersionRow versionRow(Long id, long version) {
+        return new ServiceOrderVersionRow() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public long getVersion() {
+                return version;
+            }
+        };
+    }
 }
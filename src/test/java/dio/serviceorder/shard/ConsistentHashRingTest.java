@@ -0,0 +1,47 @@
+package dio.serviceorder.shard;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ConsistentHashRingTest {
+
+    @Test
+    void whenCustomersAreHashedThenEveryShardShouldGetASimilarShare() {
+        // given
+        ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("shard0", "shard1", "shard2", "shard3"),
+                Arrays.asList(128, 128, 128, 128));
+
+        // when
+        int[] customersPerShard = new int[4];
+        LongStream.rangeClosed(1, 40_000).forEach(id -> customersPerShard[ring.shardOf(id)]++);
+
+        // then
+        for (int customers : customersPerShard)
+            assertThat(customers, is(both(greaterThan(7_000)).and(lessThan(13_000))));
+    }
+
+    @Test
+    void whenAShardIsAddedThenOnlyCustomersMovingToItShouldChangeShard() {
+        // given
+        List<String> names = Arrays.asList("shard0", "shard1", "shard2");
+        ConsistentHashRing ring = new ConsistentHashRing(names, Arrays.asList(128, 128, 128));
+        ConsistentHashRing grownRing = new ConsistentHashRing(Arrays.asList("shard0", "shard1", "shard2", "shard3"),
+                Arrays.asList(128, 128, 128, 128));
+
+        // when
+        long moved = LongStream.rangeClosed(1, 30_000).filter(id -> ring.shardOf(id) != grownRing.shardOf(id)).count();
+        boolean movedOnlyToNewShard = LongStream.rangeClosed(1, 30_000)
+                .filter(id -> ring.shardOf(id) != grownRing.shardOf(id))
+                .allMatch(id -> grownRing.shardOf(id) == 3);
+
+        // then
+        assertThat(movedOnlyToNewShard, is(true));
+        assertThat(moved, is(lessThan(10_000L)));
+    }
+}
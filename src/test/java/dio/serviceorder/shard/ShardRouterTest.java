@@ -0,0 +1,165 @@
+package dio.serviceorder.shard;
+
+import dio.serviceorder.dto.CustomerDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ShardRouterTest {
+
+    @Test
+    void whenSortedShardResultsAreMergedThenTheResultShouldBeGloballySorted() {
+        // given
+        List<List<Long>> shardResults = Arrays.asList(
+                Arrays.asList(1L, 5L, 9L),
+                Collections.emptyList(),
+                Arrays.asList(2L, 3L, 12L),
+                Arrays.asList(4L));
+
+        // when
+        List<Long> merged = ShardRouter.merge(shardResults, Comparator.naturalOrder());
+
+        // then
+        assertThat(merged, contains(1L, 2L, 3L, 4L, 5L, 9L, 12L));
+    }
+
+    @Test
+    void whenServiceOrderIdsComeFromTheRangeOfAShardThenTheShardShouldBeDerivedFromTheId() {
+        // given
+        ShardRouter shardRouter = new ShardRouter(new ConsistentHashRing(Arrays.asList("a", "b", "c"),
+                Arrays.asList(16, 16, 16)), 3, null, 1);
+
+        // then
+        assertThat(shardRouter.shardOfServiceOrder(1L), is(0));
+        assertThat(shardRouter.shardOfServiceOrder(7L), is(0));
+        assertThat(shardRouter.shardOfServiceOrder(ShardRouter.firstServiceOrderId(1)), is(1));
+        assertThat(shardRouter.shardOfServiceOrder(ShardRouter.firstServiceOrderId(2) + 5), is(2));
+        assertThat(shardRouter.shardOfServiceOrder(ShardRouter.firstServiceOrderId(2) - 1), is(1));
+        shardRouter.shutdown();
+    }
+
+    @Test
+    void whenAShardIsAppendedThenExistingServiceOrderIdsShouldKeepTheirShard() {
+        // given
+        ShardRouter threeShards = new ShardRouter(new ConsistentHashRing(Arrays.asList("a", "b", "c"),
+                Arrays.asList(16, 16, 16)), 3, null, 1);
+        ShardRouter fourShards = new ShardRouter(new ConsistentHashRing(Arrays.asList("a", "b", "c", "d"),
+                Arrays.asList(16, 16, 16, 16)), 4, null, 1);
+        List<Long> ids = Arrays.asList(1L, 2L, 1000L, ShardRouter.firstServiceOrderId(1) + 3, ShardRouter.firstServiceOrderId(2) + 17);
+
+        // then
+        for (Long id : ids)
+            assertThat(fourShards.shardOfServiceOrder(id), is(threeShards.shardOfServiceOrder(id)));
+        threeShards.shutdown();
+        fourShards.shutdown();
+    }
+
+    @Test
+    void whenServiceOrderIdsAreLookedUpThenEachShardShouldOnlyGetItsOwnIds() {
+        // given
+        ShardRouter shardRouter = new ShardRouter(new ConsistentHashRing(Arrays.asList("a", "b", "c"),
+                Arrays.asList(16, 16, 16)), 3, null, 2);
+
+        // when
+        long shard1 = ShardRouter.firstServiceOrderId(1);
+        List<String> queried = shardRouter.forServiceOrderIds(Arrays.asList(1L, shard1, 4L, 7L, shard1 + 1),
+                ids -> Collections.singletonList(ShardContext.current() + ":" + ids));
+
+        // then
+        assertThat(queried, containsInAnyOrder("0:[1, 4, 7]", "1:[" + shard1 + ", " + (shard1 + 1) + "]"));
+        shardRouter.shutdown();
+    }
+
+    @Test
+    void whenAReplicaFailsThenTheShardsAlreadyWrittenShouldBePutBack() {
+        // given
+        List<String> statements = new ArrayList<>();
+        ShardRouter shardRouter = new ShardRouter(fourShardRing(), 4, recordingJdbcTemplate(statements, 3), 1);
+        long customerId = customerIdOnShard(shardRouter, 2);
+        CustomerDTO previous = new CustomerDTO(customerId, "Ana", 1L);
+        CustomerDTO renamed = new CustomerDTO(customerId, "Beatriz", 2L);
+
+        // when
+        assertThrows(DataAccessResourceFailureException.class, () -> shardRouter.replicateCustomer(renamed, previous));
+
+        // then
+        assertThat(statements, contains("2:merge", "1:merge", "1:merge", "2:merge", "0:update"));
+        shardRouter.shutdown();
+    }
+
+    @Test
+    void whenTheLastShardRefusesADeleteThenTheDeletedCopiesShouldBePutBack() {
+        // given
+        List<String> statements = new ArrayList<>();
+        ShardRouter shardRouter = new ShardRouter(fourShardRing(), 4, recordingJdbcTemplate(statements, -1), 1);
+        CustomerDTO customer = new CustomerDTO(customerIdOnShard(shardRouter, 2), "Ana", 1L);
+
+        // when
+        assertThrows(DataAccessResourceFailureException.class, () -> shardRouter.deleteCustomer(customer, () -> {
+            throw new DataAccessResourceFailureException("Shard 0 is down");
+        }));
+
+        // then
+        assertThat(statements, contains("2:delete", "1:delete", "3:delete", "3:merge", "1:merge", "2:merge"));
+        shardRouter.shutdown();
+    }
+
+    @Test
+    void whenUnshardedThenQueriesShouldRunDirectlyOnTheCallingThread() {
+        // given
+        ShardRouter shardRouter = ShardRouter.unsharded();
+        Thread caller = Thread.currentThread();
+
+        // when
+        List<Thread> threads = shardRouter.scatterGather(() -> Collections.singletonList(Thread.currentThread()),
+                Comparator.comparing(Thread::getName));
+
+        // then
+        assertThat(threads, contains(caller));
+        assertThat(shardRouter.shardOfCustomer(42L), is(0));
+    }
+
+    private static ConsistentHashRing fourShardRing() {
+        return new ConsistentHashRing(Arrays.asList("a", "b", "c", "d"), Arrays.asList(16, 16, 16, 16));
+    }
+
+    private static long customerIdOnShard(ShardRouter shardRouter, int shard) {
+        long customerId = 1;
+        while (shardRouter.shardOfCustomer(customerId) != shard)
+            customerId++;
+        return customerId;
+    }
+
+    // Records the first word of each statement with the shard it ran on; merges on the failing shard fail.
+    private static JdbcTemplate recordingJdbcTemplate(List<String> statements, int failingShard) {
+        return new JdbcTemplate() {
+            @Override
+            public int update(String sql, Object... args) {
+                return record(sql);
+            }
+
+            @Override
+            public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+                return new int[]{record(sql)};
+            }
+
+            private int record(String sql) {
+                int shard = ShardContext.current();
+                if (shard == failingShard && sql.startsWith("merge"))
+                    throw new DataAccessResourceFailureException("Shard " + shard + " is down");
+                statements.add(shard + ":" + sql.substring(0, sql.indexOf(' ')));
+                return 1;
+            }
+        };
+    }
+}
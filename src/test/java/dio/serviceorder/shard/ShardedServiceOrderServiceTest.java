@@ -0,0 +1,299 @@
+package dio.serviceorder.shard;
+
+import dio.serviceorder.dto.BatchDTO;
+import dio.serviceorder.dto.CustomerDTO;
+import dio.serviceorder.dto.ImportReportDTO;
+import dio.serviceorder.dto.ServiceOrderClaimDTO;
+import dio.serviceorder.dto.ServiceOrderDTO;
+import dio.serviceorder.dto.ServiceOrderPageDTO;
+import dio.serviceorder.enums.ServiceType;
+import dio.serviceorder.exception.CustomerHasServiceOrdersException;
+import dio.serviceorder.export.ColumnarExportReader;
+import dio.serviceorder.export.ExportFormat;
+import dio.serviceorder.export.ExportRow;
+import dio.serviceorder.export.ServiceOrderExporter;
+import dio.serviceorder.importer.BulkImporter;
+import dio.serviceorder.repository.ServiceOrderRepository;
+import dio.serviceorder.service.CustomerService;
+import dio.serviceorder.service.ServiceOrderService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@ActiveProfiles("sharded")
+public class ShardedServiceOrderServiceTest {
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private ServiceOrderService serviceOrderService;
+
+    @Autowired
+    private ServiceOrderRepository serviceOrderRepository;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private BulkImporter bulkImporter;
+
+    @Autowired
+    private ServiceOrderExporter serviceOrderExporter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void whenServiceOrdersAreCreatedThenTheyShouldLiveOnTheirCustomerShardAndBeMergedInIdOrder() throws Exception {
+        // given
+        List<ServiceOrderDTO> created = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            CustomerDTO customer = customerService.createCustomer(new CustomerDTO(null, "Customer " + i, null));
+            created.add(serviceOrderService.create(new ServiceOrderDTO(null, customer, i % 2 == 0, ServiceType.REPAIR, null, null, null, null)));
+        }
+
+        // when
+        List<Long> listedIds = serviceOrderService.listAll().stream()
+                .map(ServiceOrderDTO::getId)
+                .collect(Collectors.toList());
+
+        // then
+        assertThat(shardRouter.isSharded(), is(true));
+        for (ServiceOrderDTO serviceOrder : created) {
+            assertThat(shardRouter.shardOfServiceOrder(serviceOrder.getId()),
+                    equalTo(shardRouter.shardOfCustomer(serviceOrder.getCustomer().getId())));
+            assertThat(serviceOrderService.findById(serviceOrder.getId()), equalTo(serviceOrder));
+            assertThat(serviceOrderService.listAllOfCustomer(serviceOrder.getCustomer()), contains(serviceOrder));
+        }
+        assertThat(listedIds, hasSize(20));
+        assertThat(listedIds, equalTo(listedIds.stream().sorted().collect(Collectors.toList())));
+        long populatedShards = IntStream.range(0, 4)
+                .filter(shard -> ShardContext.callOn(shard, serviceOrderRepository::count) > 0)
+                .count();
+        assertThat(populatedShards, is(greaterThan(1L)));
+
+        List<ServiceOrderDTO> paged = new ArrayList<>();
+        String cursor = null;
+        do {
+            ServiceOrderPageDTO page = serviceOrderService.listCreatedBetween(null, null, cursor, 7);
+            paged.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertThat(paged, containsInAnyOrder(created.toArray()));
+
+        List<Long> requestedIds = created.stream().map(ServiceOrderDTO::getId).collect(Collectors.toList());
+        Collections.reverse(requestedIds);
+        requestedIds.add(10_000L);
+        BatchDTO<ServiceOrderDTO> batch = serviceOrderService.findByIds(requestedIds);
+        List<ServiceOrderDTO> expected = new ArrayList<>(created);
+        Collections.reverse(expected);
+        assertThat(batch.getItems(), equalTo(expected));
+        assertThat(batch.getMissingIds(), contains(10_000L));
+
+        ByteArrayOutputStream export = new ByteArrayOutputStream();
+        long exportedRows = serviceOrderExporter.export(ExportFormat.COLUMNAR, false, created.get(0).getCreatedAt(), null, export);
+        ColumnarExportReader reader = new ColumnarExportReader(new ByteArrayInputStream(export.toByteArray()));
+        List<Long> exportedIds = new ArrayList<>();
+        for (ExportRow row = reader.next(); row != null; row = reader.next())
+            exportedIds.add(row.getId());
+        assertThat(exportedIds, hasSize((int) exportedRows));
+        assertThat(exportedIds, hasItems(requestedIds.subList(0, 20).toArray(new Long[0])));
+    }
+
+    @Test
+    void whenCsvFilesAreImportedThenServiceOrdersShouldBeBatchInsertedOnTheirCustomerShard() throws Exception {
+        // given
+        StringBuilder customersCsv = new StringBuilder("name\n");
+        for (int i = 0; i < 10; i++)
+            customersCsv.append("Imported customer ").append(i).append('\n');
+
+        // when
+        ImportReportDTO customersReport = bulkImporter.importCustomers(Channels.newChannel(
+                new ByteArrayInputStream(customersCsv.toString().getBytes(StandardCharsets.UTF_8))));
+        List<CustomerDTO> importedCustomers = customerService.listAll().stream()
+                .filter(customer -> customer.getName().startsWith("Imported customer "))
+                .collect(Collectors.toList());
+        StringBuilder serviceOrdersCsv = new StringBuilder("customer_id,type,closed\n");
+        for (CustomerDTO customer : importedCustomers)
+            serviceOrdersCsv.append(customer.getId()).append(",REPAIR,false\n");
+        serviceOrdersCsv.append("-1,REPAIR,false\n");
+        ImportReportDTO serviceOrdersReport = bulkImporter.importServiceOrders(Channels.newChannel(
+                new ByteArrayInputStream(serviceOrdersCsv.toString().getBytes(StandardCharsets.UTF_8))));
+
+        // then
+        assertThat(customersReport.getImported(), is(10L));
+        assertThat(importedCustomers, hasSize(10));
+        assertThat(serviceOrdersReport.getImported(), is(10L));
+        assertThat(serviceOrdersReport.getRejected(), is(1L));
+        for (CustomerDTO customer : importedCustomers) {
+            List<ServiceOrderDTO> serviceOrders = serviceOrderService.listAllOfCustomer(customer);
+            assertThat(serviceOrders, hasSize(1));
+            assertThat(shardRouter.shardOfServiceOrder(serviceOrders.get(0).getId()), equalTo(shardRouter.shardOfCustomer(customer.getId())));
+            assertThat(serviceOrderService.findById(serviceOrders.get(0).getId()), equalTo(serviceOrders.get(0)));
+        }
+    }
+
+    @Test
+    void whenServiceOrdersAreClaimedConcurrentlyThenEachOneShouldGoToASingleAssignee() throws Exception {
+        // given
+        List<Long> created = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            CustomerDTO customer = customerService.createCustomer(new CustomerDTO(null, "Claim customer " + i, null));
+            created.add(serviceOrderService.create(new ServiceOrderDTO(null, customer, false, ServiceType.INSTALLATION, null, null, null, null)).getId());
+        }
+        ExecutorService technicians = Executors.newFixedThreadPool(8);
+
+        // when
+        List<CompletableFuture<List<Long>>> claims = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            String assignee = "technician-" + t;
+            claims.add(CompletableFuture.supplyAsync(() -> {
+                List<Long> claimedIds = new ArrayList<>();
+                for (ServiceOrderClaimDTO claim = serviceOrderService.claim(assignee, ServiceType.INSTALLATION, 3);
+                     !claim.getItems().isEmpty();
+                     claim = serviceOrderService.claim(assignee, ServiceType.INSTALLATION, 3))
+                    claim.getItems().forEach(serviceOrder -> claimedIds.add(serviceOrder.getId()));
+                return claimedIds;
+            }, technicians));
+        }
+        List<Long> claimed = new ArrayList<>();
+        for (CompletableFuture<List<Long>> claim : claims)
+            claimed.addAll(claim.get());
+        technicians.shutdown();
+
+        // then
+        Set<Long> distinctClaimed = new HashSet<>(claimed);
+        assertThat(distinctClaimed, hasSize(claimed.size()));
+        assertThat(distinctClaimed, hasItems(created.toArray(new Long[0])));
+        assertThat(serviceOrderService.claim("latecomer", ServiceType.INSTALLATION, 10).getItems(), is(empty()));
+    }
+
+    @Test
+    void whenServiceOrdersAreClaimedThenTheOldestOnesOfEveryShardShouldGoFirst() throws Exception {
+        // given
+        while (!serviceOrderService.claim("previous", ServiceType.REPAIR, 100).getItems().isEmpty())
+            ;
+        CustomerDTO firstShardCustomer = customerOnShard(0, "Recent claims customer");
+        CustomerDTO otherShardCustomer = customerOnShard(shardRouter.shardOfCustomer(firstShardCustomer.getId()) + 1, "Old claims customer");
+        serviceOrderService.importBatch(serviceOrders(firstShardCustomer, Instant.now().minus(1, ChronoUnit.HOURS), 8));
+        serviceOrderService.importBatch(serviceOrders(otherShardCustomer, Instant.now().minus(1, ChronoUnit.DAYS), 8));
+
+        // when
+        ServiceOrderClaimDTO claim = serviceOrderService.claim("dispatcher", ServiceType.REPAIR, 2);
+
+        // then
+        assertThat(claim.getItems(), hasSize(2));
+        for (ServiceOrderDTO claimed : claim.getItems())
+            assertThat(claimed.getCustomer().getId(), is(otherShardCustomer.getId()));
+    }
+
+    @Test
+    void whenAShardFailsDuringAnImportThenTheServiceOrdersInsertedOnTheOtherShardsShouldBeDeleted() throws Exception {
+        // given
+        CustomerDTO customer = customerOnShard(0, "Failed import customer");
+        long missingCustomerId = 1_000_000L;
+        while (shardRouter.shardOfCustomer(missingCustomerId) == 0)
+            missingCustomerId++;
+        List<ServiceOrderDTO> serviceOrders = serviceOrders(customer, Instant.now(), 3);
+        serviceOrders.addAll(serviceOrders(new CustomerDTO(missingCustomerId, "Missing customer", null), Instant.now(), 1));
+
+        // when
+        assertThrows(DataAccessException.class, () -> serviceOrderService.importBatch(serviceOrders));
+
+        // then
+        assertThat(serviceOrderService.listAllOfCustomer(customer), is(empty()));
+    }
+
+    @Test
+    void whenALeaseExpiresThenTheReaperShouldHandTheServiceOrderBackToTheQueue() throws Exception {
+        // given
+        CustomerDTO customer = customerService.createCustomer(new CustomerDTO(null, "Lease customer", null));
+        ServiceOrderDTO created = serviceOrderService.create(new ServiceOrderDTO(null, customer, false, ServiceType.REMOVAL, null, null, null, null));
+        while (!serviceOrderService.claim("previous", ServiceType.REMOVAL, 100).getItems().isEmpty())
+            ;
+        shardRouter.onServiceOrderShard(created.getId(), () -> jdbcTemplate.update(
+                "update tb_service_order set lease_expires_at = ? where id = ?",
+                Timestamp.from(Instant.now().minusSeconds(1)), created.getId()));
+
+        // when
+        long released = serviceOrderService.releaseExpiredLeases();
+        ServiceOrderClaimDTO claim = serviceOrderService.claim("next", ServiceType.REMOVAL, 100);
+
+        // then
+        assertThat(released, is(greaterThanOrEqualTo(1L)));
+        assertThat(claim.getAssignee(), is("next"));
+        assertThat(claim.getLeaseExpiresAt(), is(greaterThan(Instant.now())));
+        assertThat(claim.getItems(), contains(created));
+        // Claimed, released and claimed again.
+        assertThat(claim.getItems().get(0).getVersion(), is(created.getVersion() + 3));
+    }
+
+    @Test
+    void whenACustomerIsDeletedThenItShouldBeGoneFromEveryShardUnlessItStillHasServiceOrders() throws Exception {
+        // given
+        CustomerDTO withServiceOrders;
+        do {
+            withServiceOrders = customerService.createCustomer(new CustomerDTO(null, "Customer with orders", null));
+        } while (shardRouter.shardOfCustomer(withServiceOrders.getId()) == 0);
+        ServiceOrderDTO serviceOrder = serviceOrderService.create(new ServiceOrderDTO(null, withServiceOrders, false, ServiceType.REPAIR, null, null, null, null));
+        CustomerDTO withoutServiceOrders = customerService.createCustomer(new CustomerDTO(null, "Customer without orders", null));
+        Long withServiceOrdersId = withServiceOrders.getId();
+
+        // when
+        assertThrows(CustomerHasServiceOrdersException.class, () -> customerService.deleteById(withServiceOrdersId));
+        customerService.deleteById(withoutServiceOrders.getId());
+
+        // then
+        assertThat(shardsHoldingCustomer(withServiceOrdersId), is(4L));
+        assertThat(shardsHoldingCustomer(withoutServiceOrders.getId()), is(0L));
+        assertThat(serviceOrderService.findById(serviceOrder.getId()), equalTo(serviceOrder));
+    }
+
+    private CustomerDTO customerOnShard(int shard, String name) throws Exception {
+        CustomerDTO customer;
+        do {
+            customer = customerService.createCustomer(new CustomerDTO(null, name, null));
+        } while (shardRouter.shardOfCustomer(customer.getId()) != shard);
+        return customer;
+    }
+
+    private List<ServiceOrderDTO> serviceOrders(CustomerDTO customer, Instant createdAt, int count) {
+        List<ServiceOrderDTO> serviceOrders = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            serviceOrders.add(new ServiceOrderDTO(null, customer, false, ServiceType.REPAIR, createdAt, null, null, null));
+        return serviceOrders;
+    }
+
+    private long shardsHoldingCustomer(Long customerId) {
+        return IntStream.range(0, 4)
+                .filter(shard -> ShardContext.callOn(shard, () -> jdbcTemplate.queryForObject(
+                        "select count(*) from tb_customer where id = ?", Long.class, customerId)) > 0)
+                .count();
+    }
+}
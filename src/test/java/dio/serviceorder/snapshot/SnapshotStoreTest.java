@@ -0,0 +1,104 @@
+package dio.serviceorder.snapshot;
+
+import dio.serviceorder.builder.ServiceOrderDTOBuilder;
+import dio.serviceorder.dto.ServiceOrderDTO;
+import dio.serviceorder.enums.ServiceType;
+import dio.serviceorder.readmodel.ReadModelSnapshot;
+import dio.serviceorder.readmodel.ServiceOrderReadModel;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class SnapshotStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private ServiceOrderReadModel readModelWith(ServiceOrderDTO... serviceOrders) {
+        ServiceOrderReadModel readModel = new ServiceOrderReadModel();
+        readModel.load(Collections.emptyList());
+        for (ServiceOrderDTO serviceOrder : serviceOrders)
+            readModel.upsert(serviceOrder);
+        return readModel;
+    }
+
+    @Test
+    void whenASnapshotIsWrittenThenItShouldRestoreTheSameReadModel() throws IOException {
+        // given
+        Instant createdAt = Instant.parse("2022-07-01T10:15:30.123456Z");
+        ServiceOrderDTO open = ServiceOrderDTOBuilder.builder().id(1L).type(ServiceType.REPAIR).createdAt(createdAt)
+                .escalatedAt(createdAt.plusSeconds(60)).build().toServiceOrderDTO();
+        ServiceOrderDTO closed = ServiceOrderDTOBuilder.builder().id(7L).closed(true)
+                .createdAt(createdAt).closedAt(createdAt.plusSeconds(90)).version(3L).build().toServiceOrderDTO();
+        SnapshotStore snapshotStore = new SnapshotStore(directory.resolve("service-orders.snapshot"));
+
+        // when
+        snapshotStore.write(readModelWith(open, closed).snapshot());
+        Optional<ReadModelSnapshot> snapshot = snapshotStore.read();
+        ServiceOrderReadModel restored = new ServiceOrderReadModel();
+        restored.restore(snapshot.get());
+
+        // then
+        assertThat(snapshot.get().getHighWaterMark(), is(equalTo(7L)));
+        assertThat(restored.findByClosed(false), contains(open));
+        assertThat(restored.findByClosed(true), contains(closed));
+        assertThat(restored.findByClosed(true).get(0).getVersion(), is(equalTo(3L)));
+    }
+
+    @Test
+    void whenTheSnapshotIsLargerThanAWindowThenItShouldBeMappedOneWindowAtATime() throws IOException {
+        // given
+        ServiceOrderDTO[] serviceOrders = new ServiceOrderDTO[50];
+        for (int i = 0; i < serviceOrders.length; i++)
+            serviceOrders[i] = ServiceOrderDTOBuilder.builder().id(i + 1L).closed(i % 2 == 0)
+                    .closedAt(i % 2 == 0 ? Instant.parse("2022-07-01T10:15:30Z") : null).version((long) i).build().toServiceOrderDTO();
+        ServiceOrderReadModel readModel = readModelWith(serviceOrders);
+        // Small and odd, so values and names straddle the windows.
+        SnapshotStore snapshotStore = new SnapshotStore(directory.resolve("service-orders.snapshot"), 13);
+
+        // when
+        snapshotStore.write(readModel.snapshot());
+        ServiceOrderReadModel restored = new ServiceOrderReadModel();
+        restored.restore(snapshotStore.read().get());
+
+        // then
+        assertThat(restored.findByClosed(false), is(equalTo(readModel.findByClosed(false))));
+        assertThat(restored.findByClosed(true), is(equalTo(readModel.findByClosed(true))));
+        assertThat(new SnapshotStore(directory.resolve("service-orders.snapshot")).read().get().getRowCount(), is(50));
+    }
+
+    @Test
+    void whenTheSnapshotIsCorruptedThenItShouldBeIgnored() throws IOException {
+        // given
+        Path file = directory.resolve("service-orders.snapshot");
+        SnapshotStore snapshotStore = new SnapshotStore(file);
+        snapshotStore.write(readModelWith(ServiceOrderDTOBuilder.builder().build().toServiceOrderDTO()).snapshot());
+
+        // when
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file.toFile(), "rw")) {
+            randomAccessFile.seek(randomAccessFile.length() - 1);
+            randomAccessFile.write(42);
+        }
+
+        // then
+        assertThat(snapshotStore.read().isPresent(), is(false));
+    }
+
+    @Test
+    void whenThereIsNoSnapshotThenNothingShouldBeRead() {
+        // given
+        SnapshotStore snapshotStore = new SnapshotStore(directory.resolve("missing.snapshot"));
+
+        // then
+        assertThat(snapshotStore.read().isPresent(), is(false));
+    }
+}
@@ -0,0 +1,121 @@
+package dio.serviceorder.stats;
+
+import dio.serviceorder.builder.CustomerDTOBuilder;
+import dio.serviceorder.builder.ServiceOrderDTOBuilder;
+import dio.serviceorder.dto.ServiceOrderDTO;
+import dio.serviceorder.dto.ServiceOrderStatsDTO;
+import dio.serviceorder.enums.ServiceType;
+import dio.serviceorder.repository.ServiceOrderCountRow;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ServiceOrderStatsTest {
+
+    private static ServiceOrderDTO serviceOrder(long customerId, ServiceType type, boolean closed) {
+        return ServiceOrderDTOBuilder.builder()
+                .customer(CustomerDTOBuilder.builder().id(customerId).build().toCustomerDTO())
+                .type(type)
+                .closed(closed)
+                .build()
+                .toServiceOrderDTO();
+    }
+
+    private static ServiceOrderCountRow row(Long customerId, ServiceType type, boolean closed, long total) {
+        return new ServiceOrderCountRow() {
+            public Long getCustomerId() { return customerId; }
+            public ServiceType getType() { return type; }
+            public Boolean getClosed() { return closed; }
+            public long getTotal() { return total; }
+        };
+    }
+
+    @Test
+    void whenServiceOrdersChangeThenTheCountsShouldFollowAndBeFiltered() {
+        // given
+        ServiceOrderStats stats = new ServiceOrderStats();
+        ServiceOrderDTO openRepair = serviceOrder(1L, ServiceType.REPAIR, false);
+
+        // when
+        stats.recordChange(null, openRepair);
+        stats.recordChange(null, serviceOrder(1L, ServiceType.REPAIR, false));
+        stats.recordChange(null, serviceOrder(2L, ServiceType.REPAIR, false));
+        stats.recordChange(null, serviceOrder(2L, ServiceType.REMOVAL, false));
+        stats.recordChange(openRepair, serviceOrder(1L, ServiceType.REPAIR, true));
+
+        // then
+        ServiceOrderStatsDTO openRepairs = stats.stats(null, ServiceType.REPAIR, false);
+        assertThat(openRepairs.getTotal(), is(2L));
+        assertThat(openRepairs.getCounts(), contains(
+                new ServiceOrderStatsDTO.Count(1L, ServiceType.REPAIR, false, 1),
+                new ServiceOrderStatsDTO.Count(2L, ServiceType.REPAIR, false, 1)));
+        assertThat(stats.stats(2L, null, null).getTotal(), is(2L));
+        assertThat(stats.stats(null, null, null).getTotal(), is(4L));
+    }
+
+    @Test
+    void whenReconciledThenTheCountsShouldMatchTheDatabase() {
+        // given
+        ServiceOrderStats stats = new ServiceOrderStats();
+        stats.recordChange(null, serviceOrder(1L, ServiceType.REPAIR, false));
+        stats.recordChange(null, serviceOrder(3L, ServiceType.INSTALLATION, true));
+
+        // when
+        stats.beginReconcile();
+        stats.finishReconcile(Arrays.asList(
+                row(1L, ServiceType.REPAIR, false, 4),
+                row(null, ServiceType.REMOVAL, false, 2)));
+
+        // then
+        assertThat(stats.isReady(), is(true));
+        assertThat(stats.stats(null, null, null).getCounts(), contains(
+                new ServiceOrderStatsDTO.Count(null, ServiceType.REMOVAL, false, 2),
+                new ServiceOrderStatsDTO.Count(1L, ServiceType.REPAIR, false, 4)));
+    }
+
+    @Test
+    void whenACountChangesDuringTheReconcileThenItShouldNotBeOverwritten() {
+        // given
+        ServiceOrderStats stats = new ServiceOrderStats();
+        stats.beginReconcile();
+        stats.finishReconcile(Collections.emptyList());
+
+        // when
+        stats.beginReconcile();
+        stats.recordChange(null, serviceOrder(1L, ServiceType.REPAIR, false));
+        stats.finishReconcile(Collections.emptyList());
+
+        // then
+        assertThat(stats.stats(1L, null, null).getTotal(), is(1L));
+    }
+
+    @Test
+    void whenAWriteCountedByTheQueryIsRecordedAfterItThenItShouldNotBeCountedTwice() throws Exception {
+        // given
+        ServiceOrderStats stats = new ServiceOrderStats();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        stats.beginReconcile();
+        long write = stats.beginWrite();
+
+        // when
+        // The write committed before the query, which counts it, but its change is recorded afterwards.
+        Future<?> reconcile = executor.submit(() -> stats.finishReconcile(Collections.singletonList(row(1L, ServiceType.REPAIR, false, 1))));
+        Thread.sleep(100);
+        boolean reconciledBeforeTheWriteEnded = reconcile.isDone();
+        stats.recordChange(null, serviceOrder(1L, ServiceType.REPAIR, false));
+        stats.endWrite(write);
+        reconcile.get();
+
+        // then
+        assertThat(reconciledBeforeTheWriteEnded, is(false));
+        assertThat(stats.stats(1L, null, null).getTotal(), is(1L));
+        executor.shutdown();
+    }
+}
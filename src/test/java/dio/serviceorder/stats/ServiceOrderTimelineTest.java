@@ -0,0 +1,102 @@
+package dio.serviceorder.stats;
+
+import dio.serviceorder.builder.ServiceOrderDTOBuilder;
+import dio.serviceorder.dto.ServiceOrderDTO;
+import dio.serviceorder.enums.ServiceType;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ServiceOrderTimelineTest {
+    private static final Instant NOW = Instant.parse("2022-07-01T10:30:00Z");
+
+    private static ServiceOrderDTO serviceOrder(ServiceType type, boolean closed, Instant createdAt) {
+        return ServiceOrderDTOBuilder.builder().type(type).closed(closed).createdAt(createdAt).build().toServiceOrderDTO();
+    }
+
+    @Test
+    void whenServiceOrdersAreCreatedAndClosedThenTheRollingWindowsShouldCountThem() {
+        // given
+        MutableClock clock = new MutableClock(NOW.minus(Duration.ofMinutes(10)));
+        ServiceOrderTimeline timeline = new ServiceOrderTimeline(clock);
+        ServiceOrderDTO open = serviceOrder(ServiceType.REPAIR, false, clock.instant);
+        timeline.recordChange(null, open);
+
+        // when
+        clock.instant = NOW;
+        timeline.recordChange(null, serviceOrder(ServiceType.REPAIR, true, NOW));
+        timeline.recordChange(open, serviceOrder(ServiceType.REPAIR, true, open.getCreatedAt()));
+        timeline.recordChange(null, serviceOrder(ServiceType.REMOVAL, false, NOW));
+
+        // then
+        assertThat(timeline.created(ServiceType.REPAIR, Duration.ofMinutes(5)), is(1L));
+        assertThat(timeline.created(ServiceType.REPAIR, Duration.ofHours(1)), is(2L));
+        assertThat(timeline.closed(ServiceType.REPAIR, Duration.ofMinutes(5)), is(2L));
+        assertThat(timeline.created(ServiceType.REMOVAL, Duration.ofHours(1)), is(1L));
+        assertThat(timeline.created(ServiceType.INSTALLATION, Duration.ofHours(1)), is(0L));
+    }
+
+    @Test
+    void whenOldMinutesAreReusedThenTheirCountsShouldNotLeakIntoTheWindow() {
+        // given
+        MutableClock clock = new MutableClock(NOW);
+        ServiceOrderTimeline timeline = new ServiceOrderTimeline(clock);
+        timeline.recordChange(null, serviceOrder(ServiceType.REPAIR, false, NOW));
+
+        // when
+        clock.instant = NOW.plus(Duration.ofMinutes(ServiceOrderTimeline.MINUTES));
+        timeline.recordChange(null, serviceOrder(ServiceType.REPAIR, false, clock.instant));
+
+        // then
+        assertThat(timeline.created(ServiceType.REPAIR, Duration.ofHours(1)), is(1L));
+    }
+
+    @Test
+    void whenOpenServiceOrdersAreReloadedThenTheAgeBucketsShouldFollowWrites() {
+        // given
+        ServiceOrderTimeline timeline = new ServiceOrderTimeline(Clock.fixed(NOW, ZoneOffset.UTC));
+        Instant twoDaysAgo = NOW.minus(Duration.ofDays(2));
+        timeline.reloadOpen(Arrays.asList(NOW.minusSeconds(60), NOW.minus(Duration.ofHours(3)), twoDaysAgo));
+
+        // when
+        timeline.recordChange(serviceOrder(ServiceType.REPAIR, false, twoDaysAgo), serviceOrder(ServiceType.REPAIR, true, twoDaysAgo));
+        timeline.recordChange(null, serviceOrder(ServiceType.REPAIR, false, NOW));
+
+        // then
+        assertThat(timeline.openAtMost(Duration.ofHours(1)), is(2L));
+        assertThat(timeline.openAtMost(Duration.ofHours(4)), is(3L));
+        assertThat(timeline.openAtMost(Duration.ofDays(7)), is(3L));
+        assertThat(timeline.open(), is(3L));
+    }
+
+    private static class MutableClock extends Clock {
+        Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package dio.serviceorder.timing;
+
+import dio.serviceorder.dto.RequestSampleDTO;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class FlightRecorderTest {
+
+    @Test
+    void whenMoreRequestsThanSlotsAreRecordedThenTheNewestShouldBeReturnedFirst() {
+        // given
+        FlightRecorder flightRecorder = new FlightRecorder(3);
+        PhaseTimer timer = PhaseTimer.begin();
+        timer.end();
+
+        // when
+        for (int i = 1; i <= 5; i++)
+            flightRecorder.record(i, "GET", "/api/v1/" + i, 200, timer, i * 1_000_000L, null);
+        List<RequestSampleDTO> samples = flightRecorder.samples(Duration.ZERO, null, 10);
+
+        // then
+        assertThat(samples.stream().map(RequestSampleDTO::getUri).collect(Collectors.toList()),
+                contains("/api/v1/5", "/api/v1/4", "/api/v1/3"));
+        assertThat(flightRecorder.samples(Duration.ofMillis(4), null, 10), hasSize(2));
+        assertThat(flightRecorder.samples(Duration.ZERO, "/api/v1/3", 10), hasSize(1));
+        assertThat(flightRecorder.samples(Duration.ZERO, null, 1), hasSize(1));
+    }
+
+    @Test
+    void whenAPhaseIsReenteredThenItShouldOnlyBeTimedOnce() throws InterruptedException {
+        // given
+        PhaseTimer timer = PhaseTimer.begin();
+
+        // when
+        PhaseTimer.start(Phase.REPOSITORY);
+        PhaseTimer.start(Phase.REPOSITORY);
+        Thread.sleep(5);
+        PhaseTimer.stop(Phase.REPOSITORY);
+        PhaseTimer.stop(Phase.REPOSITORY);
+        timer.end();
+        PhaseTimer.start(Phase.MAPPER);
+        PhaseTimer.stop(Phase.MAPPER);
+
+        // then
+        assertThat(timer.nanos(Phase.REPOSITORY), is(both(greaterThanOrEqualTo(5_000_000L)).and(lessThanOrEqualTo(timer.elapsedNanos()))));
+        assertThat(timer.nanos(Phase.MAPPER), is(equalTo(0L)));
+        assertThat(timer.serverTiming(), startsWith("total;dur="));
+        assertThat(timer.serverTiming(), containsString("repository;dur="));
+    }
+}
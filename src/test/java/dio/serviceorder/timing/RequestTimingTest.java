@@ -0,0 +1,54 @@
+package dio.serviceorder.timing;
+
+import dio.serviceorder.dto.CustomerDTO;
+import dio.serviceorder.dto.RequestSampleDTO;
+import dio.serviceorder.service.CustomerService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class RequestTimingTest {
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private FlightRecorder flightRecorder;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void whenAnEndpointIsCalledThenItsPhasesShouldBeReportedAndRecorded() throws Exception {
+        // given
+        CustomerDTO customer = customerService.createCustomer(new CustomerDTO(null, "Request timing", null));
+
+        // when
+        mockMvc.perform(get("/api/v1/customers/" + customer.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name", is("Request timing")))
+                .andExpect(header().stringValues("Server-Timing", hasItem(allOf(startsWith("total;dur="),
+                        containsString("controller;dur="), containsString("repository;dur="), containsString("json;dur=")))));
+        List<RequestSampleDTO> samples = flightRecorder.samples(Duration.ZERO, "/api/v1/customers/{id}", 1);
+
+        // then
+        assertThat(samples, hasSize(1));
+        assertThat(samples.get(0).getStatus(), is(equalTo(200)));
+        assertThat(samples.get(0).getPhasesMs().get("controller"), is(greaterThan(0.0)));
+        assertThat(samples.get(0).getPhasesMs().get("json"), is(greaterThan(0.0)));
+        assertThat(samples.get(0).getSqlStatements(), is(greaterThanOrEqualTo(1L)));
+    }
+}
@@ -0,0 +1,38 @@
+package dio.serviceorder.utils;
+
+import dio.serviceorder.jdbc.SqlStats;
+import dio.serviceorder.jdbc.SqlStatsContext;
+import org.junit.jupiter.api.function.Executable;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+/**
+ * Counts the SQL statements an action issues, in tests running against the application context.
+ */
+public final class SqlStatements {
+
+    private SqlStatements() {
+    }
+
+    public static SqlStats count(Executable action) throws Throwable {
+        SqlStats stats = new SqlStats();
+        SqlStats previous = SqlStatsContext.current();
+        SqlStatsContext.set(stats);
+        try {
+            action.execute();
+        } finally {
+            if (previous == null)
+                SqlStatsContext.clear();
+            else
+                SqlStatsContext.set(previous);
+        }
+        return stats;
+    }
+
+    public static SqlStats assertAtMostStatements(long maxStatements, Executable action) throws Throwable {
+        SqlStats stats = count(action);
+        assertThat("SQL statements (" + stats + ")", stats.getStatements(), lessThanOrEqualTo(maxStatements));
+        return stats;
+    }
+}